@@ -28,6 +28,22 @@ public class IndexUpdateBenchmarks {
         populateDb( state, 10000 );
     }
 
+    @Benchmark
+    public void add10kIndexedSyncNodesWithManyLabelsAndProperties(SyncIndexingGraphDatabaseState state) {
+        final GraphDatabaseService db = state.getGraphDatabaseService();
+        final Label[] labels = {Label.label("Person"), Label.label("Employee"), Label.label("Customer"), Label.label("Active")};
+        try (Transaction tx = db.beginTx()) {
+            for (int i=0; i<10000; i++) {
+                Node n = db.createNode(labels);
+                n.setProperty("name", "myname_i");
+                n.setProperty("age", i);
+                n.setProperty("email", "name" + i + "@example.com");
+                n.setProperty("since", 2000 + i % 20);
+            }
+            tx.success();
+        }
+    }
+
     private void populateDb( GraphDatabaseState state, int numberOfNodes )
     {
         final GraphDatabaseService db = state.getGraphDatabaseService();
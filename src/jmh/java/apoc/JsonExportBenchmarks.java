@@ -0,0 +1,170 @@
+package apoc;
+
+import apoc.export.cypher.ExportFileManager;
+import apoc.export.json.JsonFormat;
+import apoc.export.util.ExportConfig;
+import apoc.export.util.ProgressReporter;
+import apoc.result.ProgressInfo;
+import apoc.util.JsonUtil;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import org.neo4j.cypher.export.DatabaseSubGraph;
+import org.neo4j.cypher.export.SubGraph;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.Values;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Compares the streaming json export ({@link JsonFormat}) with the export through {@link BaselineJsonFormatSerializer},
+ * which is how it worked before. The {@code bytes} counter reports the written bytes per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+public class JsonExportBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class GeneratedGraph {
+        @Param({"10000"})
+        public int nodes;
+
+        GraphDatabaseService db;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+            Label person = Label.label("Person");
+            RelationshipType knows = RelationshipType.withName("KNOWS");
+            try (Transaction tx = db.beginTx()) {
+                Node previous = null;
+                for (int i = 0; i < nodes; i++) {
+                    Node node = db.createNode(person);
+                    node.setProperty("name", "name_" + i);
+                    node.setProperty("age", (long) (i % 100));
+                    node.setProperty("score", i / 7.0);
+                    node.setProperty("active", i % 2 == 0);
+                    node.setProperty("tags", new String[]{"a" + (i % 10), "b" + (i % 3)});
+                    node.setProperty("born", LocalDate.ofEpochDay(i));
+                    node.setProperty("updated", LocalDateTime.of(2018, 10, 10, 12, 30).plusSeconds(i));
+                    node.setProperty("place", Values.pointValue(CoordinateReferenceSystem.WGS84, i % 90, i % 180));
+                    if (previous != null) {
+                        Relationship rel = previous.createRelationshipTo(node, knows);
+                        rel.setProperty("since", (long) i);
+                    }
+                    previous = node;
+                }
+                tx.success();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            db.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+    }
+
+    @Benchmark
+    public void streamingExport(GeneratedGraph graph, Bytes bytes) throws Exception {
+        CountingWriter out = new CountingWriter();
+        PrintWriter printWriter = new PrintWriter(out);
+        ExportConfig config = new ExportConfig(Collections.emptyMap());
+        ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo("-", "database", "json"));
+        new JsonFormat(graph.db).dump(new DatabaseSubGraph(graph.db), new FileManager(printWriter), reporter, config);
+        printWriter.flush();
+        bytes.bytes += out.count;
+    }
+
+    /**
+     * The export as {@code JsonFormat.dump(SubGraph, ...)} did it before: the property map of every entity is
+     * materialized for the progress and written through {@link BaselineJsonFormatSerializer}.
+     */
+    @Benchmark
+    public void baselineExport(GeneratedGraph graph, Bytes bytes) throws Exception {
+        CountingWriter out = new CountingWriter();
+        ExportConfig config = new ExportConfig(Collections.emptyMap());
+        ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo("-", "database", "json"));
+        SubGraph subGraph = new DatabaseSubGraph(graph.db);
+        try (Transaction tx = graph.db.beginTx(); JsonGenerator jsonGenerator = new JsonFactory().createGenerator(out)) {
+            jsonGenerator.setCodec(JsonUtil.OBJECT_MAPPER);
+            jsonGenerator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            for (Node node : subGraph.getNodes()) {
+                Map<String, Object> allProperties = node.getAllProperties();
+                BaselineJsonFormatSerializer.DEFAULT.writeNode(jsonGenerator, node, config);
+                reporter.update(1, 0, allProperties.size());
+            }
+            for (Relationship rel : subGraph.getRelationships()) {
+                Map<String, Object> allProperties = rel.getAllProperties();
+                BaselineJsonFormatSerializer.DEFAULT.writeRelationship(jsonGenerator, rel, config);
+                reporter.update(0, 1, allProperties.size());
+            }
+            tx.success();
+        }
+        bytes.bytes += out.count;
+    }
+
+    private static class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class FileManager implements ExportFileManager {
+        private final PrintWriter out;
+
+        FileManager(PrintWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public PrintWriter getPrintWriter(String type) throws IOException {
+            return out;
+        }
+
+        @Override
+        public StringWriter getStringWriter(String type) {
+            return null;
+        }
+
+        @Override
+        public String drain(String type) {
+            return null;
+        }
+
+        @Override
+        public String getFileName() {
+            return "-";
+        }
+    }
+}
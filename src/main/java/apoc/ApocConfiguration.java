@@ -1,6 +1,7 @@
 package apoc;
 
 import apoc.cache.Dynamic;
+import apoc.cache.Regions;
 import apoc.cache.Static;
 import apoc.util.FileUtils;
 import apoc.util.Util;
@@ -36,8 +37,6 @@ public class ApocConfiguration {
     }
 
     public static void initialize(GraphDatabaseAPI db) {
-        Static.clear();
-        Dynamic.clear();
         Config neo4jConfig = db.getDependencyResolver().resolveDependency(Config.class);
         Map<String, String> params = neo4jConfig.getRaw();
         apocConfig.clear();
@@ -51,6 +50,10 @@ public class ApocConfiguration {
         });
         config.clear();
         params.forEach((k, v) -> { if (!SKIP.matcher(k).find()) {config.put(k, v);} });
+        // after reading the config, the static storage is bounded by apoc.cache.static.*
+        Static.clear();
+        Dynamic.clear();
+        Regions.clear();
     }
 
     private static void mergeDefaults() {
@@ -1,6 +1,8 @@
 package apoc;
 
+import apoc.atomic.Counters;
 import apoc.custom.CypherProcedures;
+import apoc.cypher.CypherCache;
 import apoc.cypher.CypherInitializer;
 import apoc.broker.BrokerIntegration;
 import apoc.index.IndexUpdateTransactionEventHandler;
@@ -63,6 +65,8 @@ public class ApocKernelExtensionFactory extends KernelExtensionFactory<ApocKerne
         private Log userLog;
         private TTLLifeCycle ttlLifeCycle;
         private Uuid.UuidLifeCycle uuidLifeCycle;
+        private CypherCache.LifeCycle cypherCacheLifeCycle;
+        private Counters.LifeCycle countersLifeCycle;
 
         private IndexUpdateTransactionEventHandler.LifeCycle indexUpdateLifeCycle;
         private CypherProcedures.CustomProcedureStorage customProcedureStorage;
@@ -78,6 +82,14 @@ public class ApocKernelExtensionFactory extends KernelExtensionFactory<ApocKerne
             return indexUpdateLifeCycle;
         }
 
+        public CypherCache.LifeCycle getCypherCacheLifeCycle() {
+            return cypherCacheLifeCycle;
+        }
+
+        public Counters.LifeCycle getCountersLifeCycle() {
+            return countersLifeCycle;
+        }
+
         @Override
         public void start() throws Throwable {
             ApocConfiguration.initialize(db);
@@ -95,6 +107,10 @@ public class ApocKernelExtensionFactory extends KernelExtensionFactory<ApocKerne
             indexUpdateLifeCycle.start();
             brokerLifeCycle = new BrokerIntegration.BrokerLifeCycle(db, log.getUserLog(BrokerIntegration.class));
             brokerLifeCycle .start();
+            cypherCacheLifeCycle = new CypherCache.LifeCycle(db, log.getUserLog(CypherCache.class));
+            cypherCacheLifeCycle.start();
+            countersLifeCycle = new Counters.LifeCycle(db, log.getUserLog(Counters.class));
+            countersLifeCycle.start();
 
             customProcedureStorage = new CypherProcedures.CustomProcedureStorage(db, log.getUserLog(CypherProcedures.class));
             AvailabilityGuard availabilityGuard = dependencies.availabilityGuard();
@@ -144,6 +160,22 @@ public class ApocKernelExtensionFactory extends KernelExtensionFactory<ApocKerne
                 } catch(Exception e) {
                     userLog.warn("Error stopping broker service",e);
                 }
+
+            if (cypherCacheLifeCycle != null) {
+                try {
+                    cypherCacheLifeCycle.stop();
+                } catch (Exception e) {
+                    userLog.warn("Error stopping cypher cache", e);
+                }
+            }
+
+            if (countersLifeCycle != null) {
+                try {
+                    countersLifeCycle.stop();
+                } catch (Exception e) {
+                    userLog.warn("Error stopping atomic counters", e);
+                }
+            }
         }
 
     }
@@ -1,13 +1,16 @@
 package apoc.atomic;
 
+import apoc.ApocKernelExtensionFactory;
 import apoc.atomic.util.AtomicUtils;
 import apoc.util.ArrayBackedList;
+import apoc.util.Util;
 import apoc.util.MapUtil;
 import org.apache.commons.lang3.ArrayUtils;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Lock;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.helpers.TransactionTemplate;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.procedure.*;
 
 import java.lang.reflect.Array;
@@ -192,6 +195,45 @@ public class Atomic {
         return Stream.of(new AtomicResults(propertyContainer,property,oldValue[0],propertyContainer.getProperty(property)));
     }
 
+    @Procedure("apoc.atomic.counter.add")
+    @Description("apoc.atomic.counter.add(node/relationship,propertyName,number) YIELD container, property, value - adds the integer to a hot counter without locking the node or relationship, the sum is written to the property in the background")
+    public Stream<CounterResult> counterAdd(@Name("container") Object container, @Name("propertyName") String property, @Name("number") Number number) {
+        checkIsPropertyContainer(container);
+        if (number instanceof Double || number instanceof Float) throw new RuntimeException("Counters can only be incremented by integers");
+        long value = counters().add((PropertyContainer) container, property, number.longValue());
+        return Stream.of(new CounterResult(container, property, value));
+    }
+
+    @Procedure("apoc.atomic.counter.get")
+    @Description("apoc.atomic.counter.get(node/relationship,propertyName) YIELD container, property, value - the value of the property plus the pending increments of the hot counter")
+    public Stream<CounterResult> counterGet(@Name("container") Object container, @Name("propertyName") String property) {
+        checkIsPropertyContainer(container);
+        return Stream.of(new CounterResult(container, property, counters().value((PropertyContainer) container, property)));
+    }
+
+    @Procedure("apoc.atomic.counter.flush")
+    @Description("apoc.atomic.counter.flush() YIELD counters, pending, flushes, flushed, lastFlush, durable - writes the pending increments of all hot counters now")
+    public Stream<Counters.Stats> counterFlush() {
+        Counters counters = counters();
+        // in its own thread, the transaction of the procedure is read only
+        Util.inThread(counters::flush);
+        return Stream.of(counters.stats());
+    }
+
+    @Procedure("apoc.atomic.counter.stats")
+    @Description("apoc.atomic.counter.stats() YIELD counters, pending, flushes, flushed, lastFlush, durable - number of hot counters and pending increments")
+    public Stream<Counters.Stats> counterStats() {
+        return Stream.of(counters().stats());
+    }
+
+    private Counters counters() {
+        ApocKernelExtensionFactory.ApocLifecycle apocLifecycle = ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(ApocKernelExtensionFactory.ApocLifecycle.class);
+        if (apocLifecycle == null || apocLifecycle.getCountersLifeCycle() == null || apocLifecycle.getCountersLifeCycle().getCounters() == null) {
+            throw new RuntimeException("Atomic counters are not available");
+        }
+        return apocLifecycle.getCountersLifeCycle().getCounters();
+    }
+
     private static class ExecutionContext {
         private final GraphDatabaseService db;
 
@@ -232,6 +274,18 @@ public class Atomic {
         if (!(container instanceof PropertyContainer)) throw new RuntimeException("You Must pass Node or Relationship");
     }
 
+    public static class CounterResult {
+        public Object container;
+        public String property;
+        public long value;
+
+        public CounterResult(Object container, String property, long value) {
+            this.container = container;
+            this.property = property;
+            this.value = value;
+        }
+    }
+
     public class AtomicResults {
         public Object container;
         public String property;
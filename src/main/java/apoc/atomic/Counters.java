@@ -0,0 +1,571 @@
+package apoc.atomic;
+
+import apoc.ApocConfiguration;
+import apoc.Pools;
+import apoc.broker.logging.SegmentedLog;
+import apoc.util.Util;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.io.fs.DefaultFileSystemAbstraction;
+import org.neo4j.io.fs.FileSystemAbstraction;
+import org.neo4j.kernel.AvailabilityGuard;
+import org.neo4j.kernel.impl.core.EmbeddedProxySPI;
+import org.neo4j.kernel.impl.core.GraphProperties;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hot counters for {@code apoc.atomic.counter.*}, incremented without locking the node or relationship.
+ * <p>
+ * Increments are accumulated in a {@link LongAdder} per entity and property and written to the property by a
+ * background flush in one transaction, every {@code apoc.atomic.counter.flushInterval} ms or when
+ * {@code apoc.atomic.counter.flushThreshold} increments are pending. Reads add the pending increments to the stored value.
+ * <p>
+ * With {@code apoc.atomic.counter.durability=log} (default) every increment is also appended to a {@link SegmentedLog}
+ * in {@code apoc.atomic.counter.logDir}. Increments are buffered in stripes picked by thread and appended in batches of
+ * {@link #LOG_BATCH} or by the next flush, so a crash loses at most the buffered ones. The flush stores the sequence number of the last logged increment it contains
+ * in a graph property in the same transaction, so after a crash exactly the increments that were not flushed are
+ * replayed from the log. With {@code shutdown} the pending increments are only appended to the log on shutdown, as the
+ * database doesn't accept transactions anymore then, and flushed after the restart. With {@code none} they are lost.
+ */
+public class Counters {
+
+    static final String FLUSHED_SEQUENCE = "apoc.atomic.counter.flushed";
+    /** number of buffered increments of a stripe that are appended to the log together */
+    static final int LOG_BATCH = 64;
+    private static final long READ_TIMEOUT = 100;
+
+    private final GraphDatabaseAPI db;
+    private final Log log;
+    private final long threshold;
+    private final SegmentedLog counterLog;
+    private final boolean logIncrements;
+    private final Stripe[] stripes;
+
+    private final Map<Key, Cell> cells = new ConcurrentHashMap<>();
+    private final Map<Key, LongAdder> inFlight = new ConcurrentHashMap<>();
+    private final List<Cell> retired = new ArrayList<>();
+    private final LongAdder sinceFlush = new LongAdder();
+    /** odd while a flush moves increments between the cells, in flight and the store, readers retry then */
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private volatile long lastFlush;
+    /** end of the log before the first increment of this run, the records up to there are recovered */
+    private final SegmentedLog.Position recoverUpTo;
+    private volatile boolean recovered;
+
+    Counters(GraphDatabaseAPI db, Log log, long threshold, SegmentedLog counterLog, boolean logIncrements) {
+        this.db = db;
+        this.log = log;
+        this.threshold = threshold;
+        this.counterLog = counterLog;
+        this.logIncrements = counterLog != null && logIncrements;
+        int stripeCount = 1;
+        while (stripeCount < 2 * Runtime.getRuntime().availableProcessors()) stripeCount <<= 1;
+        this.stripes = new Stripe[this.logIncrements ? stripeCount : 0];
+        for (int i = 0; i < stripes.length; i++) stripes[i] = new Stripe();
+        this.recoverUpTo = counterLog == null ? null : counterLog.end();
+        this.recovered = counterLog == null;
+    }
+
+    static final class Key {
+        final boolean node;
+        final long id;
+        final String property;
+
+        Key(boolean node, long id, String property) {
+            this.node = node;
+            this.id = id;
+            this.property = property;
+        }
+
+        static Key of(PropertyContainer container, String property) {
+            if (container instanceof Node) return new Key(true, ((Node) container).getId(), property);
+            return new Key(false, ((Relationship) container).getId(), property);
+        }
+
+        PropertyContainer entity(GraphDatabaseAPI db) {
+            return node ? db.getNodeById(id) : db.getRelationshipById(id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return node == key.node && id == key.id && property.equals(key.property);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Boolean.hashCode(node) + Long.hashCode(id)) + property.hashCode();
+        }
+    }
+
+    /**
+     * Buffer of logged increments that are not appended to the log yet, shared by the threads mapped to it.
+     */
+    final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final List<byte[]> records = new ArrayList<>();
+
+        /** needs the lock */
+        void write() {
+            if (records.isEmpty()) return;
+            try {
+                counterLog.append(records);
+            } catch (IOException e) {
+                throw new RuntimeException("Error logging " + records.size() + " atomic counter increments", e);
+            } finally {
+                records.clear();
+            }
+        }
+    }
+
+    static final class Cell {
+        final Key key;
+        private final LongAdder pending = new LongAdder();
+        /** number of flushes since the cell was removed from the map, or -1 while it is in the map */
+        int retiredFor = -1;
+        boolean idle;
+
+        Cell(Key key) {
+            this.key = key;
+        }
+
+        void add(long delta) {
+            pending.add(delta);
+        }
+
+        long sum() {
+            return pending.sum();
+        }
+    }
+
+    public static class Stats {
+        public final long counters;
+        public final long pending;
+        public final long flushes;
+        public final long flushed;
+        public final long lastFlush;
+        public final boolean durable;
+
+        Stats(long counters, long pending, long flushes, long flushed, long lastFlush, boolean durable) {
+            this.counters = counters;
+            this.pending = pending;
+            this.flushes = flushes;
+            this.flushed = flushed;
+            this.lastFlush = lastFlush;
+            this.durable = durable;
+        }
+    }
+
+    /**
+     * @return the value of the property including this increment and all other pending ones
+     */
+    public long add(PropertyContainer container, String property, long delta) {
+        Key key = Key.of(container, property);
+        if (!logIncrements) {
+            cell(key).add(delta);
+        } else {
+            byte[] record;
+            try {
+                record = encode(key, delta);
+            } catch (IOException e) {
+                throw new RuntimeException("Error logging the increment of " + property, e);
+            }
+            // the buffer and the cell are updated together, so a flush never contains an increment that isn't logged yet
+            Stripe stripe = stripes[(int) (Thread.currentThread().getId() & (stripes.length - 1))];
+            stripe.lock.lock();
+            try {
+                stripe.records.add(record);
+                cell(key).add(delta);
+                if (stripe.records.size() >= LOG_BATCH) stripe.write();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        sinceFlush.increment();
+        if ((ThreadLocalRandom.current().nextInt() & 63) == 0 && sinceFlush.sum() >= threshold) {
+            requestFlush();
+        }
+        return value(container, property);
+    }
+
+    private Cell cell(Key key) {
+        return cells.computeIfAbsent(key, Cell::new);
+    }
+
+    /**
+     * @return the stored value of the property plus the increments that are not flushed yet
+     */
+    public long value(PropertyContainer container, String property) {
+        Key key = Key.of(container, property);
+        // don't wait forever, the flush might wait for a lock of the calling transaction
+        long deadline = System.currentTimeMillis() + READ_TIMEOUT;
+        while (true) {
+            long before = version.get();
+            long stored = Util.toLong(container.getProperty(property, 0L));
+            long value = stored + pending(key);
+            if (((before & 1) == 0 && version.get() == before) || System.currentTimeMillis() > deadline) return value;
+            Thread.yield();
+        }
+    }
+
+    private long pending(Key key) {
+        long pending = 0;
+        Cell cell = cells.get(key);
+        if (cell != null) pending += cell.sum();
+        LongAdder flushing = inFlight.get(key);
+        if (flushing != null) pending += flushing.sum();
+        return pending;
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            Pools.DEFAULT.submit(() -> {
+                try {
+                    flush();
+                } catch (Exception e) {
+                    log.warn("Error flushing atomic counters", e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes all pending increments in one transaction.
+     *
+     * @return the number of changed properties
+     */
+    public synchronized long flush() {
+        flushRequested.set(false);
+        // the flushed sequence number must not pass increments that are still to be recovered
+        if (!recovered) return 0;
+        Map<Key, Long> deltas = new HashMap<>();
+        SegmentedLog.Position position = null;
+        version.incrementAndGet();
+        try {
+            if (counterLog == null) {
+                collect(deltas);
+            } else {
+                // writes the buffered increments, the position then covers all increments in the cells
+                lockStripes();
+                try {
+                    for (Stripe stripe : stripes) stripe.write();
+                    collect(deltas);
+                    position = counterLog.end();
+                } finally {
+                    unlockStripes();
+                }
+            }
+        } finally {
+            version.incrementAndGet();
+        }
+        if (deltas.isEmpty() && (position == null || position.equals(counterLog.committed()))) return 0;
+        boolean committed = false;
+        long changed = 0;
+        try {
+            try (Transaction tx = db.beginTx()) {
+                for (Map.Entry<Key, Long> entry : deltas.entrySet()) {
+                    if (apply(entry.getKey(), entry.getValue())) changed++;
+                }
+                if (position != null) {
+                    graphProperties().setProperty(FLUSHED_SEQUENCE, position.sequence);
+                }
+                tx.success();
+                version.incrementAndGet();
+            }
+            committed = true;
+        } catch (RuntimeException e) {
+            log.warn("Error flushing " + deltas.size() + " atomic counters, will retry with the next flush", e);
+        } finally {
+            if ((version.get() & 1) == 0) version.incrementAndGet();
+            if (!committed) {
+                // put them back for the next flush, the log still contains them
+                deltas.forEach((key, delta) -> cell(key).add(delta));
+            }
+            deltas.forEach((key, delta) -> inFlight.computeIfPresent(key, (k, adder) -> {
+                adder.add(-delta);
+                return adder.sum() == 0 ? null : adder;
+            }));
+            version.incrementAndGet();
+        }
+        if (!committed) return 0;
+        sinceFlush.reset();
+        if (position != null) {
+            try {
+                counterLog.commit(position);
+            } catch (IOException e) {
+                log.warn("Error checkpointing the atomic counter log", e);
+            }
+        }
+        flushes.incrementAndGet();
+        flushed.addAndGet(changed);
+        lastFlush = System.currentTimeMillis();
+        return changed;
+    }
+
+    private void lockStripes() {
+        for (Stripe stripe : stripes) stripe.lock.lock();
+    }
+
+    private void unlockStripes() {
+        for (int i = stripes.length - 1; i >= 0; i--) stripes[i].lock.unlock();
+    }
+
+    /**
+     * Moves the pending increments into {@code deltas} and {@link #inFlight}. Cells without increments since the last
+     * flush are removed from the map, but still drained by the next two flushes in case an increment raced with the removal.
+     */
+    private void collect(Map<Key, Long> deltas) {
+        for (Iterator<Cell> it = retired.iterator(); it.hasNext(); ) {
+            Cell cell = it.next();
+            drain(cell, deltas);
+            if (++cell.retiredFor >= 2) it.remove();
+        }
+        for (Cell cell : cells.values()) {
+            if (!drain(cell, deltas)) {
+                if (cell.idle && cells.remove(cell.key, cell)) {
+                    cell.retiredFor = 0;
+                    retired.add(cell);
+                }
+                cell.idle = true;
+            } else {
+                cell.idle = false;
+            }
+        }
+    }
+
+    private boolean drain(Cell cell, Map<Key, Long> deltas) {
+        long delta = cell.sum();
+        if (delta == 0) return false;
+        inFlight.computeIfAbsent(cell.key, key -> new LongAdder()).add(delta);
+        cell.add(-delta);
+        deltas.merge(cell.key, delta, Long::sum);
+        return true;
+    }
+
+    private boolean apply(Key key, long delta) {
+        PropertyContainer entity;
+        try {
+            entity = key.entity(db);
+        } catch (NotFoundException e) {
+            return false;
+        }
+        Object value = entity.getProperty(key.property, 0L);
+        if (value instanceof Double || value instanceof Float) {
+            entity.setProperty(key.property, ((Number) value).doubleValue() + delta);
+        } else {
+            entity.setProperty(key.property, Util.toLong(value) + delta);
+        }
+        return true;
+    }
+
+    private GraphProperties graphProperties() {
+        return db.getDependencyResolver().resolveDependency(EmbeddedProxySPI.class).newGraphPropertiesProxy();
+    }
+
+    /**
+     * Adds the logged increments that were not flushed before the last shutdown or crash to the cells.
+     */
+    void recover() throws IOException {
+        long flushedSequence;
+        try (Transaction tx = db.beginTx()) {
+            flushedSequence = Util.toLong(graphProperties().getProperty(FLUSHED_SEQUENCE, -1L));
+            tx.success();
+        }
+        long count = 0;
+        try (SegmentedLog.Reader reader = counterLog.read()) {
+            while (reader.next() && reader.position().sequence <= recoverUpTo.sequence) {
+                if (reader.position().sequence <= flushedSequence) continue;
+                try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(reader.payload()))) {
+                    Key key = new Key(in.readBoolean(), in.readLong(), in.readUTF());
+                    cell(key).add(in.readLong());
+                    count++;
+                }
+            }
+        }
+        if (count > 0) {
+            log.info("Recovered " + count + " atomic counter increments from the log");
+            sinceFlush.add(count);
+        }
+        recovered = true;
+    }
+
+    /**
+     * Appends the pending increments to the log when the database is shut down: the buffered ones with
+     * {@code durability=log}, all of them with {@code durability=shutdown}.
+     */
+    synchronized void persist() throws IOException {
+        if (counterLog == null) return;
+        if (logIncrements) {
+            lockStripes();
+            try {
+                for (Stripe stripe : stripes) stripe.write();
+            } finally {
+                unlockStripes();
+            }
+            return;
+        }
+        Map<Key, Long> deltas = new HashMap<>();
+        for (Cell cell : retired) drain(cell, deltas);
+        for (Cell cell : cells.values()) drain(cell, deltas);
+        List<byte[]> records = new ArrayList<>(deltas.size());
+        for (Map.Entry<Key, Long> entry : deltas.entrySet()) {
+            records.add(encode(entry.getKey(), entry.getValue()));
+        }
+        counterLog.append(records);
+        if (!records.isEmpty()) log.info("Appended " + records.size() + " pending atomic counters to the log");
+    }
+
+    private static byte[] encode(Key key, long delta) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + key.property.length());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeBoolean(key.node);
+            out.writeLong(key.id);
+            out.writeUTF(key.property);
+            out.writeLong(delta);
+        }
+        return bytes.toByteArray();
+    }
+
+    public Stats stats() {
+        long pending = 0;
+        for (Cell cell : cells.values()) pending += cell.sum();
+        return new Stats(cells.size(), pending, flushes.get(), flushed.get(), lastFlush, logIncrements);
+    }
+
+    void close() throws IOException {
+        if (counterLog != null) counterLog.close();
+    }
+
+    /**
+     * Starts the counters with the first use of a counter procedure, so databases that don't use them neither open a
+     * log nor schedule flushes. A log left by a previous run is opened right away to recover its increments.
+     * Impermanent databases never get a log, there is nothing to recover after their restart.
+     */
+    public static class LifeCycle {
+        private final GraphDatabaseAPI db;
+        private final Log log;
+        private volatile Counters counters;
+        private boolean stopped;
+        private ScheduledFuture<?> flushFuture;
+
+        public LifeCycle(GraphDatabaseAPI db, Log log) {
+            this.db = db;
+            this.log = log;
+        }
+
+        public void start() {
+            String durability = durability();
+            if (!logged(durability) && !"none".equalsIgnoreCase(durability)) {
+                throw new RuntimeException("Unknown apoc.atomic.counter.durability '" + durability + "', use 'log', 'shutdown' or 'none'");
+            }
+            if (logged(durability) && !ephemeral()) {
+                String[] previous = logDir().list();
+                if (previous != null && previous.length > 0) getCounters();
+            }
+        }
+
+        private synchronized Counters open() {
+            if (counters != null || stopped) return counters;
+            long interval = longConfig("atomic.counter.flushInterval", 1000L);
+            long threshold = longConfig("atomic.counter.flushThreshold", 10000L);
+            String durability = durability();
+            SegmentedLog counterLog = null;
+            if (logged(durability) && !ephemeral()) {
+                File dir = logDir();
+                boolean fsync = Util.toBoolean(ApocConfiguration.get("atomic.counter.fsync", false));
+                try {
+                    counterLog = new SegmentedLog(dir, longConfig("atomic.counter.segmentSize", 16L * 1024 * 1024), fsync);
+                } catch (IOException e) {
+                    throw new RuntimeException("Error opening the atomic counter log in " + dir, e);
+                }
+            }
+            Counters opened = new Counters(db, log, threshold, counterLog, "log".equalsIgnoreCase(durability));
+            if (interval > 0) {
+                flushFuture = Pools.SCHEDULED.scheduleWithFixedDelay(() -> {
+                    try {
+                        opened.flush();
+                    } catch (Exception e) {
+                        log.warn("Error flushing atomic counters", e);
+                    }
+                }, interval, interval, TimeUnit.MILLISECONDS);
+            }
+            if (counterLog != null) {
+                Pools.DEFAULT.submit(() -> {
+                    try {
+                        db.getDependencyResolver().resolveDependency(AvailabilityGuard.class).await(60_000);
+                        opened.recover();
+                    } catch (Exception e) {
+                        log.error("Error recovering atomic counter increments from the log", e);
+                    }
+                });
+            }
+            counters = opened;
+            return opened;
+        }
+
+        private String durability() {
+            return String.valueOf(ApocConfiguration.get("atomic.counter.durability", "log"));
+        }
+
+        private static boolean logged(String durability) {
+            return "log".equalsIgnoreCase(durability) || "shutdown".equalsIgnoreCase(durability);
+        }
+
+        private File logDir() {
+            return new File(String.valueOf(ApocConfiguration.get("atomic.counter.logDir", new File(db.getStoreDir(), "apoc-counters").getPath())));
+        }
+
+        /** the log is written with java.io, next to a store that only lives in memory it would outlive the store */
+        private boolean ephemeral() {
+            return !(db.getDependencyResolver().resolveDependency(FileSystemAbstraction.class) instanceof DefaultFileSystemAbstraction);
+        }
+
+        private static long longConfig(String key, long defaultValue) {
+            Long value = Util.toLong(ApocConfiguration.get(key, defaultValue));
+            return value == null ? defaultValue : value;
+        }
+
+        /**
+         * @return the counters, started with the first call, or null once the database is stopped
+         */
+        public Counters getCounters() {
+            Counters current = counters;
+            return current != null ? current : open();
+        }
+
+        public synchronized void stop() {
+            stopped = true;
+            if (counters == null) return;
+            if (flushFuture != null) {
+                flushFuture.cancel(false);
+                flushFuture = null;
+            }
+            try {
+                counters.persist();
+                counters.close();
+            } catch (IOException e) {
+                log.warn("Error closing the atomic counter log", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package apoc.broker;
+
+/**
+ * Summary of {@code apoc.broker.sendBatch}.
+ */
+public class BrokerBatchResult
+{
+    public String connectionName;
+    public long sent;
+    public long failed;
+    public long time;
+
+    public BrokerBatchResult()
+    {
+    }
+
+    public BrokerBatchResult( String connectionName, long sent, long failed, long time )
+    {
+        this.connectionName = connectionName;
+        this.sent = sent;
+        this.failed = failed;
+        this.time = time;
+    }
+}
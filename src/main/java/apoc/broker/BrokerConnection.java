@@ -1,6 +1,8 @@
 package apoc.broker;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
 
@@ -19,6 +21,40 @@ public interface BrokerConnection
 
     Stream<BrokerMessage> send( @Name( "message" ) Map<String,Object> message, @Name( "configuration" ) Map<String,Object> configuration ) throws Exception;
 
+    /**
+     * Sends all messages with the same configuration. Implementations pipeline the messages with a bounded number in flight
+     * (configuration key {@code window}) instead of waiting for each of them.
+     *
+     * @return the messages that could not be sent
+     */
+    default List<Map<String,Object>> sendBatch( List<Map<String,Object>> messages, Map<String,Object> configuration ) throws Exception
+    {
+        List<Map<String,Object>> failed = new ArrayList<>();
+        for ( Map<String,Object> message : messages )
+        {
+            if ( failed.isEmpty() )
+            {
+                try
+                {
+                    send( message, configuration );
+                    continue;
+                }
+                catch ( Exception e )
+                {
+                    getLog().error( "Broker Exception. Connection Name: " + getConnectionName() + ". Error: " + e.toString() );
+                }
+            }
+            failed.add( message );
+        }
+        return failed;
+    }
+
+    static int window( Map<String,Object> configuration, int defaultWindow )
+    {
+        Object window = configuration.get( "window" );
+        return window == null ? defaultWindow : Math.max( 1, Integer.parseInt( window.toString() ) );
+    }
+
     Stream<BrokerResult> receive( @Name( "configuration" ) Map<String,Object> configuration ) throws IOException;
 
     void stop();
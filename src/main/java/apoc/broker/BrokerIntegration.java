@@ -5,6 +5,7 @@ import apoc.Pools;
 import apoc.broker.logging.BrokerLogManager;
 import apoc.broker.logging.BrokerLogger;
 import apoc.result.MapResult;
+import apoc.util.Util;
 import org.apache.commons.lang3.StringUtils;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
@@ -14,10 +15,17 @@ import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -44,6 +52,15 @@ public class BrokerIntegration
         return BrokerHandler.sendMessageToBrokerConnection( connectionName, message, configuration );
     }
 
+    @Procedure( mode = Mode.READ )
+    @Description( "apoc.broker.sendBatch(connectionName, messages, configuration) - Send a list of messages to the broker associated with the connectionName namespace, pipelined with at most configuration.window messages in flight. Failed messages are logged for a retry when broker logging is enabled." )
+    public Stream<BrokerBatchResult> sendBatch( @Name( "connectionName" ) String connectionName, @Name( "messages" ) List<Map<String,Object>> messages,
+            @Name( value = "configuration", defaultValue = "{}" ) Map<String,Object> configuration ) throws Exception
+    {
+
+        return BrokerHandler.sendBatchToBrokerConnection( connectionName, messages, configuration );
+    }
+
     @Procedure( mode = Mode.READ )
     @Description( "apoc.broker.receive(connectionName, configuration) - Receive a message from the broker associated with the connectionName namespace. Takes in a configuration map which is dependent on the broker being used." )
     public Stream<BrokerResult> receive( @Name( "connectionName" ) String connectionName, @Name( "configuration" ) Map<String,Object> configuration )
@@ -117,13 +134,21 @@ public class BrokerIntegration
 
     public static class BrokerHandler
     {
+        private static final long HEALTH_CHECK_INTERVAL_DEFAULT = 5000L;
         private static Log neo4jLog;
         private static Boolean loggingEnabled;
+        private static final int RETRY_BATCH_SIZE_DEFAULT = 100;
+        private static long healthCheckInterval = HEALTH_CHECK_INTERVAL_DEFAULT;
+        private static int retryBatchSize = RETRY_BATCH_SIZE_DEFAULT;
+        private static final Map<BrokerConnection,AtomicLong> lastHealthChecks = Collections.synchronizedMap( new WeakHashMap<>() );
+        private static final Map<String,AtomicBoolean> retriesScheduled = new ConcurrentHashMap<>();
 
         public BrokerHandler( Log log, boolean loggingEnabled )
         {
             neo4jLog = log;
             this.loggingEnabled = loggingEnabled;
+            healthCheckInterval = Util.toLong( ApocConfiguration.get( "brokers.healthCheckInterval", HEALTH_CHECK_INTERVAL_DEFAULT ) );
+            retryBatchSize = Util.toLong( ApocConfiguration.get( "brokers.logs.retryBatchSize", RETRY_BATCH_SIZE_DEFAULT ) ).intValue();
 
             if ( loggingEnabled )
             {
@@ -154,12 +179,12 @@ public class BrokerIntegration
                     throw new Exception(  );
                 }
 
-                brokerConnection.checkConnectionHealth();
+                checkConnectionHealth( brokerConnection );
                 Stream<BrokerMessage> brokerMessageStream = brokerConnection.send( message, configuration );
 
                 if ( loggingEnabled )
                 {
-                    Pools.DEFAULT.execute( (Runnable) () -> retryMessagesForConnectionAsync( connection ) );
+                    scheduleRetry( connection );
                 }
 
                 return brokerMessageStream;
@@ -168,7 +193,7 @@ public class BrokerIntegration
             {
                 if ( loggingEnabled )
                 {
-                    BrokerLogManager.getBrokerLogger( connection ).error( new BrokerLogger.LogLine.LogEntry( connection, message, configuration ) );
+                    BrokerLogManager.getBrokerLogger( connection ).append( new BrokerLogger.LogEntry( connection, message, configuration ) );
                     brokerConnection.setConnected( false );
 
                     if ( !brokerConnection.isReconnecting() )
@@ -180,6 +205,102 @@ public class BrokerIntegration
             throw new RuntimeException( "Unable to send message to connection '" + connection + "'." );
         }
 
+        public static Stream<BrokerBatchResult> sendBatchToBrokerConnection( String connection, List<Map<String,Object>> messages,
+                Map<String,Object> configuration ) throws Exception
+        {
+            if ( !doesExist( connection ) )
+            {
+                throw new IOException( "Broker Exception. Connection '" + connection + "' is not a configured broker connection." );
+            }
+            BrokerConnection brokerConnection = getConnection( connection );
+            if ( configuration == null )
+            {
+                configuration = Collections.emptyMap();
+            }
+            long start = System.currentTimeMillis();
+            List<Map<String,Object>> failed;
+            try
+            {
+                if ( !brokerConnection.isConnected() )
+                {
+                    throw new Exception( "Connection '" + connection + "' is disconnected." );
+                }
+                checkConnectionHealth( brokerConnection );
+                failed = brokerConnection.sendBatch( messages, configuration );
+            }
+            catch ( Exception e )
+            {
+                neo4jLog.error( "Broker Exception. Connection Name: " + connection + ". Error: " + e.toString() );
+                failed = messages;
+            }
+
+            if ( failed.isEmpty() )
+            {
+                if ( loggingEnabled )
+                {
+                    scheduleRetry( connection );
+                }
+            }
+            else if ( loggingEnabled )
+            {
+                List<BrokerLogger.LogEntry> logEntries = new ArrayList<>( failed.size() );
+                for ( Map<String,Object> message : failed )
+                {
+                    logEntries.add( new BrokerLogger.LogEntry( connection, message, configuration ) );
+                }
+                BrokerLogManager.getBrokerLogger( connection ).append( logEntries );
+                brokerConnection.setConnected( false );
+
+                if ( !brokerConnection.isReconnecting() )
+                {
+                    reconnectAndResendAsync( connection );
+                }
+            }
+            else if ( failed.size() == messages.size() )
+            {
+                throw new RuntimeException( "Unable to send messages to connection '" + connection + "'." );
+            }
+            return Stream.of( new BrokerBatchResult( connection, messages.size() - failed.size(), failed.size(), System.currentTimeMillis() - start ) );
+        }
+
+        /**
+         * Checks the connection at most once per {@code apoc.brokers.healthCheckInterval} ms, instead of before every send.
+         * A failed send marks the connection as disconnected anyway, and a reconnected connection is a new instance which is checked right away.
+         */
+        private static void checkConnectionHealth( BrokerConnection brokerConnection ) throws Exception
+        {
+            AtomicLong lastCheck = lastHealthChecks.computeIfAbsent( brokerConnection, c -> new AtomicLong() );
+            long now = System.currentTimeMillis();
+            long last = lastCheck.get();
+            if ( now - last >= healthCheckInterval && lastCheck.compareAndSet( last, now ) )
+            {
+                try
+                {
+                    brokerConnection.checkConnectionHealth();
+                }
+                catch ( Exception e )
+                {
+                    lastCheck.set( 0L );
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * Schedules a retry of the logged messages unless one is already waiting to run for the connection.
+         */
+        private static void scheduleRetry( String connection )
+        {
+            AtomicBoolean scheduled = retriesScheduled.computeIfAbsent( connection, name -> new AtomicBoolean() );
+            if ( scheduled.compareAndSet( false, true ) )
+            {
+                Pools.DEFAULT.execute( () -> {
+                    scheduled.set( false );
+                    retryMessagesForConnectionAsync( connection );
+                } );
+            }
+        }
+
         public static Stream<BrokerResult> receiveMessageFromBrokerConnection( String connection, Map<String,Object> configuration ) throws IOException
         {
             if ( !doesExist( connection ) )
@@ -231,9 +352,7 @@ public class BrokerIntegration
 
         private static void resendMessagesForHealthyConnections() throws Exception
         {
-            BrokerLogManager.streamBrokerLogInfo().forEach( logInfo -> {
-                resendMessagesForConnection( logInfo.getBrokerName() );
-            } );
+            BrokerLogManager.getConnectionNames().forEach( BrokerHandler::resendMessagesForConnection );
         }
 
         private static void resendMessagesForConnection(String connectionName )
@@ -242,7 +361,7 @@ public class BrokerIntegration
             {
                 try
                 {
-                    if ( getConnection( connectionName ).isConnected() && BrokerLogManager.getBrokerLogger( connectionName ).calculateNumberOfLogEntries() > 0L )
+                    if ( getConnection( connectionName ).isConnected() && BrokerLogManager.getBrokerLogger( connectionName ).pending() > 0L )
                     {
                         retryMessagesForConnectionAsync( connectionName );
                     }
@@ -269,68 +388,33 @@ public class BrokerIntegration
                 if ( getConnection( connectionName ).isConnected() )
                 {
                     Pools.DEFAULT.execute( () -> {
-                        try(Stream<BrokerLogManager.LogLine.LogInfo> logInfoStream = BrokerLogManager.readBrokerLogLine( connectionName ))
+                        try
                         {
-                            // Start streaming the lines back from the BrokerLogManager.
-                            BrokerLogManager.LogLine.LogInfo logInfo = logInfoStream.findFirst().get();
+                            BrokerLogger brokerLogger = BrokerLogManager.getBrokerLogger( connectionName );
+                            long pending = brokerLogger.pending();
+                            if ( pending == 0L )
+                            {
+                                return;
+                            }
+                            neo4jLog.info( "APOC Broker: Resending " + pending + " messages for '" + connectionName + "'." );
 
-                            AtomicLong nextLinePointer = new AtomicLong( logInfo.getNextMessageToSend() );
-                            AtomicLong numSent = new AtomicLong( 0 );
+                            long sent = brokerLogger.replay( numToSend, retryBatchSize, logEntries -> resendBrokerMessages( connectionName, logEntries ) );
 
-                            try(Stream<BrokerLogger.LogLine.LogEntry> logEntryStream = BrokerLogger.streamLogLines( logInfo ).map( logLine -> logLine.getLogEntry() ))
+                            if ( sent >= 0L && brokerLogger.pending() > 0L && (numToSend <= 0L || sent < numToSend) )
                             {
+                                // The broker has been disconnected before all the messages could be sent.
+                                ConnectionManager.getConnection( connectionName ).setConnected( false );
 
-                                for ( BrokerLogger.LogLine.LogEntry logEntry : logEntryStream.collect( Collectors.toList()) )
+                                // Start attempting to reconnect
+                                if ( !ConnectionManager.getConnection( connectionName ).isReconnecting() )
                                 {
-                                    neo4jLog.info( "APOC Broker: Resending message for '" + connectionName + "'." );
-
-                                    Boolean resent = resendBrokerMessage( logEntry.getConnectionName(), logEntry.getMessage(), logEntry.getConfiguration() );
-                                    if ( resent )
-                                    {
-                                        //Send successful. Move pointer one line.
-                                        nextLinePointer.getAndIncrement();
-                                        numSent.getAndIncrement();
-
-                                        // Used for simulating sending exactly numToSend messages.
-                                        if ( nextLinePointer.get() - logInfo.getNextMessageToSend() == numToSend )
-                                        {
-                                            break;
-                                        }
-                                    }
-                                    else
-                                    {
-                                        // Send unsuccessful. Break to stop sending messages.
-                                        break;
-                                    }
-                                }
-
-                                if ( numSent.get() > 0L )
-                                {
-                                    if ( nextLinePointer.get() == (BrokerLogManager.getBrokerLogger( connectionName ).calculateNumberOfLogEntries()) )
-                                    {
-                                        // All the messsages have been sent, reset the broker log.
-                                        BrokerLogManager.resetBrokerLogger( connectionName );
-                                    }
-                                    else
-                                    {
-                                        // The broker has been disconnected before all the messages could be sent.
-                                        ConnectionManager.getConnection( connectionName ).setConnected( false );
-
-                                        // Not all the messages have been sent, so update the line pointer.
-                                        BrokerLogManager.updateNextMessageToSend( connectionName, nextLinePointer.get() );
-
-                                        // Start attempting to reconnect
-                                        if ( !ConnectionManager.getConnection( connectionName ).isReconnecting() )
-                                        {
-                                            reconnectAndResendAsync( connectionName );
-                                        }
-                                    }
+                                    reconnectAndResendAsync( connectionName );
                                 }
                             }
                         }
                         catch ( Exception e )
                         {
-
+                            neo4jLog.error( "APOC Broker: Resending messages for '" + connectionName + "' failed. Error: " + e.toString() );
                         }
                     } );
                 }
@@ -341,21 +425,43 @@ public class BrokerIntegration
             }
         }
 
-        private static Boolean resendBrokerMessage( String connection, Map<String,Object> message, Map<String,Object> configuration )
+        /**
+         * Sends the logged messages, which all have the same configuration, as a batch.
+         *
+         * @return the number of messages at the start that were sent
+         */
+        private static int resendBrokerMessages( String connection, List<BrokerLogger.LogEntry> logEntries )
         {
             if ( !doesExist( connection ) )
             {
                 throw new RuntimeException( "Broker Exception. Connection '" + connection + "' is not a configured broker connection." );
             }
+            List<Map<String,Object>> messages = new ArrayList<>( logEntries.size() );
+            for ( BrokerLogger.LogEntry logEntry : logEntries )
+            {
+                messages.add( logEntry.getMessage() );
+            }
+            List<Map<String,Object>> failed;
             try
             {
-                getConnection( connection ).send( message, configuration );
+                failed = getConnection( connection ).sendBatch( messages, logEntries.get( 0 ).getConfiguration() );
             }
             catch ( Exception e )
             {
-                return false;
+                return 0;
+            }
+            if ( failed.isEmpty() )
+            {
+                return messages.size();
+            }
+            Set<Map<String,Object>> failedMessages = Collections.newSetFromMap( new IdentityHashMap<>() );
+            failedMessages.addAll( failed );
+            int sent = 0;
+            while ( sent < messages.size() && !failedMessages.contains( messages.get( sent ) ) )
+            {
+                sent++;
             }
-            return true;
+            return sent;
         }
 
         private static void reconnectAndResendAsync( String connectionName )
@@ -396,6 +502,7 @@ public class BrokerIntegration
         private final GraphDatabaseAPI db;
 
         private static final String LOGS_CONFIG = "logs";
+        private static final long SEGMENT_SIZE_DEFAULT = 64L * 1024 * 1024;
 
         public BrokerLifeCycle(  GraphDatabaseAPI db, Log log)
         {
@@ -419,6 +526,11 @@ public class BrokerIntegration
             return (String) (ApocConfiguration.get( "brokers." + LOGS_CONFIG  )).get( key );
         }
 
+        private static Object getLogsConfiguration( String key, Object defaultValue )
+        {
+            return ApocConfiguration.get( "brokers." + LOGS_CONFIG ).getOrDefault( key, defaultValue );
+        }
+
 
         public void start()
         {
@@ -435,8 +547,9 @@ public class BrokerIntegration
             if ( Boolean.valueOf( getLogsConfiguration( "enabled" ) ) )
             {
                 loggingEnabled = true;
-                BrokerLogManager.initializeBrokerLogManager( db, getLogsConfiguration( "dirPath" ),
-                        connectionList.stream().filter( connectionName -> Boolean.valueOf( getBrokerConfiguration( connectionName, "enabled" ) ) ).collect( Collectors.toList() ) );
+                BrokerLogManager.initializeBrokerLogManager( getLogsConfiguration( "dirPath" ),
+                        connectionList.stream().filter( connectionName -> Boolean.valueOf( getBrokerConfiguration( connectionName, "enabled" ) ) ).collect( Collectors.toList() ),
+                        Util.toLong( getLogsConfiguration( "segmentSize", SEGMENT_SIZE_DEFAULT ) ), Util.toBoolean( getLogsConfiguration( "fsync", true ) ) );
             }
 
             for ( String connectionName : connectionList )
@@ -470,6 +583,7 @@ public class BrokerIntegration
         public void stop()
         {
             ConnectionManager.closeConnections();
+            BrokerLogManager.closeBrokerLoggers();
         }
     }
 }
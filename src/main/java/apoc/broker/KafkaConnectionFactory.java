@@ -17,6 +17,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
@@ -38,12 +39,13 @@ public class KafkaConnectionFactory implements ConnectionFactory
     public static class KafkaConnection implements BrokerConnection
     {
         private static final Integer pollSecondsDefault = 1;
+        private static final int DEFAULT_WINDOW = 1000;
         private Log log;
         private String connectionName;
         private Map<String,Object> configuration;
         private Properties producerProperties;
         private Properties consumerProperties;
-        
+        private KafkaProducer<String,byte[]> producer;
 
         private AtomicBoolean connected = new AtomicBoolean( false );
         private AtomicBoolean reconnecting = new AtomicBoolean( false );
@@ -68,6 +70,15 @@ public class KafkaConnectionFactory implements ConnectionFactory
                 consumerProperties.setProperty( ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.ByteArrayDeserializer" );
                 consumerProperties.setProperty( ConsumerConfig.GROUP_ID_CONFIG, (String) configuration.get( "group.id" ) );
 
+                for ( String key : Arrays.asList( ProducerConfig.LINGER_MS_CONFIG, ProducerConfig.BATCH_SIZE_CONFIG, ProducerConfig.ACKS_CONFIG,
+                        ProducerConfig.COMPRESSION_TYPE_CONFIG ) )
+                {
+                    if ( configuration.containsKey( key ) )
+                    {
+                        producerProperties.setProperty( key, configuration.get( key ).toString() );
+                    }
+                }
+
                 if ( configuration.containsKey( "client.id" ) )
                 {
                     consumerProperties.setProperty( ConsumerConfig.CLIENT_ID_CONFIG, (String) configuration.get( "client.id" ) );
@@ -96,6 +107,63 @@ public class KafkaConnectionFactory implements ConnectionFactory
                 log.error( "Broker Exception. Connection Name: " + connectionName + ". Error: 'topic' in parameters missing" );
             }
 
+            try
+            {
+                producer().send( producerRecord( message, parameters ) ).get();
+            }
+            catch ( Exception e )
+            {
+                this.log.error( "Broker Exception. Connection Name: " + connectionName + ". Error: " + e.toString() );
+                throw e;
+            }
+
+            return Stream.of( new BrokerMessage( connectionName, message, parameters ) );
+        }
+
+        /**
+         * Hands all records to the shared producer without waiting, so that they are grouped into batches per partition
+         * (see {@code linger.ms} and {@code batch.size} of the connection). At most {@code window} records are unacknowledged.
+         */
+        @Override
+        public List<Map<String,Object>> sendBatch( List<Map<String,Object>> messages, Map<String,Object> parameters ) throws Exception
+        {
+            if ( !parameters.containsKey( "topic" ) )
+            {
+                log.error( "Broker Exception. Connection Name: " + connectionName + ". Error: 'topic' in parameters missing" );
+            }
+            KafkaProducer<String,byte[]> producer = producer();
+            Semaphore window = new Semaphore( BrokerConnection.window( parameters, DEFAULT_WINDOW ) );
+            List<Map<String,Object>> failed = Collections.synchronizedList( new ArrayList<>() );
+            for ( Map<String,Object> message : messages )
+            {
+                window.acquire();
+                try
+                {
+                    producer.send( producerRecord( message, parameters ), ( metadata, exception ) -> {
+                        if ( exception != null )
+                        {
+                            log.error( "Broker Exception. Connection Name: " + connectionName + ". Error: " + exception.toString() );
+                            failed.add( message );
+                        }
+                        window.release();
+                    } );
+                }
+                catch ( Exception e )
+                {
+                    window.release();
+                    log.error( "Broker Exception. Connection Name: " + connectionName + ". Error: " + e.toString() );
+                    failed.add( message );
+                }
+            }
+            producer.flush();
+            synchronized ( failed )
+            {
+                return new ArrayList<>( failed );
+            }
+        }
+
+        private ProducerRecord<String,byte[]> producerRecord( Map<String,Object> message, Map<String,Object> parameters ) throws IOException
+        {
             String topic = (String) parameters.get( "topic" );
 
             Integer partition = -1;
@@ -110,31 +178,28 @@ public class KafkaConnectionFactory implements ConnectionFactory
                 key = (String) parameters.get( "key" );
             }
 
-            ProducerRecord<String,byte[]> producerRecord;
             if ( partition >= 0 && !key.isEmpty() )
             {
-                producerRecord = new ProducerRecord<>( topic, partition, key, objectMapper.writeValueAsBytes( message ) );
+                return new ProducerRecord<>( topic, partition, key, objectMapper.writeValueAsBytes( message ) );
             }
             else if ( !key.isEmpty() )
             {
-                producerRecord = new ProducerRecord<>( topic, key, objectMapper.writeValueAsBytes( message ) );
-            }
-            else
-            {
-                producerRecord = new ProducerRecord<>( topic, objectMapper.writeValueAsBytes( message ) );
+                return new ProducerRecord<>( topic, key, objectMapper.writeValueAsBytes( message ) );
             }
+            return new ProducerRecord<>( topic, objectMapper.writeValueAsBytes( message ) );
+        }
 
-            try(KafkaProducer<String,byte[]> kafkaProducer = new KafkaProducer<String,byte[]>( producerProperties )){
-                kafkaProducer.send( producerRecord );
-            }
-            catch ( Exception e )
+        /**
+         * The producer is thread safe and shared by all sends of the connection, which keeps its connections to the brokers
+         * open and lets it batch records of concurrent sends.
+         */
+        private synchronized KafkaProducer<String,byte[]> producer()
+        {
+            if ( producer == null )
             {
-                this.log.error( "Broker Exception. Connection Name: " + connectionName + ". Error: " + e.toString() );
-                throw e;
+                producer = new KafkaProducer<>( producerProperties );
             }
-
-
-            return Stream.of( new BrokerMessage( connectionName, message, parameters ) );
+            return producer;
         }
 
         @Override
@@ -193,8 +258,13 @@ public class KafkaConnectionFactory implements ConnectionFactory
         }
 
         @Override
-        public void stop()
+        public synchronized void stop()
         {
+            if ( producer != null )
+            {
+                producer.close();
+                producer = null;
+            }
         }
 
         @Override
@@ -34,6 +34,8 @@ public class RabbitMqConnectionFactory implements apoc.broker.ConnectionFactory
 
     public static class RabbitMqConnection implements BrokerConnection
     {
+        private static final int DEFAULT_WINDOW = 500;
+        private static final long DEFAULT_CONFIRM_TIMEOUT = 30000L;
         private Log log;
         private String connectionName;
         private Map<String,Object> configuration;
@@ -121,6 +123,82 @@ public class RabbitMqConnectionFactory implements apoc.broker.ConnectionFactory
             return Stream.of( new BrokerMessage( connectionName, message, configuration ) );
         }
 
+        /**
+         * Declares exchange, queue and binding once and publishes on a separate channel in publisher confirm mode. After each
+         * {@code window} messages it waits for the broker to confirm them (at most {@code confirmTimeout} ms), instead of a
+         * round trip per message. All messages of a window that is not confirmed count as failed, so a retry may deliver some
+         * of them twice.
+         */
+        @Override
+        public List<Map<String,Object>> sendBatch( List<Map<String,Object>> messages, Map<String,Object> configuration ) throws Exception
+        {
+            if ( !configuration.containsKey( "exchangeName" ) )
+            {
+                log.error( "Broker Exception. Connection Name: " + connectionName + ". Error: 'exchangeName' in parameters missing" );
+            }
+            if ( !configuration.containsKey( "queueName" ) )
+            {
+                log.error( "Broker Exception. Connection Name: " + connectionName + ". Error: 'queueName' in parameters missing" );
+            }
+            if ( !configuration.containsKey( "routingKey" ) )
+            {
+                log.error( "Broker Exception. Connection Name: " + connectionName + ". Error: 'routingKey' in parameters missing" );
+            }
+
+            String exchangeName = (String) configuration.get( "exchangeName" );
+            String queueName = (String) configuration.get( "queueName" );
+            String routingKey = (String) configuration.get( "routingKey" );
+            int window = BrokerConnection.window( configuration, DEFAULT_WINDOW );
+            long confirmTimeout = Long.parseLong( configuration.getOrDefault( "confirmTimeout", DEFAULT_CONFIRM_TIMEOUT ).toString() );
+
+            checkConnectionHealth();
+
+            List<Map<String,Object>> failed = new ArrayList<>();
+            Channel confirmChannel = connection.createChannel();
+            try
+            {
+                confirmChannel.confirmSelect();
+                confirmChannel.exchangeDeclare( exchangeName, "topic", true );
+                confirmChannel.queueDeclarePassive( queueName );
+                confirmChannel.queueBind( queueName, exchangeName, routingKey );
+
+                for ( int start = 0; start < messages.size(); start += window )
+                {
+                    List<Map<String,Object>> pending = messages.subList( start, Math.min( messages.size(), start + window ) );
+                    try
+                    {
+                        for ( Map<String,Object> message : pending )
+                        {
+                            confirmChannel.basicPublish( exchangeName, routingKey, null, objectMapper.writeValueAsBytes( message ) );
+                        }
+                        if ( confirmChannel.waitForConfirms( confirmTimeout ) )
+                        {
+                            continue;
+                        }
+                        log.error( "Broker Exception. Connection Name: " + connectionName + ". Error: " + pending.size() + " messages were not acknowledged" );
+                    }
+                    catch ( IOException | TimeoutException e )
+                    {
+                        log.error( "Broker Exception. Connection Name: " + connectionName + ". Error: " + e.toString() );
+                    }
+                    failed.addAll( pending );
+                    if ( !confirmChannel.isOpen() )
+                    {
+                        failed.addAll( messages.subList( start + pending.size(), messages.size() ) );
+                        break;
+                    }
+                }
+            }
+            finally
+            {
+                if ( confirmChannel.isOpen() )
+                {
+                    confirmChannel.close();
+                }
+            }
+            return failed;
+        }
+
         @Override
         public Stream<BrokerResult> receive( @Name( "configuration" ) Map<String,Object> configuration ) throws IOException
         {
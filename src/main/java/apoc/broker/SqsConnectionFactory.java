@@ -1,23 +1,31 @@
 package apoc.broker;
 
+import apoc.Pools;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
 import com.amazonaws.services.sqs.model.DeleteMessageRequest;
 import com.amazonaws.services.sqs.model.Message;
 import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
 import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequest;
+import com.amazonaws.services.sqs.model.SendMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.SendMessageBatchResult;
 import com.amazonaws.services.sqs.model.SendMessageRequest;
 import org.apache.commons.lang3.StringUtils;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.Name;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
@@ -38,6 +46,8 @@ public class SqsConnectionFactory implements ConnectionFactory
 
     public static class SqsConnection implements BrokerConnection
     {
+        private static final int MAX_BATCH_ENTRIES = 10;
+        private static final int DEFAULT_WINDOW = 100;
 
         private Log log;
         private String connectionName;
@@ -94,6 +104,90 @@ public class SqsConnectionFactory implements ConnectionFactory
             return Stream.of( new BrokerMessage( connectionName, message, configuration ) );
         }
 
+        /**
+         * Checks the queue once and sends the messages with SendMessageBatch requests of {@value #MAX_BATCH_ENTRIES} entries.
+         * Up to {@code window} messages are in flight, i.e. several requests are sent concurrently.
+         */
+        @Override
+        public List<Map<String,Object>> sendBatch( List<Map<String,Object>> messages, Map<String,Object> configuration ) throws Exception
+        {
+            if ( !configuration.containsKey( "queueName" ) )
+            {
+                log.error( "Broker Exception. Connection Name: " + connectionName + ". Error: 'queueName' in parameters missing" );
+            }
+
+            String queueName = (String) configuration.get( "queueName" );
+            String region = (String) this.configuration.get( "region" );
+
+            if ( !doesQueueExistInRegion( queueName, region ) )
+            {
+                throw new RuntimeException(
+                        "Broker Exception. Connection Name: " + connectionName + ". Error: SQS queue '" + queueName + "' does not exist in region '" + region +
+                                "'." );
+            }
+
+            int maxInFlight = Math.max( 1, BrokerConnection.window( configuration, DEFAULT_WINDOW ) / MAX_BATCH_ENTRIES );
+            Deque<FutureTask<List<Map<String,Object>>>> inFlight = new ArrayDeque<>( maxInFlight );
+            List<Map<String,Object>> failed = new ArrayList<>();
+            try
+            {
+                for ( int start = 0; start < messages.size(); start += MAX_BATCH_ENTRIES )
+                {
+                    List<Map<String,Object>> batch = messages.subList( start, Math.min( messages.size(), start + MAX_BATCH_ENTRIES ) );
+                    FutureTask<List<Map<String,Object>>> task = new FutureTask<>( () -> sendMessageBatch( queueName, batch ) );
+                    Pools.DEFAULT.execute( task );
+                    inFlight.add( task );
+                    if ( inFlight.size() >= maxInFlight )
+                    {
+                        failed.addAll( finish( inFlight.poll() ) );
+                    }
+                }
+                while ( !inFlight.isEmpty() )
+                {
+                    failed.addAll( finish( inFlight.poll() ) );
+                }
+            }
+            finally
+            {
+                inFlight.forEach( task -> task.cancel( false ) );
+            }
+            return failed;
+        }
+
+        private List<Map<String,Object>> sendMessageBatch( String queueName, List<Map<String,Object>> batch )
+        {
+            List<SendMessageBatchRequestEntry> entries = new ArrayList<>( batch.size() );
+            try
+            {
+                for ( int i = 0; i < batch.size(); i++ )
+                {
+                    entries.add( new SendMessageBatchRequestEntry( Integer.toString( i ), objectMapper.writeValueAsString( batch.get( i ) ) ) );
+                }
+                SendMessageBatchResult result = amazonSQS.sendMessageBatch( new SendMessageBatchRequest( queueName, entries ) );
+                List<Map<String,Object>> failed = new ArrayList<>( result.getFailed().size() );
+                for ( BatchResultErrorEntry entry : result.getFailed() )
+                {
+                    log.error( "Broker Exception. Connection Name: " + connectionName + ". Error: " + entry.getCode() + " " + entry.getMessage() );
+                    failed.add( batch.get( Integer.parseInt( entry.getId() ) ) );
+                }
+                return failed;
+            }
+            catch ( Exception e )
+            {
+                log.error( "Broker Exception. Connection Name: " + connectionName + ". Error: " + e.toString() );
+                return batch;
+            }
+        }
+
+        /**
+         * Runs the task in the calling thread if no pool thread picked it up yet, so a busy pool can't stall the batch.
+         */
+        private static List<Map<String,Object>> finish( FutureTask<List<Map<String,Object>>> task ) throws Exception
+        {
+            task.run();
+            return task.get();
+        }
+
         @Override
         public Stream<BrokerResult> receive( @Name( "configuration" ) Map<String,Object> configuration ) throws IOException
         {
@@ -1,25 +1,34 @@
 package apoc.broker.logging;
 
 import apoc.util.JsonUtil;
-import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.commons.lang3.RandomStringUtils;
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
-import org.neo4j.io.fs.FileSystemAbstraction;
-import org.neo4j.kernel.internal.GraphDatabaseAPI;
 
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 /**
+ * Keeps a {@link BrokerLogger} per connection, each in its own directory {@code <dirPath>/<connectionName>.wal}.
+ * <p>
+ * Text logs of earlier versions ({@code brokers.log} with the resend pointers and {@code <connectionName>.log}) are
+ * moved into the new logs on initialization, starting with the first message that was not resent yet. A marker file
+ * {@code <connectionName>.log.migration} holds the sequence number the log had when the migration started, so after a
+ * crash during a migration the entries that were already moved are skipped. {@code brokers.log} is kept until the logs
+ * of all connections it points into have been moved, also of those that are not configured right now.
+ *
  * @author alexanderiudice
  */
 public class BrokerLogManager
@@ -27,400 +36,178 @@ public class BrokerLogManager
 
     private static final ObjectMapper OBJECT_MAPPER = JsonUtil.OBJECT_MAPPER;
 
-    private static String dirPath;
-    private static GraphDatabaseAPI graphDatabaseAPI;
-
-    private static ConcurrentHashMap<String,BrokerLogger> nameToLogMap;
-    private static File brokerLog;
-    private static BrokerLogService brokerLogManagerService;
-
     private static final String BROKERS_LOG = "brokers.log";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String WAL_SUFFIX = ".wal";
+    private static final String MIGRATION_SUFFIX = ".migration";
+    private static final int MIGRATION_BATCH_SIZE = 1000;
+
+    private static Map<String,BrokerLogger> nameToLogMap = new ConcurrentHashMap<>();
 
     /**
-     * Initialize the Broker Log (log that keeps track of the broker logs) and create a new broker logger for each connection.
-     * @param api
-     * @param dirPath
+     * Create a new broker logger for each connection.
+     * @param dirPath directory of the logs
      * @param connectionNames
+     * @param segmentSize size of the log segment files in bytes
+     * @param fsync whether appended messages are forced to disk
      */
-    public static void initializeBrokerLogManager( GraphDatabaseAPI api, String dirPath, List<String> connectionNames )
+    public static void initializeBrokerLogManager( String dirPath, List<String> connectionNames, long segmentSize, boolean fsync )
     {
-        BrokerLogManager.dirPath = dirPath;
-        BrokerLogManager.graphDatabaseAPI = api;
-
-        List<String> alreadyLoggedConnectionNames = new ArrayList<>(  );
-        try
-        {
-            brokerLog = new File( dirPath + BROKERS_LOG );
-
-            if (Files.exists(Paths.get(  brokerLog.getPath() ) ))
-            {
-                try(Stream<LogLine> logLineStream = streamLogLines())
-                {
-                    logLineStream.map( LogLine::getLogInfo ).forEach( logInfo -> {
-                        alreadyLoggedConnectionNames.add( logInfo.getBrokerName() );
-                    } );
-                }
-            }
+        closeBrokerLoggers();
+        Map<String,Long> legacyPointers = readLegacyPointers( new File( dirPath, BROKERS_LOG ) );
 
-
-            brokerLog.createNewFile();
-
-            // Create logger for this manager
-            brokerLogManagerService =
-                    BrokerLogService.inLogsDirectory( graphDatabaseAPI.getDependencyResolver().resolveDependency( FileSystemAbstraction.class ),
-                            new File( dirPath ), BROKERS_LOG );
-        }
-        catch ( Exception e )
+        Map<String,BrokerLogger> loggers = new ConcurrentHashMap<>();
+        for ( String name : connectionNames )
         {
-            new RuntimeException( "Unable to create 'brokers.log' log file." );
+            BrokerLogger brokerLogger = new BrokerLogger( new File( dirPath, name + WAL_SUFFIX ), name, segmentSize, fsync );
+            loggers.put( name, brokerLogger );
+            migrateLegacyLog( brokerLogger, new File( dirPath, name + LOG_SUFFIX ), legacyPointers.getOrDefault( name, 0L ) );
         }
-
-        nameToLogMap = new ConcurrentHashMap<>(  );
-
-        connectionNames.stream().forEach( name -> {
-            try
-            {
-                // Create and add loggers for each connection.
-                nameToLogMap.put( name, new BrokerLogger( graphDatabaseAPI, dirPath, name ) );
-
-
-                if(!alreadyLoggedConnectionNames.contains( name ))
-                {
-                    info( new LogLine.LogInfo( name, dirPath + name + ".log", 0L ) );
-                }
-
-            }
-            catch ( Exception e )
-            {
-                new RuntimeException( "Unable to create '" + name + ".log' log file." );
-            }
-        } );
-    }
-
-    public static Stream<LogLine> streamLogLines() throws Exception
-    {
-        return Files.lines( Paths.get( brokerLog.getPath() ) ).map( LogLine::new );
-    }
-
-    /**
-     * Takes in the connection name and returns the  corresponding LogInfo.
-     * @param connectionName
-     * @return
-     * @throws Exception
-     */
-    public static Stream<LogLine.LogInfo> readBrokerLogLine(String connectionName) throws Exception
-    {
-        return Files.lines( Paths.get( brokerLog.getPath() ) ).map( LogLine::new ).map( LogLine::getLogInfo ).filter(
-                logInfo -> logInfo.getBrokerName().equals( connectionName ) );
-    }
-
-    /**
-     * Streams back the log lines.
-     * @return
-     * @throws Exception
-     */
-    public static Stream<LogLine.LogInfo> streamBrokerLogInfo( ) throws Exception
-    {
-        return Files.lines( Paths.get( brokerLog.getPath() ) ).map( LogLine::new ).map( LogLine::getLogInfo );
-    }
-
-    /**
-     *
-     * @param connectionName
-     * @param messagePointer
-     */
-    public static void updateNextMessageToSend(String connectionName, Long messagePointer )
-    {
-        synchronized ( brokerLog )
+        if ( legacyPointers.keySet().stream().noneMatch( name -> new File( dirPath, name + LOG_SUFFIX ).exists() ) )
         {
-
-            String  tmpFileName = RandomStringUtils.randomAlphabetic( 5 );
-            try
-            {
-                File tmpFile = File.createTempFile( tmpFileName, ".log", brokerLog.getParentFile() );
-                tmpFile.deleteOnExit();
-                try(FileOutputStream fileOutputStream = new FileOutputStream( tmpFile ); DataOutputStream dataOutputStream = new DataOutputStream( fileOutputStream ))
-                {
-                    tmpFileName = tmpFile.getName();
-                    try(Stream<LogLine> logLineStream = streamLogLines())
-                    {
-                        logLineStream.forEach( logLine -> {
-                            try
-                            {
-                                LogLine.LogInfo logInfo = logLine.getLogInfo();
-                                if ( logInfo.getBrokerName().equals( connectionName ) )
-                                {
-                                    logLine.setLogInfo( new LogLine.LogInfo( logInfo.brokerName, logInfo.filePath, messagePointer ) );
-                                }
-
-                                dataOutputStream.write( logLine.getLogString().getBytes() );
-                                dataOutputStream.writeChars( System.getProperty( "line.separator" ) );
-                            }
-                            catch ( Exception e )
-                            {
-                                throw new RuntimeException( "Failure to update the logInfo for connection '" + connectionName + "'." );
-                            }
-                        } );
-                    }
-                        org.apache.commons.io.FileUtils.copyFile( tmpFile, brokerLog );
-                        org.apache.commons.io.FileUtils.deleteQuietly( tmpFile );
-
-                }
-            }
-            catch ( Exception e )
-            {
-                // Make sure the tmp file got deleted.
-                File tmpFile = new File( brokerLog.getParentFile() + "/"+ tmpFileName );
-                if (tmpFile.exists())
-                {
-                    org.apache.commons.io.FileUtils.deleteQuietly( tmpFile );
-                }
-            }
+            new File( dirPath, BROKERS_LOG ).delete();
         }
+        nameToLogMap = loggers;
     }
 
-    public static void resetBrokerLogger(String connectionName)
-    {
-        updateNextMessageToSend( connectionName, 0L );
-        nameToLogMap.get( connectionName ).resetFile();
-    }
-
-    public static BrokerLogger getBrokerLogger(String connectionName)
-    {
-        return nameToLogMap.get( connectionName );
-    }
-
-    public static void info( LogLine.LogInfo logInfo ) throws Exception
-    {
-        info( OBJECT_MAPPER.writeValueAsString( logInfo ) );
-    }
-
-    public static void warn( LogLine.LogInfo logInfo ) throws Exception
-    {
-        warn( OBJECT_MAPPER.writeValueAsString( logInfo ) );
-    }
-
-    public static void debug( LogLine.LogInfo logInfo ) throws Exception
-    {
-        debug( OBJECT_MAPPER.writeValueAsString( logInfo ) );
-    }
-
-    public static void error( LogLine.LogInfo logInfo ) throws Exception
-    {
-        error( OBJECT_MAPPER.writeValueAsString( logInfo ) );
-    }
-
-    private static void info( String msg )
-    {
-        brokerLogManagerService.getInternalLogProvider().getLog( BROKERS_LOG ).info( msg );
-    }
-
-    private static void warn( String msg )
-    {
-        brokerLogManagerService.getInternalLogProvider().getLog( BROKERS_LOG ).warn( msg );
-    }
-
-    private static void debug( String msg )
-    {
-        brokerLogManagerService.getInternalLogProvider().getLog( BROKERS_LOG ).debug( msg );
-    }
-
-    private static void error( String msg )
-    {
-        brokerLogManagerService.getInternalLogProvider().getLog( BROKERS_LOG ).error( msg );
-    }
-
-
-
-    @JsonAutoDetect
-    public static class LogLine
+    private static Map<String,Long> readLegacyPointers( File brokersLog )
     {
-        private String time;
-        private String level;
-        private String logName;
-        private LogInfo logInfo;
-
-        public LogLine()
+        Map<String,Long> pointers = new HashMap<>();
+        if ( !brokersLog.exists() )
         {
+            return pointers;
         }
-
-        public LogLine( String time, String level, String logName, LogInfo logInfo )
+        try ( Stream<String> lines = Files.lines( brokersLog.toPath() ) )
         {
-            this.time = time;
-            this.level = level;
-            this.logName = logName;
-            this.logInfo = logInfo;
+            lines.forEach( line -> {
+                JsonNode logInfo = legacyJson( line );
+                if ( logInfo != null && logInfo.hasNonNull( "brokerName" ) )
+                {
+                    pointers.put( logInfo.get( "brokerName" ).asText(), logInfo.path( "nextMessageToSend" ).asLong( 0L ) );
+                }
+            } );
         }
-
-        public LogLine( String logLine )
+        catch ( IOException e )
         {
-            String[] splited = logLine.split( "\\s+", 5 );
-
-            time = splited[0] + " " + splited[1];
-            level = splited[2];
-            logName = splited[3];
-            try
-            {
-                logInfo = OBJECT_MAPPER.readValue( splited[4], LogInfo.class );
-            }
-            catch ( Exception e )
-            {
-                logInfo = new LogInfo(  );
-            }
+            throw new RuntimeException( "Unable to read '" + brokersLog + "'.", e );
         }
+        return pointers;
+    }
 
-        public String getLogString()
+    private static void migrateLegacyLog( BrokerLogger brokerLogger, File legacyLog, long skip )
+    {
+        File marker = new File( legacyLog.getPath() + MIGRATION_SUFFIX );
+        if ( !legacyLog.exists() )
         {
-            String result = "";
-
-            result += time + " " + level + " " + logName + " ";
-            try
-            {
-                result += OBJECT_MAPPER.writeValueAsString( logInfo );
-            }
-            catch ( Exception e )
-            {
-                throw new RuntimeException( "Unable to write LogEntry as String" );
-            }
-            return result;
+            // the legacy log was deleted right before its marker
+            marker.delete();
+            return;
         }
-
-        @JsonAutoDetect
-        public static class LogInfo
+        try ( Stream<String> lines = Files.lines( legacyLog.toPath() ) )
         {
-            private String brokerName;
-            private String filePath;
-            private Long nextMessageToSend;
-
-            public LogInfo()
-            {
-            }
-
-            public LogInfo( String brokerName, String filePath, Long nextMessageToSend )
-            {
-                this.brokerName = brokerName;
-                this.filePath = filePath;
-                this.nextMessageToSend = nextMessageToSend;
-            }
-
-            public String getBrokerName()
-            {
-                return brokerName;
-            }
-
-            public void setBrokerName( String brokerName )
-            {
-                this.brokerName = brokerName;
-            }
-
-            public String getFilePath()
-            {
-                return filePath;
-            }
-
-            public void setFilePath( String filePath )
-            {
-                this.filePath = filePath;
-            }
-
-            public Long getNextMessageToSend()
-            {
-                return nextMessageToSend;
-            }
-
-            public void setNextMessageToSend( Long nextMessageToSend )
+            Long start = marker.exists() ? readMigrationStart( marker ) : null;
+            if ( start == null )
             {
-                this.nextMessageToSend = nextMessageToSend;
+                start = brokerLogger.endSequence();
+                writeMigrationStart( marker, start );
             }
-
-            @Override
-            public boolean equals( Object o )
+            long migrated = brokerLogger.endSequence() - start;
+            List<BrokerLogger.LogEntry> batch = new ArrayList<>( MIGRATION_BATCH_SIZE );
+            for ( String line : (Iterable<String>) lines.skip( skip )::iterator )
             {
-                if ( this == o )
+                JsonNode json = legacyJson( line );
+                if ( json == null )
                 {
-                    return true;
+                    continue;
                 }
-
-                if ( o == null || getClass() != o.getClass() )
+                if ( migrated > 0 )
                 {
-                    return false;
+                    migrated--;
+                    continue;
+                }
+                batch.add( OBJECT_MAPPER.treeToValue( json, BrokerLogger.LogEntry.class ) );
+                if ( batch.size() == MIGRATION_BATCH_SIZE )
+                {
+                    brokerLogger.append( batch );
+                    batch.clear();
                 }
-
-                LogInfo logInfo = (LogInfo) o;
-
-                return new EqualsBuilder().append( brokerName, logInfo.brokerName ).append( filePath, logInfo.filePath ).append( nextMessageToSend, logInfo.nextMessageToSend ).isEquals();
-            }
-
-            @Override
-            public int hashCode()
-            {
-                return new HashCodeBuilder( 17, 37 ).append( brokerName ).append( filePath ).append( nextMessageToSend ).toHashCode();
             }
+            brokerLogger.append( batch );
         }
-
-        public String getTime()
+        catch ( IOException e )
         {
-            return time;
+            throw new RuntimeException( "Unable to move the messages of '" + legacyLog + "' into the broker log.", e );
         }
+        legacyLog.delete();
+        marker.delete();
+    }
 
-        public void setTime( String time )
+    /**
+     * @return the sequence number of the log when the migration started, null if the marker was not completely written
+     */
+    private static Long readMigrationStart( File marker ) throws IOException
+    {
+        try ( DataInputStream in = new DataInputStream( new FileInputStream( marker ) ) )
         {
-            this.time = time;
+            return in.readLong();
         }
-
-        public String getLevel()
+        catch ( EOFException e )
         {
-            return level;
+            return null;
         }
+    }
 
-        public void setLevel( String level )
+    private static void writeMigrationStart( File marker, long start ) throws IOException
+    {
+        try ( FileOutputStream out = new FileOutputStream( marker ) )
         {
-            this.level = level;
+            new DataOutputStream( out ).writeLong( start );
+            out.getFD().sync();
         }
+    }
 
-        public String getLogName()
+    /**
+     * Legacy lines are {@code <date> <time> <level> <logName> <json>}.
+     */
+    private static JsonNode legacyJson( String line )
+    {
+        String[] split = line.split( "\\s+", 5 );
+        if ( split.length < 5 )
         {
-            return logName;
+            return null;
         }
-
-        public void setLogName( String logName )
+        try
         {
-            this.logName = logName;
+            return OBJECT_MAPPER.readTree( split[4] );
         }
-
-        public LogInfo getLogInfo()
+        catch ( IOException e )
         {
-            return logInfo;
+            return null;
         }
+    }
 
-        public void setLogInfo( LogInfo logInfo )
-        {
-            this.logInfo = logInfo;
-        }
+    public static Set<String> getConnectionNames()
+    {
+        return nameToLogMap.keySet();
+    }
 
-        @Override
-        public boolean equals( Object o )
-        {
-            if ( this == o )
+    public static BrokerLogger getBrokerLogger( String connectionName )
+    {
+        return nameToLogMap.get( connectionName );
+    }
+
+    public static void closeBrokerLoggers()
+    {
+        nameToLogMap.forEach( ( name, brokerLogger ) -> {
+            try
             {
-                return true;
+                brokerLogger.close();
             }
-
-            if ( o == null || getClass() != o.getClass() )
+            catch ( IOException e )
             {
-                return false;
+                // already closed
             }
-
-            LogLine logLine = (LogLine) o;
-
-            return new EqualsBuilder().append( time, logLine.time ).append( level, logLine.level ).append( logName, logLine.logName ).append( logInfo,
-                    logLine.logInfo ).isEquals();
-        }
-
-        @Override
-        public int hashCode()
-        {
-            return new HashCodeBuilder( 17, 37 ).append( time ).append( level ).append( logName ).append( logInfo ).toHashCode();
-        }
+        } );
+        nameToLogMap = new ConcurrentHashMap<>();
     }
 }
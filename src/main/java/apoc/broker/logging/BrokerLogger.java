@@ -3,27 +3,23 @@ package apoc.broker.logging;
 import apoc.util.JsonUtil;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Lists;
-import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
-import org.neo4j.io.fs.FileSystemAbstraction;
-import org.neo4j.kernel.internal.GraphDatabaseAPI;
 
-import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToIntFunction;
 
 /**
+ * Messages that could not be sent to a broker connection, kept in a {@link SegmentedLog} until they are resent.
+ *
  * @author alexanderiudice
  */
 public class BrokerLogger implements AutoCloseable
@@ -32,180 +28,54 @@ public class BrokerLogger implements AutoCloseable
     private static final ObjectMapper OBJECT_MAPPER = JsonUtil.OBJECT_MAPPER;
 
     @JsonAutoDetect
-    public static class LogLine
+    public static class LogEntry
     {
-        private String time;
-        private String level;
-        private String logName;
-        private LogEntry logEntry;
+        private String connectionName;
+        private Map<String,Object> message;
+        private Map<String,Object> configuration;
 
-        public LogLine()
+        public LogEntry()
         {
+            connectionName = "";
+            message = new HashMap<>();
+            configuration = new HashMap<>();
         }
 
-        public LogLine( String time, String level, String logName, LogEntry logEntry )
+        public LogEntry( String connectionName, Map<String,Object> message, Map<String,Object> configuration )
         {
-            this.time = time;
-            this.level = level;
-            this.logName = logName;
-            this.logEntry = logEntry;
+            this.connectionName = connectionName;
+            this.message = message;
+            this.configuration = configuration;
         }
 
-        public LogLine( String logLine )
+        public String getConnectionName()
         {
-            String[] splited = logLine.split( "\\s+", 5 );
-
-            time = splited[0] + " " + splited[1];
-            level = splited[2];
-            logName = splited[3];
-            try
-            {
-                logEntry = OBJECT_MAPPER.readValue( splited[4], LogEntry.class );
-            }
-            catch ( Exception e )
-            {
-                logEntry = new LogEntry();
-            }
-        }
-
-        public String getTime()
-        {
-            return time;
-        }
-
-        public void setTime( String time )
-        {
-            this.time = time;
-        }
-
-        public String getLevel()
-        {
-            return level;
-        }
-
-        public void setLevel( String level )
-        {
-            this.level = level;
-        }
-
-        public String getLogName()
-        {
-            return logName;
+            return connectionName;
         }
 
-        public void setLogName( String logName )
+        public void setConnectionName( String connectionName )
         {
-            this.logName = logName;
+            this.connectionName = connectionName;
         }
 
-        public LogEntry getLogEntry()
+        public Map<String,Object> getMessage()
         {
-            return logEntry;
+            return message;
         }
 
-        public void setLogEntry( LogEntry logEntry )
+        public void setMessage( Map<String,Object> message )
         {
-            this.logEntry = logEntry;
+            this.message = message;
         }
 
-        public String getLogString()
+        public Map<String,Object> getConfiguration()
         {
-            String result = "";
-
-            result += time + " " + level + " " + logName + " ";
-            try
-            {
-                result += OBJECT_MAPPER.writeValueAsString( logEntry );
-            }
-            catch ( Exception e )
-            {
-                throw new RuntimeException( "Unable to write LogEntry as String" );
-            }
-            return result;
+            return configuration;
         }
 
-        @JsonAutoDetect
-        public static class LogEntry
+        public void setConfiguration( Map<String,Object> configuration )
         {
-            private String connectionName;
-            private Map<String,Object> message;
-            private Map<String,Object> configuration;
-
-            public LogEntry()
-            {
-                connectionName = "";
-                message = new HashMap<>();
-                configuration = new HashMap<>();
-            }
-
-            public LogEntry( String connectionName, Map<String,Object> message, Map<String,Object> configuration )
-            {
-                this.connectionName = connectionName;
-                this.message = message;
-                this.configuration = configuration;
-            }
-
-            public String getConnectionName()
-            {
-                return connectionName;
-            }
-
-            public void setConnectionName( String connectionName )
-            {
-                this.connectionName = connectionName;
-            }
-
-            public Map<String,Object> getMessage()
-            {
-                return message;
-            }
-
-            public void setMessage( Map<String,Object> message )
-            {
-                this.message = message;
-            }
-
-            public Map<String,Object> getConfiguration()
-            {
-                return configuration;
-            }
-
-            public void setConfiguration( Map<String,Object> configuration )
-            {
-                this.configuration = configuration;
-            }
-
-            @Override
-            public boolean equals( Object o )
-            {
-                if ( this == o )
-                {
-                    return true;
-                }
-
-                if ( o == null || getClass() != o.getClass() )
-                {
-                    return false;
-                }
-
-                LogEntry logEntry = (LogEntry) o;
-
-                return new EqualsBuilder().append( connectionName, logEntry.connectionName ).append( message, logEntry.message ).append( configuration,
-                        logEntry.configuration ).isEquals();
-            }
-
-            @Override
-            public int hashCode()
-            {
-                return new HashCodeBuilder( 17, 37 ).append( connectionName ).append( message ).append( configuration ).toHashCode();
-            }
-
-            @Override
-            public String toString()
-            {
-                return new ToStringBuilder( this ).append( "connectionName", connectionName ).append( "message", message ).append( "configuration",
-                        configuration ).toString();
-            }
+            this.configuration = configuration;
         }
 
         @Override
@@ -221,206 +91,150 @@ public class BrokerLogger implements AutoCloseable
                 return false;
             }
 
-            LogLine logLine = (LogLine) o;
+            LogEntry logEntry = (LogEntry) o;
 
-            return new EqualsBuilder().append( time, logLine.time ).append( level, logLine.level ).append( logName, logLine.logName ).append( logEntry,
-                    logLine.logEntry ).isEquals();
+            return new EqualsBuilder().append( connectionName, logEntry.connectionName ).append( message, logEntry.message ).append( configuration,
+                    logEntry.configuration ).isEquals();
         }
 
         @Override
         public int hashCode()
         {
-            return new HashCodeBuilder( 17, 37 ).append( time ).append( level ).append( logName ).append( logEntry ).toHashCode();
+            return new HashCodeBuilder( 17, 37 ).append( connectionName ).append( message ).append( configuration ).toHashCode();
         }
-    }
-
-    private String dirPath;
-    private String logName;
-    private GraphDatabaseAPI graphDatabaseAPI;
-    private BrokerLogService brokerLogService;
 
-    private File logFile;
+        @Override
+        public String toString()
+        {
+            return new ToStringBuilder( this ).append( "connectionName", connectionName ).append( "message", message ).append( "configuration",
+                    configuration ).toString();
+        }
+    }
 
-    private AtomicLong numLogEntries = new AtomicLong( 0L );
-    private final Long retryThreshold = 20L;
+    private final String connectionName;
+    private final SegmentedLog log;
+    private final AtomicBoolean replaying = new AtomicBoolean( false );
 
-    public BrokerLogger( GraphDatabaseAPI api, String dirPath, String connectionName )
+    public BrokerLogger( File directory, String connectionName, long segmentSize, boolean fsync )
     {
-
-        this.dirPath = dirPath;
-        this.graphDatabaseAPI = api;
-        this.logName = connectionName + ".log";
-
+        this.connectionName = connectionName;
         try
         {
-            logFile = new File( dirPath + logName );
-            logFile.createNewFile();
-
-            brokerLogService =
-                    BrokerLogService.inLogsDirectory( api.getDependencyResolver().resolveDependency( FileSystemAbstraction.class ), new File( dirPath ),
-                            logName );
-
-
-
-            // Get the number of log file entries and set numLogEntries.
-            setNumLogEntries( calculateNumberOfLogEntries() );
+            this.log = new SegmentedLog( directory, segmentSize, fsync );
         }
-        catch ( Exception e )
+        catch ( IOException e )
         {
-            throw new RuntimeException( "APOC Broker Exception. Logger failed to initialize." );
+            throw new RuntimeException( "APOC Broker Exception. Logger for '" + connectionName + "' failed to initialize.", e );
         }
     }
 
-    public Stream<LogLine.LogEntry> streamStartingFrom(Long lineNumber ) throws Exception
+    public void append( LogEntry logEntry ) throws IOException
     {
-        try (Stream<String> lines = Files.lines(Paths.get(logFile.getPath()))) {
-            return lines.skip(lineNumber).map( LogLine::new ).map( LogLine::getLogEntry );
-        }
-        catch ( Exception e )
+        log.append( OBJECT_MAPPER.writeValueAsBytes( logEntry ) );
+    }
+
+    /**
+     * Appends all entries with a single write to disk.
+     */
+    public void append( List<LogEntry> logEntries ) throws IOException
+    {
+        List<byte[]> payloads = new ArrayList<>( logEntries.size() );
+        for ( LogEntry logEntry : logEntries )
         {
-            throw new RuntimeException( "Could not start streaming from line number " + lineNumber + "." );
+            payloads.add( OBJECT_MAPPER.writeValueAsBytes( logEntry ) );
         }
+        log.append( payloads );
     }
 
-    public Stream<List<LogLine.LogEntry>> batchConnectionMessages( String connectionName, int batchSize ) throws Exception
+    /**
+     * @return the sequence number the next appended entry gets
+     */
+    long endSequence()
     {
-
-        Stream<String> stream = Files.lines( Paths.get( logFile.getPath() ) );
-
-        final Stream<LogLine.LogEntry> logEntryStream =
-                stream.map( LogLine::new ).filter( logLine -> logLine.logEntry.getConnectionName().equals( connectionName ) ).map(
-                        logLine -> logLine.getLogEntry() );
-
-        return Lists.partition( logEntryStream.collect( Collectors.toList() ), batchSize ).stream();
+        return log.end().sequence;
     }
 
     /**
-     * Takes in logInfo as a parameter which it then uses to determine where to start streaming the lines from.
-     * @param logInfo
-     * @return
-     * @throws Exception
+     * @return the number of entries that have not been resent yet
      */
-    public static Stream<LogLine> streamLogLines( BrokerLogManager.LogLine.LogInfo logInfo ) throws Exception
+    public long pending()
     {
-        return Files.lines( Paths.get( logInfo.getFilePath())).skip( logInfo.getNextMessageToSend()).map( LogLine::new );
+        return log.pending();
     }
 
-    public Long calculateNumberOfLogEntries() throws Exception
+    /**
+     * Streams the entries that have not been resent yet in batches of at most {@code batchSize} entries with the same
+     * configuration, starting where the last replay stopped. {@code send} returns how many entries at the start of the
+     * batch were sent, the log is acknowledged up to there. Stops at the first entry that wasn't sent or after {@code max}
+     * entries (0 for all). Only one replay runs at a time, concurrent calls return -1 right away.
+     *
+     * @return the number of entries that were sent
+     */
+    public long replay( long max, int batchSize, ToIntFunction<List<LogEntry>> send ) throws IOException
     {
-        try(Stream<String> lines =  Files.lines( Paths.get( logFile.getPath() ) ))
+        if ( !replaying.compareAndSet( false, true ) )
         {
-            return lines.count();
+            return -1;
         }
-    }
-
-    public void resetFile()
-    {
-        synchronized ( logFile )
+        long sent = 0;
+        try ( SegmentedLog.Reader reader = log.read() )
         {
-            try
-            {
-
-                brokerLogService.close();
-                // Delete the file.
-                Files.delete( Paths.get(  logFile.getPath() ) );
-
-
-                // Remake the file.
-                logFile = new File( dirPath + logName );
-                logFile.createNewFile();
-                brokerLogService = BrokerLogService.inLogsDirectory( graphDatabaseAPI.getDependencyResolver().resolveDependency( FileSystemAbstraction.class ),
-                        new File( dirPath ), logName );
-
-                numLogEntries.getAndSet( 0L );
-            }
-            catch ( Exception e )
+            List<LogEntry> batch = new ArrayList<>( batchSize );
+            List<SegmentedLog.Position> positions = new ArrayList<>( batchSize );
+            boolean more = true;
+            while ( more )
             {
+                LogEntry next = null;
+                if ( max <= 0 || sent + batch.size() < max )
+                {
+                    more = reader.next();
+                    if ( more )
+                    {
+                        next = OBJECT_MAPPER.readValue( reader.payload(), LogEntry.class );
+                    }
+                }
+                else
+                {
+                    more = false;
+                }
+                if ( !batch.isEmpty() && (next == null || batch.size() == batchSize ||
+                        !Objects.equals( batch.get( 0 ).getConfiguration(), next.getConfiguration() )) )
+                {
+                    int count = send.applyAsInt( batch );
+                    if ( count > 0 )
+                    {
+                        log.commit( positions.get( count - 1 ) );
+                        sent += count;
+                    }
+                    if ( count < batch.size() )
+                    {
+                        break;
+                    }
+                    batch.clear();
+                    positions.clear();
+                }
+                if ( next != null )
+                {
+                    batch.add( next );
+                    positions.add( reader.position() );
+                }
             }
         }
+        finally
+        {
+            replaying.set( false );
+        }
+        return sent;
     }
 
-    public Boolean IsAtThreshold()
-    {
-        return (numLogEntries.get() > retryThreshold);
-    }
-
-    public void info( LogLine.LogEntry logEntry ) throws Exception
-    {
-        info( OBJECT_MAPPER.writeValueAsString( logEntry ) );
-    }
-
-    public void warn( LogLine.LogEntry logEntry ) throws Exception
-    {
-        warn( OBJECT_MAPPER.writeValueAsString( logEntry ) );
-    }
-
-    public void debug( LogLine.LogEntry logEntry ) throws Exception
-    {
-        debug( OBJECT_MAPPER.writeValueAsString( logEntry ) );
-    }
-
-    public void error( LogLine.LogEntry logEntry ) throws Exception
-    {
-        error( OBJECT_MAPPER.writeValueAsString( logEntry ) );
-    }
-
-    private void info( String msg )
-    {
-        brokerLogService.getInternalLogProvider().getLog( logName ).info( msg );
-        incrementNumLogEntries();
-    }
-
-    private void warn( String msg )
-    {
-        brokerLogService.getInternalLogProvider().getLog( logName ).warn( msg );
-        incrementNumLogEntries();
-    }
-
-    private void debug( String msg )
-    {
-        brokerLogService.getInternalLogProvider().getLog( logName ).debug( msg );
-        incrementNumLogEntries();
-    }
-
-    private void error( String msg )
-    {
-        brokerLogService.getInternalLogProvider().getLog( logName ).error( msg );
-        incrementNumLogEntries();
-    }
-
-    public String getDirPath()
-    {
-        return dirPath;
-    }
-
-    public String getLogName()
-    {
-        return logName;
-    }
-
-    public Long incrementNumLogEntries()
-    {
-        return numLogEntries.getAndIncrement();
-    }
-
-    public Long decrementNumLogEntries()
-    {
-        return numLogEntries.getAndDecrement();
-    }
-
-    public Long setNumLogEntries( Long numLogEntries )
-    {
-        return this.numLogEntries.getAndSet( numLogEntries );
-    }
-
-    public Long getNumLogEntries()
+    public String getConnectionName()
     {
-        return numLogEntries.get();
+        return connectionName;
     }
 
     @Override
-    public void close() throws Exception
+    public void close() throws IOException
     {
-        brokerLogService.close();
+        log.close();
     }
 }
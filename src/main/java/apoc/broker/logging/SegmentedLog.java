@@ -0,0 +1,460 @@
+package apoc.broker.logging;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of binary records, split into segment files of about {@code segmentSize} bytes.
+ * <p>
+ * A segment starts with a header (magic, sequence number of its first record) followed by records of
+ * {@code length, crc32, payload}. The position up to which records have been processed is stored in a separate offset
+ * file (segment, byte offset, sequence number), so reading resumes there without scanning, and segments before it are
+ * deleted. On open, a record torn by a crash at the end of the last segment is cut off.
+ */
+public class SegmentedLog implements AutoCloseable
+{
+    private static final int MAGIC = 0x42524B57;
+    static final int HEADER_SIZE = 12;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int OFFSET_SIZE = 28;
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String OFFSET_FILE = "committed.offset";
+
+    /**
+     * Position between two records, identified by the segment, the byte offset in it and the sequence number of the next record.
+     */
+    public static final class Position
+    {
+        public final long segment;
+        public final long offset;
+        public final long sequence;
+
+        Position( long segment, long offset, long sequence )
+        {
+            this.segment = segment;
+            this.offset = offset;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( !(o instanceof Position) )
+            {
+                return false;
+            }
+            Position position = (Position) o;
+            return segment == position.segment && offset == position.offset && sequence == position.sequence;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash( segment, offset, sequence );
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Position{segment=" + segment + ", offset=" + offset + ", sequence=" + sequence + "}";
+        }
+    }
+
+    private final File directory;
+    private final long segmentSize;
+    private final boolean fsync;
+
+    private FileChannel writer;
+    private volatile Position end;
+    private volatile Position committed;
+
+    public SegmentedLog( File directory, long segmentSize, boolean fsync ) throws IOException
+    {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+        Files.createDirectories( directory.toPath() );
+        recover();
+    }
+
+    private void recover() throws IOException
+    {
+        List<Long> segments = segments();
+        Position offset = readOffset();
+        if ( segments.isEmpty() )
+        {
+            long sequence = offset == null ? 0 : offset.sequence;
+            long segment = offset == null ? 0 : offset.segment;
+            createSegment( segment, sequence );
+            end = new Position( segment, HEADER_SIZE, sequence );
+        }
+        else
+        {
+            long last = segments.get( segments.size() - 1 );
+            end = scanToEnd( last );
+            writer = FileChannel.open( segmentFile( last ).toPath(), StandardOpenOption.WRITE );
+            writer.truncate( end.offset );
+            writer.position( end.offset );
+        }
+        long first = segments.isEmpty() ? end.segment : segments.get( 0 );
+        if ( offset == null || offset.segment < first || offset.sequence > end.sequence )
+        {
+            offset = new Position( first, HEADER_SIZE, baseSequence( first ) );
+        }
+        committed = offset;
+    }
+
+    /**
+     * @return the position after the last complete record of the segment
+     */
+    private Position scanToEnd( long segment ) throws IOException
+    {
+        File file = segmentFile( segment );
+        long length = file.length();
+        try ( DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( file.toPath() ) ) ) )
+        {
+            long sequence = readHeader( in, file );
+            long offset = HEADER_SIZE;
+            byte[] buffer = new byte[0];
+            CRC32 crc = new CRC32();
+            while ( offset + RECORD_HEADER_SIZE <= length )
+            {
+                int size = in.readInt();
+                int checksum = in.readInt();
+                if ( size < 0 || offset + RECORD_HEADER_SIZE + size > length )
+                {
+                    break;
+                }
+                if ( buffer.length < size )
+                {
+                    buffer = new byte[size];
+                }
+                in.readFully( buffer, 0, size );
+                crc.reset();
+                crc.update( buffer, 0, size );
+                if ( (int) crc.getValue() != checksum )
+                {
+                    break;
+                }
+                offset += RECORD_HEADER_SIZE + size;
+                sequence++;
+            }
+            return new Position( segment, offset, sequence );
+        }
+    }
+
+    public synchronized Position append( byte[] payload ) throws IOException
+    {
+        return append( Collections.singletonList( payload ) );
+    }
+
+    /**
+     * Appends the records and forces them to disk once (if fsync is enabled).
+     *
+     * @return the position after the last record
+     */
+    public synchronized Position append( List<byte[]> payloads ) throws IOException
+    {
+        if ( writer == null )
+        {
+            throw new IOException( "The log in " + directory + " is closed" );
+        }
+        Position position = end;
+        CRC32 crc = new CRC32();
+        for ( byte[] payload : payloads )
+        {
+            if ( position.offset > HEADER_SIZE && position.offset + RECORD_HEADER_SIZE + payload.length > segmentSize )
+            {
+                position = roll( position );
+            }
+            crc.reset();
+            crc.update( payload, 0, payload.length );
+            ByteBuffer buffer = ByteBuffer.allocate( RECORD_HEADER_SIZE + payload.length );
+            buffer.putInt( payload.length ).putInt( (int) crc.getValue() ).put( payload ).flip();
+            while ( buffer.hasRemaining() )
+            {
+                writer.write( buffer );
+            }
+            position = new Position( position.segment, position.offset + RECORD_HEADER_SIZE + payload.length, position.sequence + 1 );
+            end = position;
+        }
+        if ( fsync )
+        {
+            writer.force( false );
+        }
+        return position;
+    }
+
+    private Position roll( Position position ) throws IOException
+    {
+        if ( fsync )
+        {
+            writer.force( false );
+        }
+        writer.close();
+        createSegment( position.segment + 1, position.sequence );
+        return new Position( position.segment + 1, HEADER_SIZE, position.sequence );
+    }
+
+    private void createSegment( long segment, long sequence ) throws IOException
+    {
+        writer = FileChannel.open( segmentFile( segment ).toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE );
+        ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+        header.putInt( MAGIC ).putLong( sequence ).flip();
+        while ( header.hasRemaining() )
+        {
+            writer.write( header );
+        }
+    }
+
+    /**
+     * Marks all records before the position as processed and deletes the segments that only contain such records.
+     */
+    public synchronized void commit( Position position ) throws IOException
+    {
+        if ( position.sequence < committed.sequence )
+        {
+            return;
+        }
+        File tmp = new File( directory, OFFSET_FILE + ".tmp" );
+        ByteBuffer buffer = ByteBuffer.allocate( OFFSET_SIZE );
+        buffer.putLong( position.segment ).putLong( position.offset ).putLong( position.sequence );
+        CRC32 crc = new CRC32();
+        crc.update( buffer.array(), 0, OFFSET_SIZE - 4 );
+        buffer.putInt( (int) crc.getValue() ).flip();
+        try ( FileChannel channel = FileChannel.open( tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE ) )
+        {
+            while ( buffer.hasRemaining() )
+            {
+                channel.write( buffer );
+            }
+            if ( fsync )
+            {
+                channel.force( false );
+            }
+        }
+        try
+        {
+            Files.move( tmp.toPath(), new File( directory, OFFSET_FILE ).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+        }
+        catch ( AtomicMoveNotSupportedException e )
+        {
+            Files.move( tmp.toPath(), new File( directory, OFFSET_FILE ).toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+        committed = position;
+        for ( long segment : segments() )
+        {
+            if ( segment >= position.segment )
+            {
+                break;
+            }
+            Files.deleteIfExists( segmentFile( segment ).toPath() );
+        }
+    }
+
+    private Position readOffset() throws IOException
+    {
+        File file = new File( directory, OFFSET_FILE );
+        if ( !file.exists() || file.length() != OFFSET_SIZE )
+        {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes( file.toPath() ) );
+        CRC32 crc = new CRC32();
+        crc.update( buffer.array(), 0, OFFSET_SIZE - 4 );
+        Position position = new Position( buffer.getLong(), buffer.getLong(), buffer.getLong() );
+        return buffer.getInt() == (int) crc.getValue() ? position : null;
+    }
+
+    public Position committed()
+    {
+        return committed;
+    }
+
+    public Position end()
+    {
+        return end;
+    }
+
+    /**
+     * @return the number of records after the committed position
+     */
+    public long pending()
+    {
+        return end.sequence - committed.sequence;
+    }
+
+    /**
+     * Reads the records from the committed position up to the current end, records appended meanwhile are not returned.
+     */
+    public Reader read()
+    {
+        return new Reader( committed, end );
+    }
+
+    public class Reader implements AutoCloseable
+    {
+        private final Position end;
+        private Position position;
+        private DataInputStream in;
+        private byte[] payload;
+
+        Reader( Position start, Position end )
+        {
+            this.position = start;
+            this.end = end;
+        }
+
+        /**
+         * Moves to the next record.
+         *
+         * @return false at the end
+         */
+        public boolean next() throws IOException
+        {
+            if ( position.sequence >= end.sequence )
+            {
+                return false;
+            }
+            if ( in == null )
+            {
+                open( position.offset );
+            }
+            int size;
+            int checksum;
+            try
+            {
+                size = in.readInt();
+                checksum = in.readInt();
+            }
+            catch ( EOFException e )
+            {
+                // continue with the next segment
+                in.close();
+                position = new Position( position.segment + 1, HEADER_SIZE, position.sequence );
+                open( HEADER_SIZE );
+                size = in.readInt();
+                checksum = in.readInt();
+            }
+            payload = new byte[size];
+            in.readFully( payload );
+            CRC32 crc = new CRC32();
+            crc.update( payload, 0, size );
+            if ( (int) crc.getValue() != checksum )
+            {
+                throw new IOException( "Corrupt record " + position + " in " + directory );
+            }
+            position = new Position( position.segment, position.offset + RECORD_HEADER_SIZE + size, position.sequence + 1 );
+            return true;
+        }
+
+        private void open( long offset ) throws IOException
+        {
+            File file = segmentFile( position.segment );
+            FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+            if ( offset == HEADER_SIZE )
+            {
+                in = new DataInputStream( new BufferedInputStream( Channels.newInputStream( channel ) ) );
+                readHeader( in, file );
+            }
+            else
+            {
+                channel.position( offset );
+                in = new DataInputStream( new BufferedInputStream( Channels.newInputStream( channel ) ) );
+            }
+        }
+
+        public byte[] payload()
+        {
+            return payload;
+        }
+
+        /**
+         * @return the position after the current record
+         */
+        public Position position()
+        {
+            return position;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if ( in != null )
+            {
+                in.close();
+            }
+        }
+    }
+
+    private long baseSequence( long segment ) throws IOException
+    {
+        File file = segmentFile( segment );
+        try ( DataInputStream in = new DataInputStream( Files.newInputStream( file.toPath() ) ) )
+        {
+            return readHeader( in, file );
+        }
+    }
+
+    private static long readHeader( DataInputStream in, File file ) throws IOException
+    {
+        if ( in.readInt() != MAGIC )
+        {
+            throw new IOException( "File " + file + " is not a log segment" );
+        }
+        return in.readLong();
+    }
+
+    private List<Long> segments()
+    {
+        List<Long> segments = new ArrayList<>();
+        String[] names = directory.list();
+        if ( names != null )
+        {
+            for ( String name : names )
+            {
+                if ( name.endsWith( SEGMENT_SUFFIX ) )
+                {
+                    segments.add( Long.parseLong( name.substring( 0, name.length() - SEGMENT_SUFFIX.length() ) ) );
+                }
+            }
+        }
+        segments.sort( Long::compare );
+        return segments;
+    }
+
+    private File segmentFile( long segment )
+    {
+        return new File( directory, String.format( "%020d%s", segment, SEGMENT_SUFFIX ) );
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if ( writer != null )
+        {
+            writer.close();
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package apoc.cache;
+
+import apoc.util.Util;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A bounded in-process cache region backed by Caffeine (shipped with Neo4j), which gives us lock-free reads, striped
+ * writes, W-TinyLFU eviction and atomic computation of absent entries.
+ * <p>
+ * Config: {@code maxEntries} or {@code maxWeight} (estimated bytes), {@code ttl} (seconds since the last write) and
+ * {@code idle} (seconds since the last read or write). Without any of them the region is unbounded.
+ */
+public class CacheRegion {
+    private final Map<String, Object> config;
+    private final Cache<String, Object> cache;
+
+    private CacheRegion(Map<String, Object> config) {
+        this.config = config;
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats();
+        long maxEntries = sizeConfig(config.get("maxEntries"));
+        long maxWeight = sizeConfig(config.get("maxWeight"));
+        if (maxEntries > 0 && maxWeight > 0) {
+            throw new RuntimeException("A cache region can be bounded either by maxEntries or by maxWeight, not both");
+        }
+        if (maxEntries > 0) {
+            builder.maximumSize(maxEntries);
+        }
+        if (maxWeight > 0) {
+            builder.maximumWeight(maxWeight).weigher((String key, Object value) -> (int) Math.min(Integer.MAX_VALUE, weigh(key) + weigh(value)));
+        }
+        double ttl = secondsConfig(config.get("ttl"));
+        if (ttl > 0) {
+            builder.expireAfterWrite((long) (ttl * 1_000_000_000L), TimeUnit.NANOSECONDS);
+        }
+        double idle = secondsConfig(config.get("idle"));
+        if (idle > 0) {
+            builder.expireAfterAccess((long) (idle * 1_000_000_000L), TimeUnit.NANOSECONDS);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * @return the config value, 0 (no bound) if it is missing or not a number
+     */
+    private static long sizeConfig(Object value) {
+        Long size = Util.toLong(value);
+        return size == null ? 0 : size;
+    }
+
+    private static double secondsConfig(Object value) {
+        Double seconds = Util.toDouble(value);
+        return seconds == null ? 0 : seconds;
+    }
+
+    public static CacheRegion from(Map<String, Object> config) {
+        return new CacheRegion(config == null ? Collections.emptyMap() : config);
+    }
+
+    public Object get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * @return the previous value
+     */
+    public Object put(String key, Object value) {
+        return value == null ? cache.asMap().remove(key) : cache.asMap().put(key, value);
+    }
+
+    public Object remove(String key) {
+        return cache.asMap().remove(key);
+    }
+
+    /**
+     * Computes and stores the value if there is none, concurrent callers for the same key wait for that single computation.
+     * A {@code null} result is not stored.
+     */
+    public Object computeIfAbsent(String key, Function<String, Object> compute) {
+        return cache.get(key, compute);
+    }
+
+    public boolean containsKey(String key) {
+        return cache.asMap().containsKey(key);
+    }
+
+    /**
+     * Live view of the entries, iteration skips expired entries.
+     */
+    public Map<String, Object> asMap() {
+        return cache.asMap();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    public Map<String, Object> getConfig() {
+        return config;
+    }
+
+    public long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    public long weight() {
+        return cache.policy().eviction().map(e -> e.weightedSize().orElse(-1L)).orElse(-1L);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Rough estimate of the heap used by a value, as stored by the procedures.
+     */
+    static long weigh(Object value) {
+        if (value == null) return 0;
+        if (value instanceof String) return 40 + 2L * ((String) value).length();
+        if (value instanceof Number || value instanceof Boolean) return 16;
+        if (value instanceof Map) {
+            long weight = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                weight += 32 + weigh(entry.getKey()) + weigh(entry.getValue());
+            }
+            return weight;
+        }
+        if (value instanceof Collection) {
+            long weight = 40;
+            for (Object element : (Collection<?>) value) {
+                weight += 8 + weigh(element);
+            }
+            return weight;
+        }
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            if (value.getClass().getComponentType().isPrimitive()) return 16 + 8L * length;
+            long weight = 16;
+            for (int i = 0; i < length; i++) {
+                weight += 8 + weigh(Array.get(value, i));
+            }
+            return weight;
+        }
+        return 64;
+    }
+}
@@ -25,11 +25,12 @@ public class Dynamic
     @Context
     public GraphDatabaseAPI db;
 
-    private static Map<String,ConcurrentHashMap<String,Object>> storage = new ConcurrentHashMap<>();
+    private static Map<String,CacheRegion> storage = new ConcurrentHashMap<>();
 
     @Procedure( "apoc.dynamic.open" )
-    @Description( "apoc.dynamic.open() - Open a temporary map and return the generated key." )
-    public Stream<StringResult> open( @Name( value = "keySize", defaultValue = "5" ) String keySize )
+    @Description( "apoc.dynamic.open(keySize='5', {maxEntries:0, maxWeight:0, ttl:0, idle:0}) - Open a temporary map, optionally bounded like apoc.cache.create, and return the generated key." )
+    public Stream<StringResult> open( @Name( value = "keySize", defaultValue = "5" ) String keySize,
+                                      @Name( value = "config", defaultValue = "{}" ) Map<String,Object> config )
     {
         Integer keySizeInt = Integer.parseInt( keySize );
         String generatedKey = RandomStringUtils.random( keySizeInt );
@@ -39,7 +40,7 @@ public class Dynamic
             generatedKey = RandomStringUtils.random( keySizeInt );
         }
 
-        storage.put( generatedKey, new ConcurrentHashMap<>() );
+        storage.put( generatedKey, CacheRegion.from( config ) );
 
         return Stream.of( new StringResult( generatedKey ) );
     }
@@ -73,30 +74,23 @@ public class Dynamic
     @Description( "apoc.dynamic.getAll( superKey ) - Returns the entire temporary map by key" )
     public Stream<MapResult> getAll( @Name( "superKey" ) String superKey )
     {
-        return Stream.of( new MapResult( retrieveSubmap( superKey ) ) );
+        return Stream.of( new MapResult( new HashMap<>( retrieveSubmap( superKey ).asMap() ) ) );
     }
 
     @Procedure( "apoc.dynamic.set" )
     @Description( "apoc.dynamic.set( superKey, subKey, value ) - stores value under key for server livetime storage, returns previously stored or configured value" )
     public Stream<ObjectResult> set( @Name( "superKey" ) String superKey, @Name( "subKey" ) String subKey, @Name( "value" ) Object value )
     {
-        ConcurrentHashMap<String,Object> superMap = retrieveSubmap( superKey );
-        if ( value == null )
-        {
-            superMap.remove( subKey );
-        }
-        else
-        {
-            superMap.put( subKey, value );
-        }
+        retrieveSubmap( superKey ).put( subKey, value );
         return Stream.of( new ObjectResult( value ) );
     }
 
-    private static ConcurrentHashMap<String,Object> retrieveSubmap( String superKey )
+    private static CacheRegion retrieveSubmap( String superKey )
     {
-        if ( storage.containsKey( superKey ) )
+        CacheRegion region = storage.get( superKey );
+        if ( region != null )
         {
-            return storage.get( superKey );
+            return region;
         }
         else
         {
@@ -0,0 +1,133 @@
+package apoc.cache;
+
+import apoc.result.ObjectResult;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.neo4j.graphdb.Result;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.procedure.*;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Named, bounded cache regions for lookups from Cypher, see {@link CacheRegion} for the config.
+ */
+public class Regions {
+
+    @Context
+    public GraphDatabaseAPI db;
+
+    private static final Map<String, CacheRegion> regions = new ConcurrentHashMap<>();
+
+    public static class RegionStats {
+        public final String region;
+        public final long size;
+        public final long weight;
+        public final long hits;
+        public final long misses;
+        public final double hitRate;
+        public final long evictions;
+        public final Map<String, Object> config;
+
+        public RegionStats(String region, CacheRegion cache) {
+            // size() runs the pending evictions first, so they are counted in the stats
+            this.size = cache.size();
+            CacheStats stats = cache.stats();
+            this.region = region;
+            this.weight = cache.weight();
+            this.hits = stats.hitCount();
+            this.misses = stats.missCount();
+            this.hitRate = stats.hitRate();
+            this.evictions = stats.evictionCount();
+            this.config = cache.getConfig();
+        }
+    }
+
+    @Procedure("apoc.cache.create")
+    @Description("apoc.cache.create(region, {maxEntries:0, maxWeight:0, ttl:0, idle:0}) - creates a cache region bounded by number of entries or estimated bytes, with entries expiring ttl seconds after write or idle seconds after the last access, fails if it already exists")
+    public Stream<RegionStats> create(@Name("region") String name, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        CacheRegion created = CacheRegion.from(config);
+        CacheRegion existing = regions.putIfAbsent(name, created);
+        if (existing != null) {
+            throw new RuntimeException("The cache region '" + name + "' already exists");
+        }
+        return Stream.of(new RegionStats(name, created));
+    }
+
+    @Procedure("apoc.cache.drop")
+    @Description("apoc.cache.drop(region) - removes the cache region and all its entries")
+    public Stream<RegionStats> drop(@Name("region") String name) {
+        CacheRegion region = regions.remove(name);
+        if (region == null) {
+            throw new RuntimeException("The cache region '" + name + "' does not exist");
+        }
+        region.clear();
+        return Stream.of(new RegionStats(name, region));
+    }
+
+    @Procedure("apoc.cache.clear")
+    @Description("apoc.cache.clear(region) - removes all entries of the cache region")
+    public Stream<RegionStats> clear(@Name("region") String name) {
+        CacheRegion region = region(name);
+        region.clear();
+        return Stream.of(new RegionStats(name, region));
+    }
+
+    @Procedure("apoc.cache.stats")
+    @Description("apoc.cache.stats([region]) - size, weight, hits, misses and evictions of the given or all cache regions")
+    public Stream<RegionStats> stats(@Name(value = "region", defaultValue = "") String name) {
+        if (name == null || name.isEmpty()) {
+            return regions.entrySet().stream().map(e -> new RegionStats(e.getKey(), e.getValue()));
+        }
+        return Stream.of(new RegionStats(name, region(name)));
+    }
+
+    @UserFunction("apoc.cache.get")
+    @Description("apoc.cache.get(region, key) - returns the cached value or null")
+    public Object get(@Name("region") String name, @Name("key") String key) {
+        return region(name).get(key);
+    }
+
+    @Procedure("apoc.cache.set")
+    @Description("apoc.cache.set(region, key, value) - stores the value under the key, a null value removes the entry, returns the previous value")
+    public Stream<ObjectResult> set(@Name("region") String name, @Name("key") String key, @Name("value") Object value) {
+        return Stream.of(new ObjectResult(region(name).put(key, value)));
+    }
+
+    @Procedure("apoc.cache.remove")
+    @Description("apoc.cache.remove(region, key) - removes the entry, returns the previous value")
+    public Stream<ObjectResult> remove(@Name("region") String name, @Name("key") String key) {
+        return Stream.of(new ObjectResult(region(name).remove(key)));
+    }
+
+    @Procedure("apoc.cache.computeIfAbsent")
+    @Description("apoc.cache.computeIfAbsent(region, key, statement, params) - returns the cached value, if there is none it is computed once from the single column of the first row of the read-only statement, concurrent calls for the same key wait for it")
+    public Stream<ObjectResult> computeIfAbsent(@Name("region") String name, @Name("key") String key, @Name("statement") String statement,
+                                                @Name(value = "params", defaultValue = "{}") Map<String, Object> params) {
+        Map<String, Object> parameters = params == null ? Collections.emptyMap() : params;
+        return Stream.of(new ObjectResult(region(name).computeIfAbsent(key, k -> firstValue(statement, parameters))));
+    }
+
+    private Object firstValue(String statement, Map<String, Object> params) {
+        try (Result result = db.execute(statement, params)) {
+            if (result.columns().size() != 1) {
+                throw new RuntimeException("The statement to compute a cache entry has to return a single column, but returned " + result.columns());
+            }
+            return result.hasNext() ? result.next().values().iterator().next() : null;
+        }
+    }
+
+    private static CacheRegion region(String name) {
+        CacheRegion region = regions.get(name);
+        if (region == null) {
+            throw new RuntimeException("The cache region '" + name + "' does not exist, create it with apoc.cache.create");
+        }
+        return region;
+    }
+
+    public static void clear() {
+        regions.clear();
+    }
+}
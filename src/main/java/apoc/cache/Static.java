@@ -21,19 +21,21 @@ public class Static {
     @Context
     public GraphDatabaseAPI db;
 
-    private static Map<String,Object> storage = new HashMap<>();
+    // configured by apoc.cache.static.maxEntries/maxWeight/ttl/idle, see CacheRegion
+    private static volatile CacheRegion storage = CacheRegion.from(null);
 
     @Procedure("apoc.static.get")
     @Deprecated
     @Description("apoc.static.get(name) - returns statically stored value from config (apoc.static.<key>) or server lifetime storage")
     public Stream<ObjectResult> getProcedure(@Name("key") String key) {
-        return Stream.of(new ObjectResult(storage.getOrDefault(key, fromConfig(key))));
+        return Stream.of(new ObjectResult(get(key)));
     }
 
     @UserFunction("apoc.static.get")
     @Description("apoc.static.get(name) - returns statically stored value from config (apoc.static.<key>) or server lifetime storage")
     public Object get(@Name("key") String key) {
-        return storage.getOrDefault(key, fromConfig(key));
+        Object value = storage.get(key);
+        return value == null ? fromConfig(key) : value;
     }
 
     @Deprecated
@@ -52,7 +54,7 @@ public class Static {
     private HashMap<String, Object> getFromConfigAndStorage(@Name("prefix") String prefix) {
         Map<String,Object> config = ApocConfiguration.get("static." + prefix);
         HashMap<String, Object> result = new HashMap<>(config);
-        result.putAll(Util.subMap(storage, prefix));
+        result.putAll(Util.subMap(storage.asMap(), prefix));
         return result;
     }
 
@@ -70,11 +72,12 @@ public class Static {
     @Procedure("apoc.static.set")
     @Description("apoc.static.set(name, value) - stores value under key for server livetime storage, returns previously stored or configured value")
     public Stream<ObjectResult> set(@Name("key") String key, @Name("value") Object value) {
-        Object previous = value == null ? storage.remove(key) : storage.put(key, value);
+        Object previous = storage.put(key, value);
         return Stream.of(new ObjectResult(previous==null ? fromConfig(key) : previous));
     }
 
     public static void clear() {
         storage.clear();
+        storage = CacheRegion.from(ApocConfiguration.get("cache.static"));
     }
 }
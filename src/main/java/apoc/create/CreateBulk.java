@@ -0,0 +1,154 @@
+package apoc.create;
+
+import apoc.util.Util;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.helpers.collection.Iterables;
+import org.neo4j.internal.kernel.api.TokenWrite;
+import org.neo4j.internal.kernel.api.Write;
+import org.neo4j.internal.kernel.api.exceptions.KernelException;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.procedure.*;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
+
+import java.lang.reflect.Array;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Creates nodes and relationships with dynamic labels and types in bulk through the kernel {@link Write} API.
+ * <p>
+ * Label, relationship-type and property-key tokens are resolved once per call, and only counts are returned instead
+ * of every created entity. Kept apart from {@link Create}, as the kernel transaction puts all procedures and functions
+ * of a class into the sandbox.
+ */
+public class CreateBulk {
+
+    @Context
+    public KernelTransaction tx;
+
+    @Procedure(name = "apoc.create.nodes.bulk", mode = Mode.WRITE)
+    @Description("apoc.create.nodes.bulk([{labels:['Label'], props:{key:value,...}}]) yield rows, created, labels, properties, time - create nodes with dynamic labels in bulk, returns counts instead of the nodes")
+    public Stream<BulkResult> nodes(@Name("rows") List<Map<String, Object>> rows) {
+        long start = System.currentTimeMillis();
+        long created = 0, labels = 0, properties = 0;
+        try {
+            Tokens tokens = new Tokens(tx.tokenWrite());
+            Write write = tx.dataWrite();
+            for (Map<String, Object> row : rows) {
+                long node = write.nodeCreate();
+                created++;
+                for (Label label : Util.labels(row.get("labels"))) {
+                    if (write.nodeAddLabel(node, tokens.label(label.name()))) labels++;
+                }
+                for (Map.Entry<String, Object> entry : props(row).entrySet()) {
+                    if (entry.getValue() == null) continue;
+                    write.nodeSetProperty(node, tokens.key(entry.getKey()), toValue(entry.getValue()));
+                    properties++;
+                }
+            }
+        } catch (KernelException e) {
+            throw new RuntimeException("Error creating nodes in bulk: " + e.getMessage(), e);
+        }
+        return Stream.of(new BulkResult(rows.size(), created, labels, properties, System.currentTimeMillis() - start));
+    }
+
+    @Procedure(name = "apoc.create.relationships.bulk", mode = Mode.WRITE)
+    @Description("apoc.create.relationships.bulk([{from:node|id, type:'TYPE', props:{key:value,...}, to:node|id}]) yield rows, created, properties, time - create relationships with dynamic rel-types in bulk, returns counts instead of the relationships")
+    public Stream<BulkResult> relationships(@Name("rows") List<Map<String, Object>> rows) {
+        long start = System.currentTimeMillis();
+        long created = 0, properties = 0;
+        try {
+            Tokens tokens = new Tokens(tx.tokenWrite());
+            Write write = tx.dataWrite();
+            for (Map<String, Object> row : rows) {
+                int type = tokens.type(Util.type(row.get("type")).name());
+                long rel = write.relationshipCreate(nodeId(row.get("from")), type, nodeId(row.get("to")));
+                created++;
+                for (Map.Entry<String, Object> entry : props(row).entrySet()) {
+                    if (entry.getValue() == null) continue;
+                    write.relationshipSetProperty(rel, tokens.key(entry.getKey()), toValue(entry.getValue()));
+                    properties++;
+                }
+            }
+        } catch (KernelException e) {
+            throw new RuntimeException("Error creating relationships in bulk: " + e.getMessage(), e);
+        }
+        return Stream.of(new BulkResult(rows.size(), created, 0, properties, System.currentTimeMillis() - start));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> props(Map<String, Object> row) {
+        Object props = row.get("props");
+        return props == null ? Collections.emptyMap() : (Map<String, Object>) props;
+    }
+
+    private static long nodeId(Object node) {
+        if (node instanceof Node) return ((Node) node).getId();
+        if (node instanceof Number) return ((Number) node).longValue();
+        throw new RuntimeException("Can't create a relationship from or to " + node + ", expected a node or node-id");
+    }
+
+    private static Value toValue(Object value) {
+        if (value instanceof Iterable) {
+            List<?> list = Iterables.asList((Iterable<?>) value);
+            if (list.isEmpty() || list.get(0) == null) return Values.of(Create.EMPTY_ARRAY);
+            // typed like the first element, as storable arrays are
+            Object[] array = (Object[]) Array.newInstance(list.get(0).getClass(), list.size());
+            return Values.of(list.toArray(array));
+        }
+        return Values.of(value);
+    }
+
+    /**
+     * Token ids by name, each name is resolved (or created) only once per call.
+     */
+    private static class Tokens {
+        private final TokenWrite tokenWrite;
+        private final Map<String, Integer> labels = new HashMap<>();
+        private final Map<String, Integer> types = new HashMap<>();
+        private final Map<String, Integer> keys = new HashMap<>();
+
+        Tokens(TokenWrite tokenWrite) {
+            this.tokenWrite = tokenWrite;
+        }
+
+        int label(String name) throws KernelException {
+            Integer id = labels.get(name);
+            if (id == null) labels.put(name, id = tokenWrite.labelGetOrCreateForName(name));
+            return id;
+        }
+
+        int type(String name) throws KernelException {
+            Integer id = types.get(name);
+            if (id == null) types.put(name, id = tokenWrite.relationshipTypeGetOrCreateForName(name));
+            return id;
+        }
+
+        int key(String name) throws KernelException {
+            Integer id = keys.get(name);
+            if (id == null) keys.put(name, id = tokenWrite.propertyKeyGetOrCreateForName(name));
+            return id;
+        }
+    }
+
+    public static class BulkResult {
+        public final long rows;
+        public final long created;
+        public final long labels;
+        public final long properties;
+        public final long time;
+
+        public BulkResult(long rows, long created, long labels, long properties, long time) {
+            this.rows = rows;
+            this.created = created;
+            this.labels = labels;
+            this.properties = properties;
+            this.time = time;
+        }
+    }
+}
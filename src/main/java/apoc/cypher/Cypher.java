@@ -1,5 +1,6 @@
 package apoc.cypher;
 
+import apoc.ApocKernelExtensionFactory;
 import apoc.Pools;
 import apoc.result.MapResult;
 import apoc.util.FileUtils;
@@ -10,6 +11,10 @@ import org.neo4j.graphdb.QueryStatistics;
 import org.neo4j.graphdb.Result;
 import org.neo4j.helpers.collection.Iterables;
 import org.neo4j.helpers.collection.Iterators;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.txstate.TxStateHolder;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 
@@ -18,6 +23,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -63,6 +69,30 @@ public class Cypher {
         return db.execute(withParamMapping(statement, params.keySet()), params).stream().map(MapResult::new);
     }
 
+    @Procedure
+    @Description("apoc.cypher.cached(fragment, params, {labels:[], types:[], ttl:0, maxRows:10000}) yield value - executes reading fragment with the given parameters, the rows are memoized by fragment and params until a node with one of the labels or a relationship of one of the types is written (any write if none are declared) or ttl seconds passed")
+    public Stream<MapResult> cached(@Name("cypher") String statement, @Name("params") Map<String, Object> params, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        Map<String, Object> parameters = params == null ? Collections.emptyMap() : params;
+        Supplier<List<Map<String, Object>>> execute = () -> {
+            try (Result result = db.execute(withParamMapping(statement, parameters.keySet()), parameters)) {
+                return Iterators.asList(result);
+            }
+        };
+        CypherCache cache = cypherCache();
+        List<Map<String, Object>> rows = cache == null ? execute.get() : cache.rows(statement, parameters, config == null ? Collections.emptyMap() : config, this::hasUncommittedWrites, execute);
+        return rows.stream().map(MapResult::new);
+    }
+
+    private boolean hasUncommittedWrites() {
+        KernelTransaction ktx = ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class).getKernelTransactionBoundToThisThread(true);
+        return ktx instanceof TxStateHolder && ((TxStateHolder) ktx).hasTxStateWithChanges();
+    }
+
+    private CypherCache cypherCache() {
+        ApocKernelExtensionFactory.ApocLifecycle apocLifecycle = ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(ApocKernelExtensionFactory.ApocLifecycle.class);
+        return apocLifecycle == null || apocLifecycle.getCypherCacheLifeCycle() == null ? null : apocLifecycle.getCypherCacheLifeCycle().getCypherCache();
+    }
+
     @Procedure(mode = WRITE)
     @Description("apoc.cypher.runFile(file or url,[{statistics:true,timeout:10,parameters:{}}]) - runs each statement in the file, all semicolon separated - currently no schema operations")
     public Stream<RowResult> runFile(@Name("file") String fileName, @Name(value = "config",defaultValue = "{}") Map<String,Object> config) {
@@ -0,0 +1,245 @@
+package apoc.cypher;
+
+import apoc.ApocConfiguration;
+import apoc.util.Util;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Result rows of read statements memoized by statement and parameters, for {@code apoc.cypher.cached}.
+ * <p>
+ * Entries declare the labels and relationship types they depend on, a transaction event handler invalidates them when
+ * a node with such a label or a relationship of such a type is created, deleted or changed. Entries without declared
+ * dependencies are invalidated by every write. Each dependency has a generation that the handler bumps after commit,
+ * an entry remembers the generations from before its statement ran and is only used while they are unchanged, so rows
+ * computed concurrently with a write are never served afterwards. Dependencies share a fixed number of generation
+ * slots by hash, a collision only invalidates more entries than necessary.
+ * <p>
+ * Rows are neither served from nor added to the cache while the calling transaction has uncommitted writes, so rows
+ * that see those writes are never visible to other transactions, even if the writes are rolled back.
+ * <p>
+ * The number of entries is bounded by {@code apoc.cypher.cache.maxEntries} (default 1000).
+ */
+public class CypherCache extends TransactionEventHandler.Adapter<Set<String>> {
+
+    private static final String ANY = "*";
+    private static final int GENERATION_SLOTS = 1024;
+    private static final long DEFAULT_MAX_ROWS = 10000;
+    private static final long DEFAULT_MAX_ENTRIES = 1000;
+
+    private final Cache<Key, Entry> cache;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_SLOTS);
+
+    CypherCache(long maxEntries) {
+        this.cache = Caffeine.newBuilder().maximumSize(maxEntries).build();
+    }
+
+    /**
+     * @param uncommittedWrites whether the calling transaction has uncommitted writes
+     */
+    public List<Map<String, Object>> rows(String statement, Map<String, Object> params, Map<String, Object> config,
+                                          BooleanSupplier uncommittedWrites, Supplier<List<Map<String, Object>>> execute) {
+        if (uncommittedWrites.getAsBoolean()) {
+            return execute.get();
+        }
+        Key key = new Key(statement, params);
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && isValid(entry)) {
+            return entry.rows;
+        }
+        Set<String> dependencies = dependencies(config);
+        long[] before = generations(dependencies);
+        List<Map<String, Object>> rows = execute.get();
+        Long maxRows = Util.toLong(config.get("maxRows"));
+        // the statement itself may have written
+        if (rows.size() <= (maxRows == null ? DEFAULT_MAX_ROWS : maxRows) && !uncommittedWrites.getAsBoolean()) {
+            Double ttl = Util.toDouble(config.get("ttl"));
+            long expires = ttl != null && ttl > 0 ? System.currentTimeMillis() + (long) (ttl * 1000) : Long.MAX_VALUE;
+            cache.put(key, new Entry(Collections.unmodifiableList(rows), dependencies, before, expires));
+        }
+        return rows;
+    }
+
+    public long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    private static Set<String> dependencies(Map<String, Object> config) {
+        Set<String> dependencies = new HashSet<>();
+        for (Object label : (Collection<?>) config.getOrDefault("labels", Collections.emptyList())) {
+            dependencies.add(":" + label);
+        }
+        for (Object type : (Collection<?>) config.getOrDefault("types", Collections.emptyList())) {
+            dependencies.add("-" + type);
+        }
+        if (dependencies.isEmpty()) dependencies.add(ANY);
+        return dependencies;
+    }
+
+    private boolean isValid(Entry entry) {
+        return System.currentTimeMillis() <= entry.expires && Arrays.equals(entry.generations, generations(entry.dependencies));
+    }
+
+    private long[] generations(Set<String> dependencies) {
+        long[] result = new long[dependencies.size()];
+        int i = 0;
+        for (String dependency : dependencies) {
+            result[i++] = generations.get(slot(dependency));
+        }
+        return result;
+    }
+
+    private static int slot(String dependency) {
+        return (dependency.hashCode() & Integer.MAX_VALUE) % GENERATION_SLOTS;
+    }
+
+    private void invalidate(Set<String> written) {
+        written.add(ANY);
+        for (String dependency : written) {
+            generations.incrementAndGet(slot(dependency));
+        }
+    }
+
+    @Override
+    public Set<String> beforeCommit(TransactionData data) {
+        Set<String> written = new HashSet<>();
+        for (LabelEntry entry : data.assignedLabels()) written.add(":" + entry.label().name());
+        for (LabelEntry entry : data.removedLabels()) written.add(":" + entry.label().name());
+        for (Node node : data.createdNodes()) labels(node, written);
+        for (PropertyEntry<Node> entry : data.assignedNodeProperties()) labels(entry.entity(), written);
+        for (PropertyEntry<Node> entry : data.removedNodeProperties()) labels(entry.entity(), written);
+        for (Relationship rel : data.createdRelationships()) written.add("-" + rel.getType().name());
+        for (Relationship rel : data.deletedRelationships()) written.add("-" + rel.getType().name());
+        for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) written.add("-" + entry.entity().getType().name());
+        for (PropertyEntry<Relationship> entry : data.removedRelationshipProperties()) written.add("-" + entry.entity().getType().name());
+        return written;
+    }
+
+    private static void labels(Node node, Set<String> written) {
+        try {
+            for (Label label : node.getLabels()) written.add(":" + label.name());
+        } catch (NotFoundException deleted) {
+            // the labels of deleted nodes are reported as removed labels
+        }
+    }
+
+    @Override
+    public void afterCommit(TransactionData data, Set<String> written) {
+        if (written != null) invalidate(written);
+    }
+
+    private static class Entry {
+        final List<Map<String, Object>> rows;
+        final Set<String> dependencies;
+        final long[] generations;
+        final long expires;
+
+        Entry(List<Map<String, Object>> rows, Set<String> dependencies, long[] generations, long expires) {
+            this.rows = rows;
+            this.dependencies = dependencies;
+            this.generations = generations;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Statement and parameters, arrays are compared by content.
+     */
+    private static class Key {
+        final String statement;
+        final Object params;
+        final int hash;
+
+        Key(String statement, Map<String, Object> params) {
+            this.statement = statement;
+            this.params = normalize(params);
+            this.hash = 31 * statement.hashCode() + this.params.hashCode();
+        }
+
+        private static Object normalize(Object value) {
+            if (value == null) return Collections.emptyMap();
+            if (value instanceof Map) {
+                Map<Object, Object> result = new HashMap<>();
+                ((Map<?, ?>) value).forEach((k, v) -> result.put(k, v == null ? null : normalize(v)));
+                return result;
+            }
+            if (value instanceof Collection) {
+                List<Object> result = new ArrayList<>(((Collection<?>) value).size());
+                for (Object element : (Collection<?>) value) result.add(element == null ? null : normalize(element));
+                return result;
+            }
+            if (value.getClass().isArray()) {
+                int length = Array.getLength(value);
+                List<Object> result = new ArrayList<>(length);
+                for (int i = 0; i < length; i++) result.add(normalize(Array.get(value, i)));
+                return result;
+            }
+            return value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && statement.equals(key.statement) && params.equals(key.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public static class LifeCycle {
+        private final GraphDatabaseAPI db;
+        private final Log log;
+        private CypherCache cypherCache;
+
+        public LifeCycle(GraphDatabaseAPI db, Log log) {
+            this.db = db;
+            this.log = log;
+        }
+
+        public void start() {
+            Long maxEntries = Util.toLong(ApocConfiguration.get("cypher.cache.maxEntries", DEFAULT_MAX_ENTRIES));
+            cypherCache = new CypherCache(maxEntries == null ? DEFAULT_MAX_ENTRIES : maxEntries);
+            db.registerTransactionEventHandler(cypherCache);
+        }
+
+        public CypherCache getCypherCache() {
+            return cypherCache;
+        }
+
+        public void stop() {
+            if (cypherCache == null) return;
+            try {
+                db.unregisterTransactionEventHandler(cypherCache);
+            } catch (Exception e) {
+                log.warn("Error unregistering the cypher cache", e);
+            }
+            cypherCache.clear();
+        }
+    }
+}
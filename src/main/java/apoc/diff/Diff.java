@@ -1,13 +1,24 @@
 package apoc.diff;
 
 import apoc.Description;
-import apoc.util.MapUtil;
+import apoc.Pools;
+import apoc.hashing.Fingerprinting;
+import apoc.util.JsonUtil;
+import apoc.util.Util;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Result;
+import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Spliterators.spliteratorUnknownSize;
 
 /**
  * @author Benjamin Clauss
@@ -18,6 +29,9 @@ public class Diff {
     @Context
     public GraphDatabaseService db;
 
+    @Context
+    public Log log;
+
     @UserFunction()
     @Description("apoc.diff.nodes([leftNode],[rightNode]) returns a detailed diff of both nodes")
     public Map<String, Object> nodes(@Name("leftNode") Node leftNode, @Name("rightNode") Node rightNode) {
@@ -62,4 +76,209 @@ public class Diff {
         }
         return different;
     }
+
+    public static class GraphDiffResult {
+        public final Object key;
+        public final String change;
+        public final String left;
+        public final String right;
+
+        public GraphDiffResult(Object key, String change, String left, String right) {
+            this.key = key;
+            this.change = change;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    @Procedure
+    @Description("apoc.diff.graphs(left, right, {keyColumn:'key', valueColumn:'value', propertyExcludes:[], params:{}, runSize:100000, includeUnchanged:false}) yield key, change, left, right - " +
+            "compares two sets of entities by business key, each given as statement returning key and value or as map of key to fingerprint, streams the 'added', 'removed' and 'changed' keys")
+    public Stream<GraphDiffResult> graphs(@Name("left") Object left, @Name("right") Object right,
+                                          @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        DiffConfig conf = new DiffConfig(config == null ? Collections.emptyMap() : config);
+        // the keys of a map are always strings, the statement keys are compared in their string form then
+        boolean textKeys = left instanceof Map || right instanceof Map;
+        Future<SortedFingerprints> leftFuture = Util.inTxFuture(Pools.DEFAULT, db, () -> fingerprints(left, conf, textKeys));
+        Future<SortedFingerprints> rightFuture = Util.inTxFuture(Pools.DEFAULT, db, () -> fingerprints(right, conf, textKeys));
+        SortedFingerprints leftSide = null, rightSide = null;
+        boolean streaming = false;
+        try {
+            leftSide = Pools.force(leftFuture);
+            rightSide = Pools.force(rightFuture);
+            Iterator<GraphDiffResult> diff = new DiffIterator(leftSide.iterator(), rightSide.iterator(), conf.includeUnchanged);
+            SortedFingerprints l = leftSide, r = rightSide;
+            Stream<GraphDiffResult> stream = StreamSupport.stream(spliteratorUnknownSize(diff, 0), false).onClose(() -> {
+                l.close();
+                r.close();
+            });
+            streaming = true;
+            return stream;
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("Error comparing the graphs: " + cause.getMessage(), cause);
+        } finally {
+            if (!streaming) {
+                if (leftSide != null) leftSide.close();
+                if (rightSide != null) rightSide.close();
+                // the other side may still be sorting, its runs are deleted once it is done
+                else closeWhenDone(rightFuture);
+            }
+        }
+    }
+
+    private static void closeWhenDone(Future<SortedFingerprints> future) {
+        try {
+            Pools.force(future).close();
+        } catch (Exception e) {
+            // it failed and deleted its runs itself
+        }
+    }
+
+    private static class DiffConfig {
+        private final String keyColumn;
+        private final String valueColumn;
+        private final List<String> propertyExcludes;
+        private final Map<String, Object> params;
+        private final int runSize;
+        private final boolean includeUnchanged;
+
+        DiffConfig(Map<String, Object> config) {
+            this.keyColumn = String.valueOf(config.getOrDefault("keyColumn", "key"));
+            Object valueColumn = config.get("valueColumn");
+            this.valueColumn = valueColumn == null ? null : valueColumn.toString();
+            this.propertyExcludes = new ArrayList<>();
+            Object propertyExcludes = config.get("propertyExcludes");
+            if (propertyExcludes instanceof Collection) {
+                for (Object exclude : (Collection<?>) propertyExcludes) this.propertyExcludes.add(String.valueOf(exclude));
+            }
+            this.params = new HashMap<>();
+            Object params = config.get("params");
+            if (params instanceof Map) {
+                ((Map<?, ?>) params).forEach((key, value) -> this.params.put(String.valueOf(key), value));
+            }
+            this.runSize = Util.toLong(config.getOrDefault("runSize", 100_000)).intValue();
+            this.includeUnchanged = Util.toBoolean(config.get("includeUnchanged"));
+        }
+    }
+
+    private SortedFingerprints fingerprints(Object side, DiffConfig conf, boolean textKeys) throws IOException {
+        SortedFingerprints fingerprints = new SortedFingerprints(conf.runSize);
+        try {
+            if (side instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) side).entrySet()) {
+                    fingerprints.add(key(String.valueOf(entry.getKey())), String.valueOf(entry.getValue()));
+                }
+            } else if (side instanceof String) {
+                Fingerprinting fingerprinting = new Fingerprinting();
+                fingerprinting.db = db;
+                fingerprinting.log = log;
+                try (Result result = db.execute((String) side, conf.params)) {
+                    String valueColumn = valueColumn(result.columns(), conf);
+                    while (result.hasNext()) {
+                        Map<String, Object> row = result.next();
+                        Object value = row.get(valueColumn);
+                        String fingerprint = fingerprinting.fingerprint(value == null ? Collections.emptyList() : value, conf.propertyExcludes);
+                        Object key = row.get(conf.keyColumn);
+                        fingerprints.add(key(textKeys && key != null ? String.valueOf(key) : key), fingerprint);
+                    }
+                }
+            } else {
+                throw new RuntimeException("Each side must be a statement or a map of key to fingerprint, but was " + side);
+            }
+            return fingerprints;
+        } catch (IOException | RuntimeException e) {
+            fingerprints.close();
+            throw e;
+        }
+    }
+
+    private static String valueColumn(List<String> columns, DiffConfig conf) {
+        if (!columns.contains(conf.keyColumn)) throw new RuntimeException("Statement must return the key column '" + conf.keyColumn + "', but returned " + columns);
+        if (conf.valueColumn != null) {
+            if (!columns.contains(conf.valueColumn)) throw new RuntimeException("Statement must return the value column '" + conf.valueColumn + "', but returned " + columns);
+            return conf.valueColumn;
+        }
+        if (columns.contains("value")) return "value";
+        if (columns.size() == 2) return columns.get(columns.get(0).equals(conf.keyColumn) ? 1 : 0);
+        throw new RuntimeException("Statement must return a key and a value column, but returned " + columns);
+    }
+
+    /**
+     * Keys are compared and sorted by their JSON representation, so keys of both sides are equal when their values are.
+     * When one side is a map, whose keys are strings, the keys of both sides are compared as strings.
+     */
+    private static String key(Object key) {
+        try {
+            return JsonUtil.OBJECT_MAPPER.writeValueAsString(key);
+        } catch (IOException e) {
+            throw new RuntimeException("Can't use " + key + " as key", e);
+        }
+    }
+
+    private static Object parseKey(String key) {
+        try {
+            return JsonUtil.OBJECT_MAPPER.readValue(key, Object.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Merges the sorted fingerprints of both sides.
+     */
+    private static class DiffIterator implements Iterator<GraphDiffResult> {
+        private final Iterator<SortedFingerprints.Entry> left;
+        private final Iterator<SortedFingerprints.Entry> right;
+        private final boolean includeUnchanged;
+        private SortedFingerprints.Entry nextLeft;
+        private SortedFingerprints.Entry nextRight;
+        private GraphDiffResult next;
+
+        DiffIterator(Iterator<SortedFingerprints.Entry> left, Iterator<SortedFingerprints.Entry> right, boolean includeUnchanged) {
+            this.left = left;
+            this.right = right;
+            this.includeUnchanged = includeUnchanged;
+            this.nextLeft = left.hasNext() ? left.next() : null;
+            this.nextRight = right.hasNext() ? right.next() : null;
+            this.next = compute();
+        }
+
+        private GraphDiffResult compute() {
+            while (nextLeft != null || nextRight != null) {
+                int cmp = nextLeft == null ? 1 : nextRight == null ? -1 : nextLeft.key.compareTo(nextRight.key);
+                if (cmp < 0) {
+                    SortedFingerprints.Entry removed = nextLeft;
+                    nextLeft = left.hasNext() ? left.next() : null;
+                    return new GraphDiffResult(parseKey(removed.key), "removed", removed.fingerprint, null);
+                }
+                if (cmp > 0) {
+                    SortedFingerprints.Entry added = nextRight;
+                    nextRight = right.hasNext() ? right.next() : null;
+                    return new GraphDiffResult(parseKey(added.key), "added", null, added.fingerprint);
+                }
+                SortedFingerprints.Entry l = nextLeft, r = nextRight;
+                nextLeft = left.hasNext() ? left.next() : null;
+                nextRight = right.hasNext() ? right.next() : null;
+                boolean changed = !l.fingerprint.equals(r.fingerprint);
+                if (changed || includeUnchanged) {
+                    return new GraphDiffResult(parseKey(l.key), changed ? "changed" : "unchanged", l.fingerprint, r.fingerprint);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public GraphDiffResult next() {
+            if (next == null) throw new NoSuchElementException();
+            GraphDiffResult result = next;
+            next = compute();
+            return result;
+        }
+    }
 }
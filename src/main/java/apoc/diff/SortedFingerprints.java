@@ -0,0 +1,232 @@
+package apoc.diff;
+
+import apoc.hashing.Fingerprinting;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * The (key, fingerprint) entries of one side of {@code apoc.diff.graphs}, iterated in key order.
+ * <p>
+ * Entries are sorted in runs of {@code runSize} in memory, full runs are written to temporary files and merged while
+ * iterating, so only one run per side is held in memory. More than {@link #MAX_FAN_IN} runs are first merged in groups
+ * into longer runs, so the number of open files stays bounded. Entries with the same key are combined into one fingerprint
+ * over their sorted fingerprints.
+ */
+class SortedFingerprints implements AutoCloseable {
+
+    static final class Entry {
+        final String key;
+        final String fingerprint;
+
+        Entry(String key, String fingerprint) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private static final Comparator<Entry> BY_KEY = Comparator.comparing((Entry e) -> e.key).thenComparing(e -> e.fingerprint);
+
+    /** maximum number of runs merged at once */
+    static final int MAX_FAN_IN = 64;
+
+    private final int runSize;
+    private List<Entry> buffer;
+    private final List<File> runs = new ArrayList<>();
+    private final List<DataInputStream> readers = new ArrayList<>();
+    private long count;
+
+    SortedFingerprints(int runSize) {
+        this.runSize = Math.max(1, runSize);
+        this.buffer = new ArrayList<>(Math.min(this.runSize, 10_000));
+    }
+
+    void add(String key, String fingerprint) throws IOException {
+        buffer.add(new Entry(key, fingerprint));
+        count++;
+        if (buffer.size() >= runSize) spill();
+    }
+
+    long count() {
+        return count;
+    }
+
+    private void spill() throws IOException {
+        buffer.sort(BY_KEY);
+        runs.add(writeRun(buffer.size(), buffer.iterator()));
+        buffer = new ArrayList<>(Math.min(runSize, 10_000));
+    }
+
+    private static File writeRun(long size, Iterator<Entry> entries) throws IOException {
+        File run = File.createTempFile("apoc-diff-", ".run");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 64 * 1024))) {
+            out.writeLong(size);
+            while (entries.hasNext()) {
+                Entry entry = entries.next();
+                writeString(out, entry.key);
+                writeString(out, entry.fingerprint);
+            }
+        } catch (IOException | RuntimeException e) {
+            run.delete();
+            throw e;
+        }
+        return run;
+    }
+
+    // length prefixed instead of writeUTF, which is limited to 64KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the entries in key order, with one entry per key
+     */
+    Iterator<Entry> iterator() throws IOException {
+        if (runs.isEmpty()) {
+            buffer.sort(BY_KEY);
+            return combined(buffer.iterator());
+        }
+        if (!buffer.isEmpty()) spill();
+        // merges groups of runs into longer ones until they can be merged at once, to bound the open files and buffers
+        while (runs.size() > MAX_FAN_IN) {
+            List<File> pass = new ArrayList<>(runs);
+            for (int i = 0; i < pass.size(); i += MAX_FAN_IN) {
+                List<File> group = pass.subList(i, Math.min(i + MAX_FAN_IN, pass.size()));
+                if (group.size() == 1) continue;
+                List<DataInputStream> groupReaders = new ArrayList<>(group.size());
+                try {
+                    MergedRuns merged = new MergedRuns(group, groupReaders);
+                    runs.add(writeRun(merged.size, merged));
+                } finally {
+                    closeAll(groupReaders);
+                }
+                runs.removeAll(group);
+                group.forEach(File::delete);
+            }
+        }
+        return combined(new MergedRuns(runs, readers));
+    }
+
+    /**
+     * Merges sorted runs in one pass, the streams are added to {@code streams} to be closed by the caller.
+     */
+    private static class MergedRuns implements Iterator<Entry> {
+        private final PriorityQueue<RunReader> queue;
+        private long size;
+
+        MergedRuns(List<File> runs, List<DataInputStream> streams) throws IOException {
+            queue = new PriorityQueue<>(runs.size(), Comparator.comparing((RunReader r) -> r.current, BY_KEY));
+            for (File run : runs) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 64 * 1024));
+                streams.add(in);
+                RunReader reader = new RunReader(in);
+                size += reader.remaining;
+                if (reader.advance()) queue.add(reader);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public Entry next() {
+            RunReader reader = queue.poll();
+            if (reader == null) throw new NoSuchElementException();
+            Entry entry = reader.current;
+            try {
+                if (reader.advance()) queue.add(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return entry;
+        }
+    }
+
+    private static class RunReader {
+        private final DataInputStream in;
+        private long remaining;
+        private Entry current;
+
+        RunReader(DataInputStream in) throws IOException {
+            this.in = in;
+            this.remaining = in.readLong();
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) return false;
+            remaining--;
+            current = new Entry(readString(in), readString(in));
+            return true;
+        }
+    }
+
+    /**
+     * Combines consecutive entries with the same key, their fingerprints are sorted already.
+     */
+    private static Iterator<Entry> combined(Iterator<Entry> sorted) {
+        return new Iterator<Entry>() {
+            private Entry next = sorted.hasNext() ? sorted.next() : null;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Entry next() {
+                if (next == null) throw new NoSuchElementException();
+                Entry first = next;
+                next = sorted.hasNext() ? sorted.next() : null;
+                if (next == null || !next.key.equals(first.key)) return first;
+                MessageDigest md = digest();
+                md.update(first.fingerprint.getBytes());
+                while (next != null && next.key.equals(first.key)) {
+                    md.update(next.fingerprint.getBytes());
+                    next = sorted.hasNext() ? sorted.next() : null;
+                }
+                return new Entry(first.key, DatatypeConverter.printHexBinary(md.digest()));
+            }
+        };
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance(Fingerprinting.DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void closeAll(List<DataInputStream> streams) {
+        for (DataInputStream stream : streams) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        streams.clear();
+    }
+
+    @Override
+    public void close() {
+        closeAll(readers);
+        runs.forEach(File::delete);
+        runs.clear();
+        buffer = new ArrayList<>();
+    }
+}
@@ -0,0 +1,292 @@
+package apoc.export.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static apoc.export.binary.BinaryValues.readString;
+import static apoc.export.binary.BinaryValues.readVarInt;
+import static apoc.export.binary.BinaryValues.writeString;
+import static apoc.export.binary.BinaryValues.writeVarInt;
+
+/**
+ * Layout of the binary snapshot format:
+ * <pre>
+ * header  : "APOCBIN" version
+ * block*  : int length, kind, count, names, ids[, starts, ends], columns
+ * footer  : int blocks, (kind, long offset, int length, int count, key)*
+ * trailer : long footer offset
+ * </pre>
+ * Every block holds the nodes of one label set or the relationships of one type, each property key is stored as
+ * a column with a presence bitmap. The footer allows to map and decode the blocks independently of each other.
+ */
+final class BinaryFormat {
+    static final byte[] MAGIC = "APOCBIN".getBytes(StandardCharsets.US_ASCII);
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = MAGIC.length + 1;
+    static final int TRAILER_SIZE = 8;
+
+    static final byte NODE_BLOCK = 1;
+    static final byte REL_BLOCK = 2;
+
+    static final byte LONG_COLUMN = 1;
+    static final byte DOUBLE_COLUMN = 2;
+    static final byte BOOLEAN_COLUMN = 3;
+    static final byte STRING_COLUMN = 4;
+    static final byte DATE_COLUMN = 5;
+    static final byte LOCAL_DATETIME_COLUMN = 6;
+    static final byte MIXED_COLUMN = 7;
+
+    private BinaryFormat() {
+    }
+
+    /**
+     * Entry of the footer index, {@code offset} points to the first byte after the length prefix of the block.
+     */
+    static class BlockInfo {
+        final byte kind;
+        final long offset;
+        final int length;
+        final int count;
+        final String key;
+
+        BlockInfo(byte kind, long offset, int length, int count, String key) {
+            this.kind = kind;
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Decoded content of a block, {@code values[column][row]} is null if the entity doesn't have the property.
+     */
+    static class Block {
+        final byte kind;
+        final String[] names;
+        final long[] ids;
+        final long[] starts;
+        final long[] ends;
+        final String[] keys;
+        final Object[][] values;
+
+        Block(byte kind, String[] names, long[] ids, long[] starts, long[] ends, String[] keys, Object[][] values) {
+            this.kind = kind;
+            this.names = names;
+            this.ids = ids;
+            this.starts = starts;
+            this.ends = ends;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        int size() {
+            return ids.length;
+        }
+    }
+
+    static byte[] encode(byte kind, String[] names, long[] ids, long[] starts, long[] ends, List<Map<String, Object>> properties) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(ids.length * 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        int count = ids.length;
+        out.writeByte(kind);
+        out.writeInt(count);
+        writeVarInt(out, names.length);
+        for (String name : names) writeString(out, name);
+        for (long id : ids) out.writeLong(id);
+        if (kind == REL_BLOCK) {
+            for (long id : starts) out.writeLong(id);
+            for (long id : ends) out.writeLong(id);
+        }
+        Map<String, Object[]> columns = new LinkedHashMap<>();
+        for (int row = 0; row < count; row++) {
+            for (Map.Entry<String, Object> entry : properties.get(row).entrySet()) {
+                columns.computeIfAbsent(entry.getKey(), (key) -> new Object[count])[row] = entry.getValue();
+            }
+        }
+        writeVarInt(out, columns.size());
+        for (Map.Entry<String, Object[]> column : columns.entrySet()) {
+            writeString(out, column.getKey());
+            writeColumn(out, column.getValue());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeColumn(DataOutputStream out, Object[] values) throws IOException {
+        byte type = columnType(values);
+        out.writeByte(type);
+        long[] present = new long[(values.length + 63) / 64];
+        for (int row = 0; row < values.length; row++) {
+            if (values[row] != null) present[row >>> 6] |= 1L << row;
+        }
+        for (long word : present) out.writeLong(word);
+        switch (type) {
+            case LONG_COLUMN:
+                for (Object value : values) if (value != null) out.writeLong((Long) value);
+                break;
+            case DOUBLE_COLUMN:
+                for (Object value : values) if (value != null) out.writeDouble((Double) value);
+                break;
+            case BOOLEAN_COLUMN:
+                for (Object value : values) if (value != null) out.writeBoolean((Boolean) value);
+                break;
+            case DATE_COLUMN:
+                for (Object value : values) if (value != null) out.writeLong(((LocalDate) value).toEpochDay());
+                break;
+            case LOCAL_DATETIME_COLUMN:
+                for (Object value : values) {
+                    if (value == null) continue;
+                    LocalDateTime dateTime = (LocalDateTime) value;
+                    out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+                    out.writeInt(dateTime.getNano());
+                }
+                break;
+            case STRING_COLUMN:
+                Map<String, Integer> dictionary = new LinkedHashMap<>();
+                for (Object value : values) {
+                    if (value != null) dictionary.putIfAbsent((String) value, dictionary.size());
+                }
+                writeVarInt(out, dictionary.size());
+                for (String entry : dictionary.keySet()) writeString(out, entry);
+                for (Object value : values) {
+                    if (value != null) writeVarInt(out, dictionary.get(value));
+                }
+                break;
+            default:
+                for (Object value : values) if (value != null) BinaryValues.write(out, value);
+        }
+    }
+
+    private static byte columnType(Object[] values) {
+        Class<?> type = null;
+        for (Object value : values) {
+            if (value == null) continue;
+            if (type == null) type = value.getClass();
+            else if (type != value.getClass()) return MIXED_COLUMN;
+        }
+        if (type == Long.class) return LONG_COLUMN;
+        if (type == Double.class) return DOUBLE_COLUMN;
+        if (type == Boolean.class) return BOOLEAN_COLUMN;
+        if (type == String.class) return STRING_COLUMN;
+        if (type == LocalDate.class) return DATE_COLUMN;
+        if (type == LocalDateTime.class) return LOCAL_DATETIME_COLUMN;
+        return MIXED_COLUMN;
+    }
+
+    static Block decode(ByteBuffer in) {
+        byte kind = in.get();
+        int count = in.getInt();
+        String[] names = new String[readVarInt(in)];
+        for (int i = 0; i < names.length; i++) names[i] = readString(in);
+        long[] ids = readLongs(in, count);
+        long[] starts = null, ends = null;
+        if (kind == REL_BLOCK) {
+            starts = readLongs(in, count);
+            ends = readLongs(in, count);
+        }
+        int columns = readVarInt(in);
+        String[] keys = new String[columns];
+        Object[][] values = new Object[columns][];
+        for (int column = 0; column < columns; column++) {
+            keys[column] = readString(in);
+            values[column] = readColumn(in, count);
+        }
+        return new Block(kind, names, ids, starts, ends, keys, values);
+    }
+
+    private static Object[] readColumn(ByteBuffer in, int count) {
+        byte type = in.get();
+        long[] present = readLongs(in, (count + 63) / 64);
+        Object[] values = new Object[count];
+        Object[] dictionary = null;
+        if (type == STRING_COLUMN) {
+            dictionary = new String[readVarInt(in)];
+            for (int i = 0; i < dictionary.length; i++) dictionary[i] = readString(in);
+        }
+        for (int row = 0; row < count; row++) {
+            if ((present[row >>> 6] & (1L << row)) == 0) continue;
+            switch (type) {
+                case LONG_COLUMN:
+                    values[row] = in.getLong();
+                    break;
+                case DOUBLE_COLUMN:
+                    values[row] = in.getDouble();
+                    break;
+                case BOOLEAN_COLUMN:
+                    values[row] = in.get() != 0;
+                    break;
+                case DATE_COLUMN:
+                    values[row] = LocalDate.ofEpochDay(in.getLong());
+                    break;
+                case LOCAL_DATETIME_COLUMN:
+                    long epochSecond = in.getLong();
+                    values[row] = LocalDateTime.ofEpochSecond(epochSecond, in.getInt(), ZoneOffset.UTC);
+                    break;
+                case STRING_COLUMN:
+                    values[row] = dictionary[readVarInt(in)];
+                    break;
+                case MIXED_COLUMN:
+                    values[row] = BinaryValues.read(in);
+                    break;
+                default:
+                    throw new RuntimeException("Unknown column type " + type + " in binary file");
+            }
+        }
+        return values;
+    }
+
+    private static long[] readLongs(ByteBuffer in, int count) {
+        long[] values = new long[count];
+        in.asLongBuffer().get(values);
+        in.position(in.position() + count * 8);
+        return values;
+    }
+
+    static void writeFooter(DataOutputStream out, List<BlockInfo> blocks) throws IOException {
+        out.writeInt(blocks.size());
+        for (BlockInfo block : blocks) {
+            out.writeByte(block.kind);
+            out.writeLong(block.offset);
+            out.writeInt(block.length);
+            out.writeInt(block.count);
+            writeString(out, block.key);
+        }
+    }
+
+    static List<BlockInfo> readFooter(ByteBuffer in) {
+        int size = in.getInt();
+        List<BlockInfo> blocks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            byte kind = in.get();
+            long offset = in.getLong();
+            int length = in.getInt();
+            int count = in.getInt();
+            blocks.add(new BlockInfo(kind, offset, length, count, readString(in)));
+        }
+        return blocks;
+    }
+
+    static void checkHeader(ByteBuffer in) {
+        byte[] magic = new byte[MAGIC.length];
+        in.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new RuntimeException("Not an APOC binary export file");
+        }
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new RuntimeException("Unsupported binary export version " + version + ", expected " + VERSION);
+        }
+    }
+}
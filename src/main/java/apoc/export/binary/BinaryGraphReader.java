@@ -0,0 +1,139 @@
+package apoc.export.binary;
+
+import apoc.Pools;
+import apoc.export.binary.BinaryFormat.Block;
+import apoc.export.binary.BinaryFormat.BlockInfo;
+import apoc.export.util.BatchTransaction;
+import apoc.export.util.Reporter;
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongLongMap;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import static apoc.export.binary.BinaryFormat.NODE_BLOCK;
+import static apoc.export.binary.BinaryFormat.REL_BLOCK;
+
+/**
+ * Reads a binary snapshot, the blocks are memory mapped and decoded on {@link Pools#DEFAULT} while the decoded blocks
+ * are written in file order in batched transactions on the calling thread.
+ */
+public class BinaryGraphReader {
+    private final GraphDatabaseService db;
+    private int batchSize = 10000;
+    private Reporter reporter;
+
+    public BinaryGraphReader(GraphDatabaseService db) {
+        this.db = db;
+    }
+
+    public BinaryGraphReader batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public BinaryGraphReader reporter(Reporter reporter) {
+        this.reporter = reporter;
+        return this;
+    }
+
+    public void read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < BinaryFormat.HEADER_SIZE + BinaryFormat.TRAILER_SIZE) {
+                throw new RuntimeException("File " + file + " is too small to be an APOC binary export file");
+            }
+            BinaryFormat.checkHeader(channel.map(FileChannel.MapMode.READ_ONLY, 0, BinaryFormat.HEADER_SIZE));
+            long footerOffset = channel.map(FileChannel.MapMode.READ_ONLY, size - BinaryFormat.TRAILER_SIZE, BinaryFormat.TRAILER_SIZE).getLong();
+            List<BlockInfo> blocks = BinaryFormat.readFooter(channel.map(FileChannel.MapMode.READ_ONLY, footerOffset, size - BinaryFormat.TRAILER_SIZE - footerOffset));
+
+            PrimitiveLongLongMap idMapping = Primitive.longLongMap();
+            try (BatchTransaction tx = new BatchTransaction(db, batchSize, reporter)) {
+                int maxInFlight = Math.max(2, Pools.getNoThreadsInDefaultPool());
+                Deque<FutureTask<Block>> inFlight = new ArrayDeque<>(maxInFlight);
+                try {
+                    for (BlockInfo info : blocks) {
+                        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, info.offset, info.length);
+                        FutureTask<Block> task = new FutureTask<>(() -> BinaryFormat.decode(buffer));
+                        Pools.DEFAULT.execute(task);
+                        inFlight.add(task);
+                        if (inFlight.size() >= maxInFlight) {
+                            write(next(inFlight), idMapping, tx);
+                        }
+                    }
+                    while (!inFlight.isEmpty()) {
+                        write(next(inFlight), idMapping, tx);
+                    }
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Error decoding block of binary file " + file, e.getCause());
+                } finally {
+                    inFlight.forEach(future -> future.cancel(true));
+                }
+            } finally {
+                idMapping.close();
+            }
+            if (reporter != null) reporter.done();
+        }
+    }
+
+    /**
+     * Decodes the block on the calling thread if no pool thread picked it up yet, the import itself runs
+     * on {@link Pools#DEFAULT} and would otherwise wait on its own queue when the pool is saturated.
+     */
+    private static Block next(Deque<FutureTask<Block>> inFlight) throws ExecutionException {
+        FutureTask<Block> task = inFlight.poll();
+        task.run();
+        return Pools.force(task);
+    }
+
+    private void write(Block block, PrimitiveLongLongMap idMapping, BatchTransaction tx) {
+        if (block.kind == NODE_BLOCK) {
+            Label[] labels = new Label[block.names.length];
+            for (int i = 0; i < labels.length; i++) labels[i] = Label.label(block.names[i]);
+            for (int row = 0; row < block.size(); row++) {
+                Node node = db.createNode(labels);
+                int props = setProperties(node, block, row);
+                idMapping.put(block.ids[row], node.getId());
+                if (reporter != null) reporter.update(1, 0, props);
+                tx.increment();
+            }
+        } else if (block.kind == REL_BLOCK) {
+            RelationshipType type = RelationshipType.withName(block.names[0]);
+            for (int row = 0; row < block.size(); row++) {
+                long start = idMapping.get(block.starts[row]);
+                long end = idMapping.get(block.ends[row]);
+                if (start == -1 || end == -1) continue;
+                PropertyContainer rel = db.getNodeById(start).createRelationshipTo(db.getNodeById(end), type);
+                int props = setProperties(rel, block, row);
+                if (reporter != null) reporter.update(0, 1, props);
+                tx.increment();
+            }
+        } else {
+            throw new RuntimeException("Unknown block kind " + block.kind + " in binary file");
+        }
+    }
+
+    private int setProperties(PropertyContainer pc, Block block, int row) {
+        int props = 0;
+        for (int column = 0; column < block.keys.length; column++) {
+            Object value = block.values[column][row];
+            if (value == null) continue;
+            pc.setProperty(block.keys[column], value);
+            props++;
+        }
+        return props;
+    }
+}
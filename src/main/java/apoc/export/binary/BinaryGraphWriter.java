@@ -0,0 +1,137 @@
+package apoc.export.binary;
+
+import apoc.export.binary.BinaryFormat.BlockInfo;
+import apoc.export.util.ExportConfig;
+import apoc.export.util.Reporter;
+import org.neo4j.cypher.export.SubGraph;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static apoc.export.binary.BinaryFormat.NODE_BLOCK;
+import static apoc.export.binary.BinaryFormat.REL_BLOCK;
+
+/**
+ * Writes a sub graph as blocks of at most {@code batchSize} nodes per label set and relationships per type,
+ * all node blocks precede the relationship blocks.
+ */
+public class BinaryGraphWriter {
+
+    public void write(SubGraph graph, OutputStream output, Reporter reporter, ExportConfig config) throws IOException {
+        int blockSize = Math.max(1, config.getBatchSize());
+        DataOutputStream out = new DataOutputStream(output);
+        out.write(BinaryFormat.MAGIC);
+        out.writeByte(BinaryFormat.VERSION);
+        List<BlockInfo> blocks = new ArrayList<>();
+
+        Map<String, Buffer> nodeBuffers = new HashMap<>();
+        for (Node node : graph.getNodes()) {
+            TreeSet<String> labels = new TreeSet<>();
+            for (Label label : node.getLabels()) labels.add(label.name());
+            String key = String.join(":", labels);
+            Buffer buffer = nodeBuffers.computeIfAbsent(key, (k) -> new Buffer(NODE_BLOCK, key, labels.toArray(new String[0]), blockSize));
+            reporter.update(1, 0, buffer.add(node.getId(), -1, -1, node.getAllProperties()));
+            if (buffer.isFull()) buffer.flush(out, blocks);
+        }
+        for (Buffer buffer : nodeBuffers.values()) buffer.flush(out, blocks);
+
+        Map<String, Buffer> relBuffers = new HashMap<>();
+        for (Relationship rel : graph.getRelationships()) {
+            String type = rel.getType().name();
+            Buffer buffer = relBuffers.computeIfAbsent(type, (k) -> new Buffer(REL_BLOCK, type, new String[]{type}, blockSize));
+            reporter.update(0, 1, buffer.add(rel.getId(), rel.getStartNodeId(), rel.getEndNodeId(), rel.getAllProperties()));
+            if (buffer.isFull()) buffer.flush(out, blocks);
+        }
+        for (Buffer buffer : relBuffers.values()) buffer.flush(out, blocks);
+
+        long footerOffset = end(blocks);
+        BinaryFormat.writeFooter(out, blocks);
+        out.writeLong(footerOffset);
+        out.flush();
+        reporter.done();
+    }
+
+    /**
+     * Position after the last written block, tracked as long as {@link DataOutputStream#size()} overflows at 2GB.
+     */
+    private static long end(List<BlockInfo> blocks) {
+        if (blocks.isEmpty()) return BinaryFormat.HEADER_SIZE;
+        BlockInfo last = blocks.get(blocks.size() - 1);
+        return last.offset + last.length;
+    }
+
+    private static class Buffer {
+        private final byte kind;
+        private final String key;
+        private final String[] names;
+        private final int size;
+        private long[] ids;
+        private long[] starts;
+        private long[] ends;
+        private List<Map<String, Object>> properties;
+        private int count;
+
+        Buffer(byte kind, String key, String[] names, int size) {
+            this.kind = kind;
+            this.key = key;
+            this.names = names;
+            this.size = size;
+            reset();
+        }
+
+        private void reset() {
+            int capacity = Math.min(size, 1024);
+            ids = new long[capacity];
+            starts = kind == REL_BLOCK ? new long[capacity] : null;
+            ends = kind == REL_BLOCK ? new long[capacity] : null;
+            properties = new ArrayList<>(capacity);
+            count = 0;
+        }
+
+        int add(long id, long start, long end, Map<String, Object> props) {
+            if (count == ids.length) {
+                int capacity = Math.min(size, ids.length * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                if (starts != null) {
+                    starts = Arrays.copyOf(starts, capacity);
+                    ends = Arrays.copyOf(ends, capacity);
+                }
+            }
+            ids[count] = id;
+            if (starts != null) {
+                starts[count] = start;
+                ends[count] = end;
+            }
+            properties.add(props);
+            count++;
+            return props.size();
+        }
+
+        boolean isFull() {
+            return count >= size;
+        }
+
+        void flush(DataOutputStream out, List<BlockInfo> blocks) throws IOException {
+            if (count == 0) return;
+            long[] blockIds = Arrays.copyOf(ids, count);
+            long[] blockStarts = starts == null ? null : Arrays.copyOf(starts, count);
+            long[] blockEnds = ends == null ? null : Arrays.copyOf(ends, count);
+            byte[] block = BinaryFormat.encode(kind, names, blockIds, blockStarts, blockEnds, properties);
+            long offset = end(blocks) + 4;
+            out.writeInt(block.length);
+            out.write(block);
+            blocks.add(new BlockInfo(kind, offset, block.length, count, key));
+            reset();
+        }
+    }
+}
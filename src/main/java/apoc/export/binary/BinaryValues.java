@@ -0,0 +1,364 @@
+package apoc.export.binary;
+
+import org.neo4j.graphdb.spatial.Point;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.DurationValue;
+import org.neo4j.values.storable.Values;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAmount;
+import java.util.List;
+
+/**
+ * Tagged encoding of single property values, used for the columns of the binary format that don't have
+ * a single primitive type.
+ */
+final class BinaryValues {
+    static final byte NULL = 0;
+    static final byte BOOLEAN = 1;
+    static final byte BYTE = 2;
+    static final byte SHORT = 3;
+    static final byte INT = 4;
+    static final byte LONG = 5;
+    static final byte FLOAT = 6;
+    static final byte DOUBLE = 7;
+    static final byte CHAR = 8;
+    static final byte STRING = 9;
+    static final byte DATE = 10;
+    static final byte LOCAL_TIME = 11;
+    static final byte TIME = 12;
+    static final byte LOCAL_DATETIME = 13;
+    static final byte DATETIME = 14;
+    static final byte DURATION = 15;
+    static final byte POINT = 16;
+
+    static final byte BOOLEAN_ARRAY = 20;
+    static final byte BYTE_ARRAY = 21;
+    static final byte SHORT_ARRAY = 22;
+    static final byte INT_ARRAY = 23;
+    static final byte LONG_ARRAY = 24;
+    static final byte FLOAT_ARRAY = 25;
+    static final byte DOUBLE_ARRAY = 26;
+    static final byte CHAR_ARRAY = 27;
+    static final byte STRING_ARRAY = 28;
+    static final byte VALUE_ARRAY = 29;
+
+    private BinaryValues() {
+    }
+
+    static void write(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeChar((Character) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value.getClass().isArray()) {
+            writeArray(out, value);
+        } else {
+            byte tag = tagOf(value.getClass());
+            out.writeByte(tag);
+            writeTyped(out, tag, value);
+        }
+    }
+
+    static Object read(ByteBuffer in) {
+        byte tag = in.get();
+        switch (tag) {
+            case NULL: return null;
+            case BOOLEAN: return in.get() != 0;
+            case BYTE: return in.get();
+            case SHORT: return in.getShort();
+            case INT: return in.getInt();
+            case LONG: return in.getLong();
+            case FLOAT: return in.getFloat();
+            case DOUBLE: return in.getDouble();
+            case CHAR: return in.getChar();
+            case STRING: return readString(in);
+            case BOOLEAN_ARRAY: {
+                boolean[] array = new boolean[in.getInt()];
+                for (int i = 0; i < array.length; i++) array[i] = in.get() != 0;
+                return array;
+            }
+            case BYTE_ARRAY: {
+                byte[] array = new byte[in.getInt()];
+                in.get(array);
+                return array;
+            }
+            case SHORT_ARRAY: {
+                short[] array = new short[in.getInt()];
+                for (int i = 0; i < array.length; i++) array[i] = in.getShort();
+                return array;
+            }
+            case INT_ARRAY: {
+                int[] array = new int[in.getInt()];
+                for (int i = 0; i < array.length; i++) array[i] = in.getInt();
+                return array;
+            }
+            case LONG_ARRAY: {
+                long[] array = new long[in.getInt()];
+                for (int i = 0; i < array.length; i++) array[i] = in.getLong();
+                return array;
+            }
+            case FLOAT_ARRAY: {
+                float[] array = new float[in.getInt()];
+                for (int i = 0; i < array.length; i++) array[i] = in.getFloat();
+                return array;
+            }
+            case DOUBLE_ARRAY: {
+                double[] array = new double[in.getInt()];
+                for (int i = 0; i < array.length; i++) array[i] = in.getDouble();
+                return array;
+            }
+            case CHAR_ARRAY: {
+                char[] array = new char[in.getInt()];
+                for (int i = 0; i < array.length; i++) array[i] = in.getChar();
+                return array;
+            }
+            case STRING_ARRAY: {
+                String[] array = new String[in.getInt()];
+                for (int i = 0; i < array.length; i++) array[i] = readString(in);
+                return array;
+            }
+            case VALUE_ARRAY: {
+                byte componentTag = in.get();
+                Object array = Array.newInstance(classOf(componentTag), in.getInt());
+                for (int i = 0, length = Array.getLength(array); i < length; i++) {
+                    Array.set(array, i, readTyped(in, componentTag));
+                }
+                return array;
+            }
+            default:
+                return readTyped(in, tag);
+        }
+    }
+
+    private static void writeArray(DataOutput out, Object value) throws IOException {
+        if (value instanceof boolean[]) {
+            boolean[] array = (boolean[]) value;
+            out.writeByte(BOOLEAN_ARRAY);
+            out.writeInt(array.length);
+            for (boolean v : array) out.writeBoolean(v);
+        } else if (value instanceof byte[]) {
+            byte[] array = (byte[]) value;
+            out.writeByte(BYTE_ARRAY);
+            out.writeInt(array.length);
+            out.write(array);
+        } else if (value instanceof short[]) {
+            short[] array = (short[]) value;
+            out.writeByte(SHORT_ARRAY);
+            out.writeInt(array.length);
+            for (short v : array) out.writeShort(v);
+        } else if (value instanceof int[]) {
+            int[] array = (int[]) value;
+            out.writeByte(INT_ARRAY);
+            out.writeInt(array.length);
+            for (int v : array) out.writeInt(v);
+        } else if (value instanceof long[]) {
+            long[] array = (long[]) value;
+            out.writeByte(LONG_ARRAY);
+            out.writeInt(array.length);
+            for (long v : array) out.writeLong(v);
+        } else if (value instanceof float[]) {
+            float[] array = (float[]) value;
+            out.writeByte(FLOAT_ARRAY);
+            out.writeInt(array.length);
+            for (float v : array) out.writeFloat(v);
+        } else if (value instanceof double[]) {
+            double[] array = (double[]) value;
+            out.writeByte(DOUBLE_ARRAY);
+            out.writeInt(array.length);
+            for (double v : array) out.writeDouble(v);
+        } else if (value instanceof char[]) {
+            char[] array = (char[]) value;
+            out.writeByte(CHAR_ARRAY);
+            out.writeInt(array.length);
+            for (char v : array) out.writeChar(v);
+        } else if (value instanceof String[]) {
+            String[] array = (String[]) value;
+            out.writeByte(STRING_ARRAY);
+            out.writeInt(array.length);
+            for (String v : array) writeString(out, v);
+        } else {
+            byte componentTag = tagOf(value.getClass().getComponentType());
+            int length = Array.getLength(value);
+            out.writeByte(VALUE_ARRAY);
+            out.writeByte(componentTag);
+            out.writeInt(length);
+            for (int i = 0; i < length; i++) {
+                writeTyped(out, componentTag, Array.get(value, i));
+            }
+        }
+    }
+
+    private static byte tagOf(Class<?> type) {
+        if (LocalDate.class.isAssignableFrom(type)) return DATE;
+        if (LocalTime.class.isAssignableFrom(type)) return LOCAL_TIME;
+        if (OffsetTime.class.isAssignableFrom(type)) return TIME;
+        if (LocalDateTime.class.isAssignableFrom(type)) return LOCAL_DATETIME;
+        if (ZonedDateTime.class.isAssignableFrom(type)) return DATETIME;
+        if (TemporalAmount.class.isAssignableFrom(type)) return DURATION;
+        if (Point.class.isAssignableFrom(type)) return POINT;
+        throw new RuntimeException("Unsupported property type " + type.getName() + " for the binary format");
+    }
+
+    private static Class<?> classOf(byte tag) {
+        switch (tag) {
+            case DATE: return LocalDate.class;
+            case LOCAL_TIME: return LocalTime.class;
+            case TIME: return OffsetTime.class;
+            case LOCAL_DATETIME: return LocalDateTime.class;
+            case DATETIME: return ZonedDateTime.class;
+            case DURATION: return DurationValue.class;
+            case POINT: return Point.class;
+            default: throw new RuntimeException("Unknown value type " + tag + " in binary file");
+        }
+    }
+
+    private static void writeTyped(DataOutput out, byte tag, Object value) throws IOException {
+        switch (tag) {
+            case DATE:
+                out.writeLong(((LocalDate) value).toEpochDay());
+                break;
+            case LOCAL_TIME:
+                out.writeLong(((LocalTime) value).toNanoOfDay());
+                break;
+            case TIME:
+                OffsetTime time = (OffsetTime) value;
+                out.writeLong(time.toLocalTime().toNanoOfDay());
+                out.writeInt(time.getOffset().getTotalSeconds());
+                break;
+            case LOCAL_DATETIME:
+                LocalDateTime localDateTime = (LocalDateTime) value;
+                out.writeLong(localDateTime.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(localDateTime.getNano());
+                break;
+            case DATETIME:
+                ZonedDateTime dateTime = (ZonedDateTime) value;
+                out.writeLong(dateTime.toEpochSecond());
+                out.writeInt(dateTime.getNano());
+                writeString(out, dateTime.getZone().getId());
+                break;
+            case DURATION:
+                DurationValue duration = toDuration((TemporalAmount) value);
+                out.writeLong(duration.get(ChronoUnit.MONTHS));
+                out.writeLong(duration.get(ChronoUnit.DAYS));
+                out.writeLong(duration.get(ChronoUnit.SECONDS));
+                out.writeLong(duration.get(ChronoUnit.NANOS));
+                break;
+            case POINT:
+                Point point = (Point) value;
+                List<Double> coordinates = point.getCoordinate().getCoordinate();
+                out.writeInt(point.getCRS().getCode());
+                out.writeByte(coordinates.size());
+                for (Double coordinate : coordinates) out.writeDouble(coordinate);
+                break;
+            default:
+                throw new RuntimeException("Unsupported value type " + tag + " for the binary format");
+        }
+    }
+
+    private static Object readTyped(ByteBuffer in, byte tag) {
+        switch (tag) {
+            case DATE:
+                return LocalDate.ofEpochDay(in.getLong());
+            case LOCAL_TIME:
+                return LocalTime.ofNanoOfDay(in.getLong());
+            case TIME:
+                LocalTime localTime = LocalTime.ofNanoOfDay(in.getLong());
+                return OffsetTime.of(localTime, ZoneOffset.ofTotalSeconds(in.getInt()));
+            case LOCAL_DATETIME:
+                long epochSecond = in.getLong();
+                return LocalDateTime.ofEpochSecond(epochSecond, in.getInt(), ZoneOffset.UTC);
+            case DATETIME:
+                Instant instant = Instant.ofEpochSecond(in.getLong(), in.getInt());
+                return ZonedDateTime.ofInstant(instant, ZoneId.of(readString(in)));
+            case DURATION:
+                return DurationValue.duration(in.getLong(), in.getLong(), in.getLong(), in.getLong());
+            case POINT:
+                CoordinateReferenceSystem crs = CoordinateReferenceSystem.get(in.getInt());
+                double[] coordinates = new double[in.get()];
+                for (int i = 0; i < coordinates.length; i++) coordinates[i] = in.getDouble();
+                return Values.pointValue(crs, coordinates);
+            default:
+                throw new RuntimeException("Unknown value type " + tag + " in binary file");
+        }
+    }
+
+    private static DurationValue toDuration(TemporalAmount value) {
+        if (value instanceof DurationValue) return (DurationValue) value;
+        if (value instanceof Duration) return DurationValue.duration((Duration) value);
+        if (value instanceof Period) return DurationValue.duration((Period) value);
+        throw new RuntimeException("Unsupported duration type " + value.getClass().getName() + " for the binary format");
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
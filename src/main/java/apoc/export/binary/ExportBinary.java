@@ -0,0 +1,109 @@
+package apoc.export.binary;
+
+import apoc.export.util.ExportConfig;
+import apoc.export.util.NodesAndRelsSubGraph;
+import apoc.export.util.ProgressReporter;
+import apoc.result.ProgressInfo;
+import apoc.util.FileUtils;
+import apoc.util.Util;
+import org.neo4j.cypher.export.CypherResultSubGraph;
+import org.neo4j.cypher.export.DatabaseSubGraph;
+import org.neo4j.cypher.export.SubGraph;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Result;
+import org.neo4j.helpers.collection.Iterables;
+import org.neo4j.procedure.*;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static apoc.util.FileUtils.checkWriteAllowed;
+import static apoc.util.FileUtils.getOutputStream;
+
+/**
+ * Column oriented binary snapshots of the graph, see {@link BinaryFormat} for the layout.
+ */
+public class ExportBinary {
+    @Context
+    public GraphDatabaseService db;
+
+    @Procedure(name = "apoc.import.binary", mode = Mode.WRITE)
+    @Description("apoc.import.binary(file,config) - imports a file written by apoc.export.binary.*")
+    public Stream<ProgressInfo> file(@Name("file") String fileName, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
+        ProgressInfo result =
+        Util.inThread(() -> {
+            ExportConfig exportConfig = new ExportConfig(config);
+            ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(fileName, "file", "binary"));
+            new BinaryGraphReader(db).reporter(reporter)
+                    .batchSize(exportConfig.getBatchSize())
+                    .read(localFile(fileName));
+            return reporter.getTotal();
+        });
+        return Stream.of(result);
+    }
+
+    @Procedure
+    @Description("apoc.export.binary.all(file,config) - exports whole database in the binary format to the provided file")
+    public Stream<ProgressInfo> all(@Name("file") String fileName, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
+
+        String source = String.format("database: nodes(%d), rels(%d)", Util.nodeCount(db), Util.relCount(db));
+        return exportBinary(fileName, source, new DatabaseSubGraph(db), new ExportConfig(config));
+    }
+
+    @Procedure
+    @Description("apoc.export.binary.data(nodes,rels,file,config) - exports given nodes and relationships in the binary format to the provided file")
+    public Stream<ProgressInfo> data(@Name("nodes") List<Node> nodes, @Name("rels") List<Relationship> rels, @Name("file") String fileName, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
+
+        String source = String.format("data: nodes(%d), rels(%d)", nodes.size(), rels.size());
+        return exportBinary(fileName, source, new NodesAndRelsSubGraph(db, nodes, rels), new ExportConfig(config));
+    }
+
+    @Procedure
+    @Description("apoc.export.binary.graph(graph,file,config) - exports given graph object in the binary format to the provided file")
+    public Stream<ProgressInfo> graph(@Name("graph") Map<String,Object> graph, @Name("file") String fileName, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
+
+        Collection<Node> nodes = (Collection<Node>) graph.get("nodes");
+        Collection<Relationship> rels = (Collection<Relationship>) graph.get("relationships");
+        String source = String.format("graph: nodes(%d), rels(%d)", nodes.size(), rels.size());
+        return exportBinary(fileName, source, new NodesAndRelsSubGraph(db, nodes, rels), new ExportConfig(config));
+    }
+
+    @Procedure
+    @Description("apoc.export.binary.query(query,file,config) - exports nodes and relationships from the cypher statement in the binary format to the provided file")
+    public Stream<ProgressInfo> query(@Name("query") String query, @Name("file") String fileName, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws Exception {
+        ExportConfig c = new ExportConfig(config);
+        Result result = db.execute(query);
+        SubGraph graph = CypherResultSubGraph.from(result, db, c.getRelsInBetween());
+        String source = String.format("statement: nodes(%d), rels(%d)",
+                Iterables.count(graph.getNodes()), Iterables.count(graph.getRelationships()));
+        return exportBinary(fileName, source, graph, c);
+    }
+
+    private Stream<ProgressInfo> exportBinary(String fileName, String source, SubGraph graph, ExportConfig config) throws Exception {
+        checkWriteAllowed();
+        if (fileName == null || fileName.equals("-") || !FileUtils.isFile(fileName)) {
+            throw new RuntimeException("The binary format can only be exported to a file");
+        }
+        ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(fileName, source, "binary"));
+        try (OutputStream out = getOutputStream(fileName, null)) {
+            new BinaryGraphWriter().write(graph, out, reporter, config);
+        }
+        return reporter.stream();
+    }
+
+    private static File localFile(String fileName) throws Exception {
+        FileUtils.checkReadAllowed(fileName);
+        if (!FileUtils.isFile(fileName)) {
+            throw new RuntimeException("The binary format can only be imported from a file");
+        }
+        String url = FileUtils.changeFileUrlIfImportDirectoryConstrained(fileName);
+        return url.toLowerCase().startsWith("file:") ? new File(URI.create(url)) : new File(url);
+    }
+}
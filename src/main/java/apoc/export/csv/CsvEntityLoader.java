@@ -52,7 +52,7 @@ public class CsvEntityLoader {
      */
     public void loadNodes(final String fileName, final List<String> labels, final GraphDatabaseService db,
                           final Map<String, Map<String, Long>> idMapping) throws IOException {
-        final CountingReader reader = FileUtils.readerFor(fileName);
+        final CountingReader reader = FileUtils.readerFor(fileName, clc.getCompression());
         final String header = readFirstLine(reader);
         reader.skip(clc.getSkipLines() - 1);
         final List<CsvHeaderField> fields = CsvHeaderFields.processHeader(header, clc.getDelimiter(), clc.getQuotationCharacter());
@@ -162,7 +162,7 @@ public class CsvEntityLoader {
     public void loadRelationships(
             final String fileName, final String type, final GraphDatabaseService db,
             final Map<String, Map<String, Long>> idMapping) throws IOException {
-        final CountingReader reader = FileUtils.readerFor(fileName);
+        final CountingReader reader = FileUtils.readerFor(fileName, clc.getCompression());
         final String header = readFirstLine(reader);
         final List<CsvHeaderField> fields = CsvHeaderFields.processHeader(header, clc.getDelimiter(), clc.getQuotationCharacter());
 
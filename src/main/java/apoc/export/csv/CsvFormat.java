@@ -45,7 +45,11 @@ public class CsvFormat implements Format {
             } else {
                 try (PrintWriter printWriter = writer.getPrintWriter("csv")) {
                     CSVWriter out = getCsvWriter(printWriter, config);
-                    writeAll(graph, reporter, config, out);
+                    if (ParallelExport.supports(graph, config)) {
+                        writeAllParallel(reporter, config, out, printWriter);
+                    } else {
+                        writeAll(graph, reporter, config, out);
+                    }
                 }
             }
             tx.success();
@@ -119,8 +123,8 @@ public class CsvFormat implements Format {
     }
 
     public void writeAll(SubGraph graph, Reporter reporter, ExportConfig config, CSVWriter out) {
-        Map<String,Class> nodePropTypes = collectPropTypesForNodes(graph);
-        Map<String,Class> relPropTypes = collectPropTypesForRelationships(graph);
+        Map<String, Class<?>> nodePropTypes = collectPropTypesForNodes(graph);
+        Map<String, Class<?>> relPropTypes = collectPropTypesForRelationships(graph);
 
         List<String> nodeHeader = generateHeader(nodePropTypes, config.useTypes(), "_id:id", "_labels:label");
         List<String> relHeader = generateHeader(relPropTypes, config.useTypes(), "_start:id", "_end:id", "_type:label");
@@ -129,8 +133,33 @@ public class CsvFormat implements Format {
         out.writeNext(header.toArray(new String[header.size()]), applyQuotesToAll);
         int cols = header.size();
 
-        writeNodes(graph, out, reporter, nodePropTypes, cols, config.getBatchSize(), config.getDelim());
-        writeRels(graph, out, reporter, relPropTypes, cols, nodeHeader.size(), config.getBatchSize(), config.getDelim());
+        writeNodes(graph.getNodes(), out, reporter, nodePropTypes, cols, config.getBatchSize(), config.getDelim());
+        writeRels(graph.getRelationships(), out, reporter, relPropTypes, cols, nodeHeader.size(), config.getBatchSize(), config.getDelim());
+    }
+
+    private void writeAllParallel(Reporter reporter, ExportConfig config, CSVWriter out, Writer writer) throws IOException {
+        ParallelExport parallelExport = new ParallelExport(db, config, "");
+        Map<String, Class<?>> nodePropTypes = parallelExport.collectPropTypesForNodes();
+        Map<String, Class<?>> relPropTypes = parallelExport.collectPropTypesForRelationships();
+
+        List<String> nodeHeader = generateHeader(nodePropTypes, config.useTypes(), "_id:id", "_labels:label");
+        List<String> relHeader = generateHeader(relPropTypes, config.useTypes(), "_start:id", "_end:id", "_type:label");
+        List<String> header = new ArrayList<>(nodeHeader);
+        header.addAll(relHeader);
+        out.writeNext(header.toArray(new String[header.size()]), applyQuotesToAll);
+        out.flush();
+        int cols = header.size();
+
+        parallelExport.writeNodes(writer, reporter, (nodes, chunkWriter, chunkReporter) -> {
+            CSVWriter chunkOut = getCsvWriter(chunkWriter, config);
+            writeNodes(nodes, chunkOut, chunkReporter, nodePropTypes, cols, -1, config.getDelim());
+            chunkOut.flush();
+        });
+        parallelExport.writeRelationships(writer, reporter, (rels, chunkWriter, chunkReporter) -> {
+            CSVWriter chunkOut = getCsvWriter(chunkWriter, config);
+            writeRels(rels, chunkOut, chunkReporter, relPropTypes, cols, nodeHeader.size(), -1, config.getDelim());
+            chunkOut.flush();
+        });
     }
 
     private void writeAllBulkImport(SubGraph graph, Reporter reporter, ExportConfig config, ExportFileManager writer) {
@@ -202,7 +231,7 @@ public class CsvFormat implements Format {
     private Set<String> generateHeaderNode(Map.Entry<Iterable<Label>, List<Node>> entrySet) {
         Set<String> headerNode = new LinkedHashSet<>();
         headerNode.add("id:ID");
-        Map<String,Class> keyTypes = new LinkedHashMap<>();
+        Map<String, Class<?>> keyTypes = new LinkedHashMap<>();
         entrySet.getValue().forEach(node -> updateKeyTypes(keyTypes, node));
         headerNode.addAll(keyTypes.entrySet().stream()
                 .sorted(Map.Entry.comparingByKey())
@@ -214,7 +243,7 @@ public class CsvFormat implements Format {
 
     private Set<String> generateHeaderRelationship(Map.Entry<RelationshipType, List<Relationship>> entrySet) {
         Set<String> headerNode = new LinkedHashSet<>();
-        Map<String,Class> keyTypes = new LinkedHashMap<>();
+        Map<String, Class<?>> keyTypes = new LinkedHashMap<>();
         entrySet.getValue().forEach(relationship -> updateKeyTypes(keyTypes, relationship));
         headerNode.addAll(keyTypes.entrySet().stream()
                 .sorted(Map.Entry.comparingByKey())
@@ -247,7 +276,7 @@ public class CsvFormat implements Format {
         writeRels(graph, out, reporter,config);
     }
 
-    private List<String> generateHeader(Map<String, Class> propTypes, boolean useTypes, String... starters) {
+    private List<String> generateHeader(Map<String, Class<?>> propTypes, boolean useTypes, String... starters) {
         List<String> result = new ArrayList<>();
         if (useTypes) {
             Collections.addAll(result, starters);
@@ -266,18 +295,18 @@ public class CsvFormat implements Format {
     }
 
     private void writeNodes(SubGraph graph, CSVWriter out, Reporter reporter, ExportConfig config) {
-        Map<String,Class> nodePropTypes = collectPropTypesForNodes(graph);
+        Map<String, Class<?>> nodePropTypes = collectPropTypesForNodes(graph);
         List<String> nodeHeader = generateHeader(nodePropTypes, config.useTypes(), "_id:id", "_labels:label");
         String[] header = nodeHeader.toArray(new String[nodeHeader.size()]);
         out.writeNext(header, applyQuotesToAll); // todo types
         int cols = header.length;
-        writeNodes(graph, out, reporter, nodePropTypes, cols, config.getBatchSize(), config.getDelim());
+        writeNodes(graph.getNodes(), out, reporter, nodePropTypes, cols, config.getBatchSize(), config.getDelim());
     }
 
-    private void writeNodes(SubGraph graph, CSVWriter out, Reporter reporter, Map<String, Class> nodePropTypes, int cols, int batchSize, String delimiter) {
+    private void writeNodes(Iterable<Node> graphNodes, CSVWriter out, Reporter reporter, Map<String, Class<?>> nodePropTypes, int cols, int batchSize, String delimiter) {
         String[] row=new String[cols];
         int nodes = 0;
-        for (Node node : graph.getNodes()) {
+        for (Node node : graphNodes) {
             row[0]=String.valueOf(node.getId());
             row[1]=getLabelsString(node);
             collectProps(nodePropTypes.keySet(), node, reporter, row, 2, delimiter);
@@ -307,18 +336,18 @@ public class CsvFormat implements Format {
     }
 
     private void writeRels(SubGraph graph, CSVWriter out, Reporter reporter, ExportConfig config) {
-        Map<String,Class> relPropTypes = collectPropTypesForRelationships(graph);
+        Map<String, Class<?>> relPropTypes = collectPropTypesForRelationships(graph);
         List<String> header = generateHeader(relPropTypes, config.useTypes(), "_start:id", "_end:id", "_type:label");
         out.writeNext(header.toArray(new String[header.size()]), applyQuotesToAll);
         int cols = header.size();
         int offset = 0;
-        writeRels(graph, out, reporter, relPropTypes, cols, offset, config.getBatchSize(), config.getDelim());
+        writeRels(graph.getRelationships(), out, reporter, relPropTypes, cols, offset, config.getBatchSize(), config.getDelim());
     }
 
-    private void writeRels(SubGraph graph, CSVWriter out, Reporter reporter, Map<String, Class> relPropTypes, int cols, int offset, int batchSize, String delimiter) {
+    private void writeRels(Iterable<Relationship> graphRels, CSVWriter out, Reporter reporter, Map<String, Class<?>> relPropTypes, int cols, int offset, int batchSize, String delimiter) {
         String[] row=new String[cols];
         int rels = 0;
-        for (Relationship rel : graph.getRelationships()) {
+        for (Relationship rel : graphRels) {
             row[offset]=String.valueOf(rel.getStartNode().getId());
             row[offset+1]=String.valueOf(rel.getEndNode().getId());
             row[offset+2]=rel.getType().name();
@@ -15,6 +15,7 @@ public class CsvLoaderConfig {
     public static final String SKIP_LINES = "skipLines";
     public static final String BATCH_SIZE = "batchSize";
     public static final String IGNORE_DUPLICATE_NODES = "ignoreDuplicateNodes";
+    public static final String COMPRESSION = "compression";
 
     public static char DELIMITER_DEFAULT = ',';
     public static char ARRAY_DELIMITER_DEFAULT = ';';
@@ -31,6 +32,7 @@ public class CsvLoaderConfig {
     private final int skipLines;
     private final int batchSize;
     private final boolean ignoreDuplicateNodes;
+    private final String compression;
 
     private CsvLoaderConfig(Builder builder) {
         this.delimiter = builder.delimiter;
@@ -40,6 +42,7 @@ public class CsvLoaderConfig {
         this.skipLines = builder.skipLines;
         this.batchSize = builder.batchSize;
         this.ignoreDuplicateNodes = builder.ignoreDuplicateNodes;
+        this.compression = builder.compression;
     }
 
     public char getDelimiter() {
@@ -68,6 +71,8 @@ public class CsvLoaderConfig {
 
     public boolean getIgnoreDuplicateNodes() { return ignoreDuplicateNodes; }
 
+    public String getCompression() { return compression; }
+
     /**
      * Creates builder to build {@link CsvLoaderConfig}.
      *
@@ -102,6 +107,7 @@ public class CsvLoaderConfig {
         if (config.get(SKIP_LINES) != null) builder.skipLines((int) config.get(SKIP_LINES));
         if (config.get(BATCH_SIZE) != null) builder.batchSize((int) config.get(BATCH_SIZE));
         if (config.get(IGNORE_DUPLICATE_NODES) != null) builder.ignoreDuplicateNodes((boolean) config.get(IGNORE_DUPLICATE_NODES));
+        if (config.get(COMPRESSION) != null) builder.compression((String) config.get(COMPRESSION));
 
         return builder.build();
     }
@@ -117,6 +123,7 @@ public class CsvLoaderConfig {
         private int skipLines = SKIP_LINES_DEFAULT;
         private int batchSize = BATCH_SIZE_DEFAULT;
         private boolean ignoreDuplicateNodes = IGNORE_DUPLICATE_NODES_DEFAULT;
+        private String compression;
 
         private Builder() {
         }
@@ -156,6 +163,11 @@ public class CsvLoaderConfig {
             return this;
         }
 
+        public Builder compression(String compression) {
+            this.compression = compression;
+            return this;
+        }
+
         public CsvLoaderConfig build() {
             return new CsvLoaderConfig(this);
         }
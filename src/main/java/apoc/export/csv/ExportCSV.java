@@ -93,13 +93,13 @@ public class ExportCSV {
 
     private Stream<ProgressInfo> exportCsv(@Name("file") String fileName, String source, Object data, ExportConfig exportConfig) throws Exception {
         checkWriteAllowed();
-        ProgressInfo progressInfo = new ProgressInfo(fileName, source, "csv");
+        ProgressInfo progressInfo = new ProgressInfo(exportConfig.getCompression().fileName(fileName), source, "csv");
         progressInfo.batchSize = exportConfig.getBatchSize();
         ProgressReporter reporter = new ProgressReporter(null, null, progressInfo);
         CsvFormat exporter = new CsvFormat(db);
 
         ExportFileManager cypherFileManager = FileManagerFactory
-                .createFileManager(fileName, exportConfig.isBulkImport(), exportConfig.streamStatements());
+                .createFileManager(fileName, exportConfig.isBulkImport(), exportConfig.streamStatements(), exportConfig.getCompression());
 
         if (exportConfig.streamStatements()) {
             long timeout = exportConfig.getTimeoutSeconds();
@@ -120,9 +120,13 @@ public class ExportCSV {
     }
 
     private void dump(Object data, ExportConfig c, ProgressReporter reporter, ExportFileManager printWriter, CsvFormat exporter) throws Exception {
-        if (data instanceof SubGraph)
-            exporter.dump((SubGraph)data,printWriter,reporter,c);
-        if (data instanceof Result)
-            exporter.dump((Result)data,printWriter,reporter,c);
+        try {
+            if (data instanceof SubGraph)
+                exporter.dump((SubGraph)data,printWriter,reporter,c);
+            if (data instanceof Result)
+                exporter.dump((Result)data,printWriter,reporter,c);
+        } finally {
+            printWriter.close();
+        }
     }
 }
\ No newline at end of file
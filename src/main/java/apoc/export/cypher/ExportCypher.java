@@ -94,11 +94,11 @@ public class ExportCypher {
     private Stream<DataProgressInfo> exportCypher(@Name("file") String fileName, String source, SubGraph graph, ExportConfig c, boolean onlySchema) throws IOException {
         if (fileName != null) checkWriteAllowed();
 
-        ProgressInfo progressInfo = new ProgressInfo(fileName, source, "cypher");
+        ProgressInfo progressInfo = new ProgressInfo(c.getCompression().fileName(fileName), source, "cypher");
         progressInfo.batchSize = c.getBatchSize();
         ProgressReporter reporter = new ProgressReporter(null, null, progressInfo);
         boolean separatedFiles = !onlySchema && c.separateFiles();
-        ExportFileManager cypherFileManager = FileManagerFactory.createFileManager(fileName, separatedFiles, c.streamStatements());
+        ExportFileManager cypherFileManager = FileManagerFactory.createFileManager(fileName, separatedFiles, c.streamStatements(), c.getCompression());
 
         if (c.streamStatements()) {
             long timeout = c.getTimeoutSeconds();
@@ -115,12 +115,16 @@ public class ExportCypher {
     }
 
     private void doExport(SubGraph graph, ExportConfig c, boolean onlySchema, ProgressReporter reporter, ExportFileManager cypherFileManager) throws IOException {
-        MultiStatementCypherSubGraphExporter exporter = new MultiStatementCypherSubGraphExporter(graph, c, db);
-
-        if (onlySchema)
-            exporter.exportOnlySchema(cypherFileManager);
-        else
-            exporter.export(c, reporter, cypherFileManager);
+        try {
+            MultiStatementCypherSubGraphExporter exporter = new MultiStatementCypherSubGraphExporter(graph, c, db);
+
+            if (onlySchema)
+                exporter.exportOnlySchema(cypherFileManager);
+            else
+                exporter.export(c, reporter, cypherFileManager);
+        } finally {
+            cypherFileManager.close();
+        }
     }
 
     public static class DataProgressInfo {
@@ -12,4 +12,7 @@ public interface ExportFileManager {
     String drain(String type);
 
     String getFileName();
+
+    default void close() throws IOException {
+    }
 }
@@ -1,10 +1,13 @@
 package apoc.export.cypher;
 
+import apoc.util.CompressionAlgo;
 import apoc.util.FileUtils;
 
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -14,41 +17,57 @@ import java.util.concurrent.ConcurrentMap;
  */
 public class FileManagerFactory {
     public static ExportFileManager createFileManager(String fileName, boolean separatedFiles, boolean b) {
+        return createFileManager(fileName, separatedFiles, b, CompressionAlgo.NONE);
+    }
+
+    public static ExportFileManager createFileManager(String fileName, boolean separatedFiles, boolean b, CompressionAlgo compression) {
         if (fileName == null) {
             return new StringExportCypherFileManager(separatedFiles);
         }
 
         int indexOfDot = fileName.lastIndexOf(".");
         String fileType = fileName.substring(indexOfDot + 1);
-        return new PhysicalExportFileManager(fileType, fileName, separatedFiles);
+        return new PhysicalExportFileManager(fileType, fileName, separatedFiles, compression);
     }
 
     private static class PhysicalExportFileManager implements ExportFileManager {
 
         private final String fileName;
         private final String fileType;
+        private final CompressionAlgo compression;
         private boolean separatedFiles;
         private PrintWriter writer;
+        private final List<PrintWriter> writers = new ArrayList<>();
 
-        public PhysicalExportFileManager(String fileType, String fileName, boolean separatedFiles) {
+        public PhysicalExportFileManager(String fileType, String fileName, boolean separatedFiles, CompressionAlgo compression) {
             this.fileType = fileType;
             this.fileName = fileName;
             this.separatedFiles = separatedFiles;
+            this.compression = compression;
         }
 
         @Override
         public PrintWriter getPrintWriter(String type) throws IOException {
 
             if (this.separatedFiles) {
-                return FileUtils.getPrintWriter(normalizeFileName(fileName, type), null);
+                PrintWriter printWriter = FileUtils.getPrintWriter(normalizeFileName(fileName, type), null, compression);
+                writers.add(printWriter);
+                return printWriter;
             } else {
                 if (this.writer == null) {
-                    this.writer = FileUtils.getPrintWriter(normalizeFileName(fileName, null), null);
+                    this.writer = FileUtils.getPrintWriter(normalizeFileName(fileName, null), null, compression);
+                    writers.add(this.writer);
                 }
                 return this.writer;
             }
         }
 
+        @Override
+        public void close() {
+            writers.forEach(PrintWriter::close);
+            writers.clear();
+        }
+
         @Override
         public StringWriter getStringWriter(String type) {
             return null;
@@ -1,5 +1,6 @@
 package apoc.export.graphml;
 
+import apoc.export.util.CountingReader;
 import apoc.export.util.ExportConfig;
 import apoc.export.util.NodesAndRelsSubGraph;
 import apoc.export.util.ProgressReporter;
@@ -40,7 +41,8 @@ public class ExportGraphML {
         ProgressInfo result =
         Util.inThread(() -> {
             ExportConfig exportConfig = new ExportConfig(config);
-            ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(fileName, "file", "graphml"));
+            CountingReader reader = FileUtils.readerFor(fileName, config == null ? null : config.get("compression"));
+            ProgressReporter reporter = new ProgressReporter(reader, null, new ProgressInfo(fileName, "file", "graphml"));
             XmlGraphMLReader graphMLReader = new XmlGraphMLReader(db).reporter(reporter)
                     .batchSize(exportConfig.getBatchSize())
                     .relType(exportConfig.defaultRelationshipType())
@@ -49,7 +51,7 @@ public class ExportGraphML {
             if (exportConfig.storeNodeIds()) graphMLReader.storeNodeIds();
 
 
-            graphMLReader.parseXML(FileUtils.readerFor(fileName));
+            graphMLReader.parseXML(reader);
             return reporter.getTotal();
         });
         return Stream.of(result);
@@ -92,12 +94,15 @@ public class ExportGraphML {
 
     private Stream<ProgressInfo> exportGraphML(@Name("file") String fileName, String source, SubGraph graph, ExportConfig config) throws Exception, XMLStreamException {
         if (fileName != null) checkWriteAllowed();
-        ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(fileName, source, "graphml"));
-        PrintWriter printWriter = getPrintWriter(fileName, null);
-        XmlGraphMLWriter exporter = new XmlGraphMLWriter();
-        exporter.write(graph, printWriter, reporter, config);
-        printWriter.flush();
-        printWriter.close();
+        ProgressReporter reporter = new ProgressReporter(null, null, new ProgressInfo(config.getCompression().fileName(fileName), source, "graphml"));
+        PrintWriter printWriter = getPrintWriter(fileName, null, config.getCompression());
+        try {
+            XmlGraphMLWriter exporter = new XmlGraphMLWriter(db);
+            exporter.write(graph, printWriter, reporter, config);
+            printWriter.flush();
+        } finally {
+            printWriter.close();
+        }
         return reporter.stream();
     }
 }
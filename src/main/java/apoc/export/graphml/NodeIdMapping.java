@@ -0,0 +1,72 @@
+package apoc.export.graphml;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongLongMap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps GraphML node ids to the ids of the created nodes.
+ * Ids made of a common prefix and a number (like {@code n42} or {@code 42}, as written by most tools) are kept in a
+ * primitive long map, all other ids fall back to a map of strings.
+ */
+class NodeIdMapping implements AutoCloseable {
+    static final long NOT_FOUND = -1;
+    private static final int MAX_DIGITS = 18;
+
+    private final PrimitiveLongLongMap numericIds = Primitive.longLongMap(1024 * 32);
+    private final Map<String, Long> otherIds = new HashMap<>();
+    private String prefix;
+
+    void put(String id, long nodeId) {
+        long numeric = numericPart(id, true);
+        if (numeric == NOT_FOUND) {
+            otherIds.put(id, nodeId);
+        } else {
+            numericIds.put(numeric, nodeId);
+        }
+    }
+
+    long get(String id) {
+        if (id == null) return NOT_FOUND;
+        long numeric = numericPart(id, false);
+        if (numeric == NOT_FOUND) {
+            Long nodeId = otherIds.get(id);
+            return nodeId == null ? NOT_FOUND : nodeId;
+        }
+        return numericIds.get(numeric);
+    }
+
+    /**
+     * @return the number after the shared prefix, or {@link #NOT_FOUND} if the id doesn't have that shape
+     */
+    private long numericPart(String id, boolean define) {
+        int start = id.length();
+        while (start > 0 && isDigit(id.charAt(start - 1))) start--;
+        int digits = id.length() - start;
+        if (digits == 0 || digits > MAX_DIGITS) return NOT_FOUND;
+        // leading zeros would map different ids to the same number
+        if (digits > 1 && id.charAt(start) == '0') return NOT_FOUND;
+        if (prefix == null) {
+            if (!define) return NOT_FOUND;
+            prefix = id.substring(0, start);
+        } else if (start != prefix.length() || !id.startsWith(prefix)) {
+            return NOT_FOUND;
+        }
+        long value = 0;
+        for (int i = start; i < id.length(); i++) {
+            value = value * 10 + (id.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    @Override
+    public void close() {
+        numericIds.close();
+    }
+}
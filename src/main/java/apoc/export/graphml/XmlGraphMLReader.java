@@ -16,10 +16,22 @@ import javax.xml.stream.events.StartElement;
 import javax.xml.stream.events.XMLEvent;
 import java.io.Reader;
 import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Created by mh on 10.07.13.
@@ -27,6 +39,9 @@ import java.util.function.Function;
 public class XmlGraphMLReader {
 
     public static final String LABEL_SPLIT = " *: *";
+    private static final int PIPELINE_BATCH_SIZE = 1000;
+    private static final int QUEUE_CAPACITY = 16;
+    private static final List<Entity> END = new ArrayList<>();
     private final GraphDatabaseService gdb;
     private boolean storeNodeIds;
     private RelationshipType defaultRelType = RelationshipType.withName("UNKNOWN");
@@ -163,6 +178,85 @@ public class XmlGraphMLReader {
         }
     }
 
+    /**
+     * Node or edge parsed from the file, {@code dataProperties} counts the properties read from data elements.
+     */
+    abstract static class Entity {
+        final Map<String, Object> properties = new LinkedHashMap<>();
+        int dataProperties;
+
+        void setProperty(String name, Object value) {
+            properties.put(name, value);
+            dataProperties++;
+        }
+
+        abstract void create(XmlGraphMLReader reader, NodeIdMapping idMapping);
+
+        void setProperties(PropertyContainer pc) {
+            for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                pc.setProperty(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    static class NodeEntity extends Entity {
+        final String id;
+        final List<Label> labels = new ArrayList<>();
+
+        NodeEntity(String id) {
+            this.id = id;
+        }
+
+        void addLabels(String labels) {
+            if (labels==null) return;
+            labels = labels.trim();
+            if (labels.isEmpty()) return;
+            String[] parts = labels.split(LABEL_SPLIT);
+            for (String part : parts) {
+                if (part.trim().isEmpty()) continue;
+                Label label = Label.label(part.trim());
+                if (!this.labels.contains(label)) this.labels.add(label);
+            }
+        }
+
+        @Override
+        void create(XmlGraphMLReader reader, NodeIdMapping idMapping) {
+            Node node = reader.gdb.createNode(labels.toArray(new Label[labels.size()]));
+            setProperties(node);
+            idMapping.put(id, node.getId());
+            if (reader.reporter != null) reader.reporter.update(1, 0, dataProperties);
+        }
+    }
+
+    static class EdgeEntity extends Entity {
+        final String source;
+        final String target;
+        final RelationshipType type;
+
+        EdgeEntity(String source, String target, RelationshipType type) {
+            this.source = source;
+            this.target = target;
+            this.type = type;
+        }
+
+        @Override
+        void create(XmlGraphMLReader reader, NodeIdMapping idMapping) {
+            Node from = reader.gdb.getNodeById(nodeId(idMapping, source));
+            Node to = reader.gdb.getNodeById(nodeId(idMapping, target));
+            Relationship relationship = from.createRelationshipTo(to, type);
+            setProperties(relationship);
+            if (reader.reporter != null) reader.reporter.update(0, 1, dataProperties);
+        }
+
+        private static long nodeId(NodeIdMapping idMapping, String id) {
+            long nodeId = idMapping.get(id);
+            if (nodeId == NodeIdMapping.NOT_FOUND) {
+                throw new RuntimeException("Node with id " + id + " referenced by an edge is not defined before the edge");
+            }
+            return nodeId;
+        }
+    }
+
     public static final QName ID = QName.valueOf("id");
     public static final QName LABELS = QName.valueOf("labels");
     public static final QName SOURCE = QName.valueOf("source");
@@ -178,98 +272,161 @@ public class XmlGraphMLReader {
         this.gdb = gdb;
     }
 
+    /**
+     * Parses the GraphML on a thread of its own, which hands batches of parsed nodes and edges over to the calling thread
+     * that creates them in batched transactions. The parser doesn't use one of the shared pools: the caller may already run
+     * on it (e.g. inside apoc.periodic.iterate) and would then wait forever for a task queued behind itself.
+     */
     public long parseXML(Reader input) throws XMLStreamException {
-        Map<String, Long> cache = new HashMap<>(1024*32);
+        BlockingQueue<List<Entity>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ExecutorService parserPool = Executors.newSingleThreadExecutor();
+        Future<?> parser = parserPool.submit(() -> {
+            try {
+                tokenize(input, (batch) -> handOver(queue, batch, cancelled));
+            } catch (Throwable t) {
+                failure.set(t);
+            } finally {
+                handOver(queue, END, cancelled);
+            }
+        });
+
+        long start = System.currentTimeMillis();
+        long count = 0;
+        try (NodeIdMapping idMapping = new NodeIdMapping();
+             BatchTransaction tx = new BatchTransaction(gdb, batchSize * 10, reporter)) {
+            List<Entity> batch;
+            while ((batch = queue.take()) != END) {
+                for (Entity entity : batch) {
+                    tx.increment();
+                    entity.create(this, idMapping);
+                    count++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while importing graphml", e);
+        } finally {
+            cancelled.set(true);
+            queue.clear();
+            joinQuietly(parser);
+            parserPool.shutdown();
+        }
+        Throwable error = failure.get();
+        if (error instanceof XMLStreamException) throw (XMLStreamException) error;
+        if (error instanceof RuntimeException) throw (RuntimeException) error;
+        if (error != null) throw new RuntimeException(error);
+        if (reporter != null) {
+            long millis = Math.max(1, System.currentTimeMillis() - start);
+            reporter.progress("imported " + count + " entities with " + (count * 1000 / millis) + " entities/s,");
+        }
+        return count;
+    }
+
+    private static boolean handOver(BlockingQueue<List<Entity>> queue, List<Entity> batch, AtomicBoolean cancelled) {
+        try {
+            while (!cancelled.get()) {
+                if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private static void joinQuietly(Future<?> parser) {
+        try {
+            parser.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // the failure of the parser is reported through the failure reference
+        }
+    }
+
+    private void tokenize(Reader input, Predicate<List<Entity>> consumer) throws XMLStreamException {
         XMLInputFactory inputFactory = XMLInputFactory.newInstance();
         inputFactory.setProperty("javax.xml.stream.isCoalescing", true);
         inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
         XMLEventReader reader = inputFactory.createXMLEventReader(input);
-        PropertyContainer last = null;
+        Entity last = null;
         Map<String, Key> nodeKeys = new HashMap<>();
         Map<String, Key> relKeys = new HashMap<>();
-        int count = 0;
-        try (BatchTransaction tx = new BatchTransaction(gdb, batchSize * 10, reporter)) {
+        List<Entity> batch = new ArrayList<>(PIPELINE_BATCH_SIZE);
 
-            while (reader.hasNext()) {
-                XMLEvent event = (XMLEvent) reader.next();
-                if (event.isStartElement()) {
+        while (reader.hasNext()) {
+            XMLEvent event = (XMLEvent) reader.next();
+            if (event.isStartElement()) {
 
-                    StartElement element = event.asStartElement();
-                    String name = element.getName().getLocalPart();
+                StartElement element = event.asStartElement();
+                String name = element.getName().getLocalPart();
 
-                    if (name.equals("graphml") || name.equals("graph")) continue;
-                    if (name.equals("key")) {
-                        String id = getAttribute(element, ID);
-                        Key key = new Key(id, getAttribute(element, NAME), getAttribute(element, TYPE), getAttribute(element, LIST), getAttribute(element, FOR));
+                if (name.equals("graphml") || name.equals("graph")) continue;
+                if (name.equals("key")) {
+                    String id = getAttribute(element, ID);
+                    Key key = new Key(id, getAttribute(element, NAME), getAttribute(element, TYPE), getAttribute(element, LIST), getAttribute(element, FOR));
 
-                        XMLEvent next = peek(reader);
-                        if (next.isStartElement() && next.asStartElement().getName().getLocalPart().equals("default")) {
-                            reader.nextEvent().asStartElement();
-                            key.setDefault(reader.nextEvent().asCharacters().getData());
-                        }
-                        if (key.forNode) nodeKeys.put(id, key);
-                        else relKeys.put(id, key);
-                        continue;
+                    XMLEvent next = peek(reader);
+                    if (next.isStartElement() && next.asStartElement().getName().getLocalPart().equals("default")) {
+                        reader.nextEvent().asStartElement();
+                        key.setDefault(reader.nextEvent().asCharacters().getData());
                     }
-                    if (name.equals("data")) {
-                        if (last == null) continue;
-                        String id = getAttribute(element, KEY);
-                        boolean isNode = last instanceof Node;
-                        Key key = isNode ? nodeKeys.get(id) : relKeys.get(id);
-                        if (key == null) key = Key.defaultKey(id, isNode);
-                        Object value = key.defaultValue;
-                        XMLEvent next = peek(reader);
-                        if (next.isCharacters()) {
-                            value = key.parseValue(reader.nextEvent().asCharacters().getData());
-                        }
-                        if (value != null) {
-                            if (this.labels && isNode && id.equals("labels")) {
-                                addLabels((Node)last,value.toString());
-                            } else if (!this.labels || isNode || !id.equals("label")) {
-                                last.setProperty(key.name, value);
-                                if (reporter != null) reporter.update(0, 0, 1);
-                            }
-                        } else if (next.getEventType() == XMLStreamConstants.END_ELEMENT) {
-                            last.setProperty(key.name, StringUtils.EMPTY);
-                            reporter.update(0, 0, 1);
-                        }
-                        continue;
+                    if (key.forNode) nodeKeys.put(id, key);
+                    else relKeys.put(id, key);
+                    continue;
+                }
+                if (name.equals("data")) {
+                    if (last == null) continue;
+                    String id = getAttribute(element, KEY);
+                    boolean isNode = last instanceof NodeEntity;
+                    Key key = isNode ? nodeKeys.get(id) : relKeys.get(id);
+                    if (key == null) key = Key.defaultKey(id, isNode);
+                    Object value = key.defaultValue;
+                    XMLEvent next = peek(reader);
+                    if (next.isCharacters()) {
+                        value = key.parseValue(reader.nextEvent().asCharacters().getData());
                     }
-                    if (name.equals("node")) {
-                        tx.increment();
-                        String id = getAttribute(element, ID);
-                        Node node = gdb.createNode();
-                        if (this.labels) {
-                            String labels = getAttribute(element, LABELS);
-                            addLabels(node, labels);
+                    if (value != null) {
+                        if (this.labels && isNode && id.equals("labels")) {
+                            ((NodeEntity) last).addLabels(value.toString());
+                        } else if (!this.labels || isNode || !id.equals("label")) {
+                            last.setProperty(key.name, value);
                         }
-                        if (storeNodeIds) node.setProperty("id", id);
-                        setDefaults(nodeKeys, node);
-                        last = node;
-                        cache.put(id, node.getId());
-                        if (reporter != null) reporter.update(1, 0, 0);
-                        count++;
-                        continue;
+                    } else if (next.getEventType() == XMLStreamConstants.END_ELEMENT) {
+                        last.setProperty(key.name, StringUtils.EMPTY);
                     }
-                    if (name.equals("edge")) {
-                        tx.increment();
-                        String source = getAttribute(element, SOURCE);
-                        String target = getAttribute(element, TARGET);
-                        String label = getAttribute(element, LABEL);
-                        Node from = gdb.getNodeById(cache.get(source));
-                        Node to = gdb.getNodeById(cache.get(target));
-
-                        RelationshipType relationshipType = label == null ? getRelationshipType(reader) : RelationshipType.withName(label);
-                        Relationship relationship = from.createRelationshipTo(to, relationshipType);
-                        setDefaults(relKeys, relationship);
-                        last = relationship;
-                        if (reporter != null) reporter.update(0, 1, 0);
-                        count++;
+                    continue;
+                }
+                if (name.equals("node")) {
+                    String id = getAttribute(element, ID);
+                    NodeEntity node = new NodeEntity(id);
+                    if (this.labels) {
+                        node.addLabels(getAttribute(element, LABELS));
                     }
+                    if (storeNodeIds) node.properties.put("id", id);
+                    setDefaults(nodeKeys, node);
+                    last = node;
+                } else if (name.equals("edge")) {
+                    String source = getAttribute(element, SOURCE);
+                    String target = getAttribute(element, TARGET);
+                    String label = getAttribute(element, LABEL);
+                    RelationshipType relationshipType = label == null ? getRelationshipType(reader) : RelationshipType.withName(label);
+                    EdgeEntity edge = new EdgeEntity(source, target, relationshipType);
+                    setDefaults(relKeys, edge);
+                    last = edge;
+                } else {
+                    continue;
+                }
+                // the previous entity is complete once the next one starts
+                if (batch.size() >= PIPELINE_BATCH_SIZE) {
+                    if (!consumer.test(batch)) return;
+                    batch = new ArrayList<>(PIPELINE_BATCH_SIZE);
                 }
+                batch.add(last);
             }
         }
-        return count;
+        if (!batch.isEmpty()) consumer.test(batch);
     }
 
     private RelationshipType getRelationshipType(XMLEventReader reader) throws XMLStreamException {
@@ -288,17 +445,6 @@ public class XmlGraphMLReader {
         return defaultRelType;
     }
 
-    private void addLabels(Node node, String labels) {
-        if (labels==null) return;
-        labels = labels.trim();
-        if (labels.isEmpty()) return;
-        String[] parts = labels.split(LABEL_SPLIT);
-        for (String part : parts) {
-            if (part.trim().isEmpty()) continue;
-            node.addLabel(Label.label(part.trim()));
-        }
-    }
-
     private XMLEvent peek(XMLEventReader reader) throws XMLStreamException {
         XMLEvent peek = reader.peek();
         if (peek.isCharacters() && (peek.asCharacters().isWhiteSpace())) {
@@ -308,10 +454,10 @@ public class XmlGraphMLReader {
         return peek;
     }
 
-    private void setDefaults(Map<String, Key> keys, PropertyContainer pc) {
+    private void setDefaults(Map<String, Key> keys, Entity entity) {
         if (keys.isEmpty()) return;
         for (Key key : keys.values()) {
-            if (key.defaultValue!=null) pc.setProperty(key.name,key.defaultValue);
+            if (key.defaultValue!=null) entity.properties.put(key.name,key.defaultValue);
         }
     }
 
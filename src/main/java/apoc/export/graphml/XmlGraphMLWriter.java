@@ -2,6 +2,7 @@ package apoc.export.graphml;
 
 import apoc.export.util.*;
 import org.neo4j.cypher.export.SubGraph;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Relationship;
@@ -20,52 +21,108 @@ import static apoc.export.util.MetaInformation.*;
  * @since 21.01.14
  */
 public class XmlGraphMLWriter {
+    private final GraphDatabaseService db;
+
+    public XmlGraphMLWriter() {
+        this(null);
+    }
+
+    public XmlGraphMLWriter(GraphDatabaseService db) {
+        this.db = db;
+    }
 
     public void write(SubGraph graph, Writer writer, Reporter reporter, ExportConfig config) throws Exception {
         XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
         XMLStreamWriter xmlWriter = xmlOutputFactory.createXMLStreamWriter(writer);
         writeHeader(xmlWriter);
-        writeKey(xmlWriter, graph, config);
+        if (db != null && ParallelExport.supports(graph, config)) {
+            writeParallel(xmlOutputFactory, xmlWriter, writer, reporter, config);
+        } else {
+            writeKey(xmlWriter, graph, config);
+            writeGraph(xmlWriter);
+            writeNodes(xmlWriter, graph.getNodes(), reporter, config);
+            writeRelationships(xmlWriter, graph.getRelationships(), reporter, config);
+        }
+        writeFooter(xmlWriter);
+    }
+
+    private void writeParallel(XMLOutputFactory xmlOutputFactory, XMLStreamWriter xmlWriter, Writer writer, Reporter reporter, ExportConfig config) throws Exception {
+        ParallelExport parallelExport = new ParallelExport(db, config, "");
+        Map<String, Class<?>> nodeKeyTypes = new HashMap<>();
+        parallelExport.forEachNodePartition((nodes) -> collectNodeKeyTypes(new HashMap<>(), nodes), (keyTypes) -> mergeKeyTypes(nodeKeyTypes, keyTypes));
+        Map<String, Class<?>> relKeyTypes = new HashMap<>();
+        parallelExport.forEachRelationshipPartition((rels) -> collectRelationshipKeyTypes(new HashMap<>(), rels), (keyTypes) -> mergeKeyTypes(relKeyTypes, keyTypes));
+        writeKey(xmlWriter, nodeKeyTypes, relKeyTypes, config);
         writeGraph(xmlWriter);
-        for (Node node : graph.getNodes()) {
+        xmlWriter.flush();
+        parallelExport.writeNodes(writer, reporter, (nodes, chunkWriter, chunkReporter) -> {
+            XMLStreamWriter chunkXmlWriter = xmlOutputFactory.createXMLStreamWriter(chunkWriter);
+            writeNodes(chunkXmlWriter, nodes, chunkReporter, config);
+            chunkXmlWriter.flush();
+        });
+        parallelExport.writeRelationships(writer, reporter, (rels, chunkWriter, chunkReporter) -> {
+            XMLStreamWriter chunkXmlWriter = xmlOutputFactory.createXMLStreamWriter(chunkWriter);
+            writeRelationships(chunkXmlWriter, rels, chunkReporter, config);
+            chunkXmlWriter.flush();
+        });
+    }
+
+    private void writeNodes(XMLStreamWriter xmlWriter, Iterable<Node> nodes, Reporter reporter, ExportConfig config) throws XMLStreamException {
+        for (Node node : nodes) {
             int props = writeNode(xmlWriter, node, config);
             reporter.update(1, 0, props);
         }
-        for (Relationship rel : graph.getRelationships()) {
+    }
+
+    private void writeRelationships(XMLStreamWriter xmlWriter, Iterable<Relationship> rels, Reporter reporter, ExportConfig config) throws XMLStreamException {
+        for (Relationship rel : rels) {
             int props = writeRelationship(xmlWriter, rel, config);
             reporter.update(0, 1, props);
         }
-        writeFooter(xmlWriter);
     }
 
     private void writeKey(XMLStreamWriter writer, SubGraph ops, ExportConfig config) throws Exception {
-        Map<String, Class> keyTypes = new HashMap<>();
-        for (Node node : ops.getNodes()) {
+        Map<String, Class<?>> nodeKeyTypes = new HashMap<>();
+        collectNodeKeyTypes(nodeKeyTypes, ops.getNodes());
+        Map<String, Class<?>> relKeyTypes = new HashMap<>();
+        collectRelationshipKeyTypes(relKeyTypes, ops.getRelationships());
+        writeKey(writer, nodeKeyTypes, relKeyTypes, config);
+    }
+
+    private void writeKey(XMLStreamWriter writer, Map<String, Class<?>> nodeKeyTypes, Map<String, Class<?>> relKeyTypes, ExportConfig config) throws Exception {
+        boolean useTypes = config.useTypes();
+        ExportFormat format = config.getFormat();
+        if (format == ExportFormat.GEPHI) {
+            nodeKeyTypes.put("TYPE", String.class);
+        }
+        writeKey(writer, nodeKeyTypes, "node", useTypes);
+        if (format == ExportFormat.GEPHI) {
+            relKeyTypes.put("TYPE", String.class);
+        }
+        writeKey(writer, relKeyTypes, "edge", useTypes);
+    }
+
+    private static Map<String, Class<?>> collectNodeKeyTypes(Map<String, Class<?>> keyTypes, Iterable<Node> nodes) {
+        for (Node node : nodes) {
             if (node.getLabels().iterator().hasNext()) {
                 keyTypes.put("label", String.class);
             }
             updateKeyTypes(keyTypes, node);
         }
-        boolean useTypes = config.useTypes();
-        ExportFormat format = config.getFormat();
-        if (format == ExportFormat.GEPHI) {
-            keyTypes.put("TYPE", String.class);
-        }
-        writeKey(writer, keyTypes, "node", useTypes);
-        keyTypes.clear();
-        for (Relationship rel : ops.getRelationships()) {
+        return keyTypes;
+    }
+
+    private static Map<String, Class<?>> collectRelationshipKeyTypes(Map<String, Class<?>> keyTypes, Iterable<Relationship> rels) {
+        for (Relationship rel : rels) {
             keyTypes.put("label", String.class);
             updateKeyTypes(keyTypes, rel);
         }
-        if (format == ExportFormat.GEPHI) {
-            keyTypes.put("TYPE", String.class);
-        }
-        writeKey(writer, keyTypes, "edge", useTypes);
+        return keyTypes;
     }
 
-    private void writeKey(XMLStreamWriter writer, Map<String, Class> keyTypes, String forType, boolean useTypes) throws XMLStreamException {
-        for (Map.Entry<String, Class> entry : keyTypes.entrySet()) {
-            Class typeClass = entry.getValue();
+    private void writeKey(XMLStreamWriter writer, Map<String, Class<?>> keyTypes, String forType, boolean useTypes) throws XMLStreamException {
+        for (Map.Entry<String, Class<?>> entry : keyTypes.entrySet()) {
+            Class<?> typeClass = entry.getValue();
             String type = MetaInformation.typeFor(typeClass, MetaInformation.GRAPHML_ALLOWED);
             if (type == null) continue;
             writer.writeEmptyElement("key");
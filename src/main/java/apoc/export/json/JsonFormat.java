@@ -3,6 +3,7 @@ package apoc.export.json;
 import apoc.export.cypher.ExportFileManager;
 import apoc.export.util.ExportConfig;
 import apoc.export.util.Format;
+import apoc.export.util.ParallelExport;
 import apoc.export.util.Reporter;
 import apoc.meta.Meta;
 import apoc.result.ProgressInfo;
@@ -12,8 +13,10 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
 import org.neo4j.cypher.export.SubGraph;
 import org.neo4j.graphdb.*;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.HashMap;
@@ -33,10 +36,11 @@ public class JsonFormat implements Format {
         return null;
     }
 
-    private ProgressInfo dump(Writer writer, Reporter reporter, Consumer<JsonGenerator> consumer) throws Exception {
-        try (Transaction tx = db.beginTx(); JsonGenerator jsonGenerator = getJsonGenerator(writer);) {
+    private ProgressInfo dump(Writer writer, Reporter reporter, Consumer<JsonPropertyWriter> consumer) throws Exception {
+        try (Transaction tx = db.beginTx(); JsonGenerator jsonGenerator = getJsonGenerator(writer);
+             JsonPropertyWriter jsonWriter = new JsonPropertyWriter((GraphDatabaseAPI) db, jsonGenerator)) {
 
-            consumer.accept(jsonGenerator);
+            consumer.accept(jsonWriter);
 
             tx.success();
             return reporter.getTotal();
@@ -45,23 +49,45 @@ public class JsonFormat implements Format {
 
     @Override
     public ProgressInfo dump(SubGraph graph, ExportFileManager writer, Reporter reporter, ExportConfig config) throws Exception {
-        Consumer<JsonGenerator> consumer = (jsonGenerator) -> {
+        PrintWriter printWriter = writer.getPrintWriter("json");
+        Consumer<JsonPropertyWriter> consumer = (jsonWriter) -> {
             try {
-                writeNodes(graph.getNodes(), reporter, jsonGenerator, config);
-                writeRels(graph.getRelationships(), reporter, jsonGenerator, config);
+                if (ParallelExport.supports(graph, config)) {
+                    jsonWriter.getJsonGenerator().flush();
+                    writeAllParallel(printWriter, reporter, config);
+                } else {
+                    writeNodes(graph.getNodes(), reporter, jsonWriter, config);
+                    writeRels(graph.getRelationships(), reporter, jsonWriter, config);
+                }
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         };
-        return dump(writer.getPrintWriter("json"), reporter, consumer);
+        return dump(printWriter, reporter, consumer);
+    }
+
+    private void writeAllParallel(Writer writer, Reporter reporter, ExportConfig config) {
+        ParallelExport parallelExport = new ParallelExport(db, config, "\n");
+        parallelExport.writeNodes(writer, reporter, (nodes, chunkWriter, chunkReporter) -> {
+            try (JsonGenerator jsonGenerator = getJsonGenerator(chunkWriter);
+                 JsonPropertyWriter jsonWriter = new JsonPropertyWriter((GraphDatabaseAPI) db, jsonGenerator)) {
+                writeNodes(nodes, chunkReporter, jsonWriter, config);
+            }
+        });
+        parallelExport.writeRelationships(writer, reporter, (rels, chunkWriter, chunkReporter) -> {
+            try (JsonGenerator jsonGenerator = getJsonGenerator(chunkWriter);
+                 JsonPropertyWriter jsonWriter = new JsonPropertyWriter((GraphDatabaseAPI) db, jsonGenerator)) {
+                writeRels(rels, chunkReporter, jsonWriter, config);
+            }
+        });
     }
 
     public ProgressInfo dump(Result result, Writer writer, Reporter reporter, ExportConfig config) throws Exception {
-        Consumer<JsonGenerator> consumer = (jsonGenerator) -> {
+        Consumer<JsonPropertyWriter> consumer = (jsonWriter) -> {
             try {
                 String[] header = result.columns().toArray(new String[result.columns().size()]);
                 result.accept((row) -> {
-                    writeJsonResult(reporter, header, jsonGenerator, row, config);
+                    writeJsonResult(reporter, header, jsonWriter, row, config);
                     reporter.nextRow();
                     return true;
                 });
@@ -80,54 +106,54 @@ public class JsonFormat implements Format {
         return jsonGenerator;
     }
 
-    private void writeNodes(Iterable<Node> nodes, Reporter reporter, JsonGenerator jsonGenerator,ExportConfig config) throws IOException {
+    private void writeNodes(Iterable<Node> nodes, Reporter reporter, JsonPropertyWriter jsonWriter, ExportConfig config) throws IOException {
         for (Node node : nodes) {
-            writeNode(reporter, jsonGenerator, node, config);
+            writeNode(reporter, jsonWriter, node, config);
         }
     }
 
-    private void writeNode(Reporter reporter, JsonGenerator jsonGenerator, Node node, ExportConfig config) throws IOException {
-        Map<String, Object> allProperties = node.getAllProperties();
-        JsonFormatSerializer.DEFAULT.writeNode(jsonGenerator, node, config);
-        reporter.update(1, 0, allProperties.size());
+    private void writeNode(Reporter reporter, JsonPropertyWriter jsonWriter, Node node, ExportConfig config) throws IOException {
+        int properties = JsonFormatSerializer.DEFAULT.writeNode(jsonWriter, node, config);
+        reporter.update(1, 0, properties);
     }
 
-    private void writeRels(Iterable<Relationship> rels, Reporter reporter, JsonGenerator jsonGenerator, ExportConfig config) throws IOException {
+    private void writeRels(Iterable<Relationship> rels, Reporter reporter, JsonPropertyWriter jsonWriter, ExportConfig config) throws IOException {
         for (Relationship rel : rels) {
-            writeRel(reporter, jsonGenerator, rel, config);
+            writeRel(reporter, jsonWriter, rel, config);
         }
     }
 
-    private void writeRel(Reporter reporter, JsonGenerator jsonGenerator, Relationship rel, ExportConfig config) throws IOException {
-        Map<String, Object> allProperties = rel.getAllProperties();
-        JsonFormatSerializer.DEFAULT.writeRelationship(jsonGenerator, rel, config);
-        reporter.update(0, 1, allProperties.size());
+    private void writeRel(Reporter reporter, JsonPropertyWriter jsonWriter, Relationship rel, ExportConfig config) throws IOException {
+        int properties = JsonFormatSerializer.DEFAULT.writeRelationship(jsonWriter, rel, config);
+        reporter.update(0, 1, properties);
     }
 
-    private void writeJsonResult(Reporter reporter, String[] header, JsonGenerator jsonGenerator, Result.ResultRow row, ExportConfig config) throws IOException {
+    private void writeJsonResult(Reporter reporter, String[] header, JsonPropertyWriter jsonWriter, Result.ResultRow row, ExportConfig config) throws IOException {
+        JsonGenerator jsonGenerator = jsonWriter.getJsonGenerator();
         jsonGenerator.writeStartObject();
         for (int col = 0; col < header.length; col++) {
             String keyName = header[col];
             Object value = row.get(keyName);
-            write(reporter, jsonGenerator, config, keyName, value, true);
+            write(reporter, jsonWriter, config, keyName, value, true);
         }
         jsonGenerator.writeEndObject();
     }
 
-    private void write(Reporter reporter, JsonGenerator jsonGenerator, ExportConfig config, String keyName, Object value, boolean writeKey) throws IOException {
+    private void write(Reporter reporter, JsonPropertyWriter jsonWriter, ExportConfig config, String keyName, Object value, boolean writeKey) throws IOException {
+        JsonGenerator jsonGenerator = jsonWriter.getJsonGenerator();
         Meta.Types type = Meta.Types.of(value);
         switch (type) {
             case NODE:
                 writeFieldName(jsonGenerator, keyName, writeKey);
-                writeNode(reporter, jsonGenerator, (Node) value, config);
+                writeNode(reporter, jsonWriter, (Node) value, config);
                 break;
             case RELATIONSHIP:
                 writeFieldName(jsonGenerator, keyName, writeKey);
-                writeRel(reporter, jsonGenerator, (Relationship) value, config);
+                writeRel(reporter, jsonWriter, (Relationship) value, config);
                 break;
             case PATH:
                 writeFieldName(jsonGenerator, keyName, writeKey);
-                writePath(reporter, jsonGenerator, config, (Path) value);
+                writePath(reporter, jsonWriter, config, (Path) value);
                 break;
             case MAP:
                 if (writeKey) {
@@ -138,7 +164,7 @@ public class JsonFormat implements Format {
                 }
                 Map<String, Object> map = (HashMap<String, Object>) value;
                 for (Map.Entry<String, Object> entry : map.entrySet()) {
-                    write(reporter, jsonGenerator, config, entry.getKey(), entry.getValue(), writeKey);
+                    write(reporter, jsonWriter, config, entry.getKey(), entry.getValue(), writeKey);
                 }
                 jsonGenerator.writeEndObject();
                 break;
@@ -150,12 +176,12 @@ public class JsonFormat implements Format {
                 }
                 Object[] list = value.getClass().isArray() ? (Object[]) value : ((List<Object>) value).toArray();
                 for (Object elem : list) {
-                    write(reporter, jsonGenerator, config, keyName, elem, false);
+                    write(reporter, jsonWriter, config, keyName, elem, false);
                 }
                 jsonGenerator.writeEndArray();
                 break;
             default:
-                JsonFormatSerializer.DEFAULT.serializeProperty(jsonGenerator, keyName, value, writeKey);
+                JsonFormatSerializer.DEFAULT.serializeProperty(jsonWriter, keyName, value, writeKey);
                 reporter.update(0, 0, 1);
                 break;
 
@@ -168,14 +194,15 @@ public class JsonFormat implements Format {
         }
     }
 
-    private void writePath(Reporter reporter, JsonGenerator jsonGenerator, ExportConfig config, Path path) throws IOException {
+    private void writePath(Reporter reporter, JsonPropertyWriter jsonWriter, ExportConfig config, Path path) throws IOException {
+        JsonGenerator jsonGenerator = jsonWriter.getJsonGenerator();
         jsonGenerator.writeStartObject();
         jsonGenerator.writeObjectField("length", path.length());
         jsonGenerator.writeArrayFieldStart("rels");
-        writeRels(path.relationships(), reporter, jsonGenerator, config);
+        writeRels(path.relationships(), reporter, jsonWriter, config);
         jsonGenerator.writeEndArray();
         jsonGenerator.writeArrayFieldStart("nodes");
-        writeNodes(path.nodes(), reporter, jsonGenerator, config);
+        writeNodes(path.nodes(), reporter, jsonWriter, config);
         jsonGenerator.writeEndArray();
         jsonGenerator.writeEndObject();
     }
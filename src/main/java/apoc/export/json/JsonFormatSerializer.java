@@ -2,13 +2,11 @@ package apoc.export.json;
 
 import apoc.export.util.ExportConfig;
 import com.fasterxml.jackson.core.JsonGenerator;
-import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 
 import static apoc.export.util.FormatUtils.getLabelsSorted;
 
@@ -17,58 +15,41 @@ public enum JsonFormatSerializer {
     DEFAULT() {
 
         @Override
-        public void writeNode(JsonGenerator jsonGenerator, Node node, ExportConfig config) throws IOException {
+        public int writeNode(JsonPropertyWriter writer, Node node, ExportConfig config) throws IOException {
+            JsonGenerator jsonGenerator = writer.getJsonGenerator();
             jsonGenerator.writeStartObject();
             jsonGenerator.writeStringField("type", "node");
-            writeNodeDetails(jsonGenerator, node, true);
+            int properties = writeNodeDetails(writer, node, true);
             jsonGenerator.writeEndObject();
+            return properties;
         }
 
         @Override
-        public void writeRelationship(JsonGenerator jsonGenerator, Relationship rel, ExportConfig config) throws IOException {
+        public int writeRelationship(JsonPropertyWriter writer, Relationship rel, ExportConfig config) throws IOException {
+            JsonGenerator jsonGenerator = writer.getJsonGenerator();
             Node startNode = rel.getStartNode();
             Node endNode = rel.getEndNode();
             jsonGenerator.writeStartObject();
             jsonGenerator.writeStringField("id", String.valueOf(rel.getId()));
             jsonGenerator.writeStringField("type", "relationship");
             jsonGenerator.writeStringField("label", rel.getType().toString());
-            serializeProperties(jsonGenerator, rel.getAllProperties());
-            writeRelationshipNode(jsonGenerator, "start", startNode, config);
-            writeRelationshipNode(jsonGenerator, "end", endNode, config);
+            int properties = writer.writeProperties(rel);
+            writeRelationshipNode(writer, "start", startNode, config);
+            writeRelationshipNode(writer, "end", endNode, config);
             jsonGenerator.writeEndObject();
+            return properties;
         }
 
         @Override
-        public void serializeProperties(JsonGenerator jsonGenerator, Map<String, Object> properties) throws IOException {
-            if(properties != null && !properties.isEmpty()) {
-                jsonGenerator.writeObjectFieldStart("properties");
-                for (Map.Entry<String, Object> entry : properties.entrySet()) {
-                    String key = entry.getKey();
-                    Object value = entry.getValue();
-                    serializeProperty(jsonGenerator, key, value, true);
-                }
-                jsonGenerator.writeEndObject();
+        public void serializeProperty(JsonPropertyWriter writer, String key, Object value, boolean writeKey) throws IOException {
+            if (writeKey) {
+                writer.getJsonGenerator().writeFieldName(key);
             }
+            writer.writeValue(value);
         }
 
-        @Override
-        public void serializeProperty(JsonGenerator jsonGenerator, String key, Object value, boolean writeKey) throws IOException {
-            if (value == null) {
-                if (writeKey) {
-                    jsonGenerator.writeNullField(key);
-                } else {
-                    jsonGenerator.writeNull();
-                }
-            } else {
-                if (writeKey) {
-                    jsonGenerator.writeObjectField(key, value);
-                } else {
-                    jsonGenerator.writeObject(value);
-                }
-            }
-        }
-
-        private void writeNodeDetails(JsonGenerator jsonGenerator, Node node, boolean withNodeProperties) throws IOException {
+        private int writeNodeDetails(JsonPropertyWriter writer, Node node, boolean withNodeProperties) throws IOException {
+            JsonGenerator jsonGenerator = writer.getJsonGenerator();
             jsonGenerator.writeStringField("id", String.valueOf(node.getId()));
 
             if (node.getLabels().iterator().hasNext()) {
@@ -80,25 +61,28 @@ public enum JsonFormatSerializer {
                 }
                 jsonGenerator.writeEndArray();
             }
-            if (withNodeProperties) {
-                serializeProperties(jsonGenerator, node.getAllProperties());
-            }
+            return withNodeProperties ? writer.writeProperties(node) : 0;
         }
 
-        private void writeRelationshipNode(JsonGenerator jsonGenerator, String type, Node node, ExportConfig config) throws IOException {
+        private void writeRelationshipNode(JsonPropertyWriter writer, String type, Node node, ExportConfig config) throws IOException {
+            JsonGenerator jsonGenerator = writer.getJsonGenerator();
             jsonGenerator.writeObjectFieldStart(type);
 
-            writeNodeDetails(jsonGenerator, node, config.writeNodeProperties());
+            writeNodeDetails(writer, node, config.writeNodeProperties());
             jsonGenerator.writeEndObject();
         }
     };
 
-    public abstract void writeNode(JsonGenerator jsonGenerator, Node node, ExportConfig config) throws IOException;
-
-    public abstract void writeRelationship(JsonGenerator jsonGenerator, Relationship relationship, ExportConfig config) throws IOException;
+    /**
+     * @return the number of properties written
+     */
+    public abstract int writeNode(JsonPropertyWriter writer, Node node, ExportConfig config) throws IOException;
 
-    public abstract void serializeProperties(JsonGenerator jsonGenerator, Map<String,Object> properties) throws IOException;
+    /**
+     * @return the number of properties written
+     */
+    public abstract int writeRelationship(JsonPropertyWriter writer, Relationship relationship, ExportConfig config) throws IOException;
 
-    public abstract void serializeProperty(JsonGenerator jsonGenerator, String key, Object value, boolean writeKey) throws IOException;
+    public abstract void serializeProperty(JsonPropertyWriter writer, String key, Object value, boolean writeKey) throws IOException;
 
 }
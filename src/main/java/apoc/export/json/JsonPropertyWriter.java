@@ -0,0 +1,295 @@
+package apoc.export.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.spatial.Point;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.RelationshipScanCursor;
+import org.neo4j.internal.kernel.api.exceptions.PropertyKeyIdNotFoundKernelException;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.core.NodeProxy;
+import org.neo4j.kernel.impl.core.RelationshipProxy;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.DurationValue;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.ValueWriter;
+import org.neo4j.values.storable.Values;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.Temporal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams property values from the kernel property cursor straight into a {@link JsonGenerator},
+ * without converting them to Java objects or going through the object mapper.
+ * Points and temporal values are written the same way as {@link apoc.export.util.PointSerializer} and
+ * {@link apoc.export.util.TemporalSerializer} do.
+ * Cursors and property key names are reused for all entities written in the same transaction,
+ * the cursors are closed when the transaction changes and by {@link #close()}.
+ */
+public class JsonPropertyWriter implements ValueWriter<IOException>, AutoCloseable {
+    private final JsonGenerator jsonGenerator;
+    private final ThreadToStatementContextBridge ctx;
+    private KernelTransaction ktx;
+    private NodeCursor nodeCursor;
+    private RelationshipScanCursor relationshipCursor;
+    private PropertyCursor propertyCursor;
+    private String[] propertyKeys = new String[64];
+    private StringBuilder chars;
+
+    public JsonPropertyWriter(GraphDatabaseAPI db, JsonGenerator jsonGenerator) {
+        this.jsonGenerator = jsonGenerator;
+        this.ctx = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+    }
+
+    public JsonGenerator getJsonGenerator() {
+        return jsonGenerator;
+    }
+
+    /**
+     * Writes the {@code properties} object of the entity, if it has any properties.
+     * Properties are written in the order {@link PropertyContainer#getAllProperties()} returns them.
+     * Entities that are not in the store (e.g. virtual nodes and relationships) are written from their property map.
+     * @return the number of properties written
+     */
+    public int writeProperties(PropertyContainer entity) throws IOException {
+        if (!(entity instanceof NodeProxy || entity instanceof RelationshipProxy)) {
+            return writeProperties(entity.getAllProperties());
+        }
+        KernelTransaction ktx = ctx.getKernelTransactionBoundToThisThread(true);
+        if (ktx != this.ktx) {
+            close();
+            this.ktx = ktx;
+            nodeCursor = ktx.cursors().allocateNodeCursor();
+            relationshipCursor = ktx.cursors().allocateRelationshipScanCursor();
+            propertyCursor = ktx.cursors().allocatePropertyCursor();
+        }
+        if (entity instanceof Node) {
+            ktx.dataRead().singleNode(((Node) entity).getId(), nodeCursor);
+            if (!nodeCursor.next()) return 0;
+            nodeCursor.properties(propertyCursor);
+        } else {
+            ktx.dataRead().singleRelationship(((Relationship) entity).getId(), relationshipCursor);
+            if (!relationshipCursor.next()) return 0;
+            relationshipCursor.properties(propertyCursor);
+        }
+        // collected into a HashMap the same way getAllProperties() does, so the output keeps its property order
+        Map<String, Value> properties = new HashMap<>();
+        while (propertyCursor.next()) {
+            properties.put(propertyKeyName(propertyCursor.propertyKey()), propertyCursor.propertyValue());
+        }
+        if (properties.isEmpty()) {
+            return 0;
+        }
+        jsonGenerator.writeObjectFieldStart("properties");
+        for (Map.Entry<String, Value> entry : properties.entrySet()) {
+            jsonGenerator.writeFieldName(entry.getKey());
+            entry.getValue().writeTo(this);
+        }
+        jsonGenerator.writeEndObject();
+        return properties.size();
+    }
+
+    private int writeProperties(Map<String, Object> properties) throws IOException {
+        if (properties.isEmpty()) {
+            return 0;
+        }
+        jsonGenerator.writeObjectFieldStart("properties");
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            jsonGenerator.writeFieldName(entry.getKey());
+            writeValue(entry.getValue());
+        }
+        jsonGenerator.writeEndObject();
+        return properties.size();
+    }
+
+    @Override
+    public void close() {
+        if (nodeCursor != null) {
+            nodeCursor.close();
+            relationshipCursor.close();
+            propertyCursor.close();
+            nodeCursor = null;
+            relationshipCursor = null;
+            propertyCursor = null;
+        }
+        ktx = null;
+    }
+
+    private String propertyKeyName(int key) {
+        if (key >= propertyKeys.length) {
+            propertyKeys = Arrays.copyOf(propertyKeys, Math.max(key + 1, propertyKeys.length * 2));
+        }
+        String name = propertyKeys[key];
+        if (name == null) {
+            try {
+                name = ktx.tokenRead().propertyKeyName(key);
+            } catch (PropertyKeyIdNotFoundKernelException e) {
+                throw new RuntimeException(e);
+            }
+            propertyKeys[key] = name;
+        }
+        return name;
+    }
+
+    /**
+     * Writes a single value of a query result, property types are written inline, everything else is handed to the object mapper.
+     */
+    public void writeValue(Object value) throws IOException {
+        if (value == null) {
+            jsonGenerator.writeNull();
+        } else if (value instanceof String) {
+            jsonGenerator.writeString((String) value);
+        } else if (value instanceof Long) {
+            jsonGenerator.writeNumber((Long) value);
+        } else if (value instanceof Double) {
+            jsonGenerator.writeNumber((Double) value);
+        } else if (value instanceof Boolean) {
+            jsonGenerator.writeBoolean((Boolean) value);
+        } else if (value instanceof Point) {
+            Values.of(value).writeTo(this);
+        } else if (value instanceof Temporal) {
+            jsonGenerator.writeString(value.toString());
+        } else {
+            jsonGenerator.writeObject(value);
+        }
+    }
+
+    @Override
+    public void writeNull() throws IOException {
+        jsonGenerator.writeNull();
+    }
+
+    @Override
+    public void writeBoolean(boolean value) throws IOException {
+        jsonGenerator.writeBoolean(value);
+    }
+
+    @Override
+    public void writeInteger(byte value) throws IOException {
+        jsonGenerator.writeNumber(value);
+    }
+
+    @Override
+    public void writeInteger(short value) throws IOException {
+        jsonGenerator.writeNumber(value);
+    }
+
+    @Override
+    public void writeInteger(int value) throws IOException {
+        jsonGenerator.writeNumber(value);
+    }
+
+    @Override
+    public void writeInteger(long value) throws IOException {
+        jsonGenerator.writeNumber(value);
+    }
+
+    @Override
+    public void writeFloatingPoint(float value) throws IOException {
+        jsonGenerator.writeNumber(value);
+    }
+
+    @Override
+    public void writeFloatingPoint(double value) throws IOException {
+        jsonGenerator.writeNumber(value);
+    }
+
+    @Override
+    public void writeString(String value) throws IOException {
+        jsonGenerator.writeString(value);
+    }
+
+    @Override
+    public void writeString(char value) throws IOException {
+        if (chars != null) {
+            chars.append(value);
+        } else {
+            jsonGenerator.writeString(String.valueOf(value));
+        }
+    }
+
+    @Override
+    public void beginArray(int size, ArrayType arrayType) throws IOException {
+        // char[] is written as a single string, like the object mapper does
+        if (arrayType == ArrayType.CHAR) {
+            chars = new StringBuilder(size);
+        } else {
+            jsonGenerator.writeStartArray(size);
+        }
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        if (chars != null) {
+            jsonGenerator.writeString(chars.toString());
+            chars = null;
+        } else {
+            jsonGenerator.writeEndArray();
+        }
+    }
+
+    @Override
+    public void writeByteArray(byte[] value) throws IOException {
+        jsonGenerator.writeBinary(value);
+    }
+
+    @Override
+    public void writePoint(CoordinateReferenceSystem crs, double[] coordinate) throws IOException {
+        String crsType = crs.getType();
+        boolean cartesian = crsType.startsWith(CoordinateReferenceSystem.Cartesian.toString());
+        jsonGenerator.writeStartObject();
+        jsonGenerator.writeStringField("crs", crsType);
+        jsonGenerator.writeNumberField(cartesian ? "x" : "latitude", coordinate[0]);
+        jsonGenerator.writeNumberField(cartesian ? "y" : "longitude", coordinate[1]);
+        jsonGenerator.writeFieldName(cartesian ? "z" : "height");
+        if (coordinate.length == 3) {
+            jsonGenerator.writeNumber(coordinate[2]);
+        } else {
+            jsonGenerator.writeNull();
+        }
+        jsonGenerator.writeEndObject();
+    }
+
+    @Override
+    public void writeDuration(long months, long days, long seconds, int nanos) throws IOException {
+        jsonGenerator.writeObject(DurationValue.duration(months, days, seconds, nanos));
+    }
+
+    @Override
+    public void writeDate(LocalDate localDate) throws IOException {
+        jsonGenerator.writeString(localDate.toString());
+    }
+
+    @Override
+    public void writeLocalTime(LocalTime localTime) throws IOException {
+        jsonGenerator.writeString(localTime.toString());
+    }
+
+    @Override
+    public void writeTime(OffsetTime offsetTime) throws IOException {
+        jsonGenerator.writeString(offsetTime.toString());
+    }
+
+    @Override
+    public void writeLocalDateTime(LocalDateTime localDateTime) throws IOException {
+        jsonGenerator.writeString(localDateTime.toString());
+    }
+
+    @Override
+    public void writeDateTime(ZonedDateTime zonedDateTime) throws IOException {
+        jsonGenerator.writeString(zonedDateTime.toString());
+    }
+}
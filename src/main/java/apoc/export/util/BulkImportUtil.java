@@ -29,7 +29,7 @@ public class BulkImportUtil {
     }});
 
 
-    public static String formatHeader(Map.Entry<String, Class> r) {
+    public static String formatHeader(Map.Entry<String, Class<?>> r) {
         if (allowedMapping.containsKey(r.getValue())) {
             return r.getKey() + ":" + allowedMapping.get(r.getValue());
         } else {
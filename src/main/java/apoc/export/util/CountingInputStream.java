@@ -1,5 +1,7 @@
 package apoc.export.util;
 
+import apoc.util.CompressionAlgo;
+
 import java.io.*;
 
 /**
@@ -11,14 +13,31 @@ public class CountingInputStream extends FilterInputStream implements SizeCounte
     private final long total;
     private long count=0;
     private long newLines;
+    private final SizeCounter source;
 
     public CountingInputStream(File file) throws FileNotFoundException {
         super(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
         this.total = file.length();
+        this.source = null;
     }
     public CountingInputStream(InputStream stream, long total) throws FileNotFoundException {
         super(new BufferedInputStream(stream, BUFFER_SIZE));
         this.total = total;
+        this.source = null;
+    }
+    private CountingInputStream(InputStream stream, long total, SizeCounter source) {
+        super(new BufferedInputStream(stream, BUFFER_SIZE));
+        this.total = total;
+        this.source = source;
+    }
+
+    /**
+     * Reads the decompressed content of the stream, while the count and percentage refer to the compressed bytes
+     * read so far, as the total is the compressed length.
+     */
+    public static CountingInputStream decompressing(InputStream stream, long total, CompressionAlgo compression) throws IOException {
+        CountingInputStream compressed = new CountingInputStream(stream, total);
+        return new CountingInputStream(compression.decompress(compressed), total, compressed);
     }
 
     @Override
@@ -46,7 +65,7 @@ public class CountingInputStream extends FilterInputStream implements SizeCounte
     }
 
     public long getCount() {
-        return count;
+        return source == null ? count : source.getCount();
     }
 
     public long getNewLines() {
@@ -60,7 +79,7 @@ public class CountingInputStream extends FilterInputStream implements SizeCounte
     @Override
     public long getPercent() {
         if (total <= 0) return 0;
-        return count*100 / total;
+        return getCount()*100 / total;
     }
 
     public InputStream getStream() {
@@ -69,6 +88,6 @@ public class CountingInputStream extends FilterInputStream implements SizeCounte
 
 	public CountingReader asReader() throws IOException {
 		Reader reader = new InputStreamReader(in,"UTF-8");
-        return new CountingReader(reader,total);
+        return new CountingReader(reader,total,source);
 	}
 }
@@ -11,14 +11,23 @@ public class CountingReader extends FilterReader implements SizeCounter {
     private final long total;
     private long count=0;
     private long newLines;
+    private final SizeCounter source;
 
     public CountingReader(File file) throws FileNotFoundException {
         super(new BufferedReader(new FileReader(file), BUFFER_SIZE));
         this.total = file.length();
+        this.source = null;
     }
     public CountingReader(Reader reader, long total) throws FileNotFoundException {
+        this(reader, total, null);
+    }
+    /**
+     * @param source counts the bytes the total refers to instead of the characters read, for compressed content
+     */
+    CountingReader(Reader reader, long total, SizeCounter source) {
         super(new BufferedReader(reader, BUFFER_SIZE));
         this.total = total;
+        this.source = source;
     }
 
     @Override
@@ -46,7 +55,7 @@ public class CountingReader extends FilterReader implements SizeCounter {
     }
 
     public long getCount() {
-        return count;
+        return source == null ? count : source.getCount();
     }
 
     public long getNewLines() {
@@ -60,6 +69,6 @@ public class CountingReader extends FilterReader implements SizeCounter {
     @Override
     public long getPercent() {
         if (total <= 0) return 0;
-        return count*100 / total;
+        return getCount()*100 / total;
     }
 }
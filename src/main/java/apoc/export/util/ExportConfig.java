@@ -1,6 +1,7 @@
 package apoc.export.util;
 
 import apoc.export.cypher.formatter.CypherFormat;
+import apoc.util.CompressionAlgo;
 import apoc.util.Util;
 
 import java.util.*;
@@ -20,6 +21,7 @@ public class ExportConfig {
 
     public static final int DEFAULT_BATCH_SIZE = 20000;
     private static final int DEFAULT_UNWIND_BATCH_SIZE = 20;
+    public static final int DEFAULT_PARTITION_SIZE = 10000;
     public static final String DEFAULT_DELIM = ",";
     public static final String DEFAULT_ARRAY_DELIM = ";";
     public static final String DEFAULT_QUOTES = ALWAYS_QUOTES;
@@ -38,6 +40,9 @@ public class ExportConfig {
     private CypherFormat cypherFormat;
     private final Map<String, Object> config;
     private boolean separateHeader;
+    private boolean parallel;
+    private int partitionSize;
+    private CompressionAlgo compression;
     private String arrayDelim;
     private Map<String, Object> optimizations;
     public enum OptimizationType {NONE, UNWIND_BATCH, UNWIND_BATCH_PARAMS}
@@ -92,6 +97,9 @@ public class ExportConfig {
         this.config = config;
         this.streamStatements = toBoolean(config.get("streamStatements")) || toBoolean(config.get("stream"));
         this.writeNodeProperties = toBoolean(config.get("writeNodeProperties"));
+        this.parallel = toBoolean(config.get("parallel"));
+        this.partitionSize = ((Number)config.getOrDefault("partitionSize", DEFAULT_PARTITION_SIZE)).intValue();
+        this.compression = CompressionAlgo.from(config.get("compression"));
         exportQuotes(config);
         this.optimizations = (Map<String, Object>) config.getOrDefault("useOptimizations", Collections.emptyMap());
         this.optimizationType = OptimizationType.valueOf(optimizations.getOrDefault("type", OptimizationType.UNWIND_BATCH.toString()).toString().toUpperCase());
@@ -185,6 +193,18 @@ public class ExportConfig {
         return arrayDelim;
     }
 
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public int getPartitionSize() {
+        return partitionSize;
+    }
+
+    public CompressionAlgo getCompression() {
+        return compression;
+    }
+
     public OptimizationType getOptimizationType() {
         return optimizationType;
     }
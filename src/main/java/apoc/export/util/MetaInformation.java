@@ -20,25 +20,25 @@ import static java.util.Arrays.asList;
  */
 public class MetaInformation {
 
-    public static Map<String,Class> collectPropTypesForNodes(SubGraph graph) {
-        Map<String,Class> propTypes = new LinkedHashMap<>();
+    public static Map<String, Class<?>> collectPropTypesForNodes(SubGraph graph) {
+        Map<String, Class<?>> propTypes = new LinkedHashMap<>();
         for (Node node : graph.getNodes()) {
             updateKeyTypes(propTypes, node);
         }
         return propTypes;
     }
-    public static Map<String,Class> collectPropTypesForRelationships(SubGraph graph) {
-        Map<String,Class> propTypes = new LinkedHashMap<>();
+    public static Map<String, Class<?>> collectPropTypesForRelationships(SubGraph graph) {
+        Map<String, Class<?>> propTypes = new LinkedHashMap<>();
         for (Relationship node : graph.getRelationships()) {
             updateKeyTypes(propTypes, node);
         }
         return propTypes;
     }
 
-    public static void updateKeyTypes(Map<String, Class> keyTypes, PropertyContainer pc) {
+    public static void updateKeyTypes(Map<String, Class<?>> keyTypes, PropertyContainer pc) {
         for (String prop : pc.getPropertyKeys()) {
             Object value = pc.getProperty(prop);
-            Class storedClass = keyTypes.get(prop);
+            Class<?> storedClass = keyTypes.get(prop);
             if (storedClass==null) {
                 keyTypes.put(prop,value.getClass());
                 continue;
@@ -48,9 +48,21 @@ public class MetaInformation {
         }
     }
 
+    public static void mergeKeyTypes(Map<String, Class<?>> keyTypes, Map<String, Class<?>> other) {
+        for (Map.Entry<String, Class<?>> entry : other.entrySet()) {
+            Class<?> storedClass = keyTypes.get(entry.getKey());
+            if (storedClass == null) {
+                keyTypes.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+            if (storedClass == void.class || storedClass.equals(entry.getValue())) continue;
+            keyTypes.put(entry.getKey(), void.class);
+        }
+    }
+
     public final static Set<String> GRAPHML_ALLOWED = new HashSet<>(asList("boolean", "int", "long", "float", "double", "string"));
 
-    public static String typeFor(Class value, Set<String> allowed) {
+    public static String typeFor(Class<?> value, Set<String> allowed) {
         if (value == void.class) return null; // Is this necessary?
         Meta.Types type = Meta.Types.of(value);
         String name = (value.isArray() ? value.getComponentType() : value).getSimpleName().toLowerCase();
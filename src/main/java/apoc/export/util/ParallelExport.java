@@ -0,0 +1,191 @@
+package apoc.export.util;
+
+import apoc.Pools;
+import apoc.result.ProgressInfo;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations.GlobalOperationsTypes;
+import org.neo4j.cypher.export.DatabaseSubGraph;
+import org.neo4j.cypher.export.SubGraph;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import static apoc.export.util.MetaInformation.mergeKeyTypes;
+import static apoc.export.util.MetaInformation.updateKeyTypes;
+import static apoc.util.kernel.MultiThreadedGlobalGraphOperations.getHighestIdInUseForStore;
+
+/**
+ * Formats a whole-database export in node and relationship id partitions on {@link Pools#DEFAULT}.
+ * Every partition is rendered into its own buffer and the buffers are appended to the target writer in id order,
+ * so the output is the same as the one of the single threaded export.
+ */
+public class ParallelExport {
+
+    public interface ChunkFormatter<T extends PropertyContainer> {
+        void format(Iterable<T> entities, Writer out, Reporter reporter) throws Exception;
+    }
+
+    private final GraphDatabaseAPI db;
+    private final ThreadToStatementContextBridge ctx;
+    private final int partitionSize;
+    private final int maxInFlight;
+    private final String separator;
+    private boolean empty = true;
+
+    public ParallelExport(GraphDatabaseService db, ExportConfig config, String separator) {
+        this.db = (GraphDatabaseAPI) db;
+        this.ctx = this.db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+        this.partitionSize = Math.max(1, config.getPartitionSize());
+        this.maxInFlight = Math.max(2, Pools.getNoThreadsInDefaultPool());
+        this.separator = separator;
+    }
+
+    public static boolean supports(SubGraph graph, ExportConfig config) {
+        return config.isParallel() && graph instanceof DatabaseSubGraph;
+    }
+
+    public Map<String, Class<?>> collectPropTypesForNodes() {
+        Map<String, Class<?>> propTypes = new LinkedHashMap<>();
+        forEachNodePartition(ParallelExport::collectPropTypes, (types) -> mergeKeyTypes(propTypes, types));
+        return propTypes;
+    }
+
+    public Map<String, Class<?>> collectPropTypesForRelationships() {
+        Map<String, Class<?>> propTypes = new LinkedHashMap<>();
+        forEachRelationshipPartition(ParallelExport::collectPropTypes, (types) -> mergeKeyTypes(propTypes, types));
+        return propTypes;
+    }
+
+    public <R> void forEachNodePartition(Function<Iterable<Node>, R> task, Consumer<R> consumer) {
+        forEachPartition(GlobalOperationsTypes.NODES, task, consumer);
+    }
+
+    public <R> void forEachRelationshipPartition(Function<Iterable<Relationship>, R> task, Consumer<R> consumer) {
+        forEachPartition(GlobalOperationsTypes.RELATIONSHIPS, task, consumer);
+    }
+
+    private static Map<String, Class<?>> collectPropTypes(Iterable<? extends PropertyContainer> entities) {
+        Map<String, Class<?>> propTypes = new LinkedHashMap<>();
+        for (PropertyContainer entity : entities) {
+            updateKeyTypes(propTypes, entity);
+        }
+        return propTypes;
+    }
+
+    public void writeNodes(Writer out, Reporter reporter, ChunkFormatter<Node> formatter) {
+        write(GlobalOperationsTypes.NODES, out, reporter, formatter);
+    }
+
+    public void writeRelationships(Writer out, Reporter reporter, ChunkFormatter<Relationship> formatter) {
+        write(GlobalOperationsTypes.RELATIONSHIPS, out, reporter, formatter);
+    }
+
+    private <T extends PropertyContainer> void write(GlobalOperationsTypes type, Writer out, Reporter reporter, ChunkFormatter<T> formatter) {
+        this.<T, Chunk>forEachPartition(type, (entities) -> {
+            Chunk chunk = new Chunk();
+            try {
+                formatter.format(entities, chunk.writer, chunk);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return chunk;
+        }, (chunk) -> {
+            try {
+                String text = chunk.writer.toString();
+                if (!text.isEmpty()) {
+                    if (!empty) out.write(separator);
+                    out.write(text);
+                    empty = false;
+                }
+                reporter.update(chunk.counter.getNodes(), chunk.counter.getRelationships(), chunk.counter.getProperties());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Submits one task per id partition, keeping at most {@code maxInFlight} partitions pending,
+     * and hands the results to the consumer on the calling thread in partition order.
+     */
+    private <T extends PropertyContainer, R> void forEachPartition(GlobalOperationsTypes type, Function<Iterable<T>, R> task, Consumer<R> consumer) {
+        long highId = getHighestIdInUseForStore(db.getDependencyResolver(), type);
+        Deque<Future<R>> inFlight = new ArrayDeque<>(maxInFlight);
+        try {
+            for (long start = 0; start < highId; start += partitionSize) {
+                long from = start;
+                long to = Math.min(start + partitionSize, highId);
+                inFlight.add(Pools.DEFAULT.submit(() -> inTx(type, from, to, task)));
+                if (inFlight.size() >= maxInFlight) {
+                    consumer.accept(Pools.force(inFlight.poll()));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                consumer.accept(Pools.force(inFlight.poll()));
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error exporting " + type.name().toLowerCase() + " partition", e.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private <T extends PropertyContainer, R> R inTx(GlobalOperationsTypes type, long from, long to, Function<Iterable<T>, R> task) {
+        try (Transaction tx = db.beginTx()) {
+            Read read = ctx.getKernelTransactionBoundToThisThread(true).dataRead();
+            Iterable<? extends PropertyContainer> entities = type == GlobalOperationsTypes.NODES
+                    ? (Iterable<Node>) () -> LongStream.range(from, to).filter(read::nodeExists).mapToObj(db::getNodeById).iterator()
+                    : (Iterable<Relationship>) () -> LongStream.range(from, to).filter(read::relationshipExists).mapToObj(db::getRelationshipById).iterator();
+            // T is Node for NODES and Relationship for RELATIONSHIPS
+            @SuppressWarnings("unchecked")
+            Iterable<T> typed = (Iterable<T>) entities;
+            R result = task.apply(typed);
+            tx.success();
+            return result;
+        }
+    }
+
+    private static class Chunk implements Reporter {
+        private final StringWriter writer = new StringWriter();
+        private final ElementCounter counter = new ElementCounter();
+
+        @Override
+        public void progress(String msg) {
+        }
+
+        @Override
+        public void update(long nodes, long rels, long properties) {
+            counter.update(nodes, rels, properties);
+        }
+
+        @Override
+        public void done() {
+        }
+
+        @Override
+        public ProgressInfo getTotal() {
+            return null;
+        }
+
+        @Override
+        public void nextRow() {
+        }
+    }
+}
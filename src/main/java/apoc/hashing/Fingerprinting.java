@@ -1,23 +1,36 @@
 package apoc.hashing;
 
+import apoc.Pools;
+import apoc.util.Util;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations.GlobalOperationsTypes;
 import org.neo4j.graphdb.*;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
 import org.neo4j.procedure.UserFunction;
 
 import javax.xml.bind.DatatypeConverter;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import static apoc.util.kernel.MultiThreadedGlobalGraphOperations.getHighestIdInUseForStore;
+
 public class Fingerprinting {
 
     public static final String DIGEST_ALGORITHM = "MD5";
+    private static final int PARTITION_SIZE = 10_000;
 
     @Context
     public GraphDatabaseService db;
@@ -54,95 +67,194 @@ public class Fingerprinting {
     }
 
     @UserFunction
-    @Description("calculate a checksum (md5) over a the full graph. Be aware that this function does use in-memomry datastructures depending on the size of your graph.")
+    @Description("calculate a checksum (md5) over a the full graph. Nodes and relationships are hashed in parallel and combined independent of their order and internal ids.")
     public String fingerprintGraph(@Name(value = "propertyExcludes", defaultValue = "") List<String> excludedPropertyKeys) {
+        return graphDigests(excludedPropertyKeys).root();
+    }
 
-        return withMessageDigest(messageDigest -> {
-            // step 1: load all nodes, calc their hash and map them to id
-            Map<Long, String> idToNodeHash = db.getAllNodes().stream().collect(Collectors.toMap(
-                    Node::getId,
-                    node -> fingerprint(node, excludedPropertyKeys),
-                    (aLong, aLong2) -> {
-                        throw new RuntimeException();
-                    },
-                    () -> new TreeMap<>()
-            ));
-
-            // step 2: build inverse map
-            Map<String, Long> nodeHashToId = idToNodeHash.entrySet().stream().collect(Collectors.toMap(
-                    Map.Entry::getValue,
-                    Map.Entry::getKey,
-                    (o, o2) -> {
-                        throw new RuntimeException();
-                    },
-                    () -> new TreeMap<>()
-            ));
-
-            // step 3: iterate nodes in order of their hash (we cannot rely on internal ids)
-            nodeHashToId.entrySet().stream().forEach(entry -> {
-                messageDigest.update(entry.getKey().getBytes());
-
-                Node node = db.getNodeById(entry.getValue());
-                List<EndNodeRelationshipHashTuple> endNodeRelationshipHashTuples = StreamSupport.stream(node.getRelationships(Direction.OUTGOING).spliterator(), false)
-                        .map(relationship -> {
-                            String endNodeHash = idToNodeHash.get(relationship.getEndNodeId());
-                            String relationshipHash = fingerprint(relationship, excludedPropertyKeys);
-                            return new EndNodeRelationshipHashTuple(endNodeHash, relationshipHash);
-                        }).collect(Collectors.toList());
-
-                endNodeRelationshipHashTuples.stream().sorted().forEach(endNodeRelationshipHashTuple -> {
-                    messageDigest.update(endNodeRelationshipHashTuple.getEndNodeHash().getBytes());
-                    messageDigest.update(endNodeRelationshipHashTuple.getRelationshipHash().getBytes());
-                });
+    @Procedure
+    @Description("apoc.hashing.fingerprintGraphDigests(<list_of_props_to_ignore>) yield scope, name, count, fingerprint - the checksum of the full graph (scope 'graph') with the checksums of the nodes per label combination (scope 'labels') and of the relationships per type (scope 'type') it is made of")
+    public Stream<DigestResult> fingerprintGraphDigests(@Name(value = "propertyExcludes", defaultValue = "") List<String> excludedPropertyKeys) {
+        GraphDigests digests = graphDigests(excludedPropertyKeys);
+        return Stream.concat(
+                Stream.of(new DigestResult("graph", "*", digests.count(), digests.root())),
+                digests.parts().map(e -> new DigestResult(e.getKey().scope, e.getKey().name, e.getValue().count, e.getValue().hex(e.getKey()))));
+    }
 
-            });
+    public static class DigestResult {
+        public final String scope;
+        public final String name;
+        public final long count;
+        public final String fingerprint;
+
+        public DigestResult(String scope, String name, long count, String fingerprint) {
+            this.scope = scope;
+            this.name = name;
+            this.count = count;
+            this.fingerprint = fingerprint;
+        }
+    }
 
-        });
+    /**
+     * Hashes the nodes and their outgoing relationships in node id partitions on {@link Pools#DEFAULT}. A relationship
+     * hash contains the hashes of its start and end node instead of their ids.
+     */
+    private GraphDigests graphDigests(List<String> excludedPropertyKeys) {
+        GraphDatabaseAPI api = (GraphDatabaseAPI) db;
+        ThreadToStatementContextBridge ctx = api.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+        long highId = getHighestIdInUseForStore(api.getDependencyResolver(), GlobalOperationsTypes.NODES);
+        int maxInFlight = Math.max(2, Pools.getNoThreadsInDefaultPool() * 2);
+        GraphDigests digests = new GraphDigests();
+        Deque<Future<GraphDigests>> inFlight = new ArrayDeque<>(maxInFlight);
+        try {
+            for (long start = 0; start < highId; start += PARTITION_SIZE) {
+                long from = start, to = Math.min(start + PARTITION_SIZE, highId);
+                inFlight.add(Util.inTxFuture(Pools.DEFAULT, db, () -> {
+                    Read read = ctx.getKernelTransactionBoundToThisThread(true).dataRead();
+                    return digestPartition(read, from, to, excludedPropertyKeys);
+                }));
+                if (inFlight.size() >= maxInFlight) digests.merge(Pools.force(inFlight.poll()));
+            }
+            while (!inFlight.isEmpty()) {
+                digests.merge(Pools.force(inFlight.poll()));
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error fingerprinting the graph", e.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+        return digests;
     }
 
-    private static class EndNodeRelationshipHashTuple implements Comparable {
-        private final String endNodeHash;
-        private final String relationshipHash;
+    private GraphDigests digestPartition(Read read, long from, long to, List<String> excludedPropertyKeys) throws NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        DiagnosingMessageDigestDecorator dmd = new DiagnosingMessageDigestDecorator(md);
+        GraphDigests digests = new GraphDigests();
+        for (long id = from; id < to; id++) {
+            if (!read.nodeExists(id)) continue;
+            Node node = db.getNodeById(id);
+            byte[] nodeHash = hash(md, dmd, node, excludedPropertyKeys);
+            digests.add(new Part("labels", labelsOf(node)), nodeHash);
+            for (Relationship rel : node.getRelationships(Direction.OUTGOING)) {
+                byte[] endHash = hash(md, dmd, rel.getEndNode(), excludedPropertyKeys);
+                md.update(nodeHash);
+                fingerprintRelationship(dmd, rel, excludedPropertyKeys);
+                md.update(endHash);
+                digests.add(new Part("type", rel.getType().name()), md.digest());
+            }
+        }
+        return digests;
+    }
+
+    private byte[] hash(MessageDigest md, DiagnosingMessageDigestDecorator dmd, Node node, List<String> excludedPropertyKeys) {
+        fingerprintNode(dmd, node, excludedPropertyKeys);
+        return md.digest();
+    }
+
+    private static String labelsOf(Node node) {
+        List<String> labels = new ArrayList<>();
+        for (Label label : node.getLabels()) labels.add(label.name());
+        Collections.sort(labels);
+        StringBuilder sb = new StringBuilder();
+        for (String label : labels) sb.append(':').append(label);
+        return sb.toString();
+    }
 
-        public EndNodeRelationshipHashTuple(String endNodeHash, String relationshipHash) {
-            this.endNodeHash = endNodeHash;
-            this.relationshipHash = relationshipHash;
+    /**
+     * A label combination of nodes or a relationship type, the parts the graph fingerprint is made of.
+     */
+    private static class Part implements Comparable<Part> {
+        private final String scope;
+        private final String name;
+
+        Part(String scope, String name) {
+            this.scope = scope;
+            this.name = name;
         }
 
         @Override
-        public int compareTo(Object o) {
-            EndNodeRelationshipHashTuple other = (EndNodeRelationshipHashTuple) o;
-            int res = endNodeHash.compareTo(other.endNodeHash);
-            if (res == 0) {
-                res = relationshipHash.compareTo(other.relationshipHash);
-            }
-            return res;
+        public int compareTo(Part o) {
+            int res = scope.compareTo(o.scope);
+            return res == 0 ? name.compareTo(o.name) : res;
         }
 
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
-
-            EndNodeRelationshipHashTuple that = (EndNodeRelationshipHashTuple) o;
-
-            if (endNodeHash != null ? !endNodeHash.equals(that.endNodeHash) : that.endNodeHash != null) return false;
-            return relationshipHash != null ? relationshipHash.equals(that.relationshipHash) : that.relationshipHash == null;
+            Part part = (Part) o;
+            return scope.equals(part.scope) && name.equals(part.name);
         }
 
         @Override
         public int hashCode() {
-            int result = endNodeHash != null ? endNodeHash.hashCode() : 0;
-            result = 31 * result + (relationshipHash != null ? relationshipHash.hashCode() : 0);
-            return result;
+            return 31 * scope.hashCode() + name.hashCode();
         }
+    }
+
+    /**
+     * The sum of 128 bit hashes modulo 2^128, which doesn't depend on the order they were added in.
+     */
+    private static class HashSum {
+        private long count;
+        private long high;
+        private long low;
+
+        void add(long count, long high, long low) {
+            long sum = this.low + low;
+            this.high += high + (Long.compareUnsigned(sum, this.low) < 0 ? 1 : 0);
+            this.low = sum;
+            this.count += count;
+        }
+
+        void update(MessageDigest md, Part part) {
+            md.update(part.scope.getBytes());
+            md.update(part.name.getBytes());
+            md.update(ByteBuffer.allocate(24).putLong(count).putLong(high).putLong(low).array());
+        }
+
+        String hex(Part part) {
+            MessageDigest md = newDigest();
+            update(md, part);
+            return DatatypeConverter.printHexBinary(md.digest());
+        }
+    }
+
+    /**
+     * The hash sums per label combination and relationship type, the graph fingerprint is the hash over all of them.
+     */
+    private static class GraphDigests {
+        private final Map<Part, HashSum> sums = new HashMap<>();
 
-        public String getEndNodeHash() {
-            return endNodeHash;
+        void add(Part part, byte[] hash) {
+            ByteBuffer buffer = ByteBuffer.wrap(hash);
+            sums.computeIfAbsent(part, p -> new HashSum()).add(1, buffer.getLong(), buffer.getLong());
         }
 
-        public String getRelationshipHash() {
-            return relationshipHash;
+        void merge(GraphDigests other) {
+            other.sums.forEach((part, sum) -> sums.computeIfAbsent(part, p -> new HashSum()).add(sum.count, sum.high, sum.low));
+        }
+
+        long count() {
+            return sums.values().stream().mapToLong(sum -> sum.count).sum();
+        }
+
+        Stream<Map.Entry<Part, HashSum>> parts() {
+            return sums.entrySet().stream().sorted(Map.Entry.comparingByKey());
+        }
+
+        String root() {
+            MessageDigest md = newDigest();
+            parts().forEach(e -> e.getValue().update(md, e.getKey()));
+            return DatatypeConverter.printHexBinary(md.digest());
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
         }
     }
 
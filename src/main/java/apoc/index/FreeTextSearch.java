@@ -3,6 +3,8 @@ package apoc.index;
 import apoc.ApocKernelExtensionFactory;
 import apoc.Pools;
 import apoc.result.WeightedNodeResult;
+import apoc.util.Util;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.Tokenizer;
@@ -19,21 +21,57 @@ import org.neo4j.index.impl.lucene.explicit.LuceneDataSource;
 import org.neo4j.index.impl.lucene.explicit.LuceneIndexImplementation;
 import org.neo4j.index.lucene.QueryContext;
 import org.neo4j.index.lucene.ValueContext;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 import org.neo4j.scheduler.JobScheduler;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import static apoc.index.FreeTextQueryParser.parseFreeTextQuery;
 import static apoc.util.AsyncStream.async;
+import static apoc.util.kernel.MultiThreadedGlobalGraphOperations.getHighestIdInUseForStore;
+import static java.util.Arrays.asList;
 
 public class FreeTextSearch {
+    public static class PopulationProgress {
+        public final String index;
+        public final boolean done;
+        public final String error;
+        public final long nodes;
+        public final long totalNodes;
+        public final long indexed;
+        public final long partitions;
+        public final long totalPartitions;
+        public final double percent;
+        public final long time;
+        public final long eta;
+
+        private PopulationProgress(Population population) {
+            this.index = population.index;
+            this.done = population.end != 0;
+            this.error = population.error;
+            this.nodes = population.nodes.get();
+            this.totalNodes = population.totalNodes;
+            this.indexed = population.indexed.get();
+            this.partitions = population.partitions.get();
+            this.totalPartitions = population.totalPartitions;
+            this.percent = totalNodes == 0 ? 100d : 100d * nodes / totalNodes;
+            this.time = (done ? population.end : System.currentTimeMillis()) - population.start;
+            this.eta = done ? 0 : nodes == 0 ? -1 : time * (totalNodes - nodes) / nodes;
+        }
+    }
+
     public static class IndexStats {
         public final String label;
         public final String property;
@@ -57,13 +95,18 @@ public class FreeTextSearch {
      * @return a stream containing a single element that describes the created index.
      */
     @Procedure(mode = Mode.SCHEMA)
-    @Description("apoc.index.addAllNodes('name',{label1:['prop1',...],...}, {options}) YIELD type, name, config - create a free text search index")
+    @Description("apoc.index.addAllNodes('name',{label1:['prop1',...],...}, {options}) YIELD type, name, config - create a free text search index, populated in parallel node id partitions ({partitionSize:1000000, batchSize:50000})")
     public Stream<IndexStats> addAllNodes(@Name("index") String index, @Name("structure") Map<String, List<String>> structure, @Name(value = "options", defaultValue = "" ) Map<String,Object> options  ) {
         if (structure.isEmpty()) {
             throw new IllegalArgumentException("No structure given.");
         }
+        Map<String, Object> indexOptions = options == null ? new HashMap<>() : new HashMap<>(options);
+        Map<String, Object> populateOptions = new HashMap<>();
+        for (String key : asList(PARTITION_SIZE, BATCH_SIZE)) {
+            if (indexOptions.containsKey(key)) populateOptions.put(key, indexOptions.remove(key));
+        }
         return async(executor(), "Creating index '" + index + "'", result -> {
-            populate(index(index, structure, options ), structure, result);
+            populate(index, index(index, structure, indexOptions), structure, populateOptions, result);
         });
     }
 
@@ -88,6 +131,33 @@ public class FreeTextSearch {
         return addAllNodes(index, structure, options);
     }
 
+    /**
+     * Progress of the population of free text search indexes started with {@code apoc.index.addAllNodes}.
+     *
+     * @param index The name of the index or an empty string for all.
+     * @return one row per index that is or was populated since the start of the database.
+     */
+    @Procedure(mode = Mode.READ)
+    @Description("apoc.index.populationProgress(['name']) YIELD index, done, nodes, totalNodes, indexed, partitions, totalPartitions, percent, time, eta - progress of running and finished apoc.index.addAllNodes populations")
+    public Stream<PopulationProgress> populationProgress(@Name(value = "index", defaultValue = "") String index) {
+        return populations.values().stream()
+                .filter(population -> index == null || index.isEmpty() || population.index.equals(index))
+                .map(Population::progress);
+    }
+
+    /**
+     * State of the automatic updates of manual indexes with {@code autoUpdate:true}.
+     *
+     * @return a single row, or none if {@code apoc.autoIndex.enabled} is not set.
+     */
+    @Procedure(mode = Mode.READ)
+    @Description("apoc.index.autoUpdateStatus() YIELD async, workers, pending, received, coalesced, applied, lag - pending node updates and lag in ms of the async index updates")
+    public Stream<IndexUpdateQueue.Status> autoUpdateStatus() {
+        IndexUpdateTransactionEventHandler handler = db.getDependencyResolver().resolveDependency(ApocKernelExtensionFactory.ApocLifecycle.class)
+                .getIndexUpdateLifeCycle().getIndexUpdateTransactionEventHandler();
+        return handler == null ? Stream.empty() : Stream.of(handler.getStatus());
+    }
+
     /**
      * Search in the specified index for nodes matching the the given value.
      * <p>
@@ -138,6 +208,11 @@ public class FreeTextSearch {
     private static final Map<String, String> CONFIG = LuceneIndexImplementation.FULLTEXT_CONFIG;
     static final String KEY = "search";
     private static final JobScheduler.Group GROUP = new JobScheduler.Group(FreeTextSearch.class.getSimpleName());
+    private static final String PARTITION_SIZE = "partitionSize";
+    private static final String BATCH_SIZE = "batchSize";
+    private static final long DEFAULT_PARTITION_SIZE = 1_000_000;
+    private static final long DEFAULT_BATCH_SIZE = 50_000;
+    private static final Map<String, Population> populations = new ConcurrentHashMap<>();
 
     private static Stream<WeightedNodeResult> result(IndexHits<Node> hits) {
         return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Iterator<WeightedNodeResult>() {
@@ -155,43 +230,100 @@ public class FreeTextSearch {
         }, 0), false);
     }
 
-    private void populate(Index<Node> index, Map<String, List<String>> config, Consumer<IndexStats> result) {
+    /**
+     * Splits the node id space into partitions of {@code partitionSize} ids which are indexed concurrently on
+     * {@link Pools#DEFAULT}, each partition in its own transactions of at most {@code batchSize} indexed nodes.
+     */
+    private void populate(String name, Index<Node> index, Map<String, List<String>> config, Map<String, Object> options, Consumer<IndexStats> result) {
         Map<String, String[]> structure = convertStructure(config);
+        long partitionSize = Math.max(1, Util.toLong(options.getOrDefault(PARTITION_SIZE, DEFAULT_PARTITION_SIZE)));
+        int batchSize = (int) Math.max(1, Util.toLong(options.getOrDefault(BATCH_SIZE, DEFAULT_BATCH_SIZE)));
+        long highId = getHighestIdInUseForStore(db.getDependencyResolver(), MultiThreadedGlobalGraphOperations.GlobalOperationsTypes.NODES);
+        Population population = new Population(name, highId, (highId + partitionSize - 1) / partitionSize);
+        populations.put(name, population);
+
         Map<LabelProperty, Counter> stats = new HashMap<>();
-        Transaction tx = db.beginTx();
+        int maxInFlight = Math.max(2, Pools.getNoThreadsInDefaultPool() * 2);
+        Deque<FutureTask<Map<LabelProperty, Counter>>> inFlight = new ArrayDeque<>(maxInFlight);
         try {
+            for (long start = 0; start < highId; start += partitionSize) {
+                long from = start, to = Math.min(start + partitionSize, highId);
+                FutureTask<Map<LabelProperty, Counter>> task = new FutureTask<>(() -> populate(index, structure, from, to, batchSize, population));
+                Pools.DEFAULT.execute(task);
+                inFlight.add(task);
+                if (inFlight.size() >= maxInFlight) {
+                    merge(stats, finish(inFlight.poll()));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                merge(stats, finish(inFlight.poll()));
+            }
+            population.done(null);
+        } catch (RuntimeException e) {
+            population.done(e.getMessage());
+            throw e;
+        } finally {
+            inFlight.forEach(task -> task.cancel(false));
+        }
+        stats.forEach((key,counter) -> result.accept(key.stats(counter)));
+    }
+
+    private Map<LabelProperty, Counter> populate(Index<Node> index, Map<String, String[]> structure, long from, long to, int batchSize, Population population) {
+        Map<LabelProperty, Counter> stats = new HashMap<>();
+        ThreadToStatementContextBridge ctx = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+        long id = from;
+        while (id < to) {
             int batch = 0;
-            for (Node node : db.getAllNodes()) {
-                boolean indexed = false;
-                for (Label label : node.getLabels()) {
-                    String[] keys = structure.get(label.name());
-                    if (keys == null) continue;
-                    indexed = true;
-                    Map<String, Object> properties = keys.length == 0 ? node.getAllProperties() : node.getProperties(keys);
-                    for (Map.Entry<String, Object> entry : properties.entrySet()) {
-                        Object value = entry.getValue();
-                        index.add(node, KEY, value.toString());
-                        if (value instanceof Number) {
-                            value = ValueContext.numeric(((Number) value).doubleValue());
-                        }
-                        index.add(node, label.name() + "." + entry.getKey(), value);
-                        stats.computeIfAbsent(new LabelProperty(label.name(), entry.getKey()), x -> new Counter()).count++;
+            long batchStart = id;
+            try (Transaction tx = db.beginTx()) {
+                Read read = ctx.getKernelTransactionBoundToThisThread(true).dataRead();
+                for (; id < to && batch < batchSize; id++) {
+                    if (read.nodeExists(id) && add(index, structure, db.getNodeById(id), stats)) {
+                        batch++;
                     }
                 }
-                if (indexed) {
-                    if (++batch == 50_000) {
-                        batch = 0;
-                        tx.success();
-                        tx.close();
-                        tx = db.beginTx();
-                    }
+                tx.success();
+            }
+            population.progress(id - batchStart, batch);
+        }
+        population.partitionDone();
+        return stats;
+    }
+
+    private static boolean add(Index<Node> index, Map<String, String[]> structure, Node node, Map<LabelProperty, Counter> stats) {
+        boolean indexed = false;
+        for (Label label : node.getLabels()) {
+            String[] keys = structure.get(label.name());
+            if (keys == null) continue;
+            indexed = true;
+            Map<String, Object> properties = keys.length == 0 ? node.getAllProperties() : node.getProperties(keys);
+            for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                Object value = entry.getValue();
+                index.add(node, KEY, value.toString());
+                if (value instanceof Number) {
+                    value = ValueContext.numeric(((Number) value).doubleValue());
                 }
+                index.add(node, label.name() + "." + entry.getKey(), value);
+                stats.computeIfAbsent(new LabelProperty(label.name(), entry.getKey()), x -> new Counter()).count++;
             }
-            tx.success();
-        } finally {
-            tx.close();
         }
-        stats.forEach((key,counter) -> result.accept(key.stats(counter)));
+        return indexed;
+    }
+
+    private static void merge(Map<LabelProperty, Counter> stats, Map<LabelProperty, Counter> partition) {
+        partition.forEach((key, counter) -> stats.computeIfAbsent(key, x -> new Counter()).count += counter.count);
+    }
+
+    /**
+     * Runs the partition on the calling thread if no pool thread picked it up yet, population itself runs on the pool.
+     */
+    private static <T> T finish(FutureTask<T> task) {
+        task.run();
+        try {
+            return Pools.force(task);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error populating the index", e.getCause());
+        }
     }
 
     private Map<String, String[]> convertStructure(Map<String, List<String>> config) {
@@ -325,4 +457,40 @@ public class FreeTextSearch {
     private static class Counter {
         long count;
     }
+
+    private static class Population {
+        private final String index;
+        private final long totalNodes;
+        private final long totalPartitions;
+        private final long start = System.currentTimeMillis();
+        private final AtomicLong nodes = new AtomicLong();
+        private final AtomicLong indexed = new AtomicLong();
+        private final AtomicLong partitions = new AtomicLong();
+        private volatile long end;
+        private volatile String error;
+
+        Population(String index, long totalNodes, long totalPartitions) {
+            this.index = index;
+            this.totalNodes = totalNodes;
+            this.totalPartitions = totalPartitions;
+        }
+
+        void progress(long nodes, long indexed) {
+            this.nodes.addAndGet(nodes);
+            this.indexed.addAndGet(indexed);
+        }
+
+        void partitionDone() {
+            partitions.incrementAndGet();
+        }
+
+        void done(String error) {
+            this.error = error;
+            this.end = System.currentTimeMillis();
+        }
+
+        PopulationProgress progress() {
+            return new PopulationProgress(this);
+        }
+    }
 }
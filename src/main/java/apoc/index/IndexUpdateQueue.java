@@ -0,0 +1,459 @@
+package apoc.index;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexManager;
+import org.neo4j.kernel.AvailabilityGuard;
+import org.neo4j.kernel.impl.core.EmbeddedProxySPI;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Applies manual index updates asynchronously, for {@code apoc.autoIndex.async=true}.
+ * <p>
+ * Updates are partitioned by node id over a number of workers. Each worker collects the updates per index and node, where
+ * a later update of the same property replaces an earlier one, and a node deletion replaces all earlier updates of the node.
+ * Once {@code opsCountRollover} updates are pending or the oldest one waited {@code millisRollover} ms, the worker applies
+ * all of them grouped by index in one transaction. Producers block while a worker has {@code capacity} pending entries.
+ * On shutdown every worker applies the updates still pending before it stops. When the database is already shutting
+ * down no transaction can be started anymore, then the updated nodes are recorded in {@value #PENDING_FILE} in the store
+ * directory and reindexed from their current properties after the next start.
+ */
+public class IndexUpdateQueue {
+
+    enum Kind {
+        /** add the value without removing the previous one */
+        ADD,
+        /** replace the previous value */
+        SET,
+        REMOVE,
+        /** remove the node from the index */
+        DELETE
+    }
+
+    static final class Update {
+        final Index<Node> index;
+        final Node node;
+        final String key;
+        final Object value;
+        final Kind kind;
+
+        Update(Index<Node> index, Node node, String key, Object value, Kind kind) {
+            this.index = index;
+            this.node = node;
+            this.key = key;
+            this.value = value;
+            this.kind = kind;
+        }
+
+        void apply() {
+            if (kind == Kind.DELETE) {
+                index.remove(node);
+                return;
+            }
+            if (kind != Kind.ADD) {
+                index.remove(node, key);
+                index.remove(node, FreeTextSearch.KEY);
+            }
+            if (kind != Kind.REMOVE) {
+                index.add(node, key, value);
+                index.add(node, FreeTextSearch.KEY, value);
+            }
+        }
+
+        /**
+         * @return the single update with the effect of this one followed by the later one
+         */
+        Update then(Update later) {
+            if (later.kind != Kind.ADD || kind == Kind.ADD) return later;
+            return new Update(later.index, later.node, later.key, later.value, Kind.SET);
+        }
+    }
+
+    public static class Status {
+        public final boolean async;
+        public final long workers;
+        public final long pending;
+        public final long received;
+        public final long coalesced;
+        public final long applied;
+        public final long lag;
+
+        Status(boolean async, long workers, long pending, long received, long coalesced, long applied, long lag) {
+            this.async = async;
+            this.workers = workers;
+            this.pending = pending;
+            this.received = received;
+            this.coalesced = coalesced;
+            this.applied = applied;
+            this.lag = lag;
+        }
+    }
+
+    static final Status SYNC = new Status(false, 0, 0, 0, 0, 0, 0);
+
+    private static final long STOP_TIMEOUT_MILLIS = 60_000;
+    static final String PENDING_FILE = "apoc-index-updates.pending";
+
+    private final GraphDatabaseAPI db;
+    private final Log log;
+    private final Worker[] workers;
+    private final int capacity;
+    private final long opsCountRollover;
+    private final long millisRollover;
+    private volatile boolean running = true;
+
+    IndexUpdateQueue(GraphDatabaseAPI db, Log log, int workers, int capacity, long opsCountRollover, long millisRollover) {
+        this.db = db;
+        this.log = log;
+        this.capacity = Math.max(1, capacity);
+        this.opsCountRollover = Math.max(1, Math.min(opsCountRollover, this.capacity));
+        this.millisRollover = millisRollover;
+        this.workers = new Worker[Math.max(1, workers)];
+        for (int i = 0; i < this.workers.length; i++) {
+            this.workers[i] = new Worker();
+        }
+    }
+
+    void start() {
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].thread = new Thread(workers[i]::run, "apoc-index-update-" + i);
+            workers[i].thread.start();
+        }
+        log.info("started " + workers.length + " background threads for async index updates");
+    }
+
+    /**
+     * Stops the workers and waits until they applied their pending updates.
+     */
+    void stop() {
+        running = false;
+        for (Worker worker : workers) {
+            worker.signal();
+        }
+        long deadline = System.currentTimeMillis() + STOP_TIMEOUT_MILLIS;
+        try {
+            for (Worker worker : workers) {
+                if (worker.thread != null) worker.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void put(Collection<Update> updates) throws InterruptedException {
+        for (Update update : updates) {
+            workers[(int) Math.floorMod(update.node.getId(), (long) workers.length)].put(update);
+        }
+    }
+
+    /**
+     * Applies all updates received so far and waits until they are committed.
+     */
+    void flush() throws InterruptedException {
+        for (Worker worker : workers) {
+            worker.flush();
+        }
+    }
+
+    Status status() {
+        long pending = 0, received = 0, coalesced = 0, applied = 0, oldest = Long.MAX_VALUE;
+        for (Worker worker : workers) {
+            worker.lock.lock();
+            try {
+                pending += worker.pending.size();
+                if (!worker.pending.isEmpty()) oldest = Math.min(oldest, worker.oldest);
+            } finally {
+                worker.lock.unlock();
+            }
+            received += worker.received.get();
+            coalesced += worker.coalesced.get();
+            applied += worker.applied.get();
+        }
+        long lag = oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+        return new Status(true, workers.length, pending, received, coalesced, applied, lag);
+    }
+
+    private File pendingFile() {
+        return new File(db.getStoreDir(), PENDING_FILE);
+    }
+
+    /**
+     * Records the nodes of updates that could not be applied before the shutdown.
+     */
+    private synchronized void keepPending(Collection<Target> targets) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(pendingFile(), true)))) {
+            for (Target target : targets) {
+                out.writeLong(target.nodeId);
+                out.writeUTF(target.index.getName());
+            }
+            log.info("recorded " + targets.size() + " pending node updates in " + PENDING_FILE + " to be reindexed after the next start");
+        } catch (IOException e) {
+            log.error("background indexing thread failed to record " + targets.size() + " pending node updates", e);
+        }
+    }
+
+    /**
+     * Reindexes the nodes recorded by {@link #keepPending(Collection)} from their current properties, nodes deleted
+     * meanwhile are removed from the index.
+     */
+    private void reindexPending() {
+        File file = pendingFile();
+        if (!file.exists()) return;
+        long count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+             Transaction tx = db.beginTx()) {
+            IndexManager indexManager = db.index();
+            EmbeddedProxySPI proxies = db.getDependencyResolver().resolveDependency(EmbeddedProxySPI.class);
+            while (true) {
+                long nodeId;
+                String indexName;
+                try {
+                    nodeId = in.readLong();
+                    indexName = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (!indexManager.existsForNodes(indexName)) continue;
+                Index<Node> index = indexManager.forNodes(indexName);
+                index.remove(proxies.newNodeProxy(nodeId));
+                try {
+                    reindex(index, indexManager.getConfiguration(index), db.getNodeById(nodeId));
+                } catch (NotFoundException deleted) {
+                    // removed from the index only
+                }
+                count++;
+            }
+            tx.success();
+        } catch (IOException e) {
+            log.error("failed to read the pending node updates of " + file, e);
+            return;
+        }
+        log.info("reindexed " + count + " nodes with updates pending at the last shutdown");
+        file.delete();
+    }
+
+    private static void reindex(Index<Node> index, Map<String, String> indexConfig, Node node) {
+        for (String label : indexConfig.getOrDefault("labels", "").split(":")) {
+            if (label.isEmpty() || !node.hasLabel(Label.label(label))) continue;
+            for (String property : indexConfig.getOrDefault("keysForLabel:" + label, "").split(":")) {
+                if (property.isEmpty()) continue;
+                Object value = node.getProperty(property, null);
+                if (value == null) continue;
+                index.add(node, label + "." + property, value);
+                index.add(node, FreeTextSearch.KEY, value);
+            }
+        }
+    }
+
+    /**
+     * Pending updates of one node in one index.
+     */
+    private static final class NodeUpdates {
+        private Node node;
+        private boolean deleted;
+        private final Map<String, Update> keys = new LinkedHashMap<>();
+
+        /**
+         * @return true if the update replaced an earlier one
+         */
+        boolean add(Update update) {
+            if (update.kind == Kind.DELETE) {
+                boolean replaced = deleted || !keys.isEmpty();
+                keys.clear();
+                deleted = true;
+                node = update.node;
+                return replaced;
+            }
+            Update previous = keys.get(update.key);
+            keys.put(update.key, previous == null ? update : previous.then(update));
+            return previous != null;
+        }
+
+        void apply(Index<Node> index) {
+            if (deleted) index.remove(node);
+            for (Update update : keys.values()) update.apply();
+        }
+    }
+
+    private static final class Target {
+        private final Index<Node> index;
+        private final long nodeId;
+
+        Target(Index<Node> index, long nodeId) {
+            this.index = index;
+            this.nodeId = nodeId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Target)) return false;
+            Target target = (Target) o;
+            return nodeId == target.nodeId && index.equals(target.index);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * index.hashCode() + Long.hashCode(nodeId);
+        }
+    }
+
+    private class Worker {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private Map<Target, NodeUpdates> pending = new LinkedHashMap<>();
+        private long oldest;
+        private long ops;
+        private long requested;
+        private long flushed;
+        private final AtomicLong received = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private final AtomicLong applied = new AtomicLong();
+        private Thread thread;
+        private boolean done;
+
+        void put(Update update) throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                Target target = new Target(update.index, update.node.getId());
+                NodeUpdates updates = pending.get(target);
+                while (updates == null && pending.size() >= capacity && running) {
+                    changed.await();
+                    updates = pending.get(target);
+                }
+                if (updates == null) {
+                    if (pending.isEmpty()) oldest = System.currentTimeMillis();
+                    updates = new NodeUpdates();
+                    pending.put(target, updates);
+                }
+                if (updates.add(update)) coalesced.incrementAndGet();
+                received.incrementAndGet();
+                if (++ops >= opsCountRollover) changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void flush() throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                long request = ++requested;
+                changed.signalAll();
+                while (flushed < request && !done) {
+                    changed.await(100, TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void signal() {
+            lock.lock();
+            try {
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void run() {
+            try {
+                AvailabilityGuard availabilityGuard = db.getDependencyResolver().resolveDependency(AvailabilityGuard.class);
+                availabilityGuard.await(60_000);
+                if (this == workers[0] && availabilityGuard.isAvailable()) {
+                    reindexPending();
+                }
+                while (running && !availabilityGuard.isShutdown()) {
+                    Map<Target, NodeUpdates> batch;
+                    long flushRequest;
+                    long batchOps;
+                    lock.lock();
+                    try {
+                        long wait = waitMillis();
+                        while (wait > 0 && running && !availabilityGuard.isShutdown()) {
+                            changed.await(wait, TimeUnit.MILLISECONDS);
+                            wait = waitMillis();
+                        }
+                        batch = pending;
+                        batchOps = ops;
+                        flushRequest = requested;
+                        pending = new LinkedHashMap<>();
+                        ops = 0;
+                        changed.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                    boolean stopping = !running || availabilityGuard.isShutdown();
+                    if (stopping) {
+                        log.debug("shutdown in progress. Applying " + batch.size() + " pending updates before stopping the index tracking thread.");
+                    }
+                    if (!batch.isEmpty()) {
+                        try {
+                            apply(batch);
+                            applied.addAndGet(batchOps);
+                        } catch (Exception e) {
+                            if (stopping) {
+                                keepPending(batch.keySet());
+                            } else {
+                                log.error("background indexing thread failed to apply " + batch.size() + " node updates", e);
+                            }
+                        }
+                    }
+                    lock.lock();
+                    try {
+                        flushed = flushRequest;
+                        changed.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (stopping) break;
+                }
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                throw new RuntimeException(e);
+            } finally {
+                lock.lock();
+                try {
+                    done = true;
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                log.info("stopping background thread for async index updates");
+            }
+        }
+
+        /**
+         * @return how long to wait before the next batch, 0 to apply it now
+         */
+        private long waitMillis() {
+            if (requested > flushed || ops >= opsCountRollover) return 0;
+            if (pending.isEmpty()) return millisRollover;
+            return Math.max(0, oldest + millisRollover - System.currentTimeMillis());
+        }
+
+        private void apply(Map<Target, NodeUpdates> batch) {
+            Map<Index<Node>, List<NodeUpdates>> byIndex = new LinkedHashMap<>();
+            batch.forEach((target, updates) -> byIndex.computeIfAbsent(target.index, index -> new ArrayList<>()).add(updates));
+            long start = System.currentTimeMillis();
+            try (Transaction tx = db.beginTx()) {
+                byIndex.forEach((index, updates) -> {
+                    for (NodeUpdates nodeUpdates : updates) nodeUpdates.apply(index);
+                });
+                tx.success();
+            }
+            log.info("background indexing thread committed " + batch.size() + " node updates in " + byIndex.size() + " indexes, took " + (System.currentTimeMillis() - start) + " millis");
+        }
+    }
+}
@@ -4,6 +4,8 @@ import apoc.ApocConfiguration;
 import apoc.Pools;
 import apoc.util.Util;
 import org.apache.commons.lang3.time.StopWatch;
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveIntObjectMap;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.event.LabelEntry;
 import org.neo4j.graphdb.event.PropertyEntry;
@@ -12,57 +14,61 @@ import org.neo4j.graphdb.event.TransactionEventHandler;
 import org.neo4j.graphdb.index.Index;
 import org.neo4j.graphdb.index.IndexManager;
 import org.neo4j.helpers.collection.Iterables;
-import org.neo4j.kernel.AvailabilityGuard;
+import org.neo4j.internal.kernel.api.LabelSet;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.stream.Stream;
-
-import static org.neo4j.helpers.collection.Iterables.stream;
 
 /**
  * a transaction event handler that updates manual indexes based on configuration in graph properties
  * based on configuration the updates are process synchronously via {@link #beforeCommit(TransactionData)} or async via
- * {@link #afterCommit(TransactionData, Collection<Consumer<Void>)}
+ * {@link #afterCommit(TransactionData, Collection)} and an {@link IndexUpdateQueue}
  * @author Stefan Armbruster
  */
-public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.Adapter<Collection<Consumer<Void>>> {
+public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.Adapter<Collection<IndexUpdateQueue.Update>> {
 
-    private final GraphDatabaseService graphDatabaseService;
+    private final GraphDatabaseAPI graphDatabaseService;
     private final boolean async;
 
-    private final BlockingQueue<Consumer<Void>> indexCommandQueue;
+    private final IndexUpdateQueue indexUpdateQueue;
     private final boolean stopWatchEnabled;
     private final Log log;
-    private Map<String, Map<String, Collection<Index<Node>>>> indexesByLabelAndProperty;
+    private final ThreadToStatementContextBridge statementContextBridge;
+    private volatile IndexRoutes indexRoutes;
     private ScheduledFuture<?> configUpdateFuture = null;
 
-    // "magic" command for queue to perform a tx rollover
-    private static boolean forceTxRolloverFlag = false;
-    private static final Consumer<Void> FORCE_TX_ROLLOVER = aVoid -> forceTxRolloverFlag = true;
-
     public IndexUpdateTransactionEventHandler(GraphDatabaseAPI graphDatabaseService, Log log, boolean async, int queueCapacity, boolean stopWatchEnabled) {
+        this(graphDatabaseService, log, async ? new IndexUpdateQueue(graphDatabaseService, log, 1, queueCapacity, 50_000, 5_000) : null, stopWatchEnabled);
+    }
+
+    IndexUpdateTransactionEventHandler(GraphDatabaseAPI graphDatabaseService, Log log, IndexUpdateQueue indexUpdateQueue, boolean stopWatchEnabled) {
         this.graphDatabaseService = graphDatabaseService;
         this.log = log;
-        this.async = async;
+        this.async = indexUpdateQueue != null;
         this.stopWatchEnabled = stopWatchEnabled;
-        this.indexCommandQueue = async ? new LinkedBlockingQueue<>(queueCapacity) : null;
+        this.indexUpdateQueue = indexUpdateQueue;
+        this.statementContextBridge = graphDatabaseService.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
     }
 
-    public BlockingQueue<Consumer<Void>> getIndexCommandQueue() {
-        return indexCommandQueue;
+    IndexUpdateQueue getIndexUpdateQueue() {
+        return indexUpdateQueue;
     }
 
-    @FunctionalInterface
-    interface IndexFunction<A, B, C, D, E> {
-        void apply (A a, B b, C c, D d, E e);
+    /**
+     * @return pending updates, throughput and lag of the async index updates
+     */
+    public IndexUpdateQueue.Status getStatus() {
+        return async ? indexUpdateQueue.status() : IndexUpdateQueue.SYNC;
     }
 
     private <T> T logDuration(String message, Supplier<T> supplier) {
@@ -82,148 +88,143 @@ public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.
     }
 
     @Override
-    public Collection<Consumer<Void>> beforeCommit(TransactionData data) throws Exception {
+    public Collection<IndexUpdateQueue.Update> beforeCommit(TransactionData data) throws Exception {
 
         return logDuration("beforeCommit", () -> {
-            getIndexesByLabelAndProperty();
-            Collection<Consumer<Void>> state = async ? new LinkedList<>() : null;
+            final KernelTransaction ktx = statementContextBridge.getKernelTransactionBoundToThisThread(true);
+            final TokenRead tokenRead = ktx.tokenRead();
+            final IndexRoutes routes = getIndexRoutes(tokenRead);
+            Collection<IndexUpdateQueue.Update> state = async ? new ArrayList<>() : null;
+            if (routes.byLabel.isEmpty()) {
+                return state;
+            }
+            try (NodeCursor nodeCursor = ktx.cursors().allocateNodeCursor();
+                 PropertyCursor propertyCursor = ktx.cursors().allocatePropertyCursor()) {
 
-            iterateNodePropertyChange(stream(data.assignedNodeProperties()),false, (index, node, key, value, oldValue) -> indexUpdate(state, aVoid -> {
-                if (oldValue != null) {
-                    index.remove(node, key);
-                    index.remove(node, FreeTextSearch.KEY);
+                for (PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+                    IndexUpdateQueue.Kind kind = entry.previouslyCommitedValue() != null ? IndexUpdateQueue.Kind.SET : IndexUpdateQueue.Kind.ADD;
+                    propertyChange(state, routes, ktx.dataRead(), nodeCursor, tokenRead.propertyKey(entry.key()), entry.entity(), entry.value(), kind);
                 }
-                index.add(node, key, value);
-                index.add(node, FreeTextSearch.KEY, value);
-            }));
-
-            // filter out removedNodeProperties from node deletions
-            iterateNodePropertyChange(stream(data.removedNodeProperties()).filter(nodePropertyEntry -> !data.isDeleted(nodePropertyEntry.entity())), true, (index, node, key, value, oldValue) -> indexUpdate(state, aVoid -> {
-                index.remove(node, key);
-                index.remove(node, FreeTextSearch.KEY);
-            }));
-
-            // performance tweak: converted created nodes to a set, so we can apply `contains` on it fast
-            final Set<Node> createdNodes = Iterables.asSet(data.createdNodes());
-            iterateLabelChanges(
-                    stream(data.assignedLabels()).filter( labelEntry -> !createdNodes.contains( labelEntry.node() ) ),
-                    (index, node, key, value, ignore) -> indexUpdate(state, aVoid -> {
-                        index.add(node, key, value);
-                        index.add(node, FreeTextSearch.KEY, value);
-                    }));
-
-            iterateLabelChanges(
-                    stream(data.removedLabels()).filter( labelEntry -> !data.isDeleted(labelEntry.node()) ),
-                    (index, node, key, value, ignore) -> indexUpdate(state, aVoid -> {
-                        index.remove(node, key);
-                        index.remove(node, FreeTextSearch.KEY);
-                    }));
-
-            iterateNodeDeletions(stream(data.removedLabels()).filter( labelEntry -> data.isDeleted(labelEntry.node())),
-                    (nodeIndex, node, void1, void2, void3) -> indexUpdate(state, aVoid -> nodeIndex.remove(node)));
+
+                // filter out removedNodeProperties from node deletions
+                for (PropertyEntry<Node> entry : data.removedNodeProperties()) {
+                    if (data.isDeleted(entry.entity())) continue;
+                    propertyChange(state, routes, ktx.dataRead(), nodeCursor, tokenRead.propertyKey(entry.key()), entry.entity(), null, IndexUpdateQueue.Kind.REMOVE);
+                }
+
+                // performance tweak: converted created nodes to a set, so we can apply `contains` on it fast
+                final Set<Node> createdNodes = Iterables.asSet(data.createdNodes());
+                for (LabelEntry entry : data.assignedLabels()) {
+                    if (createdNodes.contains(entry.node())) continue;
+                    labelChange(state, routes.byLabel.get(tokenRead.nodeLabel(entry.label().name())), ktx.dataRead(), nodeCursor, propertyCursor, entry.node(), IndexUpdateQueue.Kind.ADD);
+                }
+
+                for (LabelEntry entry : data.removedLabels()) {
+                    LabelRoutes labelRoutes = routes.byLabel.get(tokenRead.nodeLabel(entry.label().name()));
+                    if (labelRoutes == null) continue;
+                    if (data.isDeleted(entry.node())) {
+                        for (Index<Node> index : labelRoutes.indexes) {
+                            indexUpdate(state, new IndexUpdateQueue.Update(index, entry.node(), null, null, IndexUpdateQueue.Kind.DELETE));
+                        }
+                    } else {
+                        labelChange(state, labelRoutes, ktx.dataRead(), nodeCursor, propertyCursor, entry.node(), IndexUpdateQueue.Kind.REMOVE);
+                    }
+                }
+            }
             return state;
         });
     }
 
     @Override
-    public void afterCommit(TransactionData data, Collection<Consumer<Void>> state) {
+    public void afterCommit(TransactionData data, Collection<IndexUpdateQueue.Update> state) {
         logDuration("afterCommit", () -> {
             if (async) {
-                for (Consumer<Void> consumer: state) {
-                    try {
-                        indexCommandQueue.put(consumer);
-                    } catch (InterruptedException e) {
-                        throw new RuntimeException(e);
-                    }
+                try {
+                    indexUpdateQueue.put(state);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
                 }
             }
             return null;
         });
     }
 
-    private void iterateNodePropertyChange(Stream<PropertyEntry<Node>> stream, boolean propertyRemoved,
-          IndexFunction<Index<Node>, Node, String, Object, Object> function) {
-        stream.forEach(nodePropertyEntry -> {
-            final Node entity = nodePropertyEntry.entity();
-            final String key = nodePropertyEntry.key();
-            final Object value = propertyRemoved ? null : nodePropertyEntry.value();
-            entity.getLabels().forEach(label -> {
-                final String labelName = label.name();
-                final Map<String, Collection<Index<Node>>> propertyIndexMap = indexesByLabelAndProperty.get(labelName);
-                if (propertyIndexMap!=null) {
-                    final Collection<Index<Node>> indices = propertyIndexMap.get(key);
-                    if (indices!= null) {
-                        for (Index<Node> index : indices) {
-                            String indexKey = labelName + "." + key;
-                            function.apply(index, entity, indexKey, value, nodePropertyEntry.previouslyCommitedValue());
-                        }
-                    }
-                }
-            });
-        });
-    }
-
-    private void iterateLabelChanges(Stream<LabelEntry> stream, IndexFunction<Index<Node>, Node, String, Object, Void> function) {
-        stream.forEach(labelEntry -> {
-            final String labelName = labelEntry.label().name();
-            final Map<String, Collection<Index<Node>>> propertyIndicesMap = indexesByLabelAndProperty.get(labelName);
-            if (propertyIndicesMap != null) {
-                final Node entity = labelEntry.node();
-                for (String key : entity.getPropertyKeys()) {
-                    Collection<Index<Node>> indices = propertyIndicesMap.get(key);
-                    if (indices != null) {
-                        for (Index<Node> index : indices) {
-                            Object value = entity.getProperty(key);
-                            String indexKey = labelName + "." + key;
-                            function.apply(index, entity, indexKey, value, null);
-                        }
-                    }
-                }
+    /**
+     * updates the property in all indexes configured for one of the current labels of the node
+     */
+    private void propertyChange(Collection<IndexUpdateQueue.Update> state, IndexRoutes routes, Read read, NodeCursor nodeCursor,
+                                int propertyKey, Node node, Object value, IndexUpdateQueue.Kind kind) {
+        if (propertyKey == TokenRead.NO_TOKEN) return;
+        read.singleNode(node.getId(), nodeCursor);
+        if (!nodeCursor.next()) return;
+        LabelSet labels = nodeCursor.labels();
+        for (int i = 0; i < labels.numberOfLabels(); i++) {
+            LabelRoutes labelRoutes = routes.byLabel.get(labels.label(i));
+            if (labelRoutes == null) continue;
+            Route[] propertyRoutes = labelRoutes.byProperty.get(propertyKey);
+            if (propertyRoutes == null) continue;
+            for (Route route : propertyRoutes) {
+                indexUpdate(state, new IndexUpdateQueue.Update(route.index, node, route.key, value, kind));
             }
-        });
+        }
     }
 
-    private void iterateNodeDeletions(Stream<LabelEntry> stream, IndexFunction<Index<Node>, Node, Void, Void, Void> function) {
-        stream.forEach(labelEntry -> {
-            final Map<String, Collection<Index<Node>>> propertyIndicesMap = indexesByLabelAndProperty.get(labelEntry.label().name());
-            if (propertyIndicesMap!=null) {
-                for (Collection<Index<Node>> indices: propertyIndicesMap.values()) {
-                    for (Index<Node> index: indices) {
-                        function.apply(index, labelEntry.node(), null, null, null);
-                    }
-                }
+    /**
+     * adds or removes all properties of the node in the indexes configured for the label
+     */
+    private void labelChange(Collection<IndexUpdateQueue.Update> state, LabelRoutes labelRoutes, Read read, NodeCursor nodeCursor,
+                             PropertyCursor propertyCursor, Node node, IndexUpdateQueue.Kind kind) {
+        if (labelRoutes == null) return;
+        read.singleNode(node.getId(), nodeCursor);
+        if (!nodeCursor.next()) return;
+        nodeCursor.properties(propertyCursor);
+        while (propertyCursor.next()) {
+            Route[] propertyRoutes = labelRoutes.byProperty.get(propertyCursor.propertyKey());
+            if (propertyRoutes == null) continue;
+            Object value = kind == IndexUpdateQueue.Kind.REMOVE ? null : propertyCursor.propertyValue().asObjectCopy();
+            for (Route route : propertyRoutes) {
+                indexUpdate(state, new IndexUpdateQueue.Update(route.index, node, route.key, value, kind));
             }
-        });
+        }
     }
 
     /**
-     * in async mode add the index action to a collection for consumption in {@link #afterCommit(TransactionData, Collection)}, in sync mode, run it directly
+     * in async mode add the index update to a collection for consumption in {@link #afterCommit(TransactionData, Collection)}, in sync mode, apply it directly
      */
-    private Void indexUpdate(Collection<Consumer<Void>> state, Consumer<Void> indexAction) {
+    private void indexUpdate(Collection<IndexUpdateQueue.Update> state, IndexUpdateQueue.Update update) {
         if (async) {
-            state.add(indexAction);
+            state.add(update);
         } else {
-            indexAction.accept(null);
+            update.apply();
         }
-        return null;
     }
 
-    public Map<String, Map<String, Collection<Index<Node>>>> getIndexesByLabelAndProperty() {
-        if (indexesByLabelAndProperty == null ) {
-            indexesByLabelAndProperty = initIndexConfiguration();
+    /**
+     * Routes that miss a label or property key token are rebuilt once new tokens were created.
+     */
+    IndexRoutes getIndexRoutes(TokenRead tokenRead) {
+        IndexRoutes routes = indexRoutes;
+        if (routes == null || !routes.complete
+                && (routes.labelCount != tokenRead.labelCount() || routes.propertyKeyCount != tokenRead.propertyKeyCount())) {
+            routes = initIndexConfiguration();
+            indexRoutes = routes;
         }
-        return indexesByLabelAndProperty;
+        return routes;
     }
 
     public void resetConfiguration() {
-        indexesByLabelAndProperty = null;
+        indexRoutes = null;
     }
 
     // might be run from a scheduler, so we need to make sure we have a transaction
-    private synchronized Map<String, Map<String, Collection<Index<Node>>>> initIndexConfiguration() {
-        Map<String, Map<String, Collection<Index<Node>>>> indexesByLabelAndProperty = new HashMap<>();
+    // tokens are only looked up, creating them would fail on read only and follower members
+    private synchronized IndexRoutes initIndexConfiguration() {
+        Map<Integer, Map<Integer, List<Route>>> routes = new HashMap<>();
         try (Transaction tx = graphDatabaseService.beginTx() ) {
-
+            final TokenRead tokenRead = statementContextBridge.getKernelTransactionBoundToThisThread(true).tokenRead();
+            final int labelCount = tokenRead.labelCount();
+            final int propertyKeyCount = tokenRead.propertyKeyCount();
+            boolean complete = true;
             final IndexManager indexManager = graphDatabaseService.index();
             for (String indexName : indexManager.nodeIndexNames()) {
 
@@ -233,17 +234,74 @@ public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.
                 if (Util.toBoolean(indexConfig.get("autoUpdate"))) {
                     String labels = indexConfig.getOrDefault("labels", "");
                     for (String label : labels.split(":")) {
-                        Map<String, Collection<Index<Node>>> propertyKeyToIndexMap = indexesByLabelAndProperty.computeIfAbsent(label, s -> new HashMap<>());
+                        if (label.isEmpty()) continue;
+                        int labelId = tokenRead.nodeLabel(label);
+                        if (labelId == TokenRead.NO_TOKEN) {
+                            complete = false;
+                            continue;
+                        }
+                        Map<Integer, List<Route>> propertyKeyToRoutes = routes.computeIfAbsent(labelId, id -> new HashMap<>());
                         String[] keysForLabel = indexConfig.getOrDefault("keysForLabel:" + label, "").split(":");
                         for (String property : keysForLabel) {
-                            propertyKeyToIndexMap.computeIfAbsent(property, s -> new ArrayList<>()).add(index);
+                            if (property.isEmpty()) continue;
+                            int propertyKey = tokenRead.propertyKey(property);
+                            if (propertyKey == TokenRead.NO_TOKEN) {
+                                complete = false;
+                                continue;
+                            }
+                            propertyKeyToRoutes.computeIfAbsent(propertyKey, id -> new ArrayList<>())
+                                    .add(new Route(index, label + "." + property));
                         }
                     }
                 }
             }
             tx.success();
+            return new IndexRoutes(routes, complete, labelCount, propertyKeyCount);
+        }
+    }
+
+    /**
+     * the indexes to update per label token and property key token, replaced as a whole when the configuration changes
+     */
+    static final class IndexRoutes {
+        final PrimitiveIntObjectMap<LabelRoutes> byLabel = Primitive.intObjectMap();
+        /** false if a configured label or property key has no token yet */
+        final boolean complete;
+        final int labelCount;
+        final int propertyKeyCount;
+
+        IndexRoutes(Map<Integer, Map<Integer, List<Route>>> routes, boolean complete, int labelCount, int propertyKeyCount) {
+            this.complete = complete;
+            this.labelCount = labelCount;
+            this.propertyKeyCount = propertyKeyCount;
+            routes.forEach((label, byProperty) -> byLabel.put(label, new LabelRoutes(byProperty)));
+        }
+    }
+
+    static final class LabelRoutes {
+        final PrimitiveIntObjectMap<Route[]> byProperty = Primitive.intObjectMap();
+        /** all indexes configured for the label, to remove deleted nodes from */
+        final List<Index<Node>> indexes;
+
+        LabelRoutes(Map<Integer, List<Route>> routes) {
+            Set<Index<Node>> indexes = new LinkedHashSet<>();
+            routes.forEach((propertyKey, propertyRoutes) -> {
+                byProperty.put(propertyKey, propertyRoutes.toArray(new Route[0]));
+                for (Route route : propertyRoutes) indexes.add(route.index);
+            });
+            this.indexes = new ArrayList<>(indexes);
+        }
+    }
+
+    static final class Route {
+        final Index<Node> index;
+        /** the index key {@code Label.property} */
+        final String key;
+
+        Route(Index<Node> index, String key) {
+            this.index = index;
+            this.key = key;
         }
-        return indexesByLabelAndProperty;
     }
 
     public static class LifeCycle {
@@ -261,15 +319,16 @@ public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.
             if (enabled) {
                 boolean async = ApocConfiguration.isEnabled("autoIndex.async");
                 boolean stopWatchEnabled = ApocConfiguration.isEnabled("autoIndex.tx_handler_stopwatch");
-                int queueCapacity = Integer.parseInt(ApocConfiguration.get("autoIndex.queue_capacity", "100000"));
-                indexUpdateTransactionEventHandler = new IndexUpdateTransactionEventHandler(db, log, async, queueCapacity, stopWatchEnabled);
+                IndexUpdateQueue indexUpdateQueue = null;
                 if (async) {
-                    startIndexTrackingThread(db, indexUpdateTransactionEventHandler.getIndexCommandQueue(),
+                    indexUpdateQueue = new IndexUpdateQueue(db, log,
+                            Integer.parseInt(ApocConfiguration.get("autoIndex.async_workers", "1")),
+                            Integer.parseInt(ApocConfiguration.get("autoIndex.queue_capacity", "100000")),
                             Long.parseLong(ApocConfiguration.get("autoIndex.async_rollover_opscount", "50000")),
-                            Long.parseLong(ApocConfiguration.get("autoIndex.async_rollover_millis", "5000")),
-                            log
-                    );
+                            Long.parseLong(ApocConfiguration.get("autoIndex.async_rollover_millis", "5000")));
+                    indexUpdateQueue.start();
                 }
+                indexUpdateTransactionEventHandler = new IndexUpdateTransactionEventHandler(db, log, indexUpdateQueue, stopWatchEnabled);
                 db.registerTransactionEventHandler(indexUpdateTransactionEventHandler);
                 long indexConfigUpdateInternal = Util.toLong(ApocConfiguration.get("autoIndex.configUpdateInterval",10l));
                 if (indexConfigUpdateInternal > 0) {
@@ -277,72 +336,14 @@ public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.
                 }
             }
         }
-        private void startIndexTrackingThread(GraphDatabaseAPI db, BlockingQueue<Consumer<Void>> indexCommandQueue, long opsCountRollover, long millisRollover, Log log) {
-            new Thread(() -> {
-                Transaction tx = null;
-                try {
-                    final AvailabilityGuard availabilityGuard = db.getDependencyResolver().resolveDependency(AvailabilityGuard.class);
-                    availabilityGuard.await(60_000);
-                    tx = db.beginTx();
-                    int opsCount = 0;
-                    long lastCommit = System.currentTimeMillis();
-                    while (true) {
-                        Consumer<Void> indexCommand = indexCommandQueue.poll(millisRollover, TimeUnit.MILLISECONDS);
-
-                        if (availabilityGuard.isShutdown()) {
-                            log.debug("shutdown in progress. Aborting index tracking thread.");
-                            break;
-                        }
-
-                        long now = System.currentTimeMillis();
-                        if (
-                                FORCE_TX_ROLLOVER.equals(indexCommand) ||
-                                ((opsCount>0) && ((now - lastCommit > millisRollover) || (opsCount >= opsCountRollover)))
-
-                                ) {
-                            tx.success();
-                            tx.close();
-                            tx = db.beginTx();
-                            log.info("background indexing thread doing tx rollover, opscount " + opsCount + ", millis since last rollover " + (now-lastCommit));
-                            lastCommit = now;
-                            opsCount = 0;
-                        }
-                        if (indexCommand == null) {
-                            // in case we couldn't get anything from queue, we'll update lastcommit to prevent too early commits
-                            if (opsCount == 0) {
-                                lastCommit = now;
-                            }
-                        } else {
-                            opsCount++;
-                            indexCommand.accept(null);
-                        }
-                    }
-                } catch (InterruptedException|AvailabilityGuard.UnavailableException e) {
-                    log.error(e.getMessage(), e);
-                    throw new RuntimeException(e);
-                } catch (Exception e) {
-                    log.error(e.getMessage(), e);
-                    throw new RuntimeException(e);
-                } finally {
-                    if (tx!=null) {
-                        tx.success();
-                        try {
-                            tx.close();
-                            log.debug("final commit in background thread");
-                        } catch (TransactionTerminatedException e) {
-                            log.error(e.getMessage(), e);
-                        }
-                    }
-                    log.info("stopping background thread for async index updates");
-                }
-            }).start();
-            log.info("started background thread for async index updates");
-        }
 
         public void stop() {
             if (indexUpdateTransactionEventHandler!=null) {
                 db.unregisterTransactionEventHandler(indexUpdateTransactionEventHandler);
                 indexUpdateTransactionEventHandler.stopPeriodicIndexConfigChangeUpdates();
+                if (indexUpdateTransactionEventHandler.async) {
+                    indexUpdateTransactionEventHandler.indexUpdateQueue.stop();
+                }
             }
         }
 
@@ -360,7 +361,7 @@ public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.
 
     private void startPeriodicIndexConfigChangeUpdates(long indexConfigUpdateInternal) {
         configUpdateFuture = Pools.SCHEDULED.scheduleAtFixedRate(() ->
-                indexesByLabelAndProperty = initIndexConfiguration(), indexConfigUpdateInternal, indexConfigUpdateInternal, TimeUnit.SECONDS);
+                indexRoutes = initIndexConfiguration(), indexConfigUpdateInternal, indexConfigUpdateInternal, TimeUnit.SECONDS);
     }
 
     private void stopPeriodicIndexConfigChangeUpdates() {
@@ -370,21 +371,16 @@ public class IndexUpdateTransactionEventHandler extends TransactionEventHandler.
     }
 
     /**
-     * to be used from unit tests to ensure a tx rollover has happenend
+     * to be used from unit tests to ensure all updates received so far have been applied and committed
      */
-    public synchronized void forceTxRollover() {
+    public void forceTxRollover() {
         if (async) {
             try {
-                forceTxRolloverFlag = false;
-                indexCommandQueue.put(FORCE_TX_ROLLOVER);
-                while (!forceTxRolloverFlag) {
-                    Thread.sleep(5);
-                }
+                indexUpdateQueue.flush();
             } catch (InterruptedException e) {
                 throw new RuntimeException(e);
             }
         }
-
     }
 
 }
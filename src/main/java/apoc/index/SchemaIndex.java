@@ -3,7 +3,12 @@ package apoc.index;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.schema.IndexDefinition;
 import org.neo4j.helpers.collection.Pair;
+import org.neo4j.internal.kernel.api.CapableIndexReference;
+import org.neo4j.internal.kernel.api.IndexOrder;
+import org.neo4j.internal.kernel.api.IndexQuery;
+import org.neo4j.internal.kernel.api.NodeValueIndexCursor;
 import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.internal.kernel.api.exceptions.KernelException;
 import org.neo4j.kernel.api.exceptions.index.IndexNotApplicableKernelException;
 import org.neo4j.kernel.api.schema.SchemaDescriptorFactory;
 import org.neo4j.kernel.api.schema.index.SchemaIndexDescriptor;
@@ -37,6 +42,9 @@ import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 import org.neo4j.storageengine.api.schema.IndexReader;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.ValueCategory;
+import org.neo4j.values.storable.Values;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
@@ -86,8 +94,94 @@ public class SchemaIndex {
     @Deprecated
     @Description("just use a cypher query with a range predicate on an indexed field and wait for index backed order by in 3.5")
     public Stream<NodeResult> orderedRange(@Name("label") String label, @Name("key") String key, @Name("min") Object min, @Name("max") Object max, @Name("relevance") boolean relevance, @Name("limit") long limit) throws SchemaRuleNotFoundException, IndexNotFoundKernelException, DuplicateSchemaRuleException {
+        // without boundaries all nodes of the label are returned, also the ones without the property
+        if ((min == null && max == null) || index(label, key) == CapableIndexReference.NO_INDEX) {
+            return queryForRange(label, key, min, max, limit).map(NodeResult::new);
+        }
+        return topN(label, key, min, max, limit, false, null).stream().map(row -> new NodeResult(row.node));
+    }
+
+    @Procedure("apoc.index.orderedRangePage")
+    @Description("apoc.index.orderedRangePage(label,key,min,max,{limit:10,order:'ASC',after:null}) yield node, value, after - the first limit nodes of a schema index range in value order, pass the after value of the last row as after config to get the next page, min and max can be null and are inclusive")
+    public Stream<RangeResult> orderedRangePage(@Name("label") String label, @Name("key") String key, @Name("min") Object min, @Name("max") Object max,
+                                                @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        long limit = Util.toLong(config.getOrDefault("limit", 10));
+        boolean descending = "DESC".equalsIgnoreCase(String.valueOf(config.getOrDefault("order", "ASC")));
+        Object after = config.get("after");
+        if (after != null && !(after instanceof Map)) {
+            throw new RuntimeException("The after config must be the after map of a previous row, but was: " + after);
+        }
+        return topN(label, key, min, max, limit, descending, (Map<?, ?>) after).stream();
+    }
+
+    private CapableIndexReference index(String label, String key) {
+        TokenRead tokenRead = tx.tokenRead();
+        int labelId = tokenRead.nodeLabel(label);
+        int propertyKey = tokenRead.propertyKey(key);
+        if (labelId == TokenRead.NO_TOKEN || propertyKey == TokenRead.NO_TOKEN) return CapableIndexReference.NO_INDEX;
+        return tx.schemaRead().index(labelId, propertyKey);
+    }
 
-        return queryForRange(label, key, min, max, limit).map(NodeResult::new);
+    /**
+     * Reads the index entries in value order and stops after {@code limit} rows when the index supports ordered seeks
+     * (the native number and string indexes, ascending only). Descending pages, pages without any boundary (an exists
+     * query over all value types, which has no order) and other indexes are read completely and only the best
+     * {@code limit} entries are kept in a heap. Ties are ordered by node id, so {@code after} identifies a position.
+     */
+    private List<RangeResult> topN(String label, String key, Object min, Object max, long limit, boolean descending, Map<?, ?> after) {
+        TokenRead tokenRead = tx.tokenRead();
+        int labelId = tokenRead.nodeLabel(label);
+        int propertyKey = tokenRead.propertyKey(key);
+        if (labelId == TokenRead.NO_TOKEN || propertyKey == TokenRead.NO_TOKEN) return Collections.emptyList();
+        CapableIndexReference index = tx.schemaRead().index(labelId, propertyKey);
+        if (index == CapableIndexReference.NO_INDEX) {
+            throw new RuntimeException("No schema index found for :" + label + "(" + key + ")");
+        }
+        boolean text = min instanceof String || max instanceof String || (after != null && after.get("value") instanceof String);
+        Value afterValue = after == null ? null : text ? Values.stringValue(String.valueOf(after.get("value"))) : Values.of(after.get("value"));
+        long afterId = after == null ? -1 : Util.toLong(after.get("id"));
+        // the page starts at the value of the last row, rows up to its node id are skipped below
+        Object lower = afterValue != null && !descending ? afterValue.asObject() : min;
+        Object upper = afterValue != null && descending ? afterValue.asObject() : max;
+        IndexQuery query = rangeQuery(propertyKey, lower, upper, text);
+        ValueCategory category = text ? ValueCategory.TEXT : ValueCategory.NUMBER;
+        boolean ordered = !descending && query instanceof IndexQuery.RangePredicate && Arrays.asList(index.orderCapability(category)).contains(IndexOrder.ASCENDING);
+
+        Comparator<RangeEntry> order = descending ? RangeEntry.ORDER.reversed() : RangeEntry.ORDER;
+        RangeEntry start = afterValue == null ? null : new RangeEntry(afterValue, afterId);
+        int size = limit > 0 && limit < Integer.MAX_VALUE ? (int) limit : Integer.MAX_VALUE;
+        PriorityQueue<RangeEntry> best = new PriorityQueue<>(Math.min(size, 1024), order.reversed());
+        try (NodeValueIndexCursor cursor = tx.cursors().allocateNodeValueIndexCursor()) {
+            tx.dataRead().nodeIndexSeek(index, cursor, ordered ? IndexOrder.ASCENDING : IndexOrder.NONE, query);
+            while (cursor.next()) {
+                long id = cursor.nodeReference();
+                Value value = cursor.hasValue() ? cursor.propertyValue(0) : Values.of(db.getNodeById(id).getProperty(key, null));
+                RangeEntry row = new RangeEntry(value, id);
+                if (start != null && order.compare(row, start) <= 0) continue;
+                if (best.size() < size) {
+                    best.add(row);
+                } else if (order.compare(row, best.peek()) < 0) {
+                    best.poll();
+                    best.add(row);
+                }
+                if (ordered && best.size() == size) break;
+            }
+        } catch (KernelException e) {
+            throw new RuntimeException("Error reading the schema index for :" + label + "(" + key + ")", e);
+        }
+        List<RangeEntry> entries = new ArrayList<>(best);
+        entries.sort(order);
+        List<RangeResult> result = new ArrayList<>(entries.size());
+        for (RangeEntry entry : entries) result.add(entry.toResult(db));
+        return result;
+    }
+
+    private IndexQuery rangeQuery(int propertyKey, Object min, Object max, boolean text) {
+        if (min == null && max == null) return IndexQuery.exists(propertyKey);
+        if (text) {
+            return IndexQuery.range(propertyKey, min == null ? null : min.toString(), true, max == null ? null : max.toString(), true);
+        }
+        return IndexQuery.range(propertyKey, (Number) min, true, (Number) max, true);
     }
 
     public Stream<Node> queryForRange(@Name("label") String label, @Name("key") String key, @Name("min") Object min, @Name("max") Object max, @Name("limit") long limit) {
@@ -264,6 +358,35 @@ public class SchemaIndex {
         }
     }
 
+    public static class RangeResult {
+        public final Node node;
+        public final Object value;
+        public final Map<String, Object> after;
+
+        public RangeResult(Node node, Object value, Map<String, Object> after) {
+            this.node = node;
+            this.value = value;
+            this.after = after;
+        }
+    }
+
+    private static class RangeEntry {
+        static final Comparator<RangeEntry> ORDER = Comparator.<RangeEntry, Value>comparing(entry -> entry.value, Values.COMPARATOR).thenComparingLong(entry -> entry.id);
+
+        final Value value;
+        final long id;
+
+        RangeEntry(Value value, long id) {
+            this.value = value;
+            this.id = id;
+        }
+
+        RangeResult toResult(GraphDatabaseService db) {
+            Object value = this.value.asObject();
+            return new RangeResult(db.getNodeById(id), value, map("value", value, "id", id));
+        }
+    }
+
     public static class PropertyValueCount {
         public String label;
         public String key;
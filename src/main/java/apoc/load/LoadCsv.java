@@ -40,7 +40,7 @@ public class LoadCsv {
     public Stream<CSVResult> csv(@Name("url") String url, @Name(value = "config",defaultValue = "{}") Map<String, Object> configMap) {
         LoadCsvConfig config = new LoadCsvConfig(configMap);
         try {
-            CountingReader reader = FileUtils.readerFor(url);
+            CountingReader reader = FileUtils.readerFor(url, config.getCompression());
 
             // new CSVReader(...) is deprecated, moved to the new builder
             CSVReader csv = new CSVReaderBuilder(reader)
@@ -51,16 +51,19 @@ public class LoadJson {
     public Stream<MapResult> jsonParams(@Name("urlOrKey") String urlOrKey, @Name("headers") Map<String,Object> headers, @Name("payload") String payload, @Name(value = "path",defaultValue = "") String path, @Name(value = "config",defaultValue = "{}") Map<String, Object> config) {
         if (config == null) config = Collections.emptyMap();
         boolean failOnError = (boolean) config.getOrDefault("failOnError", true);
-        return loadJsonStream(urlOrKey, headers, payload, path, failOnError);
+        return loadJsonStream(urlOrKey, headers, payload, path, failOnError, config.get("compression"));
     }
 
     public static Stream<MapResult> loadJsonStream(@Name("url") String url, @Name("headers") Map<String, Object> headers, @Name("payload") String payload) {
         return loadJsonStream(url, headers, payload, "", true);
     }
     public static Stream<MapResult> loadJsonStream(@Name("url") String url, @Name("headers") Map<String, Object> headers, @Name("payload") String payload, String path, boolean failOnError) {
+        return loadJsonStream(url, headers, payload, path, failOnError, null);
+    }
+    public static Stream<MapResult> loadJsonStream(@Name("url") String url, @Name("headers") Map<String, Object> headers, @Name("payload") String payload, String path, boolean failOnError, Object compression) {
         headers = null != headers ? headers : new HashMap<>();
         headers.putAll(extractCredentialsIfNeeded(url, failOnError));
-        Stream<Object> stream = JsonUtil.loadJson(url,headers,payload, path, failOnError);
+        Stream<Object> stream = JsonUtil.loadJson(url,headers,payload, path, failOnError, compression);
         return stream.flatMap((value) -> {
             if (value instanceof Map) {
                 return Stream.of(new MapResult((Map) value));
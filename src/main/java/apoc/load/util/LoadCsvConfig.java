@@ -24,6 +24,7 @@ public class LoadCsvConfig {
     private long limit;
 
     private boolean failOnError;
+    private String compression;
 
     private EnumSet<Results> results;
 
@@ -48,6 +49,7 @@ public class LoadCsvConfig {
         hasHeader = (boolean) config.getOrDefault("header", true);
         limit = (long) config.getOrDefault("limit", Long.MAX_VALUE);
         failOnError = (boolean) config.getOrDefault("failOnError", true);
+        compression = (String) config.get("compression");
 
         results = EnumSet.noneOf(Results.class);
         List<String> resultList = (List<String>) config.getOrDefault("results", asList("map","list"));
@@ -71,6 +73,10 @@ public class LoadCsvConfig {
         return result;
     }
 
+    public String getCompression() {
+        return compression;
+    }
+
     public char getSeparator() {
         return separator;
     }
@@ -4,10 +4,15 @@ import apoc.result.*;
 import apoc.util.Util;
 import com.google.common.collect.Lists;
 import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.schema.ConstraintDefinition;
+import org.neo4j.graphdb.schema.ConstraintType;
+import org.neo4j.helpers.collection.Iterables;
 import org.neo4j.helpers.collection.Iterators;
 import org.neo4j.procedure.*;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -16,6 +21,13 @@ import static java.util.Collections.emptyMap;
 
 public class Merge {
 
+    /**
+     * Statements of apoc.merge.nodes and apoc.merge.relationships per label or type and key combination,
+     * the same statement text reuses the cached plan.
+     */
+    private static final Map<List<Object>, String> MERGE_STATEMENTS = new ConcurrentHashMap<>();
+    private static final int MAX_CACHED_STATEMENTS = 1000;
+
     @Context
     public GraphDatabaseService db;
 
@@ -78,6 +90,149 @@ public class Merge {
     }
 
 
+    @Procedure(value = "apoc.merge.nodes", mode = Mode.WRITE)
+    @Description("apoc.merge.nodes([{labels:['Label'], identProps:{key:value, ...}, onCreateProps:{key:value,...}, onMatchProps:{key:value,...}}], {batchSize:10000, lookup:false}) - merge a batch of nodes with dynamic labels, one statement per label and key combination")
+    public Stream<NodeResult> mergeNodes(@Name("rows") List<Map<String, Object>> rows,
+                                         @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        int batchSize = batchSize(config);
+        boolean lookup = Util.toBoolean(config.get("lookup"));
+        List<List<Object>> nodes = new ArrayList<>(Collections.nCopies(rows.size(), null));
+        Map<String, List<Map<String, Object>>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            Map<String, Object> row = rows.get(i);
+            List<String> labels = new ArrayList<>(new TreeSet<>(stringList(row.get("labels"))));
+            Map<String, Object> identProps = map(row.get("identProps"));
+            if (identProps.isEmpty()) {
+                throw new IllegalArgumentException("you need to supply at least one identifying property for a merge");
+            }
+            List<String> keys = new ArrayList<>(new TreeSet<>(identProps.keySet()));
+            if (lookup && lookupNode(labels, identProps, row, nodes, i)) continue;
+            String statement = statement(Arrays.asList(labels, keys), () -> mergeNodeStatement(labels, keys));
+            groups.computeIfAbsent(statement, k -> new ArrayList<>()).add(batchRow(i, identProps, row));
+        }
+        execute(groups, batchSize, "n", nodes);
+        return nodes.stream().filter(Objects::nonNull).flatMap(List::stream).map(node -> new NodeResult((Node) node));
+    }
+
+    @Procedure(value = "apoc.merge.relationships", mode = Mode.WRITE)
+    @Description("apoc.merge.relationships([{start:startNode, type:'TYPE', identProps:{key:value, ...}, onCreateProps:{key:value,...}, end:endNode, onMatchProps:{key:value,...}}], {batchSize:10000}) - merge a batch of relationships with dynamic types, one statement per type and key combination")
+    public Stream<RelationshipResult> mergeRelationships(@Name("rows") List<Map<String, Object>> rows,
+                                                         @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        int batchSize = batchSize(config);
+        List<List<Object>> rels = new ArrayList<>(Collections.nCopies(rows.size(), null));
+        Map<String, List<Map<String, Object>>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            Map<String, Object> row = rows.get(i);
+            Object type = row.get("type");
+            if (type == null || !(row.get("start") instanceof Node) || !(row.get("end") instanceof Node)) {
+                throw new IllegalArgumentException("you need to supply a start node, end node and type for each relationship to merge, but row " + i + " was " + row);
+            }
+            Map<String, Object> identProps = map(row.get("identProps"));
+            List<String> keys = new ArrayList<>(new TreeSet<>(identProps.keySet()));
+            String statement = statement(Arrays.asList(type.toString(), keys), () -> mergeRelationshipStatement(type.toString(), keys));
+            Map<String, Object> batchRow = batchRow(i, identProps, row);
+            batchRow.put("start", row.get("start"));
+            batchRow.put("end", row.get("end"));
+            groups.computeIfAbsent(statement, k -> new ArrayList<>()).add(batchRow);
+        }
+        execute(groups, batchSize, "r", rels);
+        return rels.stream().filter(Objects::nonNull).flatMap(List::stream).map(rel -> new RelationshipResult((Relationship) rel));
+    }
+
+    private static String statement(List<Object> key, Supplier<String> statement) {
+        if (MERGE_STATEMENTS.size() > MAX_CACHED_STATEMENTS) MERGE_STATEMENTS.clear();
+        return MERGE_STATEMENTS.computeIfAbsent(key, k -> statement.get());
+    }
+
+    private static String mergeNodeStatement(List<String> labels, List<String> keys) {
+        return "UNWIND $rows AS row " +
+                "MERGE (n" + (labels.isEmpty() ? "" : ":" + labelString(labels)) + "{" + rowPropsString(keys) + "}) " +
+                "ON CREATE SET n += row.onCreateProps ON MATCH SET n += row.onMatchProps " +
+                "RETURN row.index AS index, n";
+    }
+
+    private static String mergeRelationshipStatement(String type, List<String> keys) {
+        return "UNWIND $rows AS row " +
+                "WITH row, row.start AS startNode, row.end AS endNode " +
+                "MERGE (startNode)-[r:" + Util.quote(type) + "{" + rowPropsString(keys) + "}]->(endNode) " +
+                "ON CREATE SET r += row.onCreateProps ON MATCH SET r += row.onMatchProps " +
+                "RETURN row.index AS index, r";
+    }
+
+    private static String rowPropsString(List<String> keys) {
+        return keys.stream().map(k -> "`" + k.replace("`", "``") + "`:row.identProps.`" + k.replace("`", "``") + "`")
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Runs the statements in batches and collects the merged entities per input row, a merge can match several.
+     */
+    private void execute(Map<String, List<Map<String, Object>>> groups, int batchSize, String column, List<List<Object>> results) {
+        groups.forEach((statement, batchRows) -> {
+            for (List<Map<String, Object>> batch : Lists.partition(batchRows, batchSize)) {
+                try (Result result = db.execute(statement, Collections.singletonMap("rows", batch))) {
+                    while (result.hasNext()) {
+                        Map<String, Object> row = result.next();
+                        int index = ((Number) row.get("index")).intValue();
+                        if (results.get(index) == null) results.set(index, new ArrayList<>(1));
+                        results.get(index).add(row.get(column));
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Finds the node to merge through a unique constraint on one of its labels and identifying properties.
+     *
+     * @return true if the node exists, its onMatchProps are set then
+     */
+    private boolean lookupNode(List<String> labels, Map<String, Object> identProps, Map<String, Object> row, List<List<Object>> nodes, int index) {
+        for (String labelName : labels) {
+            Label label = Label.label(labelName);
+            for (ConstraintDefinition constraint : db.schema().getConstraints(label)) {
+                if (constraint.getConstraintType() != ConstraintType.UNIQUENESS) continue;
+                String key = Iterables.single(constraint.getPropertyKeys());
+                if (!identProps.containsKey(key)) continue;
+                Node node = db.findNode(label, key, identProps.get(key));
+                if (node == null) return false;
+                for (String other : labels) {
+                    if (!node.hasLabel(Label.label(other))) return false;
+                }
+                for (Map.Entry<String, Object> entry : identProps.entrySet()) {
+                    if (!Objects.deepEquals(node.getProperty(entry.getKey(), null), entry.getValue())) return false;
+                }
+                map(row.get("onMatchProps")).forEach(node::setProperty);
+                nodes.set(index, Collections.singletonList(node));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, Object> batchRow(int index, Map<String, Object> identProps, Map<String, Object> row) {
+        return Util.map("index", index, "identProps", identProps,
+                "onCreateProps", map(row.get("onCreateProps")), "onMatchProps", map(row.get("onMatchProps")));
+    }
+
+    private static int batchSize(Map<String, Object> config) {
+        return Math.max(1, Util.toLong(config.getOrDefault("batchSize", 10000)).intValue());
+    }
+
+    @SuppressWarnings("unchecked") // the keys of a cypher map are strings
+    private static Map<String, Object> map(Object value) {
+        if (value == null) return emptyMap();
+        if (!(value instanceof Map)) throw new IllegalArgumentException("Expected a map of properties, but was " + value);
+        return (Map<String, Object>) value;
+    }
+
+    private static List<String> stringList(Object value) {
+        if (value == null) return Collections.emptyList();
+        if (value instanceof String) return Collections.singletonList((String) value);
+        if (!(value instanceof Collection)) throw new IllegalArgumentException("Expected a list of labels, but was " + value);
+        return ((Collection<?>) value).stream().map(String::valueOf).collect(Collectors.toList());
+    }
+
     private String buildIdentPropsString(Map<String, Object> identProps) {
         if (identProps == null) return "";
         return identProps.keySet().stream().map(Util::quote)
@@ -5,6 +5,8 @@ import apoc.Pools;
 import apoc.result.VirtualNode;
 import apoc.result.VirtualRelationship;
 import apoc.util.Util;
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongObjectMap;
 import org.neo4j.graphdb.*;
 import org.neo4j.helpers.collection.Iterables;
 import org.neo4j.logging.Log;
@@ -13,9 +15,8 @@ import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -74,10 +75,8 @@ public class Grouping {
             aggregations = Arrays.asList(singletonMap("*","count"),singletonMap("*","count"));
         }
         Map<String, List<String>> nodeAggNames = (aggregations.size() > 0) ? toStringListMap(aggregations.get(0)) : emptyMap();
-        String[] nodeAggKeys = keyArray(nodeAggNames, "*");
 
         Map<String, List<String>> relAggNames = (aggregations.size() > 1) ? toStringListMap(aggregations.get(1)) : emptyMap();
-        String[] relAggKeys = keyArray(relAggNames, "*");
 
         // todo bitset
         Set<String> includeRels = computeIncludedRels(config);
@@ -96,97 +95,104 @@ public class Grouping {
         // also filter (esp. max) during aggregation?
         Map<String,Number> filter = configuredFilter(config);
 
-        Map<NodeKey, Set<Node>> grouped = new ConcurrentHashMap<>();
-        Map<NodeKey, VirtualNode> virtualNodes = new ConcurrentHashMap<>();
-        Map<RelKey, VirtualRelationship> virtualRels = new ConcurrentHashMap<>();
+        Aggregation[] nodeAggs = Aggregation.compile(nodeAggNames);
+        Aggregation[] relAggs = Aggregation.compile(relAggNames);
 
-        List<Future> futures = new ArrayList<>(1000);
-
-        ExecutorService pool = Pools.DEFAULT;
+        // one pass over the nodes, each batch aggregates into its own groups which are merged afterwards, in the order they were found
+        Map<NodeKey, Aggregates> nodeGroups = new LinkedHashMap<>();
+        List<Future<Void>> futures = new ArrayList<>(1000);
         for (String labelName : labels) {
-            Label label = Label.label(labelName);
-            Label[] singleLabel = {label};
-
-            try (ResourceIterator<Node> nodes = (labelName.equals("*")) ? db.getAllNodes().iterator() : db.findNodes(label)) {
-                while (nodes.hasNext()) {
-                    List<Node> batch = Util.take(nodes, BATCHSIZE);
-                    futures.add(Util.inTxFuture(pool, db, () -> {
-                        try {
-                            for (Node node : batch) {
-                                NodeKey key = keyFor(node, labelName, keys);
-                                grouped.compute(key, (k, v) -> {
-                                    if (v == null) v = new HashSet<>();
-                                    v.add(node);
-                                    return v;
-                                });
-                                virtualNodes.compute(key, (k, v) -> {
-                                            if (v == null) {
-                                                v = new VirtualNode(singleLabel, propertiesFor(node, keys), db);
-                                            }
-                                            VirtualNode vn = v;
-                                            if (!nodeAggNames.isEmpty()) {
-                                                aggregate(vn, nodeAggNames, nodeAggKeys.length > 0 ? node.getProperties(nodeAggKeys) : Collections.emptyMap());
-                                            }
-                                            return vn;
-                                        }
-                                );
-                            }
-                        } catch (Exception e) {
-                            log.debug("Error grouping nodes", e);
-                        }
-                        return null;
-                    }));
-                    Util.removeFinished(futures);
+            forEachBatch(labelName, futures, batch -> {
+                Map<NodeKey, Aggregates> partial = new LinkedHashMap<>();
+                NodeKey probe = new NodeKey(keys.length);
+                for (Node node : batch) {
+                    probe.set(labelName, node, keys);
+                    Aggregates aggregates = partial.get(probe);
+                    if (aggregates == null) {
+                        aggregates = new Aggregates(nodeAggs);
+                        partial.put(probe.copy(), aggregates);
+                    }
+                    aggregates.add(node);
                 }
-            }
+                synchronized (nodeGroups) {
+                    partial.forEach((key, aggregates) -> nodeGroups.merge(key, aggregates, Aggregates::merge));
+                }
+            }, "Error grouping nodes");
         }
         Util.waitForFutures(futures);
         futures.clear();
-        Iterator<Map.Entry<NodeKey, Set<Node>>> entries = grouped.entrySet().iterator();
-        int size = 0;
-        List<Map.Entry<NodeKey, Set<Node>>> batch = new ArrayList<>();
-        while (entries.hasNext()) {
-            Map.Entry<NodeKey, Set<Node>> outerEntry = entries.next();
-            batch.add(outerEntry);
-            size += outerEntry.getValue().size();
-            if (size > BATCHSIZE || !entries.hasNext()) {
-                ArrayList<Map.Entry<NodeKey, Set<Node>>> submitted = new ArrayList<>(batch);
-                batch.clear();
-                size = 0;
-                futures.add(Util.inTxFuture(pool, db, () -> {
-                    try {
-                        for (Map.Entry<NodeKey, Set<Node>> entry : submitted) {
-                            for (Node node : entry.getValue()) {
-                                NodeKey startKey = entry.getKey();
-                                VirtualNode v1 = virtualNodes.get(startKey);
-                                for (Relationship rel : node.getRelationships(Direction.OUTGOING)) {
-                                    if (includeRels != null && !includeRels.contains(rel.getType().name())) continue;
-                                    Node endNode = rel.getEndNode();
-                                    for (NodeKey endKey : keysFor(endNode, labels, keys)) {
-                                        VirtualNode v2 = virtualNodes.get(endKey);
-                                        if (v2 == null) continue;
-                                        if (!selfRels && startKey.equals(endKey)) continue;
-                                        virtualRels.compute(new RelKey(startKey, endKey, rel), (rk, vRel) -> {
-                                            if (vRel == null) vRel = v1.createRelationshipTo(v2, rel.getType());
-                                            if (!relAggNames.isEmpty()) {
-                                                aggregate(vRel, relAggNames, relAggKeys.length > 0 ? rel.getProperties(relAggKeys) : Collections.emptyMap());
-                                            }
-                                            return vRel;
-                                        });
-                                    }
-                                }
+
+        Map<NodeKey, Integer> groupIds = new HashMap<>(nodeGroups.size());
+        VirtualNode[] virtualNodes = new VirtualNode[nodeGroups.size()];
+        nodeGroups.forEach((key, aggregates) -> {
+            int id = groupIds.size();
+            groupIds.put(key, id);
+            virtualNodes[id] = new VirtualNode(new Label[]{Label.label(key.label)}, key.properties(keys), db);
+            aggregates.writeTo(virtualNodes[id]);
+        });
+        nodeGroups.clear();
+
+        // relationships are aggregated per type and pair of group ids
+        Map<String, PrimitiveLongObjectMap<Aggregates>> relGroups = new HashMap<>();
+        for (String labelName : labels) {
+            forEachBatch(labelName, futures, batch -> {
+                Map<String, PrimitiveLongObjectMap<Aggregates>> partial = new HashMap<>();
+                NodeKey startProbe = new NodeKey(keys.length);
+                NodeKey endProbe = new NodeKey(keys.length);
+                for (Node node : batch) {
+                    startProbe.set(labelName, node, keys);
+                    Integer startId = groupIds.get(startProbe);
+                    if (startId == null) continue;
+                    for (Relationship rel : node.getRelationships(Direction.OUTGOING)) {
+                        String type = rel.getType().name();
+                        if (includeRels != null && !includeRels.contains(type)) continue;
+                        Node endNode = rel.getEndNode();
+                        boolean propertiesRead = false;
+                        for (Label label : endNode.getLabels()) {
+                            if (!labels.contains(label.name())) continue;
+                            if (!propertiesRead) {
+                                endProbe.set(label.name(), endNode, keys);
+                                propertiesRead = true;
+                            } else {
+                                endProbe.relabel(label.name());
+                            }
+                            Integer endId = groupIds.get(endProbe);
+                            if (endId == null) continue;
+                            if (!selfRels && startId.equals(endId)) continue;
+                            PrimitiveLongObjectMap<Aggregates> pairs = partial.computeIfAbsent(type, t -> Primitive.longObjectMap());
+                            long pair = ((long) startId << 32) | endId;
+                            Aggregates aggregates = pairs.get(pair);
+                            if (aggregates == null) {
+                                aggregates = new Aggregates(relAggs);
+                                pairs.put(pair, aggregates);
                             }
+                            aggregates.add(rel);
                         }
-                    } catch (Exception e) {
-                        log.debug("Error grouping relationships", e);
                     }
-                    return null;
-                }));
-                Util.removeFinished(futures);
-            }
+                }
+                synchronized (relGroups) {
+                    partial.forEach((type, pairs) -> {
+                        PrimitiveLongObjectMap<Aggregates> merged = relGroups.computeIfAbsent(type, t -> Primitive.longObjectMap());
+                        pairs.visitEntries((pair, aggregates) -> {
+                            Aggregates existing = merged.get(pair);
+                            merged.put(pair, existing == null ? aggregates : existing.merge(aggregates));
+                            return false;
+                        });
+                    });
+                }
+            }, "Error grouping relationships");
         }
         Util.waitForFutures(futures);
-        Stream<VirtualNode> stream = fixAggregates(virtualNodes.values()).stream();
+        relGroups.forEach((type, pairs) -> {
+            RelationshipType relType = RelationshipType.withName(type);
+            pairs.visitEntries((pair, aggregates) -> {
+                VirtualRelationship vRel = virtualNodes[(int) (pair >>> 32)].createRelationshipTo(virtualNodes[(int) pair], relType);
+                aggregates.writeTo(vRel);
+                return false;
+            });
+        });
+
+        Stream<VirtualNode> stream = Arrays.stream(virtualNodes);
         // apply filter
         if (filter != null) stream = stream.filter(n -> filter(n.getLabels(), n.getAllProperties(), filter));
         if (limitNodes > -1) stream = stream.limit(limitNodes);
@@ -232,7 +238,7 @@ public class Grouping {
     }
 
     public List<Relationship> getRelationships(Node n, Map<String, Number> filter, int relsPerNode) {
-        List<Relationship> rels = fixAggregates(Iterables.asList(n.getRelationships(Direction.OUTGOING)));
+        List<Relationship> rels = Iterables.asList(n.getRelationships(Direction.OUTGOING));
         if (filter != null) rels.removeIf(r -> !filter(r.getType().name(),r.getAllProperties(),filter));
         if (relsPerNode > -1) rels = rels.subList(0, Math.min(relsPerNode, rels.size()));
         return rels;
@@ -261,139 +267,72 @@ public class Grouping {
         return nodeAggNames;
     }
 
-    private String[] keyArray(Map<String, ?> map, String... removeKeys) {
-        List<String> keys = new ArrayList<>(map.keySet());
-        for (String key : removeKeys) keys.remove(key);
-        return keys.toArray(new String[keys.size()]);
-    }
-
-    private <C extends Collection<T>, T extends PropertyContainer> C fixAggregates(C pcs) {
-        for (PropertyContainer pc : pcs) {
-            pc.getAllProperties().entrySet().forEach((entry) -> {
-                Object v = entry.getValue();
-                String k = entry.getKey();
-                if (k.matches("^(min|max|sum)_.+")) {
-                    if (v instanceof Number && ((Number) v).doubleValue() == ((Number) v).longValue())
-                        entry.setValue(((Number) v).longValue());
-                }
-                if (k.matches("^avg_.+") && v instanceof double[]) {
-                    double[] values = (double[]) v;
-                    entry.setValue(values[1] == 0 ? 0 : values[0] / values[1]);
-                }
-                if (k.matches("^collect_.+") && v instanceof Collection) {
-                    entry.setValue(((Collection) v).toArray());
-                }
-            });
-        }
-        return pcs;
-    }
-
-    private void aggregate(PropertyContainer pc, Map<String, List<String>> aggregations, Map<String, Object> properties) {
-        aggregations.forEach((k2, aggNames) -> {
-            for (String aggName : aggNames) {
-                String key = aggName + "_" + k2;
-                if ("count_*".equals(key)) {
-                    pc.setProperty(key, ((Number) pc.getProperty(key, 0)).longValue() + 1);
-                } else {
-                    Object value = properties.get(k2);
-                    if (value != null) {
-                        switch (aggName) {
-                            case "collect":
-                                List<Object> existing = (List<Object>) pc.getProperty(key, new ArrayList<>());
-                                existing.add(value);
-                                pc.setProperty(key, existing);
-                                break;
-                            case "count":
-                                pc.setProperty(key, ((Number) pc.getProperty(key, 0)).longValue() + 1);
-                                break;
-                            case "sum":
-                                pc.setProperty(key, ((Number) pc.getProperty(key, 0)).doubleValue() + Util.toDouble(value));
-                                break;
-                            case "min":
-                                pc.setProperty(key, Math.min(((Number) pc.getProperty(key, Double.MAX_VALUE)).doubleValue(), Util.toDouble(value)));
-                                break;
-                            case "max":
-                                pc.setProperty(key, Math.max(((Number) pc.getProperty(key, Double.MIN_VALUE)).doubleValue(), Util.toDouble(value)));
-                                break;
-                            case "avg": {
-                                double[] avg = (double[]) pc.getProperty(key, new double[2]);
-                                avg[0] += Util.toDouble(value);
-                                avg[1] += 1;
-                                pc.setProperty(key, avg);
-                                break;
-                            }
-                        }
+    private void forEachBatch(String labelName, List<Future<Void>> futures, Consumer<List<Node>> task, String error) {
+        try (ResourceIterator<Node> nodes = db.findNodes(Label.label(labelName))) {
+            while (nodes.hasNext()) {
+                List<Node> batch = Util.take(nodes, BATCHSIZE);
+                futures.add(Util.inTxFuture(Pools.DEFAULT, db, () -> {
+                    try {
+                        task.accept(batch);
+                    } catch (Exception e) {
+                        log.debug(error, e);
                     }
-                }
+                    return null;
+                }));
+                Util.removeFinished(futures);
             }
-        });
+        }
     }
 
     /**
-     * Returns the properties for the given node according to the specified keys. If a node does not have a property
-     * assigned to given key, the value is set to {@code null}.
-     *
-     * @param node node
-     * @param keys property keys
-     * @return node properties for keys
+     * Represents a grouping key for nodes, the label and the values of the grouping properties.
+     * A key is reused as probe for the lookups and only copied for new groups.
      */
-    private Map<String, Object> propertiesFor(Node node, String[] keys) {
-        Map<String, Object> props = new HashMap<>(keys.length);
+    static class NodeKey {
+        private String label;
+        private final Object[] values;
+        private int valuesHash;
+        private int hash;
 
-        for (String key : keys) {
-            props.put(key, node.getProperty(key, null));
+        NodeKey(int size) {
+            this.values = new Object[size];
         }
 
-        return props;
-    }
-
-    /**
-     * Creates a grouping key for the given node using its label and grouping properties.
-     *
-     * @param node  node
-     * @param label node label
-     * @param keys  property keys
-     * @return grouping key
-     */
-    private NodeKey keyFor(Node node, String label, String[] keys) {
-        return new NodeKey(label, propertiesFor(node, keys));
-    }
+        private NodeKey(String label, Object[] values, int valuesHash) {
+            this.values = values;
+            this.valuesHash = valuesHash;
+            relabel(label);
+        }
 
-    /**
-     * Creates a grouping key for each specified label.
-     *
-     * @param node   node
-     * @param labels node labels
-     * @param keys   property keys
-     * @return grouping keys
-     */
-    private Collection<NodeKey> keysFor(Node node, Collection<String> labels, String[] keys) {
-        Map<String, Object> props = propertiesFor(node, keys);
-        List<NodeKey> result = new ArrayList<>(labels.size());
-        if (labels.contains("*")) {
-            result.add(new NodeKey("*", props));
-        } else {
-            for (Label label : node.getLabels()) {
-                if (labels.contains(label.name())) {
-                    result.add(new NodeKey(label.name(), props));
-                }
+        /**
+         * Reads the grouping properties of the node, missing ones are {@code null}.
+         */
+        void set(String label, Node node, String[] keys) {
+            for (int i = 0; i < keys.length; i++) {
+                values[i] = node.getProperty(keys[i], null);
             }
+            valuesHash = Arrays.deepHashCode(values);
+            relabel(label);
         }
-        return result;
-    }
-
-    /**
-     * Represents a grouping key for nodes.
-     */
-    static class NodeKey {
-        private final int hash;
-        private final String label;
-        private final Map<String, Object> values;
 
-        NodeKey(String label, Map<String, Object> values) {
+        /**
+         * Changes the label, for nodes with several labels that are grouped.
+         */
+        void relabel(String label) {
             this.label = label;
-            this.values = values;
-            hash = 31 * label.hashCode() + values.hashCode();
+            hash = 31 * label.hashCode() + valuesHash;
+        }
+
+        NodeKey copy() {
+            return new NodeKey(label, values.clone(), valuesHash);
+        }
+
+        Map<String, Object> properties(String[] keys) {
+            Map<String, Object> props = new HashMap<>(keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                props.put(keys[i], values[i]);
+            }
+            return props;
         }
 
         @Override
@@ -402,7 +341,7 @@ public class Grouping {
             if (o == null || getClass() != o.getClass()) return false;
 
             NodeKey key = (NodeKey) o;
-            return label.equals(key.label) && values.equals(key.values);
+            return hash == key.hash && label.equals(key.label) && Arrays.deepEquals(values, key.values);
         }
 
         @Override
@@ -412,34 +351,136 @@ public class Grouping {
     }
 
     /**
-     * Represents a grouping key for relationships.
+     * An aggregation of a property, stored in the property {@code <name>_<property>} of the virtual node or relationship.
      */
-    private static class RelKey {
-        private final int hash;
-        private final NodeKey startKey;
-        private final NodeKey endKey;
-        private final String type;
-
-        RelKey(NodeKey startKey, NodeKey endKey, Relationship rel) {
-            this.startKey = startKey;
-            this.endKey = endKey;
-            this.type = rel.getType().name();
-            hash = 31 * (31 * startKey.hashCode() + endKey.hashCode()) + type.hashCode();
+    static class Aggregation {
+        private static final Set<String> NAMES = new HashSet<>(Arrays.asList("count", "sum", "min", "max", "avg", "collect"));
+
+        final String property;
+        final String name;
+        final String key;
+        /** count_* counts all nodes or relationships of the group */
+        final boolean all;
+
+        Aggregation(String property, String name) {
+            this.property = property;
+            this.name = name;
+            this.key = name + "_" + property;
+            this.all = "*".equals(property);
         }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
+        static Aggregation[] compile(Map<String, List<String>> aggregations) {
+            List<Aggregation> result = new ArrayList<>();
+            aggregations.forEach((property, names) -> {
+                for (String name : names) {
+                    if (!NAMES.contains(name) || ("*".equals(property) && !"count".equals(name))) continue;
+                    result.add(new Aggregation(property, name));
+                }
+            });
+            return result.toArray(new Aggregation[result.size()]);
+        }
+    }
 
-            RelKey relKey = (RelKey) o;
+    /**
+     * Partial aggregates of one group, with the number of aggregated values and the sum, minimum or maximum per aggregation.
+     */
+    static class Aggregates {
+        private final Aggregation[] aggregations;
+        private final long[] counts;
+        private final double[] values;
+        private final List<List<Object>> collected;
+
+        Aggregates(Aggregation[] aggregations) {
+            this.aggregations = aggregations;
+            this.counts = new long[aggregations.length];
+            this.values = new double[aggregations.length];
+            this.collected = new ArrayList<>(Collections.nCopies(aggregations.length, null));
+        }
 
-            return startKey.equals(relKey.startKey) && endKey.equals(relKey.endKey) && type.equals(relKey.type);
+        void add(PropertyContainer pc) {
+            for (int i = 0; i < aggregations.length; i++) {
+                Aggregation aggregation = aggregations[i];
+                if (aggregation.all) {
+                    counts[i]++;
+                    continue;
+                }
+                Object value = pc.getProperty(aggregation.property, null);
+                if (value == null) continue;
+                switch (aggregation.name) {
+                    case "count":
+                        counts[i]++;
+                        break;
+                    case "collect":
+                        collected(i).add(value);
+                        counts[i]++;
+                        break;
+                    default:
+                        Double number = Util.toDouble(value);
+                        if (number != null) add(i, number, 1);
+                }
+            }
         }
 
-        @Override
-        public int hashCode() {
-            return hash;
+        private void add(int i, double value, long count) {
+            switch (aggregations[i].name) {
+                case "min":
+                    values[i] = counts[i] == 0 ? value : Math.min(values[i], value);
+                    break;
+                case "max":
+                    values[i] = counts[i] == 0 ? value : Math.max(values[i], value);
+                    break;
+                default:
+                    values[i] += value;
+            }
+            counts[i] += count;
+        }
+
+        private List<Object> collected(int i) {
+            List<Object> list = collected.get(i);
+            if (list == null) {
+                list = new ArrayList<>();
+                collected.set(i, list);
+            }
+            return list;
+        }
+
+        Aggregates merge(Aggregates other) {
+            for (int i = 0; i < aggregations.length; i++) {
+                if (other.counts[i] == 0) continue;
+                switch (aggregations[i].name) {
+                    case "count":
+                        counts[i] += other.counts[i];
+                        break;
+                    case "collect":
+                        collected(i).addAll(other.collected.get(i));
+                        counts[i] += other.counts[i];
+                        break;
+                    default:
+                        add(i, other.values[i], other.counts[i]);
+                }
+            }
+            return this;
+        }
+
+        void writeTo(PropertyContainer pc) {
+            for (int i = 0; i < aggregations.length; i++) {
+                if (counts[i] == 0) continue;
+                String key = aggregations[i].key;
+                switch (aggregations[i].name) {
+                    case "count":
+                        pc.setProperty(key, counts[i]);
+                        break;
+                    case "collect":
+                        pc.setProperty(key, collected.get(i).toArray());
+                        break;
+                    case "avg":
+                        pc.setProperty(key, values[i] / counts[i]);
+                        break;
+                    default:
+                        double value = values[i];
+                        pc.setProperty(key, value == (long) value ? (Object) (long) value : (Object) value);
+                }
+            }
         }
     }
 }
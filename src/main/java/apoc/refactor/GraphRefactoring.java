@@ -1,7 +1,8 @@
 package apoc.refactor;
 
-import apoc.Pools;
 import apoc.algo.Cover;
+import apoc.refactor.util.BatchedNodeMerge;
+import apoc.refactor.util.Categorizer;
 import apoc.refactor.util.PropertiesManager;
 import apoc.refactor.util.RefactorConfig;
 import apoc.result.NodeResult;
@@ -12,8 +13,6 @@ import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 
 import java.util.*;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -255,12 +254,21 @@ public class GraphRefactoring {
     /**
      * Merges the nodes onto the first node.
      * The other nodes are deleted and their relationships moved onto that first node.
+     * With a batchSize the relationships are moved in separate transactions of that many relationships.
      */
     @Procedure(mode = Mode.WRITE,eager = true)
-    @Description("apoc.refactor.mergeNodes([node1,node2],[{properties:'overwrite' or 'discard' or 'combine'}]) merge nodes onto first in list")
+    @Description("apoc.refactor.mergeNodes([node1,node2],[{properties:'overwrite' or 'discard' or 'combine', mergeRels:false, batchSize:0}]) merge nodes onto first in list")
     public Stream<NodeResult> mergeNodes(@Name("nodes") List<Node> nodes, @Name(value = "config", defaultValue = "") Map<String, Object> config) {
         if (nodes == null || nodes.isEmpty()) return Stream.empty();
         RefactorConfig conf = new RefactorConfig(config);
+        if (conf.getBatchSize() > 0) {
+            // the batches are committed separately, so no locks are taken in the caller's transaction
+            BatchedNodeMerge merge = new BatchedNodeMerge(db, log, nodes.get(0).getId(), conf);
+            long[] nodeIds = nodes.stream().mapToLong(Node::getId).distinct().toArray();
+            merge.requireCommitted(nodeIds);
+            Arrays.stream(nodeIds).skip(1).forEach(merge::merge);
+            return Stream.of(new NodeResult(nodes.get(0)));
+        }
         // grab write locks upfront consistently ordered
         try (Transaction tx = db.beginTx()) {
             nodes.stream().distinct().sorted(Comparator.comparingLong(Node::getId)).forEach(tx::acquireWriteLock);
@@ -394,7 +402,7 @@ public class GraphRefactoring {
     }
 
     /**
-     * Create category nodes from unique property values
+     * Create category nodes from unique property values, linking the nodes in parallel batches of batchSize nodes
      */
     @Procedure(mode = Mode.WRITE)
     @Description("apoc.refactor.categorize(sourceKey, type, outgoing, label, targetKey, copiedKeys, batchSize) turn each unique propertyKey into a category node and connect to it")
@@ -406,7 +414,7 @@ public class GraphRefactoring {
             @Name("targetKey") String targetKey,
             @Name("copiedKeys") List<String> copiedKeys,
             @Name("batchSize") long batchSize
-    ) throws ExecutionException {
+    ) {
         // Verify and adjust arguments
         if (sourceKey == null)
             throw new IllegalArgumentException("Invalid (null) sourceKey");
@@ -416,66 +424,7 @@ public class GraphRefactoring {
 
         copiedKeys.remove(targetKey); // Just to be sure
 
-        // Create batches of nodes
-        List<Node> batch = null;
-        List<Future<Void>> futures = new ArrayList<>();
-        try (Transaction tx = db.beginTx()) {
-            for (Node node : db.getAllNodes()) {
-                if (batch == null) {
-                    batch = new ArrayList<>((int) batchSize);
-                }
-                batch.add(node);
-                if (batch.size() == batchSize) {
-                    futures.add(categorizeNodes(batch, sourceKey, relationshipType, outgoing, label, targetKey, copiedKeys));
-                    batch = null;
-                }
-            }
-            if (batch != null) {
-                futures.add(categorizeNodes(batch, sourceKey, relationshipType, outgoing, label, targetKey, copiedKeys));
-            }
-
-            // Await processing of node batches
-            for (Future<Void> future : futures) {
-                Pools.force(future);
-            }
-            tx.success();
-        }
-    }
-
-    private Future<Void> categorizeNodes(List<Node> batch, String sourceKey, String relationshipType, Boolean outgoing, String label, String targetKey, List<String> copiedKeys) {
-        return Pools.processBatch(batch, db, (Node node) -> {
-            Object value = node.getProperty(sourceKey, null);
-            if (value != null) {
-                String q =
-                        "WITH {node} AS n " +
-                                "MERGE (cat:`" + label + "` {`" + targetKey + "`: {value}}) " +
-                                (outgoing ? "MERGE (n)-[:`" + relationshipType + "`]->(cat) "
-                                        : "MERGE (n)<-[:`" + relationshipType + "`]-(cat) ") +
-                                "RETURN cat";
-                Map<String, Object> params = new HashMap<>(2);
-                params.put("node", node);
-                params.put("value", value);
-                Result result = db.execute(q, params);
-                if (result.hasNext()) {
-                    Node cat = (Node) result.next().get("cat");
-                    for (String copiedKey : copiedKeys) {
-                        Object copiedValue = node.getProperty(copiedKey, null);
-                        if (copiedValue != null) {
-                            Object catValue = cat.getProperty(copiedKey, null);
-                            if (catValue == null) {
-                                cat.setProperty(copiedKey, copiedValue);
-                                node.removeProperty(copiedKey);
-                            } else if (copiedValue.equals(catValue)) {
-                                node.removeProperty(copiedKey);
-                            }
-                        }
-                    }
-                }
-                assert (!result.hasNext());
-                result.close();
-                node.removeProperty(sourceKey);
-            }
-        });
+        new Categorizer(db, log, sourceKey, relationshipType, outgoing, label, targetKey, copiedKeys, batchSize).run();
     }
 
     private Node mergeNodes(Node source, Node target, boolean delete, RefactorConfig conf) {
@@ -0,0 +1,323 @@
+package apoc.refactor.rename;
+
+import apoc.Pools;
+import apoc.periodic.Periodic.BatchAndTotalResult;
+import apoc.util.Util;
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.NodeLabelIndexCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.internal.kernel.api.RelationshipScanCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.internal.kernel.api.Write;
+import org.neo4j.internal.kernel.api.exceptions.KernelException;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.procedure.TerminationGuard;
+import org.neo4j.values.storable.Value;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static apoc.util.kernel.MultiThreadedGlobalGraphOperations.GlobalOperationsTypes;
+import static apoc.util.kernel.MultiThreadedGlobalGraphOperations.getHighestIdInUseForStore;
+
+/**
+ * Renames labels, relationship-types and properties for {@code apoc.refactor.rename.*} through the kernel
+ * {@link Write} operations, without planning and running a Cypher statement per batch.
+ * <p>
+ * The nodes of a renamed label are read from the label index, the given entities are taken as they are, both in
+ * batches of {@link #BATCH_SIZE} ids. The renames of types and properties have no index to find their entities, so
+ * they scan all nodes or relationships in partitions of that many ids. The batches run in parallel, each in its own
+ * transaction. Relationships are renamed by creating a new one and deleting the old one, which locks their nodes, so a
+ * batch locks all nodes it touches upfront in id order to not deadlock with the concurrent batches.
+ */
+class KernelRename {
+
+    static final int BATCH_SIZE = 10_000;
+
+    private final GraphDatabaseAPI db;
+    private final TerminationGuard terminationGuard;
+    private final ThreadToStatementContextBridge ctx;
+
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final Map<String, Long> operationErrors = new ConcurrentHashMap<>();
+    private final Map<String, Long> batchErrors = new ConcurrentHashMap<>();
+
+    KernelRename(GraphDatabaseAPI db, TerminationGuard terminationGuard) {
+        this.db = db;
+        this.terminationGuard = terminationGuard;
+        this.ctx = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+    }
+
+    /**
+     * Renames one batch of ids, the ids are either {@code ids} or the range from {@code from} to {@code to}.
+     */
+    private interface BatchAction {
+        void rename(KernelTransaction ktx, long[] ids, long from, long to, Counts counts) throws KernelException;
+    }
+
+    private static final class Counts {
+        long matched;
+        long failed;
+    }
+
+    BatchAndTotalResult label(String oldLabel, String newLabel, List<?> nodes) {
+        int oldId = token(tokens -> tokens.tokenRead().nodeLabel(oldLabel));
+        if (oldId == TokenRead.NO_TOKEN || oldLabel.equals(newLabel)) return result(0, 0);
+        int newId = token(tokens -> tokens.tokenWrite().labelGetOrCreateForName(newLabel));
+        return run(GlobalOperationsTypes.NODES, nodes, oldId, (ktx, ids, from, to, counts) -> {
+            Write write = ktx.dataWrite();
+            try (NodeCursor cursor = ktx.cursors().allocateNodeCursor()) {
+                forEach(ids, from, to, id -> {
+                    ktx.dataRead().singleNode(id, cursor);
+                    // the label index of the calling transaction might be behind
+                    if (!cursor.next() || !cursor.labels().contains(oldId)) return;
+                    counts.matched++;
+                    try {
+                        write.nodeAddLabel(id, newId);
+                        write.nodeRemoveLabel(id, oldId);
+                    } catch (KernelException e) {
+                        fail(counts, e);
+                    }
+                });
+            }
+        });
+    }
+
+    BatchAndTotalResult type(String oldType, String newType, List<?> rels) {
+        int oldId = token(tokens -> tokens.tokenRead().relationshipType(oldType));
+        if (oldId == TokenRead.NO_TOKEN || oldType.equals(newType)) return result(0, 0);
+        int newId = token(tokens -> tokens.tokenWrite().relationshipTypeGetOrCreateForName(newType));
+        return run(GlobalOperationsTypes.RELATIONSHIPS, rels, TokenRead.NO_TOKEN, (ktx, ids, from, to, counts) -> {
+            Read read = ktx.dataRead();
+            Write write = ktx.dataWrite();
+            try (RelationshipScanCursor cursor = ktx.cursors().allocateRelationshipScanCursor();
+                 PropertyCursor properties = ktx.cursors().allocatePropertyCursor()) {
+                // rel id, start node id, end node id of the relationships to rename
+                long[] matches = new long[16 * 3];
+                int size = 0;
+                long[] nodes = new long[16];
+                int nodeCount = 0;
+                for (long id : idsOf(ids, from, to)) {
+                    read.singleRelationship(id, cursor);
+                    if (!cursor.next() || cursor.type() != oldId) continue;
+                    if (size + 3 > matches.length) matches = Arrays.copyOf(matches, matches.length * 2);
+                    if (nodeCount + 2 > nodes.length) nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                    matches[size++] = id;
+                    matches[size++] = nodes[nodeCount++] = cursor.sourceNodeReference();
+                    matches[size++] = nodes[nodeCount++] = cursor.targetNodeReference();
+                }
+                if (size == 0) return;
+                long[] locked = Arrays.stream(nodes, 0, nodeCount).sorted().distinct().toArray();
+                ktx.locks().acquireExclusiveNodeLock(locked);
+                for (int i = 0; i < size; i += 3) {
+                    long id = matches[i];
+                    read.singleRelationship(id, cursor);
+                    if (!cursor.next() || cursor.type() != oldId) continue;
+                    counts.matched++;
+                    try {
+                        long newRel = write.relationshipCreate(matches[i + 1], newId, matches[i + 2]);
+                        cursor.properties(properties);
+                        while (properties.next()) {
+                            write.relationshipSetProperty(newRel, properties.propertyKey(), properties.propertyValue());
+                        }
+                        write.relationshipDelete(id);
+                    } catch (KernelException e) {
+                        fail(counts, e);
+                    }
+                }
+            }
+        });
+    }
+
+    BatchAndTotalResult nodeProperty(String oldName, String newName, List<?> nodes) {
+        int oldKey = token(tokens -> tokens.tokenRead().propertyKey(oldName));
+        if (oldKey == TokenRead.NO_TOKEN || oldName.equals(newName)) return result(0, 0);
+        int newKey = token(tokens -> tokens.tokenWrite().propertyKeyGetOrCreateForName(newName));
+        return run(GlobalOperationsTypes.NODES, nodes, TokenRead.NO_TOKEN, (ktx, ids, from, to, counts) -> {
+            Write write = ktx.dataWrite();
+            try (NodeCursor cursor = ktx.cursors().allocateNodeCursor();
+                 PropertyCursor properties = ktx.cursors().allocatePropertyCursor()) {
+                forEach(ids, from, to, id -> {
+                    ktx.dataRead().singleNode(id, cursor);
+                    if (!cursor.next()) return;
+                    cursor.properties(properties);
+                    Value value = valueOf(properties, oldKey);
+                    if (value == null) return;
+                    counts.matched++;
+                    try {
+                        write.nodeSetProperty(id, newKey, value);
+                        write.nodeRemoveProperty(id, oldKey);
+                    } catch (KernelException e) {
+                        fail(counts, e);
+                    }
+                });
+            }
+        });
+    }
+
+    BatchAndTotalResult typeProperty(String oldName, String newName, List<?> rels) {
+        int oldKey = token(tokens -> tokens.tokenRead().propertyKey(oldName));
+        if (oldKey == TokenRead.NO_TOKEN || oldName.equals(newName)) return result(0, 0);
+        int newKey = token(tokens -> tokens.tokenWrite().propertyKeyGetOrCreateForName(newName));
+        return run(GlobalOperationsTypes.RELATIONSHIPS, rels, TokenRead.NO_TOKEN, (ktx, ids, from, to, counts) -> {
+            Write write = ktx.dataWrite();
+            try (RelationshipScanCursor cursor = ktx.cursors().allocateRelationshipScanCursor();
+                 PropertyCursor properties = ktx.cursors().allocatePropertyCursor()) {
+                forEach(ids, from, to, id -> {
+                    ktx.dataRead().singleRelationship(id, cursor);
+                    if (!cursor.next()) return;
+                    cursor.properties(properties);
+                    Value value = valueOf(properties, oldKey);
+                    if (value == null) return;
+                    counts.matched++;
+                    try {
+                        write.relationshipSetProperty(id, newKey, value);
+                        write.relationshipRemoveProperty(id, oldKey);
+                    } catch (KernelException e) {
+                        fail(counts, e);
+                    }
+                });
+            }
+        });
+    }
+
+    private static Value valueOf(PropertyCursor properties, int key) {
+        while (properties.next()) {
+            if (properties.propertyKey() == key) return properties.propertyValue();
+        }
+        return null;
+    }
+
+    private interface IdConsumer {
+        void accept(long id) throws KernelException;
+    }
+
+    private static void forEach(long[] ids, long from, long to, IdConsumer consumer) throws KernelException {
+        if (ids != null) {
+            for (long id : ids) consumer.accept(id);
+        } else {
+            for (long id = from; id < to; id++) consumer.accept(id);
+        }
+    }
+
+    private static long[] idsOf(long[] ids, long from, long to) {
+        if (ids != null) return ids;
+        long[] range = new long[(int) (to - from)];
+        for (int i = 0; i < range.length; i++) range[i] = from + i;
+        return range;
+    }
+
+    private void fail(Counts counts, Exception e) {
+        counts.failed++;
+        operationErrors.merge(String.valueOf(e.getMessage()), 1L, Long::sum);
+    }
+
+    private interface TokenFunction {
+        int apply(KernelTransaction ktx) throws KernelException;
+    }
+
+    private int token(TokenFunction function) {
+        return Util.inTx(db, () -> function.apply(ctx.getKernelTransactionBoundToThisThread(true)));
+    }
+
+    /**
+     * Runs the action for the given entities, the nodes with the label {@code scanLabel} or all ids of the store in
+     * parallel batches, each in its own transaction.
+     */
+    private BatchAndTotalResult run(GlobalOperationsTypes type, List<?> entities, int scanLabel, BatchAction action) {
+        long start = System.currentTimeMillis();
+        int maxInFlight = Math.max(2, Pools.getNoThreadsInDefaultPool() * 2);
+        Deque<Future<Void>> inFlight = new ArrayDeque<>(maxInFlight);
+        long batches = 0;
+        try {
+            if (entities != null && !entities.isEmpty()) {
+                long[] ids = entities.stream().mapToLong(KernelRename::idOf).toArray();
+                for (int from = 0; from < ids.length; from += BATCH_SIZE) {
+                    long[] batch = Arrays.copyOfRange(ids, from, Math.min(from + BATCH_SIZE, ids.length));
+                    submit(inFlight, maxInFlight, action, batch, 0, 0);
+                    batches++;
+                }
+            } else if (scanLabel != TokenRead.NO_TOKEN) {
+                // the label index of the calling transaction, the batches only remove the label from nodes it has passed
+                KernelTransaction ktx = ctx.getKernelTransactionBoundToThisThread(true);
+                try (NodeLabelIndexCursor cursor = ktx.cursors().allocateNodeLabelIndexCursor()) {
+                    ktx.dataRead().nodeLabelScan(scanLabel, cursor);
+                    long[] batch = new long[BATCH_SIZE];
+                    int size = 0;
+                    while (cursor.next()) {
+                        batch[size++] = cursor.nodeReference();
+                        if (size == BATCH_SIZE) {
+                            submit(inFlight, maxInFlight, action, batch, 0, 0);
+                            batches++;
+                            batch = new long[BATCH_SIZE];
+                            size = 0;
+                        }
+                    }
+                    if (size > 0) {
+                        submit(inFlight, maxInFlight, action, Arrays.copyOf(batch, size), 0, 0);
+                        batches++;
+                    }
+                }
+            } else {
+                long highId = getHighestIdInUseForStore(db.getDependencyResolver(), type);
+                for (long from = 0; from < highId; from += BATCH_SIZE) {
+                    submit(inFlight, maxInFlight, action, null, from, Math.min(from + BATCH_SIZE, highId));
+                    batches++;
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                Pools.force(inFlight.poll());
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error renaming: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+        return result(batches, System.currentTimeMillis() - start);
+    }
+
+    private void submit(Deque<Future<Void>> inFlight, int maxInFlight, BatchAction action, long[] ids, long from, long to) throws ExecutionException {
+        if (terminationGuard != null) terminationGuard.check();
+        Counts counts = new Counts();
+        inFlight.add(Pools.DEFAULT.submit(() -> {
+            try {
+                try (Transaction tx = db.beginTx()) {
+                    action.rename(ctx.getKernelTransactionBoundToThisThread(true), ids, from, to, counts);
+                    tx.success();
+                }
+                total.addAndGet(counts.matched);
+                committed.addAndGet(counts.matched - counts.failed);
+                failed.addAndGet(counts.failed);
+            } catch (Exception e) {
+                total.addAndGet(counts.matched);
+                failed.addAndGet(counts.matched);
+                failedBatches.incrementAndGet();
+                batchErrors.merge(String.valueOf(e.getMessage()), 1L, Long::sum);
+            }
+            return null;
+        }));
+        if (inFlight.size() >= maxInFlight) Pools.force(inFlight.poll());
+    }
+
+    private static long idOf(Object entity) {
+        if (entity instanceof Entity) return ((Entity) entity).getId();
+        if (entity instanceof Number) return ((Number) entity).longValue();
+        throw new RuntimeException("Can't rename " + entity + ", expected a node, relationship or id");
+    }
+
+    private BatchAndTotalResult result(long batches, long time) {
+        return new BatchAndTotalResult(batches, total.get(), time / 1000, committed.get(), failed.get(), failedBatches.get(), 0,
+                operationErrors, batchErrors, false, Collections.emptyMap());
+    }
+}
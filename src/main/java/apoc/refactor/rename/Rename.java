@@ -1,13 +1,12 @@
 package apoc.refactor.rename;
 
-import apoc.periodic.Periodic;
 import apoc.periodic.Periodic.BatchAndTotalResult;
-import apoc.util.MapUtil;
 import apoc.util.Util;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.schema.ConstraintDefinition;
 import org.neo4j.graphdb.schema.IndexDefinition;
 import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 
@@ -30,15 +29,12 @@ public class Rename {
     @Context public TerminationGuard terminationGuard;
 
     /**
-	 * Rename the Label of a node by creating a new one and deleting the old.
+	 * Rename the Label of a node by adding the new one and removing the old.
 	 */
 	@Procedure(mode = Mode.WRITE)
 	@Description("apoc.refactor.rename.label(oldLabel, newLabel, [nodes]) | rename a label from 'oldLabel' to 'newLabel' for all nodes. If 'nodes' is provided renaming is applied to this set only")
 	public Stream<BatchAndTotalResultWithInfo> label(@Name("oldLabel") String oldLabel, @Name("newLabel") String newLabel, @Name(value = "nodes", defaultValue = "") List<Node> nodes) {
-		String cypherIterate = nodes != null && !nodes.isEmpty() ? "UNWIND {nodes} AS n WITH n WHERE n:`"+oldLabel+"` RETURN n" : "MATCH (n:`"+oldLabel+"`) RETURN n";
-        String cypherAction = "SET n:`"+newLabel+"` REMOVE n:`"+oldLabel+"`";
-        Map<String, Object> parameters = MapUtil.map("batchSize", 100000, "parallel", true, "iterateList", true, "params", MapUtil.map("nodes", nodes));
-		return getResultOfBatchAndTotalWithInfo( newPeriodic().iterate(cypherIterate, cypherAction, parameters), db, oldLabel, null, null);
+		return getResultOfBatchAndTotalWithInfo(Stream.of(newKernelRename().label(oldLabel, newLabel, nodes)), db, oldLabel, null, null);
 	}
 
     /**
@@ -47,10 +43,7 @@ public class Rename {
 	@Procedure(mode = Mode.WRITE)
 	@Description("apoc.refactor.rename.type(oldType, newType, [rels]) | rename all relationships with type 'oldType' to 'newType'. If 'rels' is provided renaming is applied to this set only")
 	public Stream<BatchAndTotalResultWithInfo> type(@Name("oldType") String oldType, @Name("newType") String newType, @Name(value = "rels", defaultValue = "") List<Relationship> rels) {
-		String cypherIterate = rels != null && ! rels.isEmpty() ? "UNWIND {rels} AS oldRel WITH oldRel WHERE type(oldRel)=\""+oldType+"\" RETURN oldRel,startNode(oldRel) as a,endNode(oldRel) as b" : "MATCH (a)-[oldRel:`"+oldType+"`]->(b) RETURN oldRel,a,b";
-		String cypherAction = "CREATE(a)-[newRel:`"+newType+"`]->(b)"+ "SET newRel+=oldRel DELETE oldRel";
-		Map<String, Object> parameters = MapUtil.map("batchSize", 100000, "parallel", true, "iterateList", true, "params", MapUtil.map("rels", rels));
-		return getResultOfBatchAndTotalWithInfo(newPeriodic().iterate(cypherIterate, cypherAction, parameters), db, null, oldType, null);
+		return getResultOfBatchAndTotalWithInfo(Stream.of(newKernelRename().type(oldType, newType, rels)), db, null, oldType, null);
 	}
 
 	/**
@@ -59,10 +52,7 @@ public class Rename {
 	@Procedure(mode = Mode.WRITE)
 	@Description("apoc.refactor.rename.nodeProperty(oldName, newName, [nodes]) | rename all node's property from 'oldName' to 'newName'. If 'nodes' is provided renaming is applied to this set only")
 	public Stream<BatchAndTotalResultWithInfo> nodeProperty(@Name("oldName") String oldName, @Name("newName") String newName, @Name(value="nodes", defaultValue = "") List<Object> nodes) {
-		String cypherIterate = nodes != null && ! nodes.isEmpty() ? "UNWIND {nodes} AS n WITH n WHERE exists (n."+oldName+") return n" : "match (n) where exists (n."+oldName+") return n";
-		String cypherAction = "set n."+newName+"= n."+oldName+" remove n."+oldName;
-		Map<String, Object> parameters = MapUtil.map("batchSize", 100000, "parallel", true, "iterateList", true, "params", MapUtil.map("nodes", nodes));
-		return getResultOfBatchAndTotalWithInfo(newPeriodic().iterate(cypherIterate, cypherAction, parameters), db, null, null, oldName);
+		return getResultOfBatchAndTotalWithInfo(Stream.of(newKernelRename().nodeProperty(oldName, newName, nodes)), db, null, null, oldName);
 	}
 
 	/**
@@ -71,21 +61,11 @@ public class Rename {
 	@Procedure(mode = Mode.WRITE)
 	@Description("apoc.refactor.rename.typeProperty(oldName, newName, [rels]) | rename all relationship's property from 'oldName' to 'newName'. If 'rels' is provided renaming is applied to this set only")
 	public Stream<BatchAndTotalResultWithInfo> typeProperty(@Name("oldName") String oldName, @Name("newName") String newName, @Name(value="rels", defaultValue = "") List<Object> rels) {
-		String cypherIterate = rels != null && ! rels.isEmpty() ? "UNWIND {rels} AS r WITH r WHERE exists (r."+oldName+") return r" : "match ()-[r]->() where exists (r."+oldName+") return r";
-		String cypherAction = "set r."+newName+"= r."+oldName+" remove r."+oldName;
-		Map<String, Object> parameters = MapUtil.map("batchSize", 100000, "parallel", true, "iterateList", true, "params", MapUtil.map("rels", rels));
-		return getResultOfBatchAndTotalWithInfo(newPeriodic().iterate(cypherIterate, cypherAction, parameters), db, null, null, oldName);
+		return getResultOfBatchAndTotalWithInfo(Stream.of(newKernelRename().typeProperty(oldName, newName, rels)), db, null, null, oldName);
 	}
 
-    /*
-     * create a properly initialized Periodic instance by setting all the required @Context attributes
-     */
-    private Periodic newPeriodic() {
-        Periodic periodic = new Periodic();
-        periodic.db = this.db;
-        periodic.log = this.log;
-        periodic.terminationGuard = this.terminationGuard;
-        return periodic;
+    private KernelRename newKernelRename() {
+        return new KernelRename((GraphDatabaseAPI) db, terminationGuard);
     }
 
 	/*
@@ -0,0 +1,180 @@
+package apoc.refactor.util;
+
+import apoc.util.Util;
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongLongMap;
+import org.neo4j.graphdb.*;
+import org.neo4j.logging.Log;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Merges nodes onto a target node for {@code apoc.refactor.mergeNodes} with a {@code batchSize}.
+ * <p>
+ * The relationships of each merged node are moved onto the target in transactions of {@code batchSize}
+ * relationships, grouped by type and direction, so dense nodes never have all their relationships in one transaction.
+ * Labels and properties are merged and the node is deleted in a final transaction, so running the merge again after
+ * an interruption continues with the relationships that are left. With {@code mergeRels} a moved relationship is merged
+ * into the relationship of the target with the same type, direction and other node, which are looked up per type and
+ * direction once.
+ */
+public class BatchedNodeMerge {
+
+    private final GraphDatabaseService db;
+    private final Log log;
+    private final long targetId;
+    private final RefactorConfig conf;
+    private final RefactorConfig relConf;
+    private final int batchSize;
+    private final Map<String, PrimitiveLongLongMap> targetRels = new HashMap<>();
+
+    private long moved;
+    private long merged;
+    private long batches;
+
+    public BatchedNodeMerge(GraphDatabaseService db, Log log, long targetId, RefactorConfig conf) {
+        this.db = db;
+        this.log = log;
+        this.targetId = targetId;
+        this.conf = conf;
+        this.relConf = conf.hasProperties() ? conf : new RefactorConfig(Collections.singletonMap("properties", RefactorConfig.COMBINE));
+        this.batchSize = (int) Math.min(Integer.MAX_VALUE, conf.getBatchSize());
+    }
+
+    /**
+     * Fails if one of the nodes isn't visible to the separate transactions of the batches, e.g. because it was created
+     * by the calling transaction and is not committed yet.
+     */
+    public void requireCommitted(long[] nodeIds) {
+        Util.inTx(db, () -> {
+            for (long nodeId : nodeIds) node(nodeId);
+            return null;
+        });
+    }
+
+    private Node node(long nodeId) {
+        try {
+            return db.getNodeById(nodeId);
+        } catch (NotFoundException e) {
+            // without the cause, the procedure error reports the message of the root cause only
+            throw new RuntimeException("apoc.refactor.mergeNodes with batchSize merges in separate transactions, but node " + nodeId +
+                    " does not exist in them. Commit the nodes before merging them in batches.");
+        }
+    }
+
+    /**
+     * Moves all relationships of the source node onto the target, then merges its labels and properties and deletes it.
+     */
+    public void merge(long sourceId) {
+        if (sourceId == targetId) return;
+        long start = System.currentTimeMillis();
+        long movedBefore = moved, mergedBefore = merged;
+        int count;
+        while ((count = Util.inTx(db, () -> moveBatch(sourceId))) > 0) {
+            log.info("apoc.refactor.mergeNodes moved batch %d with %d relationships of node %d onto node %d, %d moved and %d merged so far",
+                    batches, count, sourceId, targetId, moved, merged);
+        }
+        Util.inTx(db, () -> {
+            Node source = node(sourceId);
+            Node target = node(targetId);
+            for (Label label : source.getLabels()) {
+                if (!target.hasLabel(label)) target.addLabel(label);
+            }
+            Map<String, Object> properties = source.getAllProperties();
+            source.delete();
+            PropertiesManager.mergeProperties(properties, target, conf);
+            return null;
+        });
+        log.info("apoc.refactor.mergeNodes merged node %d onto node %d, moved %d and merged %d relationships in %d ms",
+                sourceId, targetId, moved - movedBefore, merged - mergedBefore, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @return the number of relationships moved
+     */
+    private int moveBatch(long sourceId) {
+        Node source = node(sourceId);
+        Node target = node(targetId);
+        try (Transaction tx = db.beginTx()) {
+            // consistently ordered, like the unbatched merge
+            tx.acquireWriteLock(sourceId < targetId ? source : target);
+            tx.acquireWriteLock(sourceId < targetId ? target : source);
+            int count = 0;
+            for (RelationshipType type : source.getRelationshipTypes()) {
+                for (Direction direction : new Direction[]{Direction.OUTGOING, Direction.INCOMING}) {
+                    for (Relationship rel : source.getRelationships(type, direction)) {
+                        if (count == batchSize) {
+                            tx.success();
+                            batches++;
+                            return count;
+                        }
+                        move(rel, source, target, type, direction);
+                        count++;
+                    }
+                }
+            }
+            tx.success();
+            if (count > 0) batches++;
+            return count;
+        }
+    }
+
+    private void move(Relationship rel, Node source, Node target, RelationshipType type, Direction direction) {
+        Node other = rel.getOtherNode(source);
+        if (other.equals(source)) other = target;
+        if (conf.getMergeRelsAllowed()) {
+            PrimitiveLongLongMap existing = targetRels(target, type, direction);
+            long existingId = existing.get(other.getId());
+            if (existingId != -1) {
+                try {
+                    Relationship into = db.getRelationshipById(existingId);
+                    Map<String, Object> properties = rel.getAllProperties();
+                    rel.delete();
+                    PropertiesManager.mergeProperties(properties, into, relConf);
+                    merged++;
+                    return;
+                } catch (NotFoundException e) {
+                    // removed concurrently, create a new one
+                }
+            }
+            existing.put(other.getId(), copy(rel, target, other, type, direction).getId());
+        } else {
+            copy(rel, target, other, type, direction);
+        }
+        rel.delete();
+        moved++;
+    }
+
+    private Relationship copy(Relationship rel, Node target, Node other, RelationshipType type, Direction direction) {
+        Relationship copy = direction == Direction.OUTGOING ? target.createRelationshipTo(other, type) : other.createRelationshipTo(target, type);
+        return RefactorUtil.copyProperties(rel, copy);
+    }
+
+    /**
+     * The relationships of the target with the given type and direction by their other node, relationships of the
+     * target that are duplicates already are merged when they are loaded.
+     */
+    private PrimitiveLongLongMap targetRels(Node target, RelationshipType type, Direction direction) {
+        String key = type.name() + direction.name();
+        PrimitiveLongLongMap rels = targetRels.get(key);
+        if (rels == null) {
+            rels = Primitive.longLongMap();
+            for (Relationship rel : target.getRelationships(type, direction)) {
+                long otherId = rel.getOtherNodeId(targetId);
+                long existingId = rels.get(otherId);
+                if (existingId == -1) {
+                    rels.put(otherId, rel.getId());
+                } else {
+                    Map<String, Object> properties = rel.getAllProperties();
+                    rel.delete();
+                    PropertiesManager.mergeProperties(properties, db.getRelationshipById(existingId), relConf);
+                    merged++;
+                }
+            }
+            targetRels.put(key, rels);
+        }
+        return rels;
+    }
+}
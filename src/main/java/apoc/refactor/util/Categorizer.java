@@ -0,0 +1,269 @@
+package apoc.refactor.util;
+
+import apoc.Pools;
+import apoc.util.Util;
+import apoc.util.kernel.MultiThreadedGlobalGraphOperations.GlobalOperationsTypes;
+import org.neo4j.graphdb.*;
+import org.neo4j.internal.kernel.api.Read;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static apoc.util.kernel.MultiThreadedGlobalGraphOperations.getHighestIdInUseForStore;
+
+/**
+ * Turns the values of a node property into relationships to category nodes for {@code apoc.refactor.categorize}.
+ * <p>
+ * The nodes are scanned in parallel partitions of node ids, collecting the ids of the nodes with the property, its
+ * distinct values and the first value of each copied key per category value. The missing category nodes are then
+ * created in one pass and cached by value, before the nodes are linked to them in parallel batches of
+ * {@code batchSize} nodes, each in its own transaction. Within a batch the nodes are linked ordered by category node,
+ * so concurrent batches lock the shared category nodes in the same order.
+ */
+public class Categorizer {
+
+    private static final int PARTITION_SIZE = 10_000;
+
+    private final GraphDatabaseAPI db;
+    private final Log log;
+    private final String sourceKey;
+    private final RelationshipType type;
+    private final boolean outgoing;
+    private final Label label;
+    private final String targetKey;
+    private final List<String> copiedKeys;
+    private final int batchSize;
+
+    private final Map<Object, Category> categories = new ConcurrentHashMap<>();
+
+    public Categorizer(GraphDatabaseService db, Log log, String sourceKey, String type, boolean outgoing, String label,
+                       String targetKey, List<String> copiedKeys, long batchSize) {
+        this.db = (GraphDatabaseAPI) db;
+        this.log = log;
+        this.sourceKey = sourceKey;
+        this.type = RelationshipType.withName(type);
+        this.outgoing = outgoing;
+        this.label = Label.label(label);
+        this.targetKey = targetKey;
+        this.copiedKeys = copiedKeys;
+        this.batchSize = (int) Math.max(1, Math.min(Integer.MAX_VALUE, batchSize));
+    }
+
+    private static final class Category {
+        private final long id;
+        private final Object[] copied;
+
+        Category(long id, Object[] copied) {
+            this.id = id;
+            this.copied = copied;
+        }
+    }
+
+    /**
+     * The nodes with the source property of one partition of node ids.
+     */
+    private final class Partition {
+        private long[] ids = new long[16];
+        private int size;
+        /** category value -> first non-null value per copied key, in id order */
+        private final Map<Object, Object[]> values = new LinkedHashMap<>();
+
+        void add(long id, Object value, Node node) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+            Object[] copied = values.computeIfAbsent(key(value), k -> new Object[copiedKeys.size()]);
+            for (int i = 0; i < copied.length; i++) {
+                if (copied[i] == null) copied[i] = node.getProperty(copiedKeys.get(i), null);
+            }
+        }
+    }
+
+    public void run() {
+        long start = System.currentTimeMillis();
+        List<Partition> partitions = scan();
+        Map<Object, Object[]> values = new LinkedHashMap<>();
+        long nodes = 0;
+        for (Partition partition : partitions) {
+            nodes += partition.size;
+            partition.values.forEach((value, copied) -> {
+                Object[] first = values.putIfAbsent(value, copied);
+                if (first != null) {
+                    for (int i = 0; i < first.length; i++) {
+                        if (first[i] == null) first[i] = copied[i];
+                    }
+                }
+            });
+            partition.values.clear();
+        }
+        long created = createCategories(values);
+        link(partitions);
+        log.info("apoc.refactor.categorize linked %d nodes to %d categories (%d created) in %d ms",
+                nodes, values.size(), created, System.currentTimeMillis() - start);
+    }
+
+    private List<Partition> scan() {
+        ThreadToStatementContextBridge ctx = db.getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class);
+        long highId = getHighestIdInUseForStore(db.getDependencyResolver(), GlobalOperationsTypes.NODES);
+        List<Future<Partition>> futures = new ArrayList<>();
+        for (long start = 0; start < highId; start += PARTITION_SIZE) {
+            long from = start, to = Math.min(start + PARTITION_SIZE, highId);
+            futures.add(Util.inTxFuture(Pools.DEFAULT, db, () -> {
+                Read read = ctx.getKernelTransactionBoundToThisThread(true).dataRead();
+                Partition partition = new Partition();
+                for (long id = from; id < to; id++) {
+                    if (!read.nodeExists(id)) continue;
+                    Node node = db.getNodeById(id);
+                    Object value = node.getProperty(sourceKey, null);
+                    if (value != null) partition.add(id, value, node);
+                }
+                return partition;
+            }));
+        }
+        List<Partition> partitions = new ArrayList<>(futures.size());
+        for (Future<Partition> future : futures) {
+            partitions.add(force(future));
+        }
+        return partitions;
+    }
+
+    /**
+     * Looks up the existing category nodes once and creates the missing ones in batches.
+     *
+     * @return the number of created category nodes
+     */
+    private long createCategories(Map<Object, Object[]> values) {
+        Util.inTx(db, () -> {
+            ResourceIterator<Node> it = db.findNodes(label);
+            while (it.hasNext()) {
+                Node node = it.next();
+                Object value = node.getProperty(targetKey, null);
+                if (value == null) continue;
+                Object key = key(value);
+                if (values.containsKey(key) && !categories.containsKey(key)) {
+                    categories.put(key, new Category(node.getId(), copied(node, values.get(key))));
+                }
+            }
+            return null;
+        });
+        List<Map.Entry<Object, Object[]>> missing = new ArrayList<>();
+        for (Map.Entry<Object, Object[]> entry : values.entrySet()) {
+            if (!categories.containsKey(entry.getKey())) missing.add(entry);
+        }
+        for (int from = 0; from < missing.size(); from += batchSize) {
+            List<Map.Entry<Object, Object[]>> batch = missing.subList(from, Math.min(from + batchSize, missing.size()));
+            Util.inTx(db, () -> {
+                for (Map.Entry<Object, Object[]> entry : batch) {
+                    Node node = db.createNode(label);
+                    node.setProperty(targetKey, value(entry.getKey()));
+                    categories.put(entry.getKey(), new Category(node.getId(), copied(node, entry.getValue())));
+                }
+                return null;
+            });
+        }
+        return missing.size();
+    }
+
+    /**
+     * Sets the first copied values the category node does not have yet.
+     *
+     * @return the copied values of the category node
+     */
+    private Object[] copied(Node category, Object[] first) {
+        Object[] copied = new Object[copiedKeys.size()];
+        for (int i = 0; i < copied.length; i++) {
+            copied[i] = category.getProperty(copiedKeys.get(i), null);
+            if (copied[i] == null && first[i] != null) {
+                category.setProperty(copiedKeys.get(i), first[i]);
+                copied[i] = first[i];
+            }
+        }
+        return copied;
+    }
+
+    private void link(List<Partition> partitions) {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Partition partition : partitions) {
+            for (int from = 0; from < partition.size; from += batchSize) {
+                long[] ids = Arrays.copyOfRange(partition.ids, from, Math.min(from + batchSize, partition.size));
+                futures.add(Util.inTxFuture(Pools.DEFAULT, db, () -> {
+                    linkBatch(ids);
+                    return null;
+                }));
+            }
+            partition.ids = null;
+        }
+        for (Future<Void> future : futures) {
+            force(future);
+        }
+    }
+
+    private void linkBatch(long[] ids) {
+        List<Node> nodes = new ArrayList<>(ids.length);
+        Map<Node, Category> nodeCategories = new HashMap<>(ids.length * 2);
+        for (long id : ids) {
+            Node node = db.getNodeById(id);
+            Object value = node.getProperty(sourceKey, null);
+            Category category = value == null ? null : categories.get(key(value));
+            if (category == null) continue;
+            nodes.add(node);
+            nodeCategories.put(node, category);
+        }
+        nodes.sort(Comparator.comparingLong(node -> nodeCategories.get(node).id));
+        for (Node node : nodes) {
+            Category category = nodeCategories.get(node);
+            Node cat = db.getNodeById(category.id);
+            if (outgoing) node.createRelationshipTo(cat, type);
+            else cat.createRelationshipTo(node, type);
+            for (int i = 0; i < category.copied.length; i++) {
+                String copiedKey = copiedKeys.get(i);
+                Object copiedValue = node.getProperty(copiedKey, null);
+                if (copiedValue != null && Objects.deepEquals(copiedValue, category.copied[i])) {
+                    node.removeProperty(copiedKey);
+                }
+            }
+            node.removeProperty(sourceKey);
+        }
+    }
+
+    private static <T> T force(Future<T> future) {
+        try {
+            return Pools.force(future);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error categorizing nodes: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static Object key(Object value) {
+        return value.getClass().isArray() ? new ArrayKey(value) : value;
+    }
+
+    private static Object value(Object key) {
+        return key instanceof ArrayKey ? ((ArrayKey) key).array : key;
+    }
+
+    /**
+     * Array property values compared by their elements.
+     */
+    private static final class ArrayKey {
+        private final Object array;
+
+        ArrayKey(Object array) {
+            this.array = array;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ArrayKey && Objects.deepEquals(array, ((ArrayKey) o).array);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.deepHashCode(new Object[]{array});
+        }
+    }
+}
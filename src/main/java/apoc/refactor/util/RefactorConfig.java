@@ -4,6 +4,7 @@ import java.util.Collections;
 import java.util.Map;
 
 import static apoc.util.Util.toBoolean;
+import static apoc.util.Util.toLong;
 
 /**
  * @author AgileLARUS
@@ -27,6 +28,7 @@ public class RefactorConfig {
 	private boolean countMerge;
 	private boolean hasProperties;
 	private boolean collapsedLabel;
+	private long batchSize;
 
 	public RefactorConfig(Map<String,Object> config) {
 		Object value = config.get("properties");
@@ -42,6 +44,8 @@ public class RefactorConfig {
 		this.selfRel = toBoolean(config.get("selfRel"));
 		this.countMerge = toBoolean(config.getOrDefault("countMerge", true));
 		this.collapsedLabel = toBoolean(config.get("collapsedLabel"));
+		Long batchSize = toLong(config.get("batchSize"));
+		this.batchSize = batchSize == null ? 0 : Math.max(0, batchSize);
 	}
 
 	public String getMergeMode(String name){
@@ -83,4 +87,11 @@ public class RefactorConfig {
 	public boolean isMergeVirtualRels() {
 		return mergeVirtualRels;
 	}
+
+	/**
+	 * @return the number of relationships moved per committed transaction, 0 to merge within the caller's transaction
+	 */
+	public long getBatchSize() {
+		return batchSize;
+	}
 }
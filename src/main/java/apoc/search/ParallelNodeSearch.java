@@ -1,19 +1,29 @@
 package apoc.search;
 
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongObjectMap;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.internal.kernel.api.*;
+import org.neo4j.internal.kernel.api.exceptions.KernelException;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.procedure.Description;
 import apoc.result.NodeResult;
 import apoc.util.Util;
-import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
+import org.neo4j.procedure.TerminationGuard;
 
 import java.util.*;
-import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -22,7 +32,6 @@ import static java.lang.System.currentTimeMillis;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
-import static java.util.stream.Collectors.groupingBy;
 
 public class ParallelNodeSearch {
 
@@ -34,11 +43,15 @@ public class ParallelNodeSearch {
     @Context
     public Log log;
 
+    @Context
+    public TerminationGuard terminationGuard;
+
 
     @Procedure("apoc.search.nodeAllReduced")
-    @Description("Do a parallel search over multiple indexes returning a reduced representation of the nodes found: node id, labels and the searched property. apoc.search.nodeShortAll( map of label and properties which will be searched upon, operator: EXACT / CONTAINS / STARTS WITH | ENDS WITH / = / <> / < / > ..., value ). All 'hits' are returned.")
-    public Stream<NodeReducedResult> multiSearchAll(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final Object value) throws Exception {
-        return createWorkersFromValidInput(labelProperties, operator, value).flatMap(QueryWorker::queryForData);
+    @Description("Do a parallel search over multiple indexes returning a reduced representation of the nodes found: node id, labels and the searched property. apoc.search.nodeShortAll( map of label and properties which will be searched upon, operator: EXACT / CONTAINS / STARTS WITH | ENDS WITH / = / <> / < / > ..., value, limit ). All 'hits' are returned, at most limit if positive.")
+    public Stream<NodeReducedResult> multiSearchAll(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final Object value,
+                                                    @Name(value = "limit", defaultValue = "-1") long limit) throws Exception {
+        return search(labelProperties, operator, value, QueryWorker::reduced, res -> res.id, false, limit);
     }
 
 
@@ -51,39 +64,61 @@ public class ParallelNodeSearch {
     }
 
     @Procedure("apoc.search.nodeReduced")
-    @Description("Do a parallel search over multiple indexes returning a reduced representation of the nodes found: node id, labels and the searched properties. apoc.search.nodeReduced( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue ). Multiple search results for the same node are merged into one record.")
-    public Stream<NodeReducedResult> multiSearch(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value) throws Exception {
-        return createWorkersFromValidInput(labelProperties, operator, value)
-                    .flatMap(QueryWorker::queryForData)
-                    .collect(groupingBy(res -> res.id,Collectors.reducing(this::merge)))
-                    .values().stream().filter(Optional::isPresent).map(Optional::get);
+    @Description("Do a parallel search over multiple indexes returning a reduced representation of the nodes found: node id, labels and the searched properties. apoc.search.nodeReduced( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue, limit ). Multiple search results for the same node are merged into one record, at most limit records if positive.")
+    public Stream<NodeReducedResult> multiSearch(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value,
+                                                 @Name(value = "limit", defaultValue = "-1") long limit) throws Exception {
+        return searchMerged(labelProperties, operator, value, limit);
     }
 
     @Procedure("apoc.search.multiSearchReduced")
-    @Description("Do a parallel search over multiple indexes returning a reduced representation of the nodes found: node id, labels and the searched properties. apoc.search.multiSearchReduced( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue ). Multiple search results for the same node are merged into one record.")
-    public Stream<NodeReducedResult> multiSearchOld(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value) throws Exception {
-            return createWorkersFromValidInput(labelProperties, operator, value)
-                    .flatMap(QueryWorker::queryForData)
-                    .collect(groupingBy(res -> res.id))
-                    .values().stream().map( list -> list.stream().reduce( this::merge ))
-                    .filter(Optional::isPresent).map(Optional::get);
+    @Description("Do a parallel search over multiple indexes returning a reduced representation of the nodes found: node id, labels and the searched properties. apoc.search.multiSearchReduced( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue, limit ). Multiple search results for the same node are merged into one record, at most limit records if positive.")
+    public Stream<NodeReducedResult> multiSearchOld(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value,
+                                                    @Name(value = "limit", defaultValue = "-1") long limit) throws Exception {
+        return searchMerged(labelProperties, operator, value, limit);
     }
 
     @Procedure("apoc.search.nodeAll")
-    @Description("Do a parallel search over multiple indexes returning nodes. usage apoc.search.nodeAll( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue ) returns all the Nodes found in the different searches.")
-    public Stream<NodeResult> multiSearchNodeAll(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value) throws Exception {
-        return createWorkersFromValidInput(labelProperties, operator, value).flatMap(QueryWorker::queryForNode);
+    @Description("Do a parallel search over multiple indexes returning nodes. usage apoc.search.nodeAll( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue, limit ) returns all the Nodes found in the different searches, at most limit if positive.")
+    public Stream<NodeResult> multiSearchNodeAll(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value,
+                                                 @Name(value = "limit", defaultValue = "-1") long limit) throws Exception {
+        return search(labelProperties, operator, value, QueryWorker::node, res -> res.node.getId(), false, limit);
     }
 
 
     @Procedure("apoc.search.node")
-    @Description("Do a parallel search over multiple indexes returning nodes. usage apoc.search.node( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue ) returns all the DISTINCT Nodes found in the different searches.")
-    public Stream<NodeResult> multiSearchNode(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value) throws Exception {
-        return createWorkersFromValidInput(labelProperties, operator, value)
-                .flatMap(QueryWorker::queryForNode)
-                .distinct();
+    @Description("Do a parallel search over multiple indexes returning nodes. usage apoc.search.node( map of label and properties which will be searched upon, operator: EXACT | CONTAINS | STARTS WITH | ENDS WITH, searchValue, limit ) returns all the DISTINCT Nodes found in the different searches, at most limit if positive.")
+    public Stream<NodeResult> multiSearchNode(@Name("LabelPropertyMap") final Object labelProperties, @Name("operator") final String operator, @Name("value") final String value,
+                                              @Name(value = "limit", defaultValue = "-1") long limit) throws Exception {
+        return search(labelProperties, operator, value, QueryWorker::node, res -> res.node.getId(), true, limit);
+    }
+
+    private <T> Stream<T> search(Object labelProperties, String operator, Object value, SearchMerge.Row<T> row, ToLongFunction<T> id, boolean distinct, long limit) throws Exception {
+        List<QueryWorker> workers = createWorkersFromValidInput(labelProperties, operator, value).collect(Collectors.toList());
+        return new SearchMerge<>(workers, row, id, distinct, limit, terminationGuard).stream();
     }
 
+    /**
+     * Merges the hits per node id while they are streamed. With a limit the nodes beyond it are skipped, but all hits
+     * are still drained, so the records of the accepted nodes contain the hits of every worker.
+     */
+    private Stream<NodeReducedResult> searchMerged(Object labelProperties, String operator, Object value, long limit) throws Exception {
+        PrimitiveLongObjectMap<NodeReducedResult> merged = Primitive.longObjectMap();
+        List<NodeReducedResult> results = new ArrayList<>();
+        try (Stream<NodeReducedResult> hits = search(labelProperties, operator, value, QueryWorker::reduced, res -> res.id, false, -1)) {
+            Iterator<NodeReducedResult> it = hits.iterator();
+            while (it.hasNext()) {
+                NodeReducedResult hit = it.next();
+                NodeReducedResult existing = merged.get(hit.id);
+                if (existing != null) {
+                    merge(existing, hit);
+                } else if (limit <= 0 || results.size() < limit) {
+                    merged.put(hit.id, hit);
+                    results.add(hit);
+                }
+            }
+        }
+        return results.stream();
+    }
 
     private Stream<QueryWorker> createWorkersFromValidInput(final Object labelPropertiesInput, String operatorInput, final Object value) throws Exception {
         String operatorNormalized = operatorInput.trim().toLowerCase();
@@ -109,6 +144,10 @@ public class ParallelNodeSearch {
         });
     }
 
+    /**
+     * Searches one label and property. An online schema index for them is read with an index seek if the operator and
+     * value can be expressed as an index query, otherwise the nodes of the label are scanned.
+     */
     public static class QueryWorker {
         private GraphDatabaseService db;
         private String label, prop, operator;
@@ -124,30 +163,97 @@ public class ParallelNodeSearch {
             this.log = log;
         }
 
-        public Stream<NodeReducedResult> queryForData() {
-            List<String> labels = singletonList(label);
-            String query = format("match (n:`%s`) where n.`%s` %s {value} return id(n) as id,  n.`%s` as value", label, prop, operator, prop);
-            return queryForNode(query, (row) -> new NodeReducedResult((long) row.get("id"), labels, singletonMap(prop, row.get("value")))).stream();
+        public NodeReducedResult reduced(long id) {
+            Map<String, Object> values = new HashMap<>();
+            values.put(prop, db.getNodeById(id).getProperty(prop, null));
+            return new NodeReducedResult(id, new ArrayList<>(singletonList(label)), values);
         }
 
-        public Stream<NodeResult> queryForNode() {
-            String query = format("match (n:`%s`) where n.`%s` %s {value} return n", label, prop, operator);
-            return queryForNode(query, (row) -> new NodeResult((Node) row.get("n"))).stream();
+        public NodeResult node(long id) {
+            return new NodeResult(db.getNodeById(id));
         }
 
-        public <T> List<T> queryForNode(String query, Function<Map<String, Object>, T> transformer) {
+        /**
+         * Creates a row per hit within the transaction of the search and passes it to the consumer, stops when the
+         * consumer returns false.
+         */
+        public <T> void search(LongFunction<T> transformer, Predicate<T> consumer) {
             long start = currentTimeMillis();
+            boolean seek = false;
             try (Transaction tx = db.beginTx()) {
-                try (Result nodes = db.execute(query, singletonMap("value", value))) {
-                    return nodes.stream().map(transformer).collect(Collectors.toList());
-                } finally {
+                KernelTransaction ktx = ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(ThreadToStatementContextBridge.class)
+                        .getKernelTransactionBoundToThisThread(true);
+                TokenRead tokenRead = ktx.tokenRead();
+                int labelId = tokenRead.nodeLabel(label);
+                int propertyKey = tokenRead.propertyKey(prop);
+                if (labelId == TokenRead.NO_TOKEN || propertyKey == TokenRead.NO_TOKEN) {
                     tx.success();
-                    if (log.isDebugEnabled())
-                        log.debug(format("(%s) search on label:%s and prop:%s took %d",
-                                Thread.currentThread(), label, prop, currentTimeMillis() - start));
+                    return;
+                }
+                IndexQuery query = indexQuery(propertyKey);
+                CapableIndexReference index = query == null ? CapableIndexReference.NO_INDEX : ktx.schemaRead().index(labelId, propertyKey);
+                seek = index != CapableIndexReference.NO_INDEX && ktx.schemaRead().indexGetState(index) == InternalIndexState.ONLINE;
+                if (seek) {
+                    // the statement keeps the index readers open while the rows read the nodes
+                    Statement statement = ktx.acquireStatement();
+                    try (NodeValueIndexCursor cursor = ktx.cursors().allocateNodeValueIndexCursor()) {
+                        ktx.dataRead().nodeIndexSeek(index, cursor, IndexOrder.NONE, query);
+                        while (cursor.next()) {
+                            if (!consumer.test(transformer.apply(cursor.nodeReference()))) break;
+                        }
+                    } finally {
+                        statement.close();
+                    }
+                } else {
+                    String scan = format("match (n:`%s`) where n.`%s` %s {value} return id(n) as id", label, prop, operator);
+                    try (Result nodes = db.execute(scan, singletonMap("value", value))) {
+                        while (nodes.hasNext()) {
+                            if (!consumer.test(transformer.apply((long) nodes.next().get("id")))) break;
+                        }
+                    }
                 }
+                tx.success();
+            } catch (KernelException e) {
+                throw new RuntimeException(format("Error searching label:%s and prop:%s", label, prop), e);
+            } finally {
+                if (log.isDebugEnabled())
+                    log.debug(format("(%s) %s on label:%s and prop:%s took %d",
+                            Thread.currentThread(), seek ? "index seek" : "search", label, prop, currentTimeMillis() - start));
             }
         }
+
+        /**
+         * @return the index query for the operator and value, null if there is none and the label has to be scanned
+         */
+        private IndexQuery indexQuery(int propertyKey) {
+            switch (operator) {
+                case "=":
+                    return value instanceof String || value instanceof Number || value instanceof Boolean ? IndexQuery.exact(propertyKey, value) : null;
+                case "starts with":
+                    return value instanceof String ? IndexQuery.stringPrefix(propertyKey, (String) value) : null;
+                case "ends with":
+                    return value instanceof String ? IndexQuery.stringSuffix(propertyKey, (String) value) : null;
+                case "contains":
+                    return value instanceof String ? IndexQuery.stringContains(propertyKey, (String) value) : null;
+                case "<":
+                    return range(propertyKey, null, false, value, false);
+                case "<=":
+                    return range(propertyKey, null, false, value, true);
+                case ">":
+                    return range(propertyKey, value, false, null, false);
+                case ">=":
+                    return range(propertyKey, value, true, null, false);
+                default:
+                    return null;
+            }
+        }
+
+        private IndexQuery range(int propertyKey, Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+            Object bound = from == null ? to : from;
+            if (bound instanceof String) return IndexQuery.range(propertyKey, (String) from, fromInclusive, (String) to, toInclusive);
+            if (bound instanceof Number) return IndexQuery.range(propertyKey, (Number) from, fromInclusive, (Number) to, toInclusive);
+            return null;
+        }
     }
 
     public static class NodeReducedResult {
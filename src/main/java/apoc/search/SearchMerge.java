@@ -0,0 +1,158 @@
+package apoc.search;
+
+import apoc.Pools;
+import apoc.util.Util;
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongSet;
+import org.neo4j.procedure.TerminationGuard;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Runs the workers of one {@code apoc.search.node*} call on the default pool and streams their hits through a bounded
+ * queue while they are still searching, so the first rows are returned before all searches are done.
+ * <p>
+ * Hits are deduplicated by node id in a primitive set when {@code distinct} is requested. Once {@code limit} rows were
+ * returned, or the result stream is closed, the remaining workers are cancelled: they stop at their next hit and the
+ * ones that did not start yet are not run at all.
+ */
+class SearchMerge<T> implements Iterator<T> {
+
+    private static final int QUEUE_SIZE = 1000;
+    private static final long POLL_MILLIS = 100;
+    private static final Object WAKE_UP = new Object();
+
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final List<Future<?>> futures = new ArrayList<>();
+    private final AtomicInteger running;
+    private final TerminationGuard terminationGuard;
+    private final ToLongFunction<T> id;
+    private final PrimitiveLongSet seen;
+    private final long limit;
+
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+    private long count;
+    private T next;
+
+    /**
+     * Creates the row of a hit of a worker, within the transaction of the worker.
+     */
+    interface Row<T> {
+        T create(ParallelNodeSearch.QueryWorker worker, long id);
+    }
+
+    /**
+     * @param row   creates the row for a node id found by a worker
+     * @param id    the node id of a row, used to deduplicate when {@code distinct} is set
+     * @param limit the maximum number of rows, no limit if not positive
+     */
+    SearchMerge(Collection<ParallelNodeSearch.QueryWorker> workers, Row<T> row, ToLongFunction<T> id,
+                boolean distinct, long limit, TerminationGuard terminationGuard) {
+        this.terminationGuard = terminationGuard;
+        this.id = id;
+        this.seen = distinct ? Primitive.longSet() : null;
+        this.limit = limit;
+        this.running = new AtomicInteger(workers.size());
+        for (ParallelNodeSearch.QueryWorker worker : workers) {
+            futures.add(Pools.DEFAULT.submit(() -> {
+                try {
+                    if (!cancelled) worker.search(nodeId -> row.create(worker, nodeId), this::offer);
+                } catch (Throwable t) {
+                    if (error == null) error = t;
+                    cancelled = true;
+                } finally {
+                    // wakes up the consumer, if the queue is full it is not waiting anyway
+                    if (running.decrementAndGet() == 0 || error != null) queue.offer(WAKE_UP);
+                }
+            }));
+        }
+    }
+
+    Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.NONNULL), false).onClose(this::cancel);
+    }
+
+    /**
+     * @return false if the search was cancelled and the worker should stop
+     */
+    private boolean offer(T row) {
+        try {
+            while (!cancelled) {
+                if (queue.offer(row, POLL_MILLIS, MILLISECONDS)) return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    void cancel() {
+        cancelled = true;
+        for (Future<?> future : futures) {
+            future.cancel(false);
+        }
+        queue.clear();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            if (limit > 0 && count >= limit) {
+                cancel();
+                return false;
+            }
+            T row = take();
+            if (row == null) return false;
+            if (seen == null || seen.add(id.applyAsLong(row))) next = row;
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        T row = next;
+        next = null;
+        count++;
+        return row;
+    }
+
+    /**
+     * @return the next hit of any worker, null when all workers are done or the search was cancelled
+     */
+    @SuppressWarnings("unchecked")
+    private T take() {
+        try {
+            while (true) {
+                Throwable t = error;
+                if (t != null) {
+                    cancel();
+                    throw new RuntimeException("Error searching nodes: " + t.getMessage(), t);
+                }
+                if (cancelled) return null;
+                if (Util.transactionIsTerminated(terminationGuard)) {
+                    cancel();
+                    return null;
+                }
+                Object row = queue.poll(POLL_MILLIS, MILLISECONDS);
+                if (row != null && row != WAKE_UP) return (T) row;
+                // a worker only finishes after all its hits are queued
+                if (running.get() == 0 && queue.isEmpty() && error == null) return null;
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package apoc.util;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Pure-Java stream codecs used by the export procedures (config {@code compression}) and by the import and load
+ * procedures for files with a matching extension or {@code compression} config.
+ */
+public enum CompressionAlgo {
+    NONE(null) {
+        @Override
+        public OutputStream compress(OutputStream out) {
+            return out;
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) {
+            return in;
+        }
+    },
+    GZIP(".gz") {
+        @Override
+        public OutputStream compress(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+    },
+    DEFLATE(".zz") {
+        @Override
+        public OutputStream compress(OutputStream out) {
+            return new DeflaterOutputStream(out, new Deflater(), BUFFER_SIZE);
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) {
+            return new InflaterInputStream(in, new Inflater(), BUFFER_SIZE);
+        }
+    },
+    LZ4(".lz4") {
+        @Override
+        public OutputStream compress(OutputStream out) throws IOException {
+            return new LZ4FrameOutputStream(out, LZ4FrameOutputStream.BLOCKSIZE.SIZE_4MB);
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new LZ4FrameInputStream(in);
+        }
+    };
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String extension;
+
+    CompressionAlgo(String extension) {
+        this.extension = extension;
+    }
+
+    public abstract OutputStream compress(OutputStream out) throws IOException;
+
+    public abstract InputStream decompress(InputStream in) throws IOException;
+
+    public static CompressionAlgo from(Object value) {
+        if (value == null) return NONE;
+        if (value instanceof CompressionAlgo) return (CompressionAlgo) value;
+        String name = value.toString().trim().toUpperCase();
+        if (name.isEmpty()) return NONE;
+        try {
+            return valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unsupported compression '" + value + "', supported values are: NONE, GZIP, DEFLATE, LZ4");
+        }
+    }
+
+    /**
+     * @return the file name with the extension of this codec appended, unless it has it already, so the import
+     * detects the compression of the exported file
+     */
+    public String fileName(String fileName) {
+        if (extension == null || fileName == null || fileName.equals("-") || fileName.toLowerCase().endsWith(extension)) return fileName;
+        return fileName + extension;
+    }
+
+    /**
+     * The codec for reading a file, the {@code compression} config value if it is given, otherwise the one of the file
+     * extension ({@code .gz}, {@code .zz}, {@code .lz4}). The content itself is never inspected, so plain files are
+     * always read as they are.
+     */
+    public static CompressionAlgo forReading(String fileName, Object compression) {
+        if (compression != null) return from(compression);
+        if (fileName == null) return NONE;
+        String name = fileName.toLowerCase();
+        if (name.matches("^\\w+:/.+") && name.indexOf('?') > 0) name = name.substring(0, name.indexOf('?'));
+        for (CompressionAlgo algo : values()) {
+            if (algo.extension != null && name.endsWith(algo.extension)) return algo;
+        }
+        return NONE;
+    }
+}
@@ -26,64 +26,95 @@ public class FileUtils {
     public static final boolean S3_ENABLED = Util.classExists("com.amazonaws.services.s3.AmazonS3");
     public static final String HDFS_PROTOCOL = "hdfs";
     public static final boolean HDFS_ENABLED = Util.classExists("org.apache.hadoop.fs.FileSystem");
+    public static final int OUTPUT_BUFFER_SIZE = 1024 * 1024;
     public static final Pattern HDFS_PATTERN = Pattern.compile("^(hdfs:\\/\\/)(?:[^@\\/\\n]+@)?([^\\/\\n]+)");
 
     public static CountingReader readerFor(String fileName) throws IOException {
+        return readerFor(fileName, null);
+    }
+
+    /**
+     * @param compression the codec of the file, if null it is chosen by the file extension
+     */
+    public static CountingReader readerFor(String fileName, Object compression) throws IOException {
         checkReadAllowed(fileName);
         if (fileName==null) return null;
         fileName = changeFileUrlIfImportDirectoryConstrained(fileName);
         if (fileName.matches("^\\w+:/.+")) {
             if (isHdfs(fileName)) {
-                return readHdfs(fileName);
+                return readHdfs(fileName, compression);
             } else {
-                return Util.openInputStream(fileName,null,null).asReader();
+                return Util.openInputStream(fileName,null,null,compression).asReader();
             }
         }
-        return readFile(fileName);
+        return readFile(fileName, compression);
     }
     public static CountingInputStream inputStreamFor(String fileName) throws IOException {
+        return inputStreamFor(fileName, null);
+    }
+
+    /**
+     * @param compression the codec of the file, if null it is chosen by the file extension
+     */
+    public static CountingInputStream inputStreamFor(String fileName, Object compression) throws IOException {
         checkReadAllowed(fileName);
         if (fileName==null) return null;
         fileName = changeFileUrlIfImportDirectoryConstrained(fileName);
         if (fileName.matches("^\\w+:/.+")) {
             if (isHdfs(fileName)) {
-                return readHdfsStream(fileName);
+                return readHdfsStream(fileName, compression);
             } else {
-                return Util.openInputStream(fileName,null,null);
+                return Util.openInputStream(fileName,null,null,compression);
             }
         }
-        return readFileStream(fileName);
+        return readFileStream(fileName, compression);
     }
 
-    private static CountingInputStream readHdfsStream(String fileName) {
+    private static CountingInputStream readHdfsStream(String fileName, Object compression) {
         try {
             StreamConnection streamConnection = HDFSUtils.readFile(fileName);
-            return new CountingInputStream(streamConnection.getInputStream(), streamConnection.getLength());
+            CompressionAlgo algo = CompressionAlgo.forReading(fileName, compression);
+            if (algo == CompressionAlgo.NONE) {
+                return new CountingInputStream(streamConnection.getInputStream(), streamConnection.getLength());
+            }
+            return CountingInputStream.decompressing(streamConnection.getInputStream(), streamConnection.getLength(), algo);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
-    private static CountingReader readHdfs(String fileName) {
+    private static CountingReader readHdfs(String fileName, Object compression) {
         try {
             StreamConnection streamConnection = HDFSUtils.readFile(fileName);
-            Reader reader = new BufferedReader(new InputStreamReader(streamConnection.getInputStream(), "UTF-8"));
-            return new CountingReader(reader, streamConnection.getLength());
+            CompressionAlgo algo = CompressionAlgo.forReading(fileName, compression);
+            if (algo == CompressionAlgo.NONE) {
+                Reader reader = new BufferedReader(new InputStreamReader(streamConnection.getInputStream(), "UTF-8"));
+                return new CountingReader(reader, streamConnection.getLength());
+            }
+            return CountingInputStream.decompressing(streamConnection.getInputStream(), streamConnection.getLength(), algo).asReader();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
-    private static CountingReader readFile(String fileName) throws IOException, FileNotFoundException {
+    private static CountingReader readFile(String fileName, Object compression) throws IOException, FileNotFoundException {
         File file = new File(fileName);
         if (!file.exists() || !file.isFile() || !file.canRead()) throw new IOException("Cannot open file "+fileName+" for reading.");
-        return new CountingReader(file);
+        CompressionAlgo algo = CompressionAlgo.forReading(fileName, compression);
+        if (algo == CompressionAlgo.NONE) {
+            return new CountingReader(file);
+        }
+        return CountingInputStream.decompressing(new FileInputStream(file), file.length(), algo).asReader();
     }
 
-    private static CountingInputStream readFileStream(String fileName) throws IOException, FileNotFoundException {
+    private static CountingInputStream readFileStream(String fileName, Object compression) throws IOException, FileNotFoundException {
         File file = new File(fileName);
         if (!file.exists() || !file.isFile() || !file.canRead()) throw new IOException("Cannot open file "+fileName+" for reading.");
-        return new CountingInputStream(file);
+        CompressionAlgo algo = CompressionAlgo.forReading(fileName, compression);
+        if (algo == CompressionAlgo.NONE) {
+            return new CountingInputStream(file);
+        }
+        return CountingInputStream.decompressing(new FileInputStream(file), file.length(), algo);
     }
 
     public static String changeFileUrlIfImportDirectoryConstrained(String url) throws IOException {
@@ -125,12 +156,21 @@ public class FileUtils {
     }
 
     public static PrintWriter getPrintWriter(String fileName, Writer out) throws IOException {
-        OutputStream outputStream = getOutputStream(fileName, new WriterOutputStream(out));
+        return getPrintWriter(fileName, out, CompressionAlgo.NONE);
+    }
+
+    public static PrintWriter getPrintWriter(String fileName, Writer out, CompressionAlgo compression) throws IOException {
+        OutputStream outputStream = getOutputStream(fileName, new WriterOutputStream(out), compression);
         return outputStream == null ? null : new PrintWriter(outputStream);
     }
 
     public static OutputStream getOutputStream(String fileName, OutputStream out) throws IOException {
+        return getOutputStream(fileName, out, CompressionAlgo.NONE);
+    }
+
+    public static OutputStream getOutputStream(String fileName, OutputStream out, CompressionAlgo compression) throws IOException {
         if (fileName == null) return null;
+        fileName = compression.fileName(fileName);
         OutputStream outputStream;
         if (isHdfs(fileName)) {
             try {
@@ -142,7 +182,7 @@ public class FileUtils {
             outputStream = getOrCreateOutputStream(fileName, out);
 //            outputStream = fileName.equals("-") ? out : new FileOutputStream(fileName);
         }
-        return new BufferedOutputStream(outputStream);
+        return new BufferedOutputStream(compression.compress(outputStream), OUTPUT_BUFFER_SIZE);
     }
 
     private static OutputStream getOrCreateOutputStream(String fileName, OutputStream out) throws FileNotFoundException, MalformedURLException {
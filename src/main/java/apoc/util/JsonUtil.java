@@ -67,11 +67,14 @@ public class JsonUtil {
         return loadJson(url,headers,payload,"", true);
     }
     public static Stream<Object> loadJson(String url, Map<String,Object> headers, String payload, String path, boolean failOnError) {
+        return loadJson(url, headers, payload, path, failOnError, null);
+    }
+    public static Stream<Object> loadJson(String url, Map<String,Object> headers, String payload, String path, boolean failOnError, Object compression) {
         try {
             url = Util.getLoadUrlByConfigFile("json",url, "url").orElse(url);
             FileUtils.checkReadAllowed(url);
             url = FileUtils.changeFileUrlIfImportDirectoryConstrained(url);
-            InputStream input = Util.openInputStream(url, headers, payload);
+            InputStream input = Util.openInputStream(url, headers, payload, compression);
             JsonParser parser = OBJECT_MAPPER.getFactory().createParser(input);
             MappingIterator<Object> it = OBJECT_MAPPER.readValues(parser, Object.class);
             Stream<Object> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, 0), false);
@@ -304,6 +304,13 @@ public class Util {
     }
 
     public static CountingInputStream openInputStream(String urlAddress, Map<String, Object> headers, String payload) throws IOException {
+        return openInputStream(urlAddress, headers, payload, null);
+    }
+
+    /**
+     * @param compression the codec of the content, if null it is chosen by the file extension of the url
+     */
+    public static CountingInputStream openInputStream(String urlAddress, Map<String, Object> headers, String payload, Object compression) throws IOException {
         StreamConnection sc;
         InputStream stream;
         if (urlAddress.contains("!") && (urlAddress.contains(".zip") || urlAddress.contains(".tar") || urlAddress.contains(".tgz"))) {
@@ -311,7 +318,11 @@ public class Util {
         }
 
         sc = getStreamConnection(urlAddress, headers, payload);
-        stream = getInputStream(sc, urlAddress);
+        CompressionAlgo algo = CompressionAlgo.forReading(urlAddress, compression);
+        if (algo != CompressionAlgo.NONE) {
+            return CountingInputStream.decompressing(sc.getInputStream(), sc.getLength(), algo);
+        }
+        stream = getInputStream(sc);
 
         return new CountingInputStream(stream, sc.getLength());
     }
@@ -344,11 +355,12 @@ public class Util {
         }
     }
 
-    private static InputStream getInputStream(StreamConnection sc, String urlAddress) throws IOException {
+    private static InputStream getInputStream(StreamConnection sc) throws IOException {
         InputStream stream = sc.getInputStream();
         String encoding = sc.getEncoding();
 
-        if ("gzip".equals(encoding) || urlAddress.endsWith(".gz")) {
+        // files ending with .gz are decompressed by openInputStream unless the compression config is NONE
+        if ("gzip".equals(encoding)) {
              return new GZIPInputStream(stream);
         }
         if ("deflate".equals(encoding)) {
@@ -649,8 +661,8 @@ public class Util {
         }
     }
 
-    public static void waitForFutures(List<Future> futures) {
-        for (Future future : futures) {
+    public static void waitForFutures(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
             try {
                 if (future != null) future.get();
             } catch (InterruptedException | ExecutionException e) {
@@ -660,7 +672,7 @@ public class Util {
         }
     }
 
-    public static void removeFinished(List<Future> futures) {
+    public static void removeFinished(List<? extends Future<?>> futures) {
         if (futures.size() > 25) {
             futures.removeIf(Future::isDone);
         }
@@ -0,0 +1,46 @@
+package apoc.warmup;
+
+import apoc.util.Util;
+
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Shared bandwidth budget for warmup cursors. Each caller reserves the time slot its bytes need at the configured
+ * rate and waits until the slot starts, so concurrent readers together stay within the budget.
+ */
+class Throttle {
+    static final Throttle UNLIMITED = new Throttle(0);
+
+    private final double nanosPerByte;
+    private long next = System.nanoTime();
+
+    private Throttle(double nanosPerByte) {
+        this.nanosPerByte = nanosPerByte;
+    }
+
+    static Throttle megaBytesPerSecond(double mbPerSecond) {
+        if (mbPerSecond <= 0) return UNLIMITED;
+        return new Throttle(1_000_000_000d / (mbPerSecond * 1024 * 1024));
+    }
+
+    /**
+     * @return the throttle of the {@code maxMBPerSecond} config, unlimited if it is missing or not a number
+     */
+    static Throttle fromConfig(Map<String, Object> config) {
+        Double mbPerSecond = Util.toDouble(config.get("maxMBPerSecond"));
+        return mbPerSecond == null ? UNLIMITED : megaBytesPerSecond(mbPerSecond);
+    }
+
+    void acquire(long bytes) {
+        if (nanosPerByte == 0) return;
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (next < now) next = now;
+            wait = next - now;
+            next += (long) (bytes * nanosPerByte);
+        }
+        if (wait > 0) LockSupport.parkNanos(wait);
+    }
+}
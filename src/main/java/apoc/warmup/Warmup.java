@@ -17,9 +17,13 @@ import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static apoc.util.MapUtil.map;
+
 /**
  * @author Sascha Peukert
  * @since 06.05.16
@@ -28,6 +32,8 @@ public class Warmup {
 
     private static final int BATCH_SIZE = 100_000;
     private static final int PAGE_SIZE = 1 << 13;
+    private static final long PARTITION_PAGES = 16384;
+    private static final long THROTTLE_PAGES = 128;
     @Context
     public GraphDatabaseAPI db;
     @Context
@@ -42,18 +48,88 @@ public class Warmup {
         public final long pages;
         public final String error;
         public final long time;
+        public final double mbPerSecond;
 
-        public PageResult(String file, boolean index, long fileSize, long pages, String error, long start) {
+        public PageResult(String file, boolean index, long fileSize, long pages, String error, long time, int pageSize) {
             this.file = file;
             this.index = index;
             this.fileSize = fileSize;
             this.pages = pages;
             this.error = error;
-            this.time = System.currentTimeMillis() - start;
+            this.time = time;
+            this.mbPerSecond = time == 0 ? 0 : pages * (double) pageSize / (1024 * 1024) / (time / 1000d);
+        }
+
+        public Map<String, Object> toMap() {
+            return map("file", file, "index", index, "fileSize", fileSize, "pages", pages, "time", time, "mbPerSecond", mbPerSecond, "error", error);
+        }
+    }
+
+    /**
+     * Warmup state of a single paged file, its page ranges are warmed concurrently, each range with its own cursor.
+     */
+    private class FileWarmup {
+        private final PagedFile pagedFile;
+        private final String fileName;
+        private final boolean index;
+        private final AtomicLong pages = new AtomicLong();
+        private final AtomicLong start = new AtomicLong();
+        private final AtomicLong end = new AtomicLong();
+        private volatile String error;
+
+        FileWarmup(PagedFile pagedFile) {
+            this.pagedFile = pagedFile;
+            this.index = isSchema(pagedFile.file());
+            this.fileName = storeFileName(pagedFile.file());
+        }
+
+        void failed(IOException e) {
+            log.warn("Error warming up " + fileName, e);
+            error = e.getMessage();
+        }
+
+        long warm(long fromPage, long toPage, Throttle throttle) {
+            start.compareAndSet(0, System.currentTimeMillis());
+            long pages = 0;
+            int pageSize = pagedFile.pageSize();
+            try (PageCursor cursor = pagedFile.io(fromPage, PagedFile.PF_READ_AHEAD | PagedFile.PF_SHARED_READ_LOCK)) {
+                for (long page = fromPage; page < toPage; page++) {
+                    if (pages % THROTTLE_PAGES == 0) {
+                        throttle.acquire(Math.min(THROTTLE_PAGES, toPage - page) * pageSize);
+                    }
+                    if (!cursor.next(page)) break;
+                    cursor.getByte();
+                    pages++;
+                    if (pages % 1000 == 0 && Util.transactionIsTerminated(guard)) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                failed(e);
+            } finally {
+                this.pages.addAndGet(pages);
+                end.accumulateAndGet(System.currentTimeMillis(), Math::max);
+            }
+            return pages;
+        }
+
+        PageResult result() {
+            long fileSize;
+            try {
+                fileSize = pagedFile.fileSize();
+            } catch (IOException e) {
+                fileSize = -1L;
+            }
+            long time = start.get() == 0 ? 0 : end.get() - start.get();
+            return new PageResult(fileName, index, error == null ? fileSize : -1L, pages.get(), error, time, pagedFile.pageSize());
         }
     }
 
-    private String subPath(File file, String fromParent) {
+    static String storeFileName(File file) {
+        return isSchema(file) ? subPath(file, "schema") : file.getName();
+    }
+
+    private static String subPath(File file, String fromParent) {
         StringBuilder sb = new StringBuilder(file.getAbsolutePath().length());
         while (true) {
             sb.insert(0,file.getName());
@@ -65,13 +141,16 @@ public class Warmup {
     }
 
     @Procedure
-    @Description("apoc.warmup.run(loadProperties=false,loadDynamicProperties=false,loadIndexes=false) - quickly loads all nodes and rels into memory by skipping one page at a time")
-    public Stream<WarmupResult> run(@Name(value = "loadProperties", defaultValue = "false") boolean loadProperties, @Name(value = "loadDynamicProperties", defaultValue = "false") boolean loadDynamicProperties, @Name(value = "loadIndexes", defaultValue = "false") boolean loadIndexes) throws IOException {
+    @Description("apoc.warmup.run(loadProperties=false,loadDynamicProperties=false,loadIndexes=false,{partitionPages:16384, maxMBPerSecond:0}) - quickly loads all nodes and rels into memory by skipping one page at a time, large files are split into page ranges that are warmed concurrently")
+    public Stream<WarmupResult> run(@Name(value = "loadProperties", defaultValue = "false") boolean loadProperties, @Name(value = "loadDynamicProperties", defaultValue = "false") boolean loadDynamicProperties, @Name(value = "loadIndexes", defaultValue = "false") boolean loadIndexes,
+                                    @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws IOException {
         PageCache pageCache = db.getDependencyResolver().resolveDependency(PageCache.class);
+        if (config == null) config = Collections.emptyMap();
+        Long partitionPagesConfig = Util.toLong(config.get("partitionPages"));
+        long partitionPages = Math.max(1, partitionPagesConfig == null ? PARTITION_PAGES : partitionPagesConfig);
+        Throttle throttle = Throttle.fromConfig(config);
 
-        List<PagedFile> pagedFiles = pageCache.listExistingMappings();
-
-        Map<String, PageResult> records = pagedFiles.parallelStream()
+        List<FileWarmup> files = pageCache.listExistingMappings().stream()
                 .filter(pF -> {
                     String name = pF.file().getName();
                     if (isSchema(pF.file()) && !loadIndexes) return false;
@@ -79,31 +158,39 @@ public class Warmup {
                     if ((name.startsWith("propertystore.db")) && !loadProperties) return false;
                     return true;
                 })
-                .map((pagedFile -> {
-                    File file = pagedFile.file();
-                    boolean index = isSchema(file);
-                    String fileName = index ? subPath(file, "schema") : file.getName();
-                    long pages = 0;
-                    long start = System.currentTimeMillis();
-                    try {
-                        if (pagedFile.fileSize() > 0) {
-                            PageCursor cursor = pagedFile.io(0L, PagedFile.PF_READ_AHEAD | PagedFile.PF_SHARED_READ_LOCK);
-                            while (cursor.next()) {
-                                cursor.getByte();
-                                pages++;
-                                if (pages % 1000 == 0 && Util.transactionIsTerminated(guard)) {
-                                    break;
-                                }
-                            }
-                        }
-                        return new PageResult(fileName, index, pagedFile.fileSize(), pages, null, start);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        return new PageResult(fileName, index, -1L, pages, e.getMessage(), start);
-                    } finally {
-                        pageCache.reportEvents();
+                .map(FileWarmup::new)
+                .collect(Collectors.toList());
+
+        // the ranges of all files share the pool, at most a few per thread are queued at any time
+        int maxInFlight = Math.max(2, Pools.getNoThreadsInDefaultPool() * 2);
+        Deque<FutureTask<Long>> inFlight = new ArrayDeque<>(maxInFlight);
+        try {
+            for (FileWarmup file : files) {
+                long lastPageId;
+                try {
+                    lastPageId = file.pagedFile.fileSize() > 0 ? file.pagedFile.getLastPageId() : -1;
+                } catch (IOException e) {
+                    file.failed(e);
+                    continue;
+                }
+                for (long from = 0; from <= lastPageId && !Util.transactionIsTerminated(guard); from += partitionPages) {
+                    long fromPage = from, toPage = Math.min(from + partitionPages, lastPageId + 1);
+                    FutureTask<Long> task = new FutureTask<>(() -> file.warm(fromPage, toPage, throttle));
+                    Pools.DEFAULT.execute(task);
+                    inFlight.add(task);
+                    if (inFlight.size() >= maxInFlight) {
+                        finish(inFlight.poll());
                     }
-                })).collect(Collectors.toMap(r -> r.file, r -> r));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                finish(inFlight.poll());
+            }
+        } finally {
+            inFlight.forEach(task -> task.cancel(false));
+            pageCache.reportEvents();
+        }
+        Map<String, PageResult> records = files.stream().map(FileWarmup::result).collect(Collectors.toMap(r -> r.file, r -> r));
 
         WarmupResult result = new WarmupResult(
                 pageCache.pageSize(),
@@ -120,12 +207,25 @@ public class Warmup {
                 records.get("neostore.propertystore.db.strings"),
                 records.get("neostore.propertystore.db.arrays"),
                 loadIndexes,
-                records.values().stream().filter(r -> r.index).collect(Collectors.toList())
+                records.values().stream().filter(r -> r.index).collect(Collectors.toList()),
+                records.values().stream().map(PageResult::toMap).collect(Collectors.toList())
                 );
         return Stream.of(result);
     }
 
-    public boolean isSchema(File file) {
+    /**
+     * Runs the range on the calling thread if no pool thread picked it up yet, so a saturated pool can't stall the warmup.
+     */
+    static void finish(FutureTask<Long> task) {
+        task.run();
+        try {
+            Pools.force(task);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error during warmup", e.getCause());
+        }
+    }
+
+    public static boolean isSchema(File file) {
         return file.getAbsolutePath().contains(File.separator+"schema"+File.separator);
     }
 
@@ -219,6 +319,7 @@ public class Warmup {
         public final boolean indexesLoaded;
         public long indexPages;
         public long indexTime;
+        public final List<Map<String, Object>> files;
 
         public WarmupResult(long pageSize,
                             long nodesTotal,
@@ -233,7 +334,8 @@ public class Warmup {
                             PageResult stringProps,
                             PageResult arrayProps,
                             boolean loadIndexes,
-                            List<PageResult> indexes
+                            List<PageResult> indexes,
+                            List<Map<String, Object>> files
                             ) {
             this.pageSize = pageSize;
             this.transactionWasTerminated = transactionWasTerminated;
@@ -264,6 +366,7 @@ public class Warmup {
                 this.arrayPropPages = arrayProps.pages;
                 this.arrayPropsTime = arrayProps.time;
             }
+            this.files = files;
             this.indexesLoaded = loadIndexes;
             if (!indexes.isEmpty()) {
                 this.indexPages = indexes.stream().mapToLong(pr -> pr.pages).sum();
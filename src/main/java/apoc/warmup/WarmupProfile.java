@@ -0,0 +1,224 @@
+package apoc.warmup;
+
+import apoc.Pools;
+import apoc.util.FileUtils;
+import apoc.util.Util;
+import org.neo4j.io.pagecache.PageCache;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static apoc.util.FileUtils.checkWriteAllowed;
+
+/**
+ * Records which pages of the store files are resident in the page cache and prefetches exactly those pages again,
+ * e.g. after a restart. Per file the page ids are kept as a roaring bitmap, files are stored in priority order
+ * (node, relationship and group stores first, then indexes and properties) and loaded in that order.
+ */
+public class WarmupProfile {
+
+    private static final String MAGIC = "apoc.warmup.profile";
+    private static final int VERSION = 1;
+    private static final int CHUNK_PAGES = 4096;
+    private static final List<String> PRIORITIES = Arrays.asList("neostore.nodestore.db", "neostore.relationshipstore.db", "neostore.relationshipgroupstore.db",
+            "schema", "neostore.propertystore.db", "neostore.propertystore.db.strings", "neostore.propertystore.db.arrays");
+
+    @Context
+    public GraphDatabaseAPI db;
+    @Context
+    public TerminationGuard guard;
+    @Context
+    public Log log;
+
+    public static class ProfileResult {
+        public final String file;
+        public final long pages;
+        public final long filePages;
+        public final long time;
+        public final String error;
+
+        public ProfileResult(String file, long pages, long filePages, long time, String error) {
+            this.file = file;
+            this.pages = pages;
+            this.filePages = filePages;
+            this.time = time;
+            this.error = error;
+        }
+    }
+
+    @Procedure("apoc.warmup.profile.save")
+    @Description("apoc.warmup.profile.save(file) - stores which pages of each store file are currently in the page cache, to be prefetched with apoc.warmup.profile.load")
+    public Stream<ProfileResult> save(@Name("file") String fileName) throws IOException {
+        checkWriteAllowed();
+        PageCache pageCache = db.getDependencyResolver().resolveDependency(PageCache.class);
+        List<PagedFile> pagedFiles = new ArrayList<>(pageCache.listExistingMappings());
+        pagedFiles.sort(Comparator.comparingInt(WarmupProfile::priority));
+
+        List<ProfileResult> results = new ArrayList<>(pagedFiles.size());
+        try (DataOutputStream out = new DataOutputStream(FileUtils.getOutputStream(fileName, null))) {
+            out.writeUTF(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(pagedFiles.size());
+            for (PagedFile pagedFile : pagedFiles) {
+                String name = Warmup.storeFileName(pagedFile.file());
+                long start = System.currentTimeMillis();
+                RoaringBitmap pages = new RoaringBitmap();
+                long filePages = 0;
+                String error = null;
+                try {
+                    filePages = pagedFile.fileSize() > 0 ? pagedFile.getLastPageId() + 1 : 0;
+                    residentPages(pagedFile, pages, guard);
+                } catch (IOException e) {
+                    log.warn("Error profiling " + name, e);
+                    error = e.getMessage();
+                }
+                pages.runOptimize();
+                out.writeUTF(name);
+                out.writeLong(filePages);
+                pages.serialize(out);
+                results.add(new ProfileResult(name, pages.getCardinality(), filePages, System.currentTimeMillis() - start, error));
+            }
+        }
+        return results.stream();
+    }
+
+    /**
+     * Pages are not faulted in, the cursor is only bound to pages that are already resident.
+     */
+    static void residentPages(PagedFile pagedFile, RoaringBitmap pages, TerminationGuard guard) throws IOException {
+        long count = 0;
+        try (PageCursor cursor = pagedFile.io(0L, PagedFile.PF_SHARED_READ_LOCK | PagedFile.PF_NO_FAULT)) {
+            while (cursor.next()) {
+                long pageId = cursor.getCurrentPageId();
+                if (pageId > Integer.MAX_VALUE) break;
+                if (pageId != PageCursor.UNBOUND_PAGE_ID) {
+                    pages.add((int) pageId);
+                }
+                if (++count % 1000 == 0 && Util.transactionIsTerminated(guard)) break;
+            }
+        }
+    }
+
+    private static int priority(PagedFile pagedFile) {
+        if (Warmup.isSchema(pagedFile.file())) return PRIORITIES.indexOf("schema");
+        int priority = PRIORITIES.indexOf(pagedFile.file().getName());
+        return priority == -1 ? PRIORITIES.size() : priority;
+    }
+
+    @Procedure("apoc.warmup.profile.load")
+    @Description("apoc.warmup.profile.load(file, {maxMBPerSecond:0}) - prefetches the pages recorded with apoc.warmup.profile.save in parallel, in the recorded priority order")
+    public Stream<ProfileResult> load(@Name("file") String fileName, @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws IOException {
+        PageCache pageCache = db.getDependencyResolver().resolveDependency(PageCache.class);
+        if (config == null) config = Collections.emptyMap();
+        Throttle throttle = Throttle.fromConfig(config);
+        Map<String, PagedFile> mappings = new HashMap<>();
+        for (PagedFile pagedFile : pageCache.listExistingMappings()) {
+            mappings.put(Warmup.storeFileName(pagedFile.file()), pagedFile);
+        }
+
+        List<FileLoad> files = new ArrayList<>();
+        int maxInFlight = Math.max(2, Pools.getNoThreadsInDefaultPool() * 2);
+        Deque<FutureTask<Long>> inFlight = new ArrayDeque<>(maxInFlight);
+        try (InputStream input = FileUtils.inputStreamFor(fileName);
+             DataInputStream in = new DataInputStream(input)) {
+            checkHeader(in, fileName);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                long filePages = in.readLong();
+                RoaringBitmap pages = new RoaringBitmap();
+                pages.deserialize(in);
+                PagedFile pagedFile = mappings.get(name);
+                if (pagedFile == null) {
+                    files.add(new FileLoad(name, filePages, "not mapped in the page cache"));
+                    continue;
+                }
+                FileLoad file = new FileLoad(name, filePages, null);
+                files.add(file);
+                PeekableIntIterator it = pages.getIntIterator();
+                while (it.hasNext() && !Util.transactionIsTerminated(guard)) {
+                    int[] chunk = new int[Math.min(CHUNK_PAGES, pages.getCardinality())];
+                    int size = 0;
+                    while (size < chunk.length && it.hasNext()) chunk[size++] = it.next();
+                    int[] pageIds = size == chunk.length ? chunk : Arrays.copyOf(chunk, size);
+                    FutureTask<Long> task = new FutureTask<>(() -> file.load(pagedFile, pageIds, throttle));
+                    Pools.DEFAULT.execute(task);
+                    inFlight.add(task);
+                    if (inFlight.size() >= maxInFlight) {
+                        Warmup.finish(inFlight.poll());
+                    }
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                Warmup.finish(inFlight.poll());
+            }
+        } finally {
+            inFlight.forEach(task -> task.cancel(false));
+            pageCache.reportEvents();
+        }
+        return files.stream().map(FileLoad::result);
+    }
+
+    private static void checkHeader(DataInputStream in, String fileName) {
+        try {
+            if (MAGIC.equals(in.readUTF()) && in.readInt() == VERSION) return;
+        } catch (IOException e) {
+            // fall through
+        }
+        throw new RuntimeException("File " + fileName + " is not a warmup profile written by apoc.warmup.profile.save");
+    }
+
+    private class FileLoad {
+        private final String name;
+        private final long filePages;
+        private final AtomicLong pages = new AtomicLong();
+        private final AtomicLong start = new AtomicLong();
+        private final AtomicLong end = new AtomicLong();
+        private volatile String error;
+
+        FileLoad(String name, long filePages, String error) {
+            this.name = name;
+            this.filePages = filePages;
+            this.error = error;
+        }
+
+        long load(PagedFile pagedFile, int[] pageIds, Throttle throttle) {
+            start.compareAndSet(0, System.currentTimeMillis());
+            long pages = 0;
+            int pageSize = pagedFile.pageSize();
+            try (PageCursor cursor = pagedFile.io(pageIds[0], PagedFile.PF_SHARED_READ_LOCK)) {
+                for (int pageId : pageIds) {
+                    throttle.acquire(pageSize);
+                    if (!cursor.next(pageId)) break;
+                    cursor.getByte();
+                    if (++pages % 1000 == 0 && Util.transactionIsTerminated(guard)) break;
+                }
+            } catch (IOException e) {
+                log.warn("Error prefetching " + name, e);
+                error = e.getMessage();
+            } finally {
+                this.pages.addAndGet(pages);
+                end.accumulateAndGet(System.currentTimeMillis(), Math::max);
+            }
+            return pages;
+        }
+
+        ProfileResult result() {
+            long time = start.get() == 0 ? 0 : end.get() - start.get();
+            return new ProfileResult(name, pages.get(), filePages, time, error);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package apoc.atomic;
+
+import apoc.ApocKernelExtensionFactory;
+import apoc.broker.logging.SegmentedLog;
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.logging.NullLog;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static apoc.util.MapUtil.map;
+import static apoc.util.TestUtil.testCall;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CountersTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GraphDatabaseService db;
+
+    private GraphDatabaseService start(File storeDir, String durability) throws Exception {
+        db = new TestGraphDatabaseFactory().newEmbeddedDatabaseBuilder(storeDir)
+                .setConfig("apoc.atomic.counter.durability", durability)
+                .setConfig("apoc.atomic.counter.flushInterval", "0")
+                .setConfig("apoc.atomic.counter.logDir", new File(storeDir, "counters").getPath())
+                .newGraphDatabase();
+        TestUtil.registerProcedure(db, Atomic.class);
+        return db;
+    }
+
+    @After
+    public void tearDown() {
+        if (db != null) db.shutdown();
+    }
+
+    private Node page() {
+        return (Node) db.execute("MERGE (p:Page {name:'home'}) RETURN p").next().get("p");
+    }
+
+    private Object stored() {
+        return db.execute("MATCH (p:Page {name:'home'}) RETURN p.views AS views").next().get("views");
+    }
+
+    @Test
+    public void testConcurrentIncrementsAreFlushedInOneWrite() throws Exception {
+        start(folder.newFolder(), "none");
+        Node page = page();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 250; i++) {
+                    db.execute("MATCH (p:Page) WHERE id(p) = {id} CALL apoc.atomic.counter.add(p,'views',1) YIELD value RETURN value", map("id", page.getId())).resultAsString();
+                }
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+
+        assertEquals(null, stored());
+        testCall(db, "CALL apoc.atomic.counter.get({page},'views')", map("page", page), row -> assertEquals(1000L, row.get("value")));
+        testCall(db, "CALL apoc.atomic.counter.stats()", row -> {
+            assertEquals(1L, row.get("counters"));
+            assertEquals(1000L, row.get("pending"));
+            assertEquals(false, row.get("durable"));
+        });
+
+        testCall(db, "CALL apoc.atomic.counter.flush()", row -> {
+            assertEquals(0L, row.get("pending"));
+            assertEquals(1L, row.get("flushes"));
+            assertEquals(1L, row.get("flushed"));
+        });
+        assertEquals(1000L, stored());
+        testCall(db, "CALL apoc.atomic.counter.add({page},'views',-10)", map("page", page), row -> assertEquals(990L, row.get("value")));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testOnlyIntegers() throws Exception {
+        start(folder.newFolder(), "none");
+        testCall(db, "MERGE (p:Page {name:'home'}) WITH p CALL apoc.atomic.counter.add(p,'views',1.5) YIELD value RETURN value", row -> {});
+    }
+
+    @Test
+    public void testPendingIncrementsAreFlushedOnShutdown() throws Exception {
+        File storeDir = folder.newFolder();
+        start(storeDir, "shutdown");
+        testCall(db, "CALL apoc.atomic.counter.add({page},'views',42)", map("page", page()), row -> assertEquals(42L, row.get("value")));
+        testCall(db, "CALL apoc.atomic.counter.stats()", row -> assertEquals(false, row.get("durable")));
+        db.shutdown();
+
+        start(storeDir, "shutdown");
+        // the increments are recovered in the background once the database is available
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (stored() == null && System.currentTimeMillis() < deadline) {
+            db.execute("CALL apoc.atomic.counter.flush()").resultAsString();
+            Thread.sleep(50);
+        }
+        testCall(db, "CALL apoc.atomic.counter.flush()", row -> assertEquals(0L, row.get("pending")));
+        assertEquals(42L, stored());
+    }
+
+    @Test
+    public void testLoggedIncrementsAreRecoveredOnce() throws Exception {
+        File storeDir = folder.newFolder();
+        File logDir = new File(storeDir, "counters");
+        start(storeDir, "log");
+        GraphDatabaseAPI api = (GraphDatabaseAPI) db;
+        Node page = page();
+        testCall(db, "CALL apoc.atomic.counter.add({page},'views',5)", map("page", page), row -> assertEquals(5L, row.get("value")));
+        testCall(db, "CALL apoc.atomic.counter.flush()", row -> assertEquals(1L, row.get("flushed")));
+        assertEquals(5L, stored());
+
+        // increments of a run that crashed before flushing them, on top of the flushed ones in the same log:
+        // a full batch was appended, the increment buffered after it is lost
+        Counters running = api.getDependencyResolver().resolveDependency(ApocKernelExtensionFactory.ApocLifecycle.class).getCountersLifeCycle().getCounters();
+        running.close();
+        try (SegmentedLog crashed = new SegmentedLog(logDir, 1024 * 1024, false)) {
+            Counters counters = new Counters(api, NullLog.getInstance(), Long.MAX_VALUE, crashed, true);
+            counters.recover();
+            try (Transaction tx = db.beginTx()) {
+                for (int i = 0; i <= Counters.LOG_BATCH; i++) {
+                    counters.add(page, "views", 2);
+                }
+                tx.success();
+            }
+        }
+        long expected = 5L + 2L * Counters.LOG_BATCH;
+        try (SegmentedLog restarted = new SegmentedLog(logDir, 1024 * 1024, false)) {
+            assertEquals(Counters.LOG_BATCH, restarted.pending());
+            Counters counters = new Counters(api, NullLog.getInstance(), Long.MAX_VALUE, restarted, true);
+            counters.recover();
+            try (Transaction tx = db.beginTx()) {
+                assertEquals(expected, counters.value(page, "views"));
+                tx.success();
+            }
+            assertEquals(1L, counters.flush());
+            assertEquals(0L, restarted.pending());
+        }
+        assertEquals(expected, stored());
+    }
+
+    @Test
+    public void testBufferedIncrementsAreLoggedOnShutdown() throws Exception {
+        File storeDir = folder.newFolder();
+        start(storeDir, "log");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        long pageId = page().getId();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    db.execute("MATCH (p:Page) WHERE id(p) = {id} CALL apoc.atomic.counter.add(p,'views',1) YIELD value RETURN value", map("id", pageId)).resultAsString();
+                }
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+        db.shutdown();
+
+        start(storeDir, "log");
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (stored() == null && System.currentTimeMillis() < deadline) {
+            db.execute("CALL apoc.atomic.counter.flush()").resultAsString();
+            Thread.sleep(50);
+        }
+        assertEquals(400L, stored());
+    }
+
+    @Test
+    public void testLogIsOpenedByTheFirstIncrement() throws Exception {
+        File storeDir = folder.newFolder();
+        start(storeDir, "log");
+        Node page = page();
+        assertFalse(new File(storeDir, "counters").exists());
+        testCall(db, "CALL apoc.atomic.counter.add({page},'views',1)", map("page", page), row -> assertEquals(1L, row.get("value")));
+        assertTrue(new File(storeDir, "counters").exists());
+    }
+
+    @Test
+    public void testImpermanentDatabaseHasNoLog() throws Exception {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        TestUtil.registerProcedure(db, Atomic.class);
+        testCall(db, "CALL apoc.atomic.counter.add({page},'views',1)", map("page", page()), row -> assertEquals(1L, row.get("value")));
+        testCall(db, "CALL apoc.atomic.counter.stats()", row -> assertEquals(false, row.get("durable")));
+    }
+
+    @Test
+    public void testInvalidConfigUsesDefaults() throws Exception {
+        File storeDir = folder.newFolder();
+        db = new TestGraphDatabaseFactory().newEmbeddedDatabaseBuilder(storeDir)
+                .setConfig("apoc.atomic.counter.flushInterval", "often")
+                .setConfig("apoc.atomic.counter.flushThreshold", "")
+                .setConfig("apoc.atomic.counter.segmentSize", "big")
+                .newGraphDatabase();
+        TestUtil.registerProcedure(db, Atomic.class);
+        testCall(db, "CALL apoc.atomic.counter.add({page},'views',1)", map("page", page()), row -> assertEquals(1L, row.get("value")));
+    }
+}
@@ -0,0 +1,164 @@
+package apoc.broker;
+
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.logging.Log;
+import org.neo4j.logging.NullLog;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static apoc.util.MapUtil.map;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class BrokerIntegrationTest {
+
+    private static final String SEND_BATCH = "CALL apoc.broker.sendBatch('test', $messages, {window:2})";
+
+    private GraphDatabaseService db;
+    private TestConnection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        TestUtil.registerProcedure(db, BrokerIntegration.class);
+        connection = new TestConnection();
+        ConnectionManager.updateConnection("test", connection);
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void testSendBatch() throws Exception {
+        List<Map<String, Object>> messages = asList(map("id", 1), map("id", 2), map("id", 3));
+        TestUtil.testCall(db, SEND_BATCH, map("messages", messages), row -> {
+            assertEquals("test", row.get("connectionName"));
+            assertEquals(3L, row.get("sent"));
+            assertEquals(0L, row.get("failed"));
+        });
+        assertEquals(messages, connection.sent);
+        assertEquals(asList(2, 1), connection.batches);
+    }
+
+    @Test
+    public void testSendBatchCountsFailedMessages() throws Exception {
+        List<Map<String, Object>> messages = asList(map("id", 1), map("id", 2, "fail", true), map("id", 3));
+        TestUtil.testCall(db, SEND_BATCH, map("messages", messages), row -> {
+            assertEquals(2L, row.get("sent"));
+            assertEquals(1L, row.get("failed"));
+        });
+    }
+
+    @Test
+    public void testHealthIsCheckedOncePerInterval() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            db.execute(SEND_BATCH, map("messages", Collections.singletonList(map("id", i)))).close();
+        }
+        assertEquals(1, connection.healthChecks.get());
+    }
+
+    @Test(expected = QueryExecutionException.class)
+    public void testSendBatchToDisconnectedConnection() throws Throwable {
+        connection.setConnected(false);
+        try {
+            db.execute(SEND_BATCH, map("messages", Collections.singletonList(map("id", 1)))).close();
+        } catch (QueryExecutionException e) {
+            assertTrue(e.getMessage().contains("Unable to send messages to connection 'test'"));
+            assertTrue(connection.sent.isEmpty());
+            throw e;
+        }
+    }
+
+    /**
+     * Accepts all messages except those with a {@code fail} flag and records the batches of each window.
+     */
+    private static class TestConnection implements BrokerConnection {
+        final List<Map<String, Object>> sent = new ArrayList<>();
+        final List<Integer> batches = new ArrayList<>();
+        final AtomicInteger healthChecks = new AtomicInteger();
+        final AtomicBoolean connected = new AtomicBoolean(true);
+
+        @Override
+        public Stream<BrokerMessage> send(Map<String, Object> message, Map<String, Object> configuration) {
+            return Stream.of(new BrokerMessage("test", message, configuration));
+        }
+
+        @Override
+        public List<Map<String, Object>> sendBatch(List<Map<String, Object>> messages, Map<String, Object> configuration) {
+            List<Map<String, Object>> failed = new ArrayList<>();
+            int window = BrokerConnection.window(configuration, 10);
+            for (int start = 0; start < messages.size(); start += window) {
+                List<Map<String, Object>> batch = messages.subList(start, Math.min(messages.size(), start + window));
+                batches.add(batch.size());
+                for (Map<String, Object> message : batch) {
+                    if (Boolean.TRUE.equals(message.get("fail"))) failed.add(message);
+                    else sent.add(message);
+                }
+            }
+            return failed;
+        }
+
+        @Override
+        public Stream<BrokerResult> receive(Map<String, Object> configuration) throws IOException {
+            return Stream.empty();
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void checkConnectionHealth() {
+            healthChecks.incrementAndGet();
+        }
+
+        @Override
+        public Log getLog() {
+            return NullLog.getInstance();
+        }
+
+        @Override
+        public String getConnectionName() {
+            return "test";
+        }
+
+        @Override
+        public Map<String, Object> getConfiguration() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Boolean isConnected() {
+            return connected.get();
+        }
+
+        @Override
+        public void setConnected(Boolean connected) {
+            this.connected.set(connected);
+        }
+
+        @Override
+        public Boolean isReconnecting() {
+            return false;
+        }
+
+        @Override
+        public void setReconnecting(Boolean reconnecting) {
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package apoc.broker.logging;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static apoc.util.MapUtil.map;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class SegmentedLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readAll(SegmentedLog log) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (SegmentedLog.Reader reader = log.read()) {
+            while (reader.next()) result.add(new String(reader.payload(), StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    @Test
+    public void testResumeAtCommittedPosition() throws Exception {
+        File dir = folder.newFolder();
+        try (SegmentedLog log = new SegmentedLog(dir, 1024, true)) {
+            log.append(asList(bytes("a"), bytes("b"), bytes("c")));
+            SegmentedLog.Position afterB;
+            try (SegmentedLog.Reader reader = log.read()) {
+                reader.next();
+                reader.next();
+                afterB = reader.position();
+            }
+            log.commit(afterB);
+            assertEquals(1, log.pending());
+            assertEquals(asList("c"), readAll(log));
+        }
+        try (SegmentedLog log = new SegmentedLog(dir, 1024, true)) {
+            assertEquals(1, log.pending());
+            log.append(bytes("d"));
+            assertEquals(asList("c", "d"), readAll(log));
+        }
+    }
+
+    @Test
+    public void testRollAndDeleteAcknowledgedSegments() throws Exception {
+        File dir = folder.newFolder();
+        try (SegmentedLog log = new SegmentedLog(dir, 64, false)) {
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                expected.add("message-" + i);
+                log.append(bytes("message-" + i));
+            }
+            assertTrue(segments(dir) > 3);
+            assertEquals(expected, readAll(log));
+
+            SegmentedLog.Position position;
+            try (SegmentedLog.Reader reader = log.read()) {
+                for (int i = 0; i < 15; i++) reader.next();
+                position = reader.position();
+            }
+            int before = segments(dir);
+            log.commit(position);
+            assertTrue(segments(dir) < before);
+            assertEquals(expected.subList(15, 20), readAll(log));
+        }
+        try (SegmentedLog log = new SegmentedLog(dir, 64, false)) {
+            assertEquals(5, log.pending());
+        }
+    }
+
+    @Test
+    public void testTornRecordIsCutOff() throws Exception {
+        File dir = folder.newFolder();
+        try (SegmentedLog log = new SegmentedLog(dir, 1024, true)) {
+            log.append(asList(bytes("complete"), bytes("torn")));
+        }
+        File segment = dir.listFiles((d, name) -> name.endsWith(".segment"))[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 2);
+        }
+        try (SegmentedLog log = new SegmentedLog(dir, 1024, true)) {
+            assertEquals(asList("complete"), readAll(log));
+            log.append(bytes("next"));
+            assertEquals(asList("complete", "next"), readAll(log));
+        }
+    }
+
+    @Test
+    public void testReplayBatchesAndStopsAtFirstFailure() throws Exception {
+        File dir = folder.newFolder();
+        Map<String, Object> configA = map("topic", "a");
+        Map<String, Object> configB = map("topic", "b");
+        List<Integer> batches = new ArrayList<>();
+        try (BrokerLogger logger = new BrokerLogger(dir, "test", 1024, false)) {
+            for (int i = 0; i < 5; i++) logger.append(new BrokerLogger.LogEntry("test", map("id", i), configA));
+            logger.append(new BrokerLogger.LogEntry("test", map("id", 5), configB));
+            logger.append(new BrokerLogger.LogEntry("test", map("id", 6, "fail", true), configB));
+            logger.append(new BrokerLogger.LogEntry("test", map("id", 7), configB));
+
+            long sent = logger.replay(0, 2, entries -> {
+                batches.add(entries.size());
+                int count = 0;
+                while (count < entries.size() && !entries.get(count).getMessage().containsKey("fail")) count++;
+                return count;
+            });
+            assertEquals(6, sent);
+            assertEquals(asList(2, 2, 1, 2), batches);
+            assertEquals(2, logger.pending());
+
+            List<Object> resent = new ArrayList<>();
+            assertEquals(1, logger.replay(1, 10, entries -> {
+                entries.forEach(e -> resent.add(e.getMessage().get("id")));
+                return entries.size();
+            }));
+            assertEquals(Collections.singletonList(6L), resent);
+            assertEquals(1, logger.pending());
+        }
+    }
+
+    @Test
+    public void testMigrateLegacyTextLog() throws Exception {
+        File dir = folder.newFolder();
+        String dirPath = dir.getPath() + File.separator;
+        Files.write(new File(dir, "brokers.log").toPath(), asList(
+                "2019-01-01 00:00:00.000+0000 INFO  brokers.log {\"brokerName\":\"test\",\"filePath\":\"" + dirPath + "test.log\",\"nextMessageToSend\":1}"));
+        Files.write(new File(dir, "test.log").toPath(), asList(
+                "2019-01-01 00:00:00.000+0000 ERROR test.log {\"connectionName\":\"test\",\"message\":{\"id\":1},\"configuration\":{}}",
+                "2019-01-01 00:00:00.000+0000 ERROR test.log {\"connectionName\":\"test\",\"message\":{\"id\":2},\"configuration\":{}}"));
+        BrokerLogManager.initializeBrokerLogManager(dirPath, Collections.singletonList("test"), 1024, false);
+        try {
+            BrokerLogger logger = BrokerLogManager.getBrokerLogger("test");
+            assertEquals(1, logger.pending());
+            List<Object> resent = new ArrayList<>();
+            logger.replay(0, 10, entries -> {
+                entries.forEach(e -> resent.add(e.getMessage().get("id")));
+                return entries.size();
+            });
+            assertEquals(Collections.singletonList(2L), resent);
+            assertFalse(new File(dir, "test.log").exists());
+            assertFalse(new File(dir, "brokers.log").exists());
+        } finally {
+            BrokerLogManager.closeBrokerLoggers();
+        }
+    }
+
+    @Test
+    public void testInterruptedMigrationIsResumed() throws Exception {
+        File dir = folder.newFolder();
+        String dirPath = dir.getPath() + File.separator;
+        Files.write(new File(dir, "test.log").toPath(), asList(
+                "2019-01-01 00:00:00.000+0000 ERROR test.log {\"connectionName\":\"test\",\"message\":{\"id\":1},\"configuration\":{}}",
+                "2019-01-01 00:00:00.000+0000 ERROR test.log {\"connectionName\":\"test\",\"message\":{\"id\":2},\"configuration\":{}}"));
+        // a crash after the first message was moved, before the legacy log was deleted
+        try (BrokerLogger logger = new BrokerLogger(new File(dir, "test.wal"), "test", 1024, false);
+             DataOutputStream marker = new DataOutputStream(new FileOutputStream(new File(dir, "test.log.migration")))) {
+            marker.writeLong(0);
+            logger.append(new BrokerLogger.LogEntry("test", map("id", 1L), map()));
+        }
+        BrokerLogManager.initializeBrokerLogManager(dirPath, Collections.singletonList("test"), 1024, false);
+        try {
+            BrokerLogger logger = BrokerLogManager.getBrokerLogger("test");
+            List<Object> resent = new ArrayList<>();
+            logger.replay(0, 10, entries -> {
+                entries.forEach(e -> resent.add(e.getMessage().get("id")));
+                return entries.size();
+            });
+            assertEquals(asList(1L, 2L), resent);
+            assertFalse(new File(dir, "test.log").exists());
+            assertFalse(new File(dir, "test.log.migration").exists());
+        } finally {
+            BrokerLogManager.closeBrokerLoggers();
+        }
+    }
+
+    @Test
+    public void testPointersAreKeptForConnectionsNotMigratedYet() throws Exception {
+        File dir = folder.newFolder();
+        String dirPath = dir.getPath() + File.separator;
+        Files.write(new File(dir, "brokers.log").toPath(), asList(
+                "2019-01-01 00:00:00.000+0000 INFO  brokers.log {\"brokerName\":\"test\",\"filePath\":\"" + dirPath + "test.log\",\"nextMessageToSend\":0}",
+                "2019-01-01 00:00:00.000+0000 INFO  brokers.log {\"brokerName\":\"other\",\"filePath\":\"" + dirPath + "other.log\",\"nextMessageToSend\":1}"));
+        for (String name : asList("test", "other")) {
+            Files.write(new File(dir, name + ".log").toPath(), asList(
+                    "2019-01-01 00:00:00.000+0000 ERROR " + name + ".log {\"connectionName\":\"" + name + "\",\"message\":{\"id\":1},\"configuration\":{}}",
+                    "2019-01-01 00:00:00.000+0000 ERROR " + name + ".log {\"connectionName\":\"" + name + "\",\"message\":{\"id\":2},\"configuration\":{}}"));
+        }
+        BrokerLogManager.initializeBrokerLogManager(dirPath, Collections.singletonList("test"), 1024, false);
+        try {
+            assertEquals(2, BrokerLogManager.getBrokerLogger("test").pending());
+            assertTrue(new File(dir, "other.log").exists());
+            assertTrue(new File(dir, "brokers.log").exists());
+        } finally {
+            BrokerLogManager.closeBrokerLoggers();
+        }
+        BrokerLogManager.initializeBrokerLogManager(dirPath, asList("test", "other"), 1024, false);
+        try {
+            assertEquals(2, BrokerLogManager.getBrokerLogger("test").pending());
+            assertEquals(1, BrokerLogManager.getBrokerLogger("other").pending());
+            assertFalse(new File(dir, "other.log").exists());
+            assertFalse(new File(dir, "brokers.log").exists());
+        } finally {
+            BrokerLogManager.closeBrokerLoggers();
+        }
+    }
+
+    private static int segments(File dir) {
+        return dir.listFiles((d, name) -> name.endsWith(".segment")).length;
+    }
+}
@@ -0,0 +1,146 @@
+package apoc.cache;
+
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static apoc.util.MapUtil.map;
+import static apoc.util.TestUtil.testCall;
+import static org.junit.Assert.*;
+
+public class RegionsTest {
+
+    private GraphDatabaseService db;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory()
+                .newImpermanentDatabaseBuilder()
+                .setConfig(GraphDatabaseSettings.procedure_unrestricted, "apoc.*")
+                .newGraphDatabase();
+        TestUtil.registerProcedure(db, Regions.class);
+        Regions.clear();
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void testSetGetRemove() throws Exception {
+        testCall(db, "CALL apoc.cache.create('test')", r -> assertEquals(0L, r.get("size")));
+        testCall(db, "CALL apoc.cache.set('test','a',42)", r -> assertNull(r.get("value")));
+        testCall(db, "CALL apoc.cache.set('test','a',43)", r -> assertEquals(42L, r.get("value")));
+        testCall(db, "RETURN apoc.cache.get('test','a') AS value", r -> assertEquals(43L, r.get("value")));
+        testCall(db, "RETURN apoc.cache.get('test','b') AS value", r -> assertNull(r.get("value")));
+        testCall(db, "CALL apoc.cache.remove('test','a')", r -> assertEquals(43L, r.get("value")));
+        testCall(db, "CALL apoc.cache.stats('test')", r -> {
+            assertEquals(0L, r.get("size"));
+            assertEquals(1L, r.get("hits"));
+            assertEquals(1L, r.get("misses"));
+        });
+        testCall(db, "CALL apoc.cache.drop('test')", r -> assertEquals("test", r.get("region")));
+        try {
+            testCall(db, "RETURN apoc.cache.get('test','a') AS value", r -> {});
+            fail("Expected a dropped region to be gone");
+        } catch (QueryExecutionException e) {
+            assertTrue(e.getMessage().contains("The cache region 'test' does not exist"));
+        }
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        db.execute("CALL apoc.cache.create('bounded', {maxEntries:10})").close();
+        db.execute("UNWIND range(1,1000) AS i CALL apoc.cache.set('bounded', toString(i), i) YIELD value RETURN count(*)").close();
+        testCall(db, "CALL apoc.cache.stats('bounded')", r -> {
+            assertTrue((Long) r.get("size") <= 10);
+            assertTrue((Long) r.get("evictions") >= 990);
+        });
+    }
+
+    @Test
+    public void testInvalidBoundsAreUnbounded() throws Exception {
+        db.execute("CALL apoc.cache.create('unbounded', {maxEntries:null, ttl:'never'})").close();
+        db.execute("UNWIND range(1,100) AS i CALL apoc.cache.set('unbounded', toString(i), i) YIELD value RETURN count(*)").close();
+        testCall(db, "CALL apoc.cache.stats('unbounded')", r -> assertEquals(100L, r.get("size")));
+    }
+
+    @Test
+    public void testMaxWeight() throws Exception {
+        db.execute("CALL apoc.cache.create('weighted', {maxWeight:10000})").close();
+        db.execute("UNWIND range(1,100) AS i CALL apoc.cache.set('weighted', toString(i), range(1,100)) YIELD value RETURN count(*)").close();
+        testCall(db, "CALL apoc.cache.stats('weighted')", r -> {
+            assertTrue((Long) r.get("weight") <= 10000);
+            assertTrue((Long) r.get("evictions") > 0);
+        });
+    }
+
+    @Test
+    public void testTtl() throws Exception {
+        db.execute("CALL apoc.cache.create('expiring', {ttl:1})").close();
+        db.execute("CALL apoc.cache.set('expiring','a',1)").close();
+        testCall(db, "RETURN apoc.cache.get('expiring','a') AS value", r -> assertEquals(1L, r.get("value")));
+        Thread.sleep(1500);
+        testCall(db, "RETURN apoc.cache.get('expiring','a') AS value", r -> assertNull(r.get("value")));
+    }
+
+    @Test
+    public void testCreateTwiceFails() throws Exception {
+        db.execute("CALL apoc.cache.create('twice')").close();
+        try {
+            testCall(db, "CALL apoc.cache.create('twice')", r -> {});
+            fail("Expected the second create to fail");
+        } catch (QueryExecutionException e) {
+            assertTrue(e.getMessage().contains("already exists"));
+        }
+    }
+
+    @Test
+    public void testComputeIfAbsentOnce() throws Exception {
+        db.execute("CALL apoc.cache.create('computed')").close();
+        db.execute("CREATE (:Counter {count:0})").close();
+        String statement = "CALL apoc.cache.computeIfAbsent('computed', 'key', 'MATCH (c:Counter) RETURN c.count + $inc', {inc:42}) YIELD value RETURN value";
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit((Callable<Object>) () -> db.execute(statement).<Object>columnAs("value").next()));
+            }
+            for (Future<Object> future : futures) {
+                assertEquals(42L, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        testCall(db, "CALL apoc.cache.stats('computed')", r -> {
+            assertEquals(1L, r.get("size"));
+            assertEquals(1L, r.get("misses"));
+            assertEquals(7L, r.get("hits"));
+        });
+    }
+
+    @Test
+    public void testComputeIfAbsentNullIsNotCached() throws Exception {
+        db.execute("CALL apoc.cache.create('empty')").close();
+        testCall(db, "CALL apoc.cache.computeIfAbsent('empty', 'key', 'MATCH (n:Missing) RETURN n.name', {})", r -> assertNull(r.get("value")));
+        testCall(db, "CALL apoc.cache.stats('empty')", r -> {
+            Map<String, Object> config = (Map<String, Object>) r.get("config");
+            assertTrue(config.isEmpty());
+            assertEquals(0L, r.get("size"));
+        });
+    }
+}
@@ -0,0 +1,63 @@
+package apoc.create;
+
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import static apoc.util.TestUtil.testCall;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CreateBulkTest {
+
+    private GraphDatabaseService db;
+
+    @Before public void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder()
+                .setConfig(GraphDatabaseSettings.procedure_unrestricted, "apoc.*")
+                .newGraphDatabase();
+        TestUtil.registerProcedure(db, CreateBulk.class);
+    }
+
+    @After public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test public void testCreateNodesBulk() throws Exception {
+        testCall(db, "UNWIND range(1,100) AS id WITH collect({labels:['Person', 'P' + (id % 3)], props:{id:id, tags:['a','b'], missing:null}}) AS rows " +
+                        "CALL apoc.create.nodes.bulk(rows) YIELD rows AS total, created, labels, properties RETURN *",
+                (row) -> {
+                    assertEquals(100L, row.get("total"));
+                    assertEquals(100L, row.get("created"));
+                    assertEquals(200L, row.get("labels"));
+                    assertEquals(200L, row.get("properties"));
+                });
+        testCall(db, "MATCH (p:Person:P1) RETURN count(*) AS c, sum(p.id) AS ids, collect(p.tags)[0] AS tags",
+                (row) -> {
+                    assertEquals(34L, row.get("c"));
+                    assertEquals(1717L, row.get("ids"));
+                    assertArrayEquals(new String[] {"a","b"}, (String[]) row.get("tags"));
+                });
+    }
+
+    @Test public void testCreateRelationshipsBulk() throws Exception {
+        db.execute("UNWIND range(1,10) AS id CREATE (:Person {id:id})").close();
+        testCall(db, "MATCH (a:Person),(b:Person) WHERE b.id = a.id + 1 " +
+                        "WITH collect({from:a, type:CASE a.id % 2 WHEN 0 THEN 'EVEN' ELSE 'ODD' END, props:{since:a.id}, to:id(b)}) AS rows " +
+                        "CALL apoc.create.relationships.bulk(rows) YIELD created, properties RETURN *",
+                (row) -> {
+                    assertEquals(9L, row.get("created"));
+                    assertEquals(9L, row.get("properties"));
+                });
+        testCall(db, "MATCH (:Person {id:4})-[r:EVEN]->(b:Person) RETURN r.since AS since, b.id AS id",
+                (row) -> {
+                    assertEquals(4L, row.get("since"));
+                    assertEquals(5L, row.get("id"));
+                });
+        testCall(db, "MATCH ()-[r:ODD]->() RETURN count(*) AS c", (row) -> assertEquals(5L, row.get("c")));
+    }
+}
@@ -0,0 +1,114 @@
+package apoc.cypher;
+
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.Map;
+
+import static apoc.util.MapUtil.map;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+
+public class CypherCacheTest {
+
+    private static final String RANDOM = "CALL apoc.cypher.cached('RETURN rand() AS r, $x AS x', {x:$x}, $config) YIELD value RETURN value.r AS r";
+
+    private GraphDatabaseService db;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        TestUtil.registerProcedure(db, Cypher.class);
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    private double random(long x, Map<String, Object> config) {
+        return db.execute(RANDOM, map("x", x, "config", config)).<Double>columnAs("r").next();
+    }
+
+    @Test
+    public void testMemoizedByStatementAndParams() throws Exception {
+        Map<String, Object> config = map("labels", singletonList("Person"));
+        double first = random(1, config);
+        assertEquals(first, random(1, config), 0);
+        assertNotEquals(first, random(2, config), 0);
+        assertEquals(first, random(1, config), 0);
+    }
+
+    @Test
+    public void testInvalidatedByDeclaredLabel() throws Exception {
+        Map<String, Object> config = map("labels", singletonList("Person"));
+        double first = random(1, config);
+        db.execute("CREATE (:Other)").close();
+        assertEquals(first, random(1, config), 0);
+        db.execute("CREATE (:Person)").close();
+        double second = random(1, config);
+        assertNotEquals(first, second, 0);
+        db.execute("MATCH (p:Person) SET p.name = 'John'").close();
+        double third = random(1, config);
+        assertNotEquals(second, third, 0);
+        db.execute("MATCH (p:Person) DELETE p").close();
+        assertNotEquals(third, random(1, config), 0);
+    }
+
+    @Test
+    public void testInvalidatedByDeclaredType() throws Exception {
+        db.execute("CREATE (:A)-[:KNOWS]->(:B)").close();
+        Map<String, Object> config = map("types", singletonList("KNOWS"));
+        double first = random(1, config);
+        db.execute("MATCH (a:A),(b:B) CREATE (a)-[:LIKES]->(b)").close();
+        assertEquals(first, random(1, config), 0);
+        db.execute("MATCH ()-[r:KNOWS]->() DELETE r").close();
+        assertNotEquals(first, random(1, config), 0);
+    }
+
+    @Test
+    public void testWithoutDependenciesInvalidatedByAnyWrite() throws Exception {
+        Map<String, Object> config = map();
+        double first = random(1, config);
+        assertEquals(first, random(1, config), 0);
+        db.execute("CREATE (:Other)").close();
+        assertNotEquals(first, random(1, config), 0);
+    }
+
+    @Test
+    public void testTtl() throws Exception {
+        Map<String, Object> config = map("labels", singletonList("Person"), "ttl", 0.5);
+        double first = random(1, config);
+        assertEquals(first, random(1, config), 0);
+        Thread.sleep(700);
+        assertNotEquals(first, random(1, config), 0);
+    }
+
+    @Test
+    public void testRowsReturned() throws Exception {
+        db.execute("UNWIND range(1,3) AS i CREATE (:Person {id:i})").close();
+        String statement = "CALL apoc.cypher.cached('MATCH (p:Person) WHERE p.id >= $min RETURN p.id AS id ORDER BY id', {min:2}, {labels:['Person']}) YIELD value RETURN collect(value.id) AS ids";
+        TestUtil.testCall(db, statement, r -> assertEquals(asList(2L, 3L), r.get("ids")));
+        TestUtil.testCall(db, statement, r -> assertEquals(asList(2L, 3L), r.get("ids")));
+        db.execute("CREATE (:Person {id:4})").close();
+        TestUtil.testCall(db, statement, r -> assertEquals(asList(2L, 3L, 4L), r.get("ids")));
+    }
+
+    @Test
+    public void testUncommittedWritesAreNotCached() throws Exception {
+        db.execute("CREATE (:Person {id:1})").close();
+        String statement = "CALL apoc.cypher.cached('MATCH (p:Person) RETURN p.id AS id ORDER BY id', {}, {labels:['Person']}) YIELD value RETURN collect(value.id) AS ids";
+        try (Transaction tx = db.beginTx()) {
+            db.execute("CREATE (:Person {id:2})").close();
+            assertEquals(asList(1L, 2L), db.execute(statement).columnAs("ids").next());
+            tx.failure();
+        }
+        TestUtil.testCall(db, statement, r -> assertEquals(singletonList(1L), r.get("ids")));
+    }
+}
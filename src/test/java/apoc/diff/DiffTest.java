@@ -1,5 +1,6 @@
 package apoc.diff;
 
+import apoc.hashing.Fingerprinting;
 import apoc.util.TestUtil;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -9,6 +10,8 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
+import java.io.File;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -29,7 +32,7 @@ public class DiffTest {
     @BeforeClass
     public static void setup() throws Exception {
         db = new TestGraphDatabaseFactory().newImpermanentDatabase();
-        TestUtil.registerProcedure(db, Diff.class);
+        TestUtil.registerProcedure(db, Diff.class, Fingerprinting.class);
 
         try (Transaction tx = db.beginTx()) {
             node1 = db.createNode();
@@ -106,6 +109,109 @@ public class DiffTest {
         assertEquals("val1", inCommon.get("prop1"));
     }
 
+    @Test
+    public void graphs() {
+        db.execute("UNWIND range(1,20) AS id CREATE (:Staging {id:id, name:'n'+id}), (:Production {id:id, name:'n'+id})").close();
+        db.execute("MATCH (n:Staging {id:3}) SET n.name = 'changed'").close();
+        db.execute("MATCH (n:Staging {id:5}) DELETE n").close();
+        db.execute("CREATE (:Production {id:5, name:'n5'}), (:Staging {id:21, name:'n21'})").close();
+
+        Map<Object, String> changes = new HashMap<>();
+        // a small run size sorts in several runs, the duplicate production node 5 is one entity with a different fingerprint
+        db.execute("CALL apoc.diff.graphs('MATCH (n:Production) RETURN n.id AS key, properties(n) AS value', 'MATCH (n:Staging) RETURN n.id AS key, properties(n) AS value', {runSize:3})")
+                .forEachRemaining(row -> changes.put(row.get("key"), (String) row.get("change")));
+        Map<Object, String> expected = new HashMap<>();
+        expected.put(3L, "changed");
+        expected.put(5L, "removed");
+        expected.put(21L, "added");
+        assertEquals(expected, changes);
+    }
+
+    @Test
+    public void graphsWithFingerprints() {
+        Map<String, Object> fingerprints = new HashMap<>();
+        db.execute("UNWIND ['a','b','c'] AS name RETURN name, apoc.hashing.fingerprint({name:name}) AS fingerprint")
+                .forEachRemaining(row -> fingerprints.put((String) row.get("name"), row.get("fingerprint")));
+        fingerprints.put("b", "outdated");
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("fingerprints", fingerprints);
+        Map<Object, String> changes = new HashMap<>();
+        db.execute("CALL apoc.diff.graphs($fingerprints, 'UNWIND [\\'a\\',\\'b\\',\\'c\\'] AS name RETURN name, {name:name} AS map', {keyColumn:'name', includeUnchanged:true})", params)
+                .forEachRemaining(row -> changes.put(row.get("key"), (String) row.get("change")));
+        Map<Object, String> expected = new HashMap<>();
+        expected.put("a", "unchanged");
+        expected.put("b", "changed");
+        expected.put("c", "unchanged");
+        assertEquals(expected, changes);
+    }
+
+    @Test
+    public void graphsWithFingerprintsAndNumericKeys() {
+        Map<String, Object> fingerprints = new HashMap<>();
+        db.execute("UNWIND [1,2,3] AS id RETURN id, apoc.hashing.fingerprint({id:id}) AS fingerprint")
+                .forEachRemaining(row -> fingerprints.put(String.valueOf(row.get("id")), row.get("fingerprint")));
+        fingerprints.put("2", "outdated");
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("fingerprints", fingerprints);
+        Map<Object, String> changes = new HashMap<>();
+        db.execute("CALL apoc.diff.graphs($fingerprints, 'UNWIND [1,2,3,4] AS id RETURN id, {id:id} AS map', {keyColumn:'id'})", params)
+                .forEachRemaining(row -> changes.put(row.get("key"), (String) row.get("change")));
+        Map<Object, String> expected = new HashMap<>();
+        expected.put("2", "changed");
+        expected.put("4", "added");
+        assertEquals(expected, changes);
+    }
+
+    @Test
+    public void graphsWithManyRunsAndLongKeys() {
+        Map<String, Object> left = new HashMap<>(), right = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            left.put("k" + i, "f" + i);
+            right.put("k" + i, "f" + i);
+        }
+        char[] chars = new char[70_000];
+        Arrays.fill(chars, 'x');
+        String longKey = new String(chars);
+        left.put(longKey, "old");
+        right.put(longKey, "new");
+        right.remove("k42");
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("left", left);
+        params.put("right", right);
+        Map<Object, String> changes = new HashMap<>();
+        // one entry per run needs more than one merge pass
+        db.execute("CALL apoc.diff.graphs($left, $right, {runSize:1})", params)
+                .forEachRemaining(row -> changes.put(row.get("key"), (String) row.get("change")));
+        Map<Object, String> expected = new HashMap<>();
+        expected.put(longKey, "changed");
+        expected.put("k42", "removed");
+        assertEquals(expected, changes);
+    }
+
+    @Test
+    public void graphsFailureDeletesRuns() {
+        Map<String, Object> right = new HashMap<>();
+        for (int i = 0; i < 100; i++) right.put("k" + i, "f" + i);
+        Map<String, Object> params = new HashMap<>();
+        params.put("right", right);
+        int before = runFiles();
+        try {
+            db.execute("CALL apoc.diff.graphs('RETURN 1 AS missingKey', $right, {runSize:10})", params).resultAsString();
+            fail("the left statement doesn't return the key column");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("key column"));
+        }
+        assertEquals(before, runFiles());
+    }
+
+    private static int runFiles() {
+        File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles((dir, name) -> name.startsWith("apoc-diff-") && name.endsWith(".run"));
+        return files == null ? 0 : files.length;
+    }
+
     @AfterClass
     public static void tearDown() {
         db.shutdown();
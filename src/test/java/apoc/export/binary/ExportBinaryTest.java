@@ -0,0 +1,139 @@
+package apoc.export.binary;
+
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static apoc.util.MapUtil.map;
+import static apoc.util.TestUtil.testCall;
+import static org.junit.Assert.*;
+
+public class ExportBinaryTest {
+
+    private static File directory = new File("target/import");
+
+    static { //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+    }
+
+    private GraphDatabaseService db;
+    private GraphDatabaseService target;
+
+    @Before
+    public void setUp() throws Exception {
+        db = newDb();
+        target = newDb();
+        db.execute("CREATE (f:Foo:Foo2:Foo0 {name:'foo', born:date('2018-10-10'), place:point({ longitude: 56.7, latitude: 12.78, height: 100 }), " +
+                "at:localdatetime('2018-10-10T12:30:15.123'), zoned:datetime('2018-10-10T12:30:15+02:00[Europe/Berlin]'), took:duration('P1M2DT3H4.5S'), tags:['a','b']})" +
+                "-[:KNOWS {since:2010, weight:0.5}]->(b:Bar {name:'bar', age:42, active:true, place:point({ longitude: 56.7, latitude: 12.78})}), " +
+                "(c:Bar {age:12, values:[1,2,3], mixed:'twelve'}), (d:Bar {mixed:12}), (b)-[:KNOWS]->(c), (e)").close();
+    }
+
+    private GraphDatabaseService newDb() throws Exception {
+        GraphDatabaseService db = new TestGraphDatabaseFactory()
+                .newImpermanentDatabaseBuilder()
+                .setConfig("apoc.import.file.use_neo4j_config", "false")
+                .setConfig(GraphDatabaseSettings.load_csv_file_url_root, directory.getAbsolutePath())
+                .setConfig("apoc.export.file.enabled", "true")
+                .setConfig("apoc.import.file.enabled", "true")
+                .newGraphDatabase();
+        TestUtil.registerProcedure(db, ExportBinary.class);
+        return db;
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+        target.shutdown();
+    }
+
+    @Test
+    public void testRoundTripAll() throws Exception {
+        File output = new File(directory, "all.bin");
+        testCall(db, "CALL apoc.export.binary.all({file},{batchSize:2})", map("file", output.getAbsolutePath()), (r) -> {
+            assertEquals(5L, r.get("nodes"));
+            assertEquals(2L, r.get("relationships"));
+            assertEquals("binary", r.get("format"));
+        });
+        testCall(target, "CALL apoc.import.binary({file},{batchSize:3})", map("file", output.getAbsolutePath()), (r) -> {
+            assertEquals(5L, r.get("nodes"));
+            assertEquals(2L, r.get("relationships"));
+        });
+        assertEquals(dump(db), dump(target));
+    }
+
+    @Test
+    public void testRoundTripQuery() throws Exception {
+        File output = new File(directory, "query.bin");
+        testCall(db, "CALL apoc.export.binary.query('MATCH (n:Bar)-[r:KNOWS]->(m) RETURN n,r,m',{file},null)", map("file", output.getAbsolutePath()), (r) -> {
+            assertEquals(2L, r.get("nodes"));
+            assertEquals(1L, r.get("relationships"));
+        });
+        testCall(target, "CALL apoc.import.binary({file},{})", map("file", output.getAbsolutePath()), (r) -> {
+            assertEquals(2L, r.get("nodes"));
+            assertEquals(1L, r.get("relationships"));
+        });
+        testCall(target, "MATCH (b:Bar {name:'bar'})-[:KNOWS]->(c:Bar) RETURN c.values AS values, c.mixed AS mixed", (r) -> {
+            assertArrayEquals(new long[]{1, 2, 3}, (long[]) r.get("values"));
+            assertEquals("twelve", r.get("mixed"));
+        });
+    }
+
+    @Test
+    public void testImportInvalidFile() throws Exception {
+        File input = new File(directory, "invalid.bin");
+        try (FileWriter writer = new FileWriter(input)) {
+            writer.write("this is not a binary export file");
+        }
+        try {
+            testCall(target, "CALL apoc.import.binary({file},{})", map("file", input.getAbsolutePath()), (r) -> {});
+            fail("Expected an invalid file to be rejected");
+        } catch (QueryExecutionException e) {
+            assertTrue(e.getMessage().contains("Not an APOC binary export file"));
+        }
+    }
+
+    private static List<String> dump(GraphDatabaseService db) {
+        try (Transaction tx = db.beginTx()) {
+            List<String> entities = new ArrayList<>();
+            for (Node node : db.getAllNodes()) {
+                List<String> labels = new ArrayList<>();
+                node.getLabels().forEach(label -> labels.add(label.name()));
+                Collections.sort(labels);
+                StringBuilder rels = new StringBuilder();
+                for (Relationship rel : node.getRelationships(Direction.OUTGOING)) {
+                    rels.append(rel.getType().name()).append(format(rel.getAllProperties())).append("->").append(format(rel.getEndNode().getAllProperties()));
+                }
+                entities.add(labels + format(node.getAllProperties()) + rels);
+            }
+            Collections.sort(entities);
+            tx.success();
+            return entities;
+        }
+    }
+
+    private static String format(Map<String, Object> properties) {
+        return new TreeMap<>(properties).entrySet().stream()
+                .map(e -> e.getKey() + ":" + (e.getValue().getClass().isArray() ? Arrays.deepToString(new Object[]{e.getValue()}) : e.getValue()))
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+}
@@ -4,6 +4,7 @@ import apoc.graph.Graphs;
 import apoc.util.HdfsTestUtils;
 import apoc.util.TestUtil;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -17,10 +18,14 @@ import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 import static apoc.util.MapUtil.map;
 import static junit.framework.TestCase.assertTrue;
@@ -136,6 +141,24 @@ public class ExportCsvTest {
         assertEquals(EXPECTED, readFile(fileName));
     }
 
+    @Test
+    public void testExportAllCsvParallel() throws Exception {
+        String fileName = "allParallel.csv";
+        TestUtil.testCall(db, "CALL apoc.export.csv.all({file},{parallel:true, partitionSize:2})", map("file", fileName),
+                (r) -> assertResults(fileName, r, "database"));
+        assertEquals(EXPECTED, readFile(fileName));
+    }
+
+    @Test
+    public void testExportAllCsvCompressed() throws Exception {
+        String fileName = "all.csv.gz";
+        TestUtil.testCall(db, "CALL apoc.export.csv.all({file},{compression:'gzip'})", map("file", fileName),
+                (r) -> assertResults(fileName, r, "database"));
+        try (InputStream in = new GZIPInputStream(new FileInputStream(new File(directory, fileName)))) {
+            assertEquals(EXPECTED, IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+    }
+
     @Test
     public void testExportAllCsvWithQuotes() throws Exception {
         String fileName = "all.csv";
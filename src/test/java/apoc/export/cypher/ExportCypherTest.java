@@ -3,14 +3,19 @@ package apoc.export.cypher;
 import apoc.graph.Graphs;
 import apoc.util.TestUtil;
 import org.junit.*;
+import org.apache.commons.io.IOUtils;
 import org.junit.rules.TestName;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static apoc.export.cypher.ExportCypherTest.ExportCypherResults.*;
 import static apoc.export.util.ExportFormat.*;
@@ -122,6 +127,19 @@ public class ExportCypherTest {
         assertEquals(EXPECTED_NEO4J_SHELL, readFile(fileName));
     }
 
+    @Test
+    public void testExportAllCypherCompressed() throws Exception {
+        String fileName = "compressed.cypher";
+        new File(directory, fileName + ".gz").delete();
+        TestUtil.testCall(db, "CALL apoc.export.cypher.all({fileName},{useOptimizations: { type: 'none'}, compression: 'gzip'})",
+                map("fileName", fileName),
+                (r) -> assertResults(fileName + ".gz", r, "database"));
+        assertFalse(new File(directory, fileName).exists());
+        try (InputStream in = new GZIPInputStream(new FileInputStream(new File(directory, fileName + ".gz")))) {
+            assertEquals(EXPECTED_NEO4J_SHELL, IOUtils.toString(in, StandardCharsets.UTF_8));
+        }
+    }
+
     @Test
     public void testExportAllCypherForCypherShell() throws Exception {
         String fileName = "all.cypher";
@@ -1,6 +1,7 @@
 package apoc.export.graphml;
 
 import apoc.graph.Graphs;
+import apoc.periodic.Periodic;
 import apoc.util.TestUtil;
 import apoc.util.Util;
 import junit.framework.TestCase;
@@ -137,7 +138,7 @@ public class ExportGraphMLTest {
             builder.setConfig("apoc.import.file.enabled", "true");
         }
         db = builder.newGraphDatabase();
-        TestUtil.registerProcedure(db, ExportGraphML.class, Graphs.class);
+        TestUtil.registerProcedure(db, ExportGraphML.class, Graphs.class, Periodic.class);
         db.execute("CREATE (f:Foo:Foo2:Foo0 {name:'foo', born:Date('2018-10-10'), place:point({ longitude: 56.7, latitude: 12.78, height: 100 })})-[:KNOWS]->(b:Bar {name:'bar',age:42, place:point({ longitude: 56.7, latitude: 12.78})}),(c:Bar {age:12,values:[1,2,3]})").close();
     }
 
@@ -170,6 +171,68 @@ public class ExportGraphMLTest {
         TestUtil.testCall(db, "MATCH  (c:Bar {age: 12, values: [1,2,3]}) RETURN COUNT(c) AS c", null, (r) -> assertEquals(1L, r.get("c")));
     }
 
+    @Test(timeout = 60 * 1000)
+    public void testImportGraphMLInPeriodicIterate() throws Exception {
+        db.execute("MATCH (n) DETACH DELETE n").close();
+
+        File output = new File(directory, "importIterate.graphml");
+        FileWriter fw = new FileWriter(output);
+        fw.write(EXPECTED_TYPES); fw.close();
+        TestUtil.testCall(db, "CALL apoc.periodic.iterate('UNWIND [1] AS i RETURN i', 'CALL apoc.import.graphml($file,{readLabels:true}) YIELD nodes RETURN nodes', " +
+                        "{batchSize:1, parallel:false, params:{file:{file}}})", map("file", output.getAbsolutePath()),
+                (r) -> {
+                    assertEquals(1L, r.get("batches"));
+                    assertEquals(0L, r.get("failedOperations"));
+                });
+
+        TestUtil.testCall(db, "MATCH (c:Bar {age: 12, values: [1,2,3]}) RETURN COUNT(c) AS c", null, (r) -> assertEquals(1L, r.get("c")));
+    }
+
+    @Test
+    public void testImportLargeGraphMLWithMixedIds() throws Exception {
+        db.execute("MATCH (n) DETACH DELETE n").close();
+
+        int nodes = 2500;
+        StringBuilder graphml = new StringBuilder(String.format(HEADER + GRAPH));
+        for (int i = 0; i < nodes; i++) {
+            String id = i % 10 == 0 ? "person-" + i : "n" + i;
+            graphml.append(String.format("<node id=\"%s\" labels=\":Person\"><data key=\"labels\">:Person</data><data key=\"name\">p%d</data></node>%n", id, i));
+        }
+        for (int i = 1; i < nodes; i++) {
+            String source = (i - 1) % 10 == 0 ? "person-" + (i - 1) : "n" + (i - 1);
+            String target = i % 10 == 0 ? "person-" + i : "n" + i;
+            graphml.append(String.format("<edge id=\"e%d\" source=\"%s\" target=\"%s\" label=\"NEXT\"><data key=\"label\">NEXT</data></edge>%n", i, source, target));
+        }
+        graphml.append(String.format(FOOTER));
+        File output = new File(directory, "large.graphml");
+        try (FileWriter fw = new FileWriter(output)) {
+            fw.write(graphml.toString());
+        }
+
+        TestUtil.testCall(db, "CALL apoc.import.graphml({file},{readLabels:true, batchSize:100})", map("file", output.getAbsolutePath()),
+                (r) -> {
+                    assertEquals((long) nodes, r.get("nodes"));
+                    assertEquals((long) nodes - 1, r.get("relationships"));
+                    assertEquals((long) nodes, r.get("properties"));
+                });
+        TestUtil.testCall(db, "MATCH p=(:Person {name:'p0'})-[:NEXT*]->(:Person {name:'p2499'}) RETURN length(p) AS length", null,
+                (r) -> assertEquals((long) nodes - 1, r.get("length")));
+    }
+
+    @Test
+    public void testImportGraphMLWithUndefinedNode() throws Exception {
+        File output = new File(directory, "undefined.graphml");
+        try (FileWriter fw = new FileWriter(output)) {
+            fw.write(String.format(HEADER + GRAPH + "<node id=\"n0\"/>%n<edge id=\"e0\" source=\"n0\" target=\"n1\" label=\"KNOWS\"/>%n" + FOOTER));
+        }
+        try {
+            TestUtil.testCall(db, "CALL apoc.import.graphml({file},{})", map("file", output.getAbsolutePath()), (r) -> {});
+            fail("Expected the edge to an undefined node to fail the import");
+        } catch (QueryExecutionException e) {
+            assertTrue(ExceptionUtils.getRootCause(e).getMessage().contains("Node with id n1"));
+        }
+    }
+
     @Test(expected = QueryExecutionException.class)
     public void testImportGraphMLWithNoImportConfig() throws Exception {
         File output = new File(directory, "all.graphml");
@@ -242,6 +305,30 @@ public class ExportGraphMLTest {
         assertXMLEquals(output, EXPECTED_FALSE);
     }
 
+    @Test
+    public void testExportAllGraphMLParallel() throws Exception {
+        File output = new File(directory, "allParallel.graphml");
+        TestUtil.testCall(db, "CALL apoc.export.graphml.all({file},{parallel:true, partitionSize:1})", map("file", output.getAbsolutePath()),
+                (r) -> assertResults(output, r, "database"));
+        assertXMLEquals(output, EXPECTED_FALSE);
+    }
+
+    @Test
+    public void testExportCompressedGraphMLAndReimport() throws Exception {
+        File output = new File(directory, "compressed.graphml");
+        File compressed = new File(directory, "compressed.graphml.gz");
+        compressed.delete();
+        TestUtil.testCall(db, "CALL apoc.export.graphml.all({file},{compression:'gzip', readLabels:true, useTypes:true})", map("file", output.getAbsolutePath()),
+                (r) -> assertResults(compressed, r, "database"));
+        assertTrue(compressed.exists());
+
+        db.execute("MATCH (n) DETACH DELETE n").close();
+        // the extension tells the import to decompress it
+        TestUtil.testCall(db, "CALL apoc.import.graphml({file},{readLabels:true})", map("file", compressed.getAbsolutePath()),
+                (r) -> assertEquals(3L, r.get("nodes")));
+        TestUtil.testCall(db, "MATCH (b:Bar {name:'bar'}) RETURN b.age AS age", (r) -> assertEquals(42L, r.get("age")));
+    }
+
     @Test
     public void testExportGraphGraphML() throws Exception {
         File output = new File(directory, "graph.graphml");
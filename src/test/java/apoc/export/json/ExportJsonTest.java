@@ -1,5 +1,6 @@
 package apoc.export.json;
 
+import apoc.create.Create;
 import apoc.graph.Graphs;
 import apoc.util.JsonUtil;
 import apoc.util.TestUtil;
@@ -7,6 +8,9 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
@@ -34,7 +38,7 @@ public class ExportJsonTest {
                 .setConfig(GraphDatabaseSettings.load_csv_file_url_root, directory.getAbsolutePath())
                 .setConfig("apoc.export.file.enabled", "true")
                 .newGraphDatabase();
-        TestUtil.registerProcedure(db, ExportJson.class, Graphs.class);
+        TestUtil.registerProcedure(db, ExportJson.class, Graphs.class, Create.class);
         db.execute("CREATE (f:User {name:'Adam',age:42,male:true,kids:['Sam','Anna','Grace'], born:localdatetime('2015185T19:32:24'), place:point({latitude: 13.1, longitude: 33.46789})})-[:KNOWS {since: 1993}]->(b:User {name:'Jim',age:42}),(c:User {age:12})").close();
     }
 
@@ -55,6 +59,18 @@ public class ExportJsonTest {
         assertFileEquals(filename);
     }
 
+    @Test
+    public void testExportAllJsonParallel() throws Exception {
+        String filename = "allParallel.json";
+        TestUtil.testCall(db, "CALL apoc.export.json.all({file},{parallel:true, partitionSize:1})",
+                map("file", filename),
+                (r) -> {
+                    assertResults(filename, r, "database");
+                }
+        );
+        assertEquals(TestUtil.readFileToString(new File(directoryExpected, "all.json")), TestUtil.readFileToString(new File(directory, filename)));
+    }
+
     @Test
     public void testExportPointMapDatetimeJson() throws Exception {
         String filename = "mapPointDatetime.json";
@@ -327,6 +343,47 @@ public class ExportJsonTest {
         assertFileEquals(filename);
     }
 
+    @Test
+    public void testExportPropertyTypesJson() throws Exception {
+        db.execute("CREATE (:Types {text:'a\\nb', int:1, float:1.5, bool:false, ints:[1,2], floats:[0.5,1.5], bools:[true], " +
+                "date:date('2018-10-10'), time:time('12:30:15+01:00'), localtime:localtime('12:30:15'), datetime:datetime('2018-10-10T12:30:15+02:00[Europe/Berlin]'), " +
+                "duration:duration('P1M2DT3H4.5S'), dates:[date('2018-10-10')], cartesian:point({x:1, y:2}), cartesian3d:point({x:1, y:2, z:3}), " +
+                "geo3d:point({latitude:1, longitude:2, height:3}), points:[point({x:1, y:2})]})").close();
+        String filename = "types.json";
+        TestUtil.testCall(db, "CALL apoc.export.json.query('MATCH (n:Types) RETURN n',{file})", map("file", filename), (r) -> {});
+        Map<String, Object> expected;
+        try (Transaction tx = db.beginTx()) {
+            Node node = db.findNodes(Label.label("Types")).next();
+            expected = JsonUtil.parse(toJson(node.getAllProperties()), null, Map.class);
+            tx.success();
+        }
+        Map<String, Object> actual = JsonUtil.parse(TestUtil.readFileToString(new File(directory, filename)), null, Map.class);
+        assertEquals(expected, ((Map<String, Object>) actual.get("n")).get("properties"));
+    }
+
+    @Test
+    public void testExportVirtualEntitiesJson() throws Exception {
+        String filename = "virtual.json";
+        String query = "CALL apoc.create.vNode(['Virtual'],{name:'Foo'}) YIELD node AS a " +
+                "CALL apoc.create.vNode(['Virtual'],{name:'Bar'}) YIELD node AS b " +
+                "CALL apoc.create.vRelationship(a,'KNOWS',{since:2018},b) YIELD rel " +
+                "RETURN a, rel";
+        TestUtil.testCall(db, "CALL apoc.export.json.query({query},{file})", map("file", filename, "query", query), (r) -> {});
+        Map<String, Object> actual = JsonUtil.parse(TestUtil.readFileToString(new File(directory, filename)), null, Map.class);
+        Map<String, Object> node = (Map<String, Object>) actual.get("a");
+        assertEquals(map("name", "Foo"), node.get("properties"));
+        Map<String, Object> rel = (Map<String, Object>) actual.get("rel");
+        assertEquals(map("since", 2018L), rel.get("properties"));
+    }
+
+    private static String toJson(Object value) {
+        try {
+            return JsonUtil.OBJECT_MAPPER.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private void assertResults(String filename, Map<String, Object> r, final String source) {
         assertEquals(3L, r.get("nodes"));
         assertEquals(1L, r.get("relationships"));
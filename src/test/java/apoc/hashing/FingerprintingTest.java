@@ -8,12 +8,14 @@ import org.neo4j.helpers.collection.Iterables;
 import org.neo4j.helpers.collection.Iterators;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import static java.util.Collections.*;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.neo4j.helpers.collection.Iterators.set;
 import static org.neo4j.helpers.collection.MapUtil.map;
 
 public class FingerprintingTest {
@@ -106,6 +108,55 @@ public class FingerprintingTest {
         compareGraph("CREATE (:Person{name:'ABC', created:timestamp()})", singletonList("created"), true);
     }
 
+    @Test
+    public void fingerprintGraphWithDuplicateNodes() {
+        compareGraph("CREATE (:Person{name:'ABC'}), (:Person{name:'ABC'})-[:KNOWS]->(:Person{name:'ABC'})", EMPTY_LIST, true);
+    }
+
+    @Test
+    public void fingerprintGraphIndependentOfIdsAndOrder() {
+        db.execute(doubles("range(1,12000)")).close();
+        String value = Iterators.single(db.execute("return apoc.hashing.fingerprintGraph() as hash").columnAs("hash"));
+
+        db.execute("match (n) detach delete n").close();
+        db.execute("UNWIND range(1,100) AS id CREATE (:Temp {id:id})").close();
+        db.execute("MATCH (t:Temp) DELETE t").close();
+        db.execute(doubles("range(12000,1,-1)")).close();
+        String value2 = Iterators.single(db.execute("return apoc.hashing.fingerprintGraph() as hash").columnAs("hash"));
+        assertEquals(value, value2);
+
+        db.execute("MATCH (:Node {id:42})-[r:DOUBLE]->() SET r.factor = 3").close();
+        assertNotEquals(value, Iterators.single(db.execute("return apoc.hashing.fingerprintGraph() as hash").columnAs("hash")));
+    }
+
+    @Test
+    public void fingerprintGraphDigestsLocalizeDifferences() {
+        db.execute("CREATE (:Person{name:'ABC'})-[:KNOWS]->(:Person:Admin{name:'DEF'})-[:OWNS]->(:Item{name:'X'})").close();
+        Map<String, String> digests = digests();
+        assertEquals(set("graph:*", "labels::Person", "labels::Admin:Person", "labels::Item", "type:KNOWS", "type:OWNS"), digests.keySet());
+        assertEquals(cypherSingleResult("return apoc.hashing.fingerprintGraph()"), digests.get("graph:*"));
+
+        db.execute("MATCH (i:Item) SET i.name = 'Y'").close();
+        Map<String, String> changed = digests();
+        for (String part : digests.keySet()) {
+            boolean differs = !digests.get(part).equals(changed.get(part));
+            // the item and the relationship pointing to it
+            assertEquals(part, part.equals("graph:*") || part.equals("labels::Item") || part.equals("type:OWNS"), differs);
+        }
+    }
+
+    private String doubles(String ids) {
+        return "UNWIND " + ids + " AS id CREATE (n:Node {id:id}) WITH n ORDER BY n.id WITH collect(n) AS nodes " +
+                "UNWIND range(1, size(nodes) / 2) AS id WITH nodes[id - 1] AS a, nodes[2 * id - 1] AS b CREATE (a)-[:DOUBLE {factor:2}]->(b)";
+    }
+
+    private Map<String, String> digests() {
+        Map<String, String> digests = new HashMap<>();
+        db.execute("CALL apoc.hashing.fingerprintGraphDigests()").forEachRemaining(row ->
+                digests.put(row.get("scope") + ":" + row.get("name"), (String) row.get("fingerprint")));
+        return digests;
+    }
+
     private void compareGraph(String cypher, List<String> excludes, boolean shouldBeEqual) {
         Map<String, Object> params = singletonMap("excludes", excludes);
 
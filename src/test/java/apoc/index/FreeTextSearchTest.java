@@ -346,6 +346,33 @@ public class FreeTextSearchTest {
     }
 
 
+    @Test
+    public void shouldPopulateInPartitions() throws Exception {
+        // given
+        execute("UNWIND range(0,999) AS id CREATE (n:Item {name:'item'+id}) WITH n, id WHERE id % 3 = 0 CREATE (:Other {name:'other'+id})");
+
+        // when
+        TestUtil.testCall(db, "CALL apoc.index.addAllNodes('items', {Item:['name']}, {partitionSize:100, batchSize:7})",
+                row -> assertEquals(1000L, row.get("nodeCount")));
+
+        // then
+        assertSingleNode("items", termQuery("item42"), hasProperty("name", "item42"));
+        assertSingleNode("items", termQuery("item999"), hasProperty("name", "item999"));
+        try (Transaction tx = db.beginTx()) {
+            assertEquals(1000, nodeIndex("items").query(KEY, "item*").size());
+            assertFalse(db.index().getConfiguration(nodeIndex("items")).containsKey("partitionSize"));
+            tx.success();
+        }
+        TestUtil.testCall(db, "CALL apoc.index.populationProgress('items')", row -> {
+            assertEquals(true, row.get("done"));
+            assertEquals(1000L, row.get("indexed"));
+            assertEquals(row.get("totalNodes"), row.get("nodes"));
+            assertEquals(row.get("totalPartitions"), row.get("partitions"));
+            assertEquals(100d, row.get("percent"));
+            assertEquals(0L, row.get("eta"));
+        });
+    }
+
     @Test
     public void addAllNodeExtendedWithDynamicChainAnalyzer() throws Exception {
         // given
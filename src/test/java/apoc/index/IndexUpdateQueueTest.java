@@ -0,0 +1,119 @@
+package apoc.index;
+
+import apoc.ApocKernelExtensionFactory;
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.io.File;
+
+import static apoc.util.TestUtil.testCallCount;
+import static apoc.util.TestUtil.testCallEmpty;
+import static org.junit.Assert.*;
+
+public class IndexUpdateQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GraphDatabaseService db;
+    private IndexUpdateTransactionEventHandler handler;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory()
+                .newImpermanentDatabaseBuilder()
+                .setConfig("apoc.autoIndex.enabled", "true")
+                .setConfig("apoc.autoIndex.async", "true")
+                .setConfig("apoc.autoIndex.async_workers", "3")
+                .setConfig("apoc.autoIndex.async_rollover_millis", "60000")
+                .newGraphDatabase();
+        TestUtil.registerProcedure(db, FreeTextSearch.class);
+        TestUtil.registerProcedure(db, FulltextIndex.class);
+        handler = ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(ApocKernelExtensionFactory.ApocLifecycle.class)
+                .getIndexUpdateLifeCycle().getIndexUpdateTransactionEventHandler();
+        testCallEmpty(db, "CALL apoc.index.addAllNodes('cities', {City:['name']}, {autoUpdate:true})", null);
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void testLastWriteOfANodeWins() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            db.execute("UNWIND range(0,9) AS id MERGE (c:City {id:id}) SET c.name = 'City' + id + 'v" + i + "'").close();
+        }
+        IndexUpdateQueue.Status status = handler.getStatus();
+        assertEquals(3, status.workers);
+        assertEquals(10, status.pending);
+        assertEquals(50, status.received);
+        assertEquals(40, status.coalesced);
+        assertEquals(0, status.applied);
+
+        handler.forceTxRollover();
+
+        testCallCount(db, "CALL apoc.index.search('cities', 'City.name:City*v4')", null, 10);
+        testCallCount(db, "CALL apoc.index.search('cities', 'City.name:City*v3')", null, 0);
+        TestUtil.testCall(db, "CALL apoc.index.autoUpdateStatus()", row -> {
+            assertEquals(true, row.get("async"));
+            assertEquals(0L, row.get("pending"));
+            assertEquals(50L, row.get("applied"));
+            assertEquals(0L, row.get("lag"));
+        });
+    }
+
+    @Test
+    public void testDeleteReplacesEarlierUpdates() throws Exception {
+        db.execute("CREATE (:City {name:'Atlantis'}), (:City {name:'Berlin'})").close();
+        handler.forceTxRollover();
+        db.execute("MATCH (c:City {name:'Atlantis'}) SET c.name = 'Atlantis2'").close();
+        db.execute("MATCH (c:City {name:'Atlantis2'}) DETACH DELETE c").close();
+        assertTrue(handler.getStatus().lag >= 0);
+
+        handler.forceTxRollover();
+
+        testCallCount(db, "CALL apoc.index.search('cities', 'City.name:Atlantis*')", null, 0);
+        testCallCount(db, "CALL apoc.index.search('cities', 'City.name:Berlin')", null, 1);
+    }
+
+    @Test
+    public void testPendingUpdatesAreReindexedAfterShutdown() throws Exception {
+        File storeDir = folder.newFolder();
+        GraphDatabaseService db = newAsyncDatabase(storeDir);
+        testCallEmpty(db, "CALL apoc.index.addAllNodes('cities', {City:['name']}, {autoUpdate:true})", null);
+        db.execute("UNWIND range(0,9) AS id CREATE (:City {name:'City' + id})").close();
+        db.execute("MATCH (c:City {name:'City0'}) DELETE c").close();
+        db.shutdown();
+        assertTrue(new File(storeDir, IndexUpdateQueue.PENDING_FILE).exists());
+
+        db = newAsyncDatabase(storeDir);
+        try {
+            ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(ApocKernelExtensionFactory.ApocLifecycle.class)
+                    .getIndexUpdateLifeCycle().getIndexUpdateTransactionEventHandler().forceTxRollover();
+            testCallCount(db, "CALL apoc.index.search('cities', 'City.name:City*')", null, 9);
+            assertFalse(new File(storeDir, IndexUpdateQueue.PENDING_FILE).exists());
+        } finally {
+            db.shutdown();
+        }
+    }
+
+    private static GraphDatabaseService newAsyncDatabase(File storeDir) throws Exception {
+        GraphDatabaseService db = new TestGraphDatabaseFactory()
+                .newEmbeddedDatabaseBuilder(storeDir)
+                .setConfig("apoc.autoIndex.enabled", "true")
+                .setConfig("apoc.autoIndex.async", "true")
+                .setConfig("apoc.autoIndex.async_rollover_millis", "60000")
+                .newGraphDatabase();
+        TestUtil.registerProcedure(db, FreeTextSearch.class);
+        TestUtil.registerProcedure(db, FulltextIndex.class);
+        return db;
+    }
+}
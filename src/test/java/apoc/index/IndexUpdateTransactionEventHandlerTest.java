@@ -75,6 +75,20 @@ public class IndexUpdateTransactionEventHandlerTest {
     }
 
 
+    @Test
+    public void shouldNotCreateTokensForConfiguredLabelsAndIndexThemOnceUsed() {
+        testCallEmpty(db, "call apoc.index.addAllNodesExtended('ghosts',{Ghost:['ghostName']},{autoUpdate:true})", null);
+        indexUpdateTransactionEventHandler.resetConfiguration();
+        testCallEmpty(db, "create (:Other {name:'unrelated'})", null);
+        testCallCount(db, "CALL db.labels() YIELD label WITH label WHERE label = 'Ghost' RETURN label", null, 0);
+        testCallCount(db, "CALL db.propertyKeys() YIELD propertyKey WITH propertyKey WHERE propertyKey = 'ghostName' RETURN propertyKey", null, 0);
+
+        testCallEmpty(db, "create (:Ghost {ghostName:'Casper'})", null);
+        indexUpdateTransactionEventHandler.forceTxRollover();
+
+        testCallCount(db, "CALL apoc.index.nodes('ghosts','Ghost.ghostName:Casper')", null, 1);
+    }
+
     @Test
     public void shouldIndexFieldsBeUsedConsistently() throws InterruptedException {
         // setup: add a node, index it and add another node
@@ -103,6 +117,24 @@ public class IndexUpdateTransactionEventHandlerTest {
         testCallCount(db, "match (s:Submarine) remove s.periscope return s", null, 2);
     }
 
+    @Test
+    public void shouldTrackLabelsAndPropertiesCreatedAfterTheIndex() {
+        testCallEmpty(db, "call apoc.index.addAllNodesExtended('ships',{Ship:['name','hull']},{autoUpdate:true})", null);
+        testCallEmpty(db, "create (:Boat {name:'Nautilus', hull:'steel', crew:40})", null);
+        indexUpdateTransactionEventHandler.forceTxRollover();
+        testCallCount(db, "CALL apoc.index.search('ships', 'Ship.name:Nautilus')", null, 0);
+
+        testCallEmpty(db, "match (b:Boat) set b:Ship", null);
+        indexUpdateTransactionEventHandler.forceTxRollover();
+        testCallCount(db, "CALL apoc.index.search('ships', 'Ship.name:Nautilus')", null, 1);
+        testCallCount(db, "CALL apoc.index.search('ships', 'Ship.hull:steel')", null, 1);
+        testCallCount(db, "CALL apoc.index.search('ships', 'crew:40')", null, 0);
+
+        testCallEmpty(db, "match (s:Ship) remove s:Ship", null);
+        indexUpdateTransactionEventHandler.forceTxRollover();
+        testCallCount(db, "CALL apoc.index.search('ships', 'Ship.name:Nautilus')", null, 0);
+    }
+
     @Ignore("this test is supposed to fail until 3.4.10 gets released, https://github.com/neo4j/neo4j/commit/7b8baa607cd63a70303437de7ebb1e254a9e42ff")
     @Test
     public void shouldDeletingNodeWork() {
@@ -0,0 +1,146 @@
+package apoc.index;
+
+import apoc.util.TestUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static apoc.util.MapUtil.map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaIndexOrderedRangeTest {
+
+    private static GraphDatabaseService db;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        TestUtil.registerProcedure(db, SchemaIndex.class);
+        db.execute("UNWIND range(1,200) as id CREATE (:Person {id:id, age:id % 50, name:'name'+id, nick:'nick'+id})").close();
+        db.execute("CREATE INDEX ON :Person(age)").close();
+        db.execute("CREATE INDEX ON :Person(name)").close();
+        db.execute("CALL db.createIndex(':Person(nick)', 'lucene-1.0')").close();
+        try (Transaction tx = db.beginTx()) {
+            db.schema().awaitIndexesOnline(10, TimeUnit.SECONDS);
+            tx.success();
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        db.shutdown();
+    }
+
+    private List<Map<String, Object>> page(String key, Object min, Object max, Map<String, Object> config) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        TestUtil.testResult(db, "CALL apoc.index.orderedRangePage('Person',{key},{min},{max},{config}) YIELD node, value, after RETURN node.id AS id, value, after",
+                map("key", key, "min", min, "max", max, "config", config), result -> result.forEachRemaining(rows::add));
+        return rows;
+    }
+
+    private List<Object> all(String key, Object min, Object max, Map<String, Object> config, int expectedPages) {
+        List<Object> values = new ArrayList<>();
+        Map<String, Object> after = null;
+        int pages = 0;
+        while (true) {
+            Map<String, Object> pageConfig = new HashMap<>(config);
+            pageConfig.put("after", after);
+            List<Map<String, Object>> rows = page(key, min, max, pageConfig);
+            if (rows.isEmpty()) break;
+            pages++;
+            rows.forEach(row -> values.add(row.get("value")));
+            after = (Map<String, Object>) rows.get(rows.size() - 1).get("after");
+        }
+        assertEquals(expectedPages, pages);
+        return values;
+    }
+
+    @Test
+    public void testFirstPageOfNumberRange() {
+        List<Map<String, Object>> rows = page("age", 10, 20, map("limit", 5));
+        List<Object> ids = rows.stream().map(row -> row.get("id")).collect(Collectors.toList());
+        List<Object> ages = rows.stream().map(row -> row.get("value")).collect(Collectors.toList());
+        assertEquals(Arrays.asList(10L, 60L, 110L, 160L, 11L), ids);
+        assertEquals(Arrays.asList(10L, 10L, 10L, 10L, 11L), ages);
+    }
+
+    @Test
+    public void testPaginateNumberRangeWithTies() {
+        List<Object> values = all("age", 10, 20, map("limit", 7), 7);
+        List<Object> expected = IntStream.rangeClosed(10, 20).boxed().flatMap(age -> Stream.of(age, age, age, age)).map(Long::valueOf).collect(Collectors.toList());
+        assertEquals(expected, values);
+    }
+
+    @Test
+    public void testPaginateStringRangeDescending() {
+        List<Object> values = all("name", "name100", "name199", map("limit", 30, "order", "DESC"), 4);
+        List<Object> expected = IntStream.rangeClosed(1, 200).mapToObj(i -> "name" + i)
+                .filter(name -> name.compareTo("name100") >= 0 && name.compareTo("name199") <= 0).sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        assertEquals(expected, values);
+    }
+
+    @Test
+    public void testPaginateUnorderedLuceneIndex() {
+        List<Object> values = all("nick", "nick1", null, map("limit", 50), 4);
+        List<Object> expected = IntStream.rangeClosed(1, 200).mapToObj(i -> "nick" + i).sorted().collect(Collectors.toList());
+        assertEquals(expected, values);
+    }
+
+    @Test
+    public void testOrderedRangeKeepsIndexOrder() {
+        List<Object> ages = new ArrayList<>();
+        TestUtil.testResult(db, "CALL apoc.index.orderedRange('Person','age',45,null,false,6) YIELD node RETURN node.age AS age",
+                result -> result.forEachRemaining(row -> ages.add(row.get("age"))));
+        assertEquals(Arrays.asList(45L, 45L, 45L, 45L, 46L, 46L), ages);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testMissingIndex() {
+        page("id", 1, 10, map());
+    }
+
+    @Test
+    public void testUnknownKey() {
+        assertTrue(page("unknown", 1, 10, map()).isEmpty());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testInvalidAfter() {
+        page("age", 1, 10, map("after", "10"));
+    }
+
+    @Test
+    public void testOrderedRangeWithoutIndex() {
+        List<Object> ids = new ArrayList<>();
+        TestUtil.testResult(db, "CALL apoc.index.orderedRange('Person','id',1,5,false,10) YIELD node RETURN node.id AS id",
+                result -> result.forEachRemaining(row -> ids.add(row.get("id"))));
+        ids.sort(Comparator.comparing(id -> (Long) id));
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), ids);
+    }
+
+    @Test
+    public void testOrderedRangeWithoutBoundsKeepsNodesWithoutProperty() {
+        db.execute("CREATE (:Pet {age:1}), (:Pet)").close();
+        db.execute("CREATE INDEX ON :Pet(age)").close();
+        try (Transaction tx = db.beginTx()) {
+            db.schema().awaitIndexesOnline(10, TimeUnit.SECONDS);
+            tx.success();
+        }
+        TestUtil.testCallCount(db, "CALL apoc.index.orderedRange('Pet','age',null,null,false,10)", null, 2);
+    }
+}
@@ -1,5 +1,6 @@
 package apoc.load;
 
+import apoc.util.CompressionAlgo;
 import apoc.util.TestUtil;
 import apoc.util.Util;
 import org.junit.After;
@@ -12,7 +13,11 @@ import org.neo4j.graphdb.Result;
 import org.neo4j.test.TestGraphDatabaseFactory;
 import org.testcontainers.containers.GenericContainer;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -49,6 +54,36 @@ public class LoadCsvTest {
                 });
     }
 
+    @Test public void testLoadCompressedCsv() throws Exception {
+        String csv = "name,age\nSelma,8\nRana,11\nSelina,18\n";
+        File gzip = compressed(CompressionAlgo.GZIP, csv, ".csv.gz");
+        testResult(db, "CALL apoc.load.csv({url},{results:['map','list','stringMap','strings']})", map("url", gzip.toURI().toString()),
+                (r) -> {
+                    assertRow(r,0L,"name","Selma","age","8");
+                    assertRow(r,1L,"name","Rana","age","11");
+                    assertRow(r,2L,"name","Selina","age","18");
+                    assertEquals(false, r.hasNext());
+                });
+        // without a matching extension the compression has to be configured
+        File lz4 = compressed(CompressionAlgo.LZ4, csv, ".csv");
+        testResult(db, "CALL apoc.load.csv({url},{results:['map','list','stringMap','strings'],compression:'LZ4'})", map("url", lz4.toURI().toString()),
+                (r) -> {
+                    assertRow(r,0L,"name","Selma","age","8");
+                    assertRow(r,1L,"name","Rana","age","11");
+                    assertRow(r,2L,"name","Selina","age","18");
+                    assertEquals(false, r.hasNext());
+                });
+    }
+
+    private File compressed(CompressionAlgo algo, String content, String suffix) throws Exception {
+        File file = File.createTempFile("compressed", suffix);
+        file.deleteOnExit();
+        try (OutputStream out = algo.compress(new FileOutputStream(file))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
     /*
     WITH 'file:///test.csv' AS url
 CALL apoc.load.csv(url,) YIELD map AS m
@@ -12,6 +12,7 @@ import org.neo4j.test.TestGraphDatabaseFactory;
 import java.util.Map;
 
 import static apoc.util.TestUtil.testCall;
+import static apoc.util.TestUtil.testCallCount;
 import static apoc.util.TestUtil.testResult;
 import static org.junit.Assert.*;
 
@@ -259,4 +260,82 @@ public class MergeTest {
             }
         }
     }
+
+    @Test
+    public void testMergeNodesInBatches() throws Exception {
+        db.execute("CREATE (:Person {ssid:'1', name:'Jim'})").close();
+        testResult(db, "CALL apoc.merge.nodes([" +
+                        "{labels:['Person'], identProps:{ssid:'1'}, onCreateProps:{name:'John'}, onMatchProps:{seen:true}}," +
+                        "{labels:['Person'], identProps:{ssid:'2'}, onCreateProps:{name:'Jane'}}," +
+                        "{labels:['Company','Org'], identProps:{name:'Acme'}}," +
+                        "{labels:['Org','Company'], identProps:{name:'Acme'}, onMatchProps:{merged:true}}," +
+                        "{labels:['Person'], identProps:{ssid:'3'}}], {batchSize:1}) YIELD node RETURN node",
+                result -> {
+                    Node jim = (Node) result.next().get("node");
+                    assertEquals("Jim", jim.getProperty("name"));
+                    assertEquals(true, jim.getProperty("seen"));
+                    assertEquals("Jane", ((Node) result.next().get("node")).getProperty("name"));
+                    Node acme = (Node) result.next().get("node");
+                    assertEquals(acme, result.next().get("node"));
+                    assertEquals(true, acme.getProperty("merged"));
+                    assertEquals("3", ((Node) result.next().get("node")).getProperty("ssid"));
+                    assertFalse(result.hasNext());
+                });
+        testCall(db, "MATCH (p:Person) WITH count(*) AS persons MATCH (c:Company:Org) RETURN persons, count(*) AS companies",
+                row -> {
+                    assertEquals(3L, row.get("persons"));
+                    assertEquals(1L, row.get("companies"));
+                });
+    }
+
+    @Test
+    public void testMergeNodesWithSimilarLabelLists() throws Exception {
+        testCallCount(db, "CALL apoc.merge.nodes([" +
+                "{labels:['A, B'], identProps:{id:1}}," +
+                "{labels:['A','B'], identProps:{id:1}}]) YIELD node RETURN node", null, 2);
+        testCall(db, "MATCH (n:`A, B`) RETURN count(*) AS c", row -> assertEquals(1L, row.get("c")));
+        testCall(db, "MATCH (n:A:B) RETURN count(*) AS c", row -> assertEquals(1L, row.get("c")));
+    }
+
+    @Test
+    public void testMergeNodesWithUniqueConstraintLookup() throws Exception {
+        db.execute("CREATE CONSTRAINT ON (p:Person) ASSERT p.ssid IS UNIQUE").close();
+        db.execute("CREATE (:Person {ssid:'1', name:'Jim'}), (:Person:Admin {ssid:'2', name:'Joe'})").close();
+        testResult(db, "CALL apoc.merge.nodes([" +
+                        "{labels:['Person'], identProps:{ssid:'1'}, onMatchProps:{seen:true}}," +
+                        "{labels:['Person','Admin'], identProps:{ssid:'2'}, onMatchProps:{seen:true}}," +
+                        "{labels:['Person'], identProps:{ssid:'3'}, onCreateProps:{name:'Jane'}}], {lookup:true}) YIELD node RETURN node",
+                result -> {
+                    assertEquals("Jim", ((Node) result.next().get("node")).getProperty("name"));
+                    Node joe = (Node) result.next().get("node");
+                    assertEquals("Joe", joe.getProperty("name"));
+                    assertEquals(true, joe.getProperty("seen"));
+                    assertEquals("Jane", ((Node) result.next().get("node")).getProperty("name"));
+                });
+        testCall(db, "MATCH (p:Person) RETURN count(*) AS persons, count(p.seen) AS seen", row -> {
+            assertEquals(3L, row.get("persons"));
+            assertEquals(2L, row.get("seen"));
+        });
+    }
+
+    @Test
+    public void testMergeRelationshipsInBatches() throws Exception {
+        db.execute("CREATE (foo:Person{name:'Foo'}), (bar:Person{name:'Bar'}), (foo)-[:KNOWS {rid:1}]->(bar)").close();
+        testResult(db, "MATCH (foo:Person{name:'Foo'}), (bar:Person{name:'Bar'}) " +
+                        "CALL apoc.merge.relationships([" +
+                        "{start:foo, type:'KNOWS', identProps:{rid:1}, end:bar, onMatchProps:{since:'Fri'}}," +
+                        "{start:foo, type:'LIKES', identProps:{}, end:bar, onCreateProps:{since:'Mon'}}," +
+                        "{start:bar, type:'KNOWS', identProps:{rid:1}, end:foo}]) YIELD rel RETURN rel",
+                result -> {
+                    Relationship knows = (Relationship) result.next().get("rel");
+                    assertEquals("Fri", knows.getProperty("since"));
+                    Relationship likes = (Relationship) result.next().get("rel");
+                    assertEquals("LIKES", likes.getType().name());
+                    assertEquals("Mon", likes.getProperty("since"));
+                    Relationship back = (Relationship) result.next().get("rel");
+                    assertEquals("Bar", back.getStartNode().getProperty("name"));
+                    assertFalse(result.hasNext());
+                });
+        testCall(db, "MATCH ()-[r]->() RETURN count(*) AS rels", row -> assertEquals(3L, row.get("rels")));
+    }
 }
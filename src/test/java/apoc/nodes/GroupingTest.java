@@ -3,8 +3,10 @@ package apoc.nodes;
 import apoc.util.TestUtil;
 import org.junit.*;
 import org.neo4j.graphdb.*;
+import org.neo4j.helpers.collection.Iterators;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -200,4 +202,48 @@ public class GroupingTest {
         it.next();
         assertFalse(it.hasNext());
     }
+
+    @Test
+    public void testGroupAcrossBatches() throws Exception {
+        try (Transaction tx = db.beginTx()) {
+            Node previous = null;
+            for (long id = 0; id < 25000; id++) {
+                Node node = db.createNode(Label.label("User"));
+                node.setProperty("id", id);
+                node.setProperty("group", id % 3);
+                node.setProperty("tags", new long[]{id % 2});
+                if (previous != null) previous.createRelationshipTo(node, RelationshipType.withName("NEXT")).setProperty("weight", (id - 1) % 5);
+                previous = node;
+            }
+            tx.success();
+        }
+        Map<Long, Node> groups = new HashMap<>();
+        testResult(db, "CALL apoc.nodes.group(['User'],['group'],[{`*`:'count', id:['min','max','avg']},{`*`:'count', weight:'sum'}])", result -> {
+            while (result.hasNext()) {
+                Map<String, Object> row = result.next();
+                Node node = (Node) row.get("node");
+                groups.put((Long) node.getProperty("group"), node);
+            }
+        });
+        assertEquals(3, groups.size());
+        Node zero = groups.get(0L);
+        assertEquals(8334L, zero.getProperty("count_*"));
+        assertEquals(0L, zero.getProperty("min_id"));
+        assertEquals(24999L, zero.getProperty("max_id"));
+        assertEquals(12499.5D, zero.getProperty("avg_id"));
+        long rels = 0, weight = 0;
+        for (Node node : groups.values()) {
+            for (Relationship rel : node.getRelationships(Direction.OUTGOING)) {
+                Object end = rel.getEndNode().getProperty("group");
+                assertEquals(((Long) node.getProperty("group") + 1) % 3, end);
+                rels += (Long) rel.getProperty("count_*");
+                weight += (Long) rel.getProperty("sum_weight");
+            }
+        }
+        assertEquals(24999L, rels);
+        assertEquals(49996L, weight);
+
+        // array values are grouped by their content
+        testResult(db, "CALL apoc.nodes.group(['User'],['tags'])", result -> assertEquals(2, Iterators.count(result)));
+    }
 }
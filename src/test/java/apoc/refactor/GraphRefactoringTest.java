@@ -313,6 +313,29 @@ MATCH (a:A {prop1:1}) MATCH (b:B {prop2:99}) CALL apoc.refactor.mergeNodes([a, b
         categorizeWithDirection(Direction.INCOMING);
     }
 
+    @Test
+    public void testCategorizeInParallelBatches() throws Exception {
+        db.execute("CREATE (:Letter {name:'A', k:'x'})").close();
+        db.execute("UNWIND range(1,25000) AS id CREATE ({id:id, prop: ['A','B','C'][id % 3], k: toLower(['A','B','C'][id % 3]), tags: CASE WHEN id % 2 = 0 THEN [id % 5] END})").close();
+
+        testCallEmpty(db, "CALL apoc.refactor.categorize('prop','IS_A', true, 'Letter','name',['k'],1000)", Collections.emptyMap());
+
+        testResult(db, "MATCH (n)-[:IS_A]->(cat:Letter) RETURN cat.name AS name, cat.k AS k, count(*) AS count, count(n.k) AS keys ORDER BY name", (result) -> {
+            assertEquals(map("name", "A", "k", "x", "count", 8333L, "keys", 8333L), result.next());
+            assertEquals(map("name", "B", "k", "b", "count", 8334L, "keys", 0L), result.next());
+            assertEquals(map("name", "C", "k", "c", "count", 8333L, "keys", 0L), result.next());
+            assertFalse(result.hasNext());
+        });
+        testCall(db, "MATCH (n) WHERE n.prop IS NOT NULL RETURN count(n) AS count", (r) -> assertEquals(0L, r.get("count")));
+
+        testCallEmpty(db, "CALL apoc.refactor.categorize('tags','TAGGED', false, 'Tag','tags',[],100)", Collections.emptyMap());
+        testCall(db, "MATCH (t:Tag) WITH t ORDER BY t.tags[0] RETURN collect(t.tags[0]) AS tags, sum(size((t)-->())) AS count",
+                (r) -> {
+                    assertEquals(asList(0L, 1L, 2L, 3L, 4L), r.get("tags"));
+                    assertEquals(12500L, r.get("count"));
+                });
+    }
+
     @Test
     public void testCloneNodes() throws Exception {
         Node node = db.execute("CREATE (f:Foo {name:'foo',age:42})-[:FB]->(:Bar) RETURN f").<Node>columnAs("f").next();
@@ -558,6 +581,52 @@ MATCH (a:A {prop1:1}) MATCH (b:B {prop2:99}) CALL apoc.refactor.mergeNodes([a, b
         );
     }
 
+    @Test
+    public void testMergeNodesInBatches() {
+        db.execute("CREATE (a1:Company {name:'a1'}), (a2:Company:Dup {name:'a2', size:10}) WITH a1, a2 " +
+                "UNWIND range(1,250) AS i CREATE (p:Person {id:i}), (a1)-[:EMPLOYS {since:i}]->(p) " +
+                "FOREACH (_ IN CASE WHEN i <= 50 THEN [1] ELSE [] END | CREATE (a2)-[:EMPLOYS {since:0}]->(p)) " +
+                "FOREACH (_ IN CASE WHEN i <= 10 THEN [1] ELSE [] END | CREATE (p)-[:LIKES]->(a1))").close();
+
+        testCall(db, "MATCH (a1:Company {name:'a1'}), (a2:Company {name:'a2'}) " +
+                        "CALL apoc.refactor.mergeNodes([a2,a1],{mergeRels:true, batchSize:40}) YIELD node RETURN node",
+                row -> assertEquals(true, ((Node) row.get("node")).hasLabel(Label.label("Dup"))));
+
+        testCall(db, "MATCH (c:Company) RETURN count(*) AS companies, c.name AS name, c.size AS size, size((c)-[:EMPLOYS]->()) AS employs, size((c)<-[:LIKES]-()) AS likes",
+                row -> {
+                    assertEquals(1L, row.get("companies"));
+                    assertEquals("a1", row.get("name"));
+                    assertEquals(10L, row.get("size"));
+                    assertEquals(250L, row.get("employs"));
+                    assertEquals(10L, row.get("likes"));
+                });
+        testCall(db, "MATCH (:Company)-[r:EMPLOYS]->(:Person {id:7}) RETURN r.since AS since",
+                row -> assertArrayEquals(new long[]{0, 7}, (long[]) row.get("since")));
+    }
+
+    @Test
+    public void testMergeNodesInBatchesWithoutMergeRels() {
+        db.execute("CREATE (a1:Company {name:'a1'}), (a2:Company {name:'a2'}) WITH a1, a2 " +
+                "UNWIND range(1,25) AS i CREATE (p:Person {id:i}), (a1)-[:EMPLOYS]->(p), (a2)-[:EMPLOYS]->(p)").close();
+
+        testCall(db, "MATCH (a1:Company {name:'a1'}), (a2:Company {name:'a2'}) " +
+                        "CALL apoc.refactor.mergeNodes([a2,a1],{batchSize:10}) YIELD node RETURN size((node)-[:EMPLOYS]->()) AS employs",
+                row -> assertEquals(50L, row.get("employs")));
+        testCall(db, "MATCH (c:Company) RETURN count(*) AS companies", row -> assertEquals(1L, row.get("companies")));
+    }
+
+    @Test
+    public void testMergeNodesInBatchesFailsForUncommittedNodes() {
+        try {
+            db.execute("CREATE (a1:Company {name:'a1'}), (a2:Company {name:'a2'}) " +
+                    "WITH a1, a2 CALL apoc.refactor.mergeNodes([a1,a2],{batchSize:10}) YIELD node RETURN node").resultAsString();
+            fail("the batches can't see the nodes created by the calling transaction");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Commit the nodes before merging them in batches"));
+        }
+        testCall(db, "MATCH (c:Company) RETURN count(*) AS companies", row -> assertEquals(0L, row.get("companies")));
+    }
+
     @Test
     public void testMergeNodesAndMergeSameRelationshipsAndNodesWithoutPropertiesConfig() {
         db.execute("Create (n1:ALabel {name:'a1'})," +
@@ -128,6 +128,50 @@ public class RenameTest {
 		assertEquals(new Long(8), resultRelationshipsMatches(null, "name"));
 	}
 
+	@Test
+	public void testRenameInParallelPartitions() throws Exception {
+		// many relationships between few nodes, so the concurrent batches share their nodes
+		db.execute("UNWIND range(0,9) AS id CREATE (:Hub {id:id})").close();
+		db.execute("MATCH (a:Hub),(b:Hub) WITH collect([a,b]) AS pairs UNWIND range(1,300) AS i UNWIND pairs AS pair " +
+				"WITH pair[0] AS a, pair[1] AS b, i CREATE (a)-[:KNOWS {name:'r'+i}]->(b)").close();
+
+		testCall(db, "CALL apoc.refactor.rename.type('KNOWS','LOVES')", (r) -> {
+			assertEquals(30000L, r.get("total"));
+			assertEquals(30000L, r.get("committedOperations"));
+			assertEquals(0L, r.get("failedOperations"));
+			assertEquals(0L, r.get("failedBatches"));
+		});
+		assertEquals(new Long(30000), resultRelationshipsMatches("LOVES", null));
+		assertEquals(new Long(0), resultRelationshipsMatches("KNOWS", null));
+		assertEquals(new Long(30000), resultRelationshipsMatches(null, "name"));
+
+		testCall(db, "CALL apoc.refactor.rename.typeProperty('name','title')", (r) -> assertEquals(30000L, r.get("committedOperations")));
+		assertEquals(new Long(30000), resultRelationshipsMatches(null, "title"));
+
+		testCall(db, "CALL apoc.refactor.rename.label('Hub','Node')", (r) -> assertEquals(10L, r.get("total")));
+		testCall(db, "CALL apoc.refactor.rename.nodeProperty('id','key')", (r) -> assertEquals(10L, r.get("committedOperations")));
+		assertEquals(new Long(10), resultNodesMatches("Node", null));
+		assertEquals(new Long(10), resultNodesMatches(null, "key"));
+		assertEquals(new Long(0), resultNodesMatches(null, "id"));
+
+		testCall(db, "CALL apoc.refactor.rename.label('Missing','Node')", (r) -> assertEquals(0L, r.get("total")));
+	}
+
+	@Test
+	public void testRenameLabelReadsTheLabelIndex() throws Exception {
+		db.execute("UNWIND range(1,25000) AS id CREATE (:Other {id:id})").close();
+		db.execute("UNWIND range(1,12000) AS id CREATE (:Foo {id:id})").close();
+
+		// only the batches of the labeled nodes, not of all node ids
+		testCall(db, "CALL apoc.refactor.rename.label('Foo','Bar')", (r) -> {
+			assertEquals(2L, r.get("batches"));
+			assertEquals(12000L, r.get("committedOperations"));
+		});
+		assertEquals(new Long(12000), resultNodesMatches("Bar", null));
+		assertEquals(new Long(0), resultNodesMatches("Foo", null));
+		assertEquals(new Long(25000), resultNodesMatches("Other", null));
+	}
+
 	private Long resultRelationshipsMatches(String type, String prop){
 		String query = type != null ? "MATCH ()-[r:"+type+"]->() RETURN count(r) as countResult" : "match ()-[r]->() where exists (r."+prop+") return count(r) as countResult";
 		Result result = db.execute(query);
@@ -24,6 +24,10 @@ public class ParallelNodeSearchTest {
 			db.execute(movies);
 			tx.success();
 		 }
+		 // the Person searches are index seeks, the Movie searches label scans
+		 db.execute("CREATE INDEX ON :Person(name)").close();
+		 db.execute("CREATE INDEX ON :Person(born)").close();
+		 db.execute("CALL db.awaitIndexes()").close();
     }
 
     @AfterClass
@@ -92,4 +96,41 @@ public class ParallelNodeSearchTest {
     	query = "call apoc.search.nodeAllReduced({Person: 'born', Movie: ['released']},'exact',2000) yield labels as n return count(n) as c";
 		TestUtil.testCall(db, query, (row) -> assertEquals(3L,row.get("c")));
     }
+
+    @Test
+    public void testMultiSearchNodeIndexSeek() throws Throwable {
+    	String query = "call apoc.search.nodeAll({Person: 'name'},'STARTS WITH','Tom') yield node as n return count(n) as c";
+		TestUtil.testCall(db, query, (row) -> assertEquals(4L,row.get("c")));
+    	query = "call apoc.search.nodeAllReduced({Person: 'born'},'<',1940) yield id as n return count(n) as c";
+		TestUtil.testCall(db, query, (row) -> assertEquals(db.execute("MATCH (n:Person) WHERE n.born < 1940 RETURN count(*) as c").next().get("c"),row.get("c")));
+    	query = "call apoc.search.nodeAllReduced({Person: 'born'},'<>',1940) yield id as n return count(n) as c";
+		TestUtil.testCall(db, query, (row) -> assertEquals(db.execute("MATCH (n:Person) WHERE n.born <> 1940 RETURN count(*) as c").next().get("c"),row.get("c")));
+    }
+
+    @Test
+    public void testMultiSearchNodeLimit() throws Throwable {
+    	String query = "call apoc.search.node('{Person: \"name\",Movie: [\"title\",\"tagline\"]}','ENDS WITH','s',5) yield node as n return count(n) as c";
+		TestUtil.testCall(db, query, (row) -> assertEquals(5L,row.get("c")));
+    	query = "call apoc.search.nodeAllReduced({Person: 'born', Movie: ['released']},'>',2000,3) yield id as n return count(n) as c";
+		TestUtil.testCall(db, query, (row) -> assertEquals(3L,row.get("c")));
+    	query = "call apoc.search.nodeReduced('{Person: \"name\",Movie: [\"title\",\"tagline\"]}','ENDS WITH','s',50) yield id as n return count(n) as c";
+		TestUtil.testCall(db, query, (row) -> assertEquals(29L,row.get("c")));
+    }
+
+    @Test
+    public void testMultiSearchNodeReducedMergesHits() throws Throwable {
+    	String query = "call apoc.search.nodeReduced({Movie: ['title','tagline']},'CONTAINS','e') yield id, values where size(keys(values)) = 2 return count(*) as c";
+		TestUtil.testCall(db, query, (row) -> assertEquals(db.execute("MATCH (n:Movie) WHERE n.title CONTAINS 'e' AND n.tagline CONTAINS 'e' RETURN count(*) as c").next().get("c"),row.get("c")));
+    }
+
+    @Test
+    public void testMultiSearchNodeReducedWithLimitMergesAllHits() throws Throwable {
+    	String query = "call apoc.search.nodeReduced({Movie: ['title','tagline']},'CONTAINS','e',5) yield id, values MATCH (m) WHERE id(m) = id " +
+				"return count(*) as c, sum(size(keys(values))) as found, " +
+				"sum(CASE WHEN m.title CONTAINS 'e' THEN 1 ELSE 0 END + CASE WHEN m.tagline CONTAINS 'e' THEN 1 ELSE 0 END) as expected";
+		TestUtil.testCall(db, query, (row) -> {
+			assertEquals(5L, row.get("c"));
+			assertEquals(row.get("expected"), row.get("found"));
+		});
+    }
 }
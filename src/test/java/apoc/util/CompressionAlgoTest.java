@@ -0,0 +1,70 @@
+package apoc.util;
+
+import apoc.export.util.CountingInputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class CompressionAlgoTest {
+
+    private static final String TEXT = "\"_id\",\"_labels\",\"name\"\n\"0\",\":User\",\"foo\"\nx ^ y\n";
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (CompressionAlgo algo : CompressionAlgo.values()) {
+            byte[] compressed = compress(algo, TEXT);
+            if (algo != CompressionAlgo.NONE) {
+                assertNotEquals(algo.name(), TEXT, new String(compressed, StandardCharsets.UTF_8));
+            }
+            String actual = IOUtils.toString(algo.decompress(new ByteArrayInputStream(compressed)), StandardCharsets.UTF_8);
+            assertEquals(algo.name(), TEXT, actual);
+        }
+    }
+
+    @Test
+    public void testForReadingByExtensionOrConfig() {
+        assertEquals(CompressionAlgo.GZIP, CompressionAlgo.forReading("export.csv.gz", null));
+        assertEquals(CompressionAlgo.DEFLATE, CompressionAlgo.forReading("file:///export.json.zz", null));
+        assertEquals(CompressionAlgo.LZ4, CompressionAlgo.forReading("http://host/export.graphml.lz4?token=x", null));
+        // a plain file starting like a zlib header is read as it is
+        assertEquals(CompressionAlgo.NONE, CompressionAlgo.forReading("x.txt", null));
+        assertEquals(CompressionAlgo.LZ4, CompressionAlgo.forReading("export.csv", "lz4"));
+        assertEquals(CompressionAlgo.NONE, CompressionAlgo.forReading("export.csv.gz", "NONE"));
+    }
+
+    @Test
+    public void testProgressRefersToCompressedBytes() throws Exception {
+        byte[] compressed = compress(CompressionAlgo.GZIP, TEXT);
+        CountingInputStream in = CountingInputStream.decompressing(new ByteArrayInputStream(compressed), compressed.length, CompressionAlgo.GZIP);
+        assertEquals(TEXT, IOUtils.toString(in, StandardCharsets.UTF_8));
+        assertEquals(compressed.length, in.getCount());
+        assertEquals(100, in.getPercent());
+    }
+
+    @Test
+    public void testFromConfigValue() {
+        assertEquals(CompressionAlgo.NONE, CompressionAlgo.from(null));
+        assertEquals(CompressionAlgo.GZIP, CompressionAlgo.from("gzip"));
+        assertEquals(CompressionAlgo.LZ4, CompressionAlgo.from("LZ4"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testUnknownCompression() {
+        CompressionAlgo.from("rar");
+    }
+
+    private byte[] compress(CompressionAlgo algo, String text) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = algo.compress(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,120 @@
+package apoc.warmup;
+
+import apoc.util.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.io.fs.DefaultFileSystemAbstraction;
+import org.neo4j.io.pagecache.PageCache;
+import org.neo4j.io.pagecache.PageCursor;
+import org.neo4j.io.pagecache.PagedFile;
+import org.neo4j.io.pagecache.impl.muninn.StandalonePageCacheFactory;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import static apoc.util.MapUtil.map;
+import static org.junit.Assert.*;
+
+public class WarmupProfileTest {
+
+    private static File directory = new File("target/import");
+
+    static { //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+    }
+
+    private GraphDatabaseService db;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new TestGraphDatabaseFactory()
+                .newImpermanentDatabaseBuilder()
+                .setConfig("apoc.import.file.use_neo4j_config", "false")
+                .setConfig(GraphDatabaseSettings.load_csv_file_url_root, directory.getAbsolutePath())
+                .setConfig("apoc.export.file.enabled", "true")
+                .setConfig("apoc.import.file.enabled", "true")
+                .newGraphDatabase();
+        TestUtil.registerProcedure(db, Warmup.class, WarmupProfile.class);
+        db.execute("UNWIND range(1, 300) AS i CREATE (n:Foo {foo:i})-[:KNOWS {bar:2}]->(m {foobar:3, array:range(1,100)})").close();
+    }
+
+    @After
+    public void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    public void testSaveAndLoadProfile() throws Exception {
+        File profile = new File(directory, "warmup.profile");
+        db.execute("CALL apoc.warmup.run(true,true,true)").close();
+        Map<String, Long> saved = new HashMap<>();
+        TestUtil.testResult(db, "CALL apoc.warmup.profile.save({file})", map("file", profile.getAbsolutePath()), result ->
+                result.forEachRemaining(row -> {
+                    assertNull(row.get("error"));
+                    assertTrue((Long) row.get("pages") <= (Long) row.get("filePages"));
+                    saved.put((String) row.get("file"), (Long) row.get("pages"));
+                }));
+        assertEquals(Long.valueOf(2), saved.get("neostore.nodestore.db"));
+
+        Map<String, Long> loaded = new HashMap<>();
+        TestUtil.testResult(db, "CALL apoc.warmup.profile.load({file},{maxMBPerSecond:100})", map("file", profile.getAbsolutePath()), result ->
+                result.forEachRemaining(row -> {
+                    assertNull(row.get("error"));
+                    loaded.put((String) row.get("file"), (Long) row.get("pages"));
+                }));
+        assertEquals(saved, loaded);
+    }
+
+    @Test
+    public void testLoadInvalidProfile() throws Exception {
+        File profile = new File(directory, "invalid.profile");
+        try (FileWriter writer = new FileWriter(profile)) {
+            writer.write("not a profile");
+        }
+        try {
+            TestUtil.testResult(db, "CALL apoc.warmup.profile.load({file})", map("file", profile.getAbsolutePath()), result -> result.forEachRemaining(row -> {}));
+            fail("Expected an invalid profile to be rejected");
+        } catch (QueryExecutionException e) {
+            assertTrue(e.getMessage().contains("is not a warmup profile"));
+        }
+    }
+
+    @Test
+    public void testOnlyResidentPagesAreRecorded() throws Exception {
+        File storeFile = new File(directory, "warmup.pages");
+        int pageSize = 8192;
+        try (DefaultFileSystemAbstraction fs = new DefaultFileSystemAbstraction()) {
+            try (PageCache pageCache = StandalonePageCacheFactory.createPageCache(fs);
+                 PagedFile pagedFile = pageCache.map(storeFile, pageSize, StandardOpenOption.CREATE);
+                 PageCursor cursor = pagedFile.io(0, PagedFile.PF_SHARED_WRITE_LOCK)) {
+                for (int page = 0; page < 5; page++) {
+                    assertTrue(cursor.next(page));
+                    cursor.putLong(page);
+                }
+            }
+            // a new page cache starts cold, only the pages read afterwards are resident
+            try (PageCache pageCache = StandalonePageCacheFactory.createPageCache(fs);
+                 PagedFile pagedFile = pageCache.map(storeFile, pageSize)) {
+                try (PageCursor cursor = pagedFile.io(0, PagedFile.PF_SHARED_READ_LOCK)) {
+                    assertTrue(cursor.next(1));
+                    assertTrue(cursor.next(3));
+                }
+                RoaringBitmap pages = new RoaringBitmap();
+                WarmupProfile.residentPages(pagedFile, pages, () -> {});
+                assertArrayEquals(new int[]{1, 3}, pages.toArray());
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            storeFile.delete();
+        }
+    }
+}
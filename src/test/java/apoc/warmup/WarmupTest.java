@@ -7,7 +7,10 @@ import org.junit.Test;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
-import static org.junit.Assert.assertEquals;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
 
 /**
  * @author Sascha Peukert
@@ -72,4 +75,41 @@ public class WarmupTest {
             assertEquals(21L, r.get("indexPages"));
         });
     }
+
+    @Test
+    public void testWarmupPartitioned() throws Exception {
+        TestUtil.testCall(db, "CALL apoc.warmup.run(true,true,true,{partitionPages:1})", r -> {
+            assertEquals(2L, r.get("nodePages"));
+            assertEquals(2L, r.get("relPages"));
+            assertEquals(5L, r.get("propPages"));
+            assertEquals(5L, r.get("arrayPropPages"));
+            assertEquals(21L, r.get("indexPages"));
+            List<Map<String, Object>> files = (List<Map<String, Object>>) r.get("files");
+            Map<String, Object> nodes = files.stream().filter(f -> f.get("file").equals("neostore.nodestore.db")).findFirst().get();
+            assertEquals(2L, nodes.get("pages"));
+            assertNull(nodes.get("error"));
+            assertTrue((Double) nodes.get("mbPerSecond") >= 0);
+        });
+    }
+
+    @Test
+    public void testWarmupThrottled() throws Exception {
+        long start = System.currentTimeMillis();
+        TestUtil.testCall(db, "CALL apoc.warmup.run(false,false,false,{maxMBPerSecond:0.5})", r -> {
+            assertEquals(2L, r.get("nodePages"));
+            assertEquals(2L, r.get("relPages"));
+            long pages = ((List<Map<String, Object>>) r.get("files")).stream().mapToLong(f -> (Long) f.get("pages")).sum();
+            // every page after the first reserved range has to wait for its share of the budget
+            long minTime = (pages - 2) * 8192 * 1000 / (512 * 1024);
+            assertTrue(System.currentTimeMillis() - start >= minTime);
+        });
+    }
+
+    @Test
+    public void testWarmupInvalidConfigUsesDefaults() throws Exception {
+        TestUtil.testCall(db, "CALL apoc.warmup.run(false,false,false,{partitionPages:null, maxMBPerSecond:'fast'})", r -> {
+            assertEquals(2L, r.get("nodePages"));
+            assertEquals(2L, r.get("relPages"));
+        });
+    }
 }